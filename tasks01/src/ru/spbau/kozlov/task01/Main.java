@@ -4,20 +4,32 @@ import org.jetbrains.annotations.NotNull;
 import ru.spbau.kozlov.task01.messages.IllegalMessageFormatException;
 import ru.spbau.kozlov.task01.messages.Message;
 import ru.spbau.kozlov.task01.messages.readers.FileMessageReader;
+import ru.spbau.kozlov.task01.messages.readers.MappedMessageReader;
+import ru.spbau.kozlov.task01.messages.readers.MessageReader;
+import ru.spbau.kozlov.task01.messages.readers.ParallelMessageReader;
+import ru.spbau.kozlov.task01.messages.readers.QueuedMessageReader;
 import ru.spbau.kozlov.task01.messages.writers.CompressMessageWriter;
 import ru.spbau.kozlov.task01.messages.writers.ConsoleMessageWriter;
 import ru.spbau.kozlov.task01.messages.writers.FileMessageWriter;
+import ru.spbau.kozlov.task01.messages.writers.MessageWriter;
+import ru.spbau.kozlov.task01.messages.writers.QueuedMessageWriter;
 
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 
 /**
  * The {@link ru.spbau.kozlov.task01.Main} class implements an application that reads the list of messages from the specified file, then zips every two message in one, and writes it to the standard output or to the specified file.
+ * <p>
+ * Regular files are mapped to memory. If several processors are available, lines of regular files are found by all of them,
+ * and messages are parsed, zipped and written on three threads connected with bounded queues, the main thread zips the messages.
  *
  * @author adkozlov
  */
 public class Main {
 
+    private static final boolean PIPELINED = Runtime.getRuntime().availableProcessors() > 1;
+
     /**
      * Command-line interface.
      *
@@ -30,7 +42,7 @@ public class Main {
         }
 
         String inputFileName = args[0];
-        try (FileMessageReader messageReader = new FileMessageReader(inputFileName);
+        try (MessageReader messageReader = createMessageReader(inputFileName);
              CompressMessageWriter messageWriter = createCompressMessageWriter(args)) {
             Message message;
             while ((message = messageReader.readMessage()) != null) {
@@ -47,9 +59,21 @@ public class Main {
         }
     }
 
+    @NotNull
+    private static MessageReader createMessageReader(@NotNull String inputFileName) throws IOException {
+        MessageReader messageReader;
+        if (!new File(inputFileName).isFile()) {
+            messageReader = new FileMessageReader(inputFileName);
+        } else {
+            messageReader = PIPELINED ? new ParallelMessageReader(inputFileName) : new MappedMessageReader(inputFileName);
+        }
+        return PIPELINED ? new QueuedMessageReader(messageReader) : messageReader;
+    }
+
     @NotNull
     private static CompressMessageWriter createCompressMessageWriter(@NotNull String[] args) throws IOException {
-        return new CompressMessageWriter(args.length == 1 ? new ConsoleMessageWriter() : new FileMessageWriter(args[1]));
+        MessageWriter messageWriter = args.length == 1 ? new ConsoleMessageWriter() : new FileMessageWriter(args[1]);
+        return new CompressMessageWriter(PIPELINED ? new QueuedMessageWriter(messageWriter) : messageWriter);
     }
 
     private static void printIOException(@NotNull IOException e) {
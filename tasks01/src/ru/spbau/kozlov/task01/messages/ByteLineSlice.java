@@ -0,0 +1,168 @@
+package ru.spbau.kozlov.task01.messages;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The {@link ru.spbau.kozlov.task01.messages.ByteLineSlice} class is a slice of lines stored as encoded bytes in a shared buffer.
+ * Bounds of the lines are stored as pairs of the start and end positions in the buffer.
+ * <p>
+ * Lines are decoded to strings only if they are requested, lines of ASCII characters are written through a reusable array of characters.
+ * The buffer is read through a view made for every copied line, so the slice could be used by several threads
+ * and no view keeps the buffer, which could be a large mapped region, reachable after the slice is gone.
+ *
+ * @author adkozlov
+ */
+public final class ByteLineSlice implements LineSlice {
+
+    private static final int INITIAL_BUFFER_LENGTH = 256;
+    private static final ThreadLocal<byte[]> BYTES_BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[INITIAL_BUFFER_LENGTH];
+        }
+    };
+    private static final ThreadLocal<char[]> CHARS_BUFFER = new ThreadLocal<char[]>() {
+        @Override
+        protected char[] initialValue() {
+            return new char[INITIAL_BUFFER_LENGTH];
+        }
+    };
+
+    @NotNull
+    private final ByteBuffer buffer;
+    @NotNull
+    private final int[] bounds;
+    private final int offset;
+    private final int size;
+    @NotNull
+    private final Charset charset;
+    private final boolean utf8;
+    private final boolean asciiCompatible;
+
+    /**
+     * Constructs a new slice of lines. The buffer and the array of bounds are not copied, so they should not be modified.
+     *
+     * @param buffer  a buffer containing the encoded lines
+     * @param bounds  an array of the start and end positions of lines in the buffer, the line {@code i} is in {@code [bounds[2 * i], bounds[2 * i + 1])}
+     * @param offset  an index of the first line of the slice in the array of bounds
+     * @param size    the number of lines in the slice
+     * @param charset the charset of the lines
+     */
+    public ByteLineSlice(@NotNull ByteBuffer buffer, @NotNull int[] bounds, int offset, int size, @NotNull Charset charset) {
+        this.buffer = buffer;
+        this.bounds = bounds;
+        this.offset = offset;
+        this.size = size;
+        this.charset = charset;
+        utf8 = charset.equals(StandardCharsets.UTF_8);
+        asciiCompatible = utf8 || charset.equals(StandardCharsets.US_ASCII) || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the length of the lines in characters. Lines of a single-byte charset are not decoded, the characters of UTF-8 lines are counted by their leading bytes,
+     * a character of four bytes is counted twice as it is decoded to a surrogate pair,
+     * and lines of the other charsets are decoded.
+     *
+     * @return the length of the lines
+     */
+    @Override
+    public long getLength() {
+        long length = 0;
+        if (utf8) {
+            for (int i = offset; i < offset + size; i++) {
+                for (int position = bounds[2 * i]; position < bounds[2 * i + 1]; position++) {
+                    byte b = buffer.get(position);
+                    if ((b & 0xC0) != 0x80) {
+                        length++;
+                    }
+                    if ((b & 0xF8) == 0xF0) {
+                        length++;
+                    }
+                }
+            }
+        } else if (asciiCompatible) {
+            for (int i = offset; i < offset + size; i++) {
+                length += bounds[2 * i + 1] - bounds[2 * i];
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                length += getLine(i).length();
+            }
+        }
+        return length;
+    }
+
+    @NotNull
+    @Override
+    public String getLine(int index) {
+        int length = copyLine(index);
+        return new String(BYTES_BUFFER.get(), 0, length, charset);
+    }
+
+    @Override
+    public void writeLine(int index, @NotNull Writer writer) throws IOException {
+        int length = copyLine(index);
+        byte[] bytes = BYTES_BUFFER.get();
+        if (!asciiCompatible) {
+            writer.write(new String(bytes, 0, length, charset));
+            return;
+        }
+
+        char[] chars = CHARS_BUFFER.get();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, 2 * chars.length)];
+            CHARS_BUFFER.set(chars);
+        }
+        for (int i = 0; i < length; i++) {
+            byte b = bytes[i];
+            if (b < 0) {
+                writer.write(new String(bytes, 0, length, charset));
+                return;
+            }
+            chars[i] = (char) b;
+        }
+        writer.write(chars, 0, length);
+    }
+
+    /**
+     * Copies the bytes of the line to the buffer of the current thread. The buffer is read through a new view, so its position is not changed.
+     *
+     * @param index an index of the line in the slice
+     * @return the length of the line in bytes
+     */
+    private int copyLine(int index) {
+        int start = getStart(index);
+        int length = getEnd(index) - start;
+        byte[] bytes = BYTES_BUFFER.get();
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, 2 * bytes.length)];
+            BYTES_BUFFER.set(bytes);
+        }
+        ByteBuffer view = buffer.duplicate();
+        view.position(start);
+        view.get(bytes, 0, length);
+        return length;
+    }
+
+    private int getStart(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+        return bounds[2 * (offset + index)];
+    }
+
+    private int getEnd(int index) {
+        return bounds[2 * (offset + index) + 1];
+    }
+}
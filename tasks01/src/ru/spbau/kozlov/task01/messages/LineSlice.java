@@ -0,0 +1,47 @@
+package ru.spbau.kozlov.task01.messages;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Interface for an immutable sequence of lines stored in some shared buffer. Slices are shared by messages, so they should not be modified.
+ *
+ * @author adkozlov
+ * @see ru.spbau.kozlov.task01.messages.Message
+ */
+public interface LineSlice {
+
+    /**
+     * Returns the number of lines in the slice.
+     *
+     * @return the number of lines
+     */
+    int size();
+
+    /**
+     * Returns the length of the lines in the slice without terminators in characters, as if the lines were decoded to strings.
+     *
+     * @return the length of the lines
+     */
+    long getLength();
+
+    /**
+     * Returns the line with the specified index.
+     *
+     * @param index an index of the line in the slice
+     * @return the line
+     */
+    @NotNull
+    String getLine(int index);
+
+    /**
+     * Writes the line with the specified index to the writer, the line terminator is not written.
+     *
+     * @param index  an index of the line in the slice
+     * @param writer a writer where the line is to be written to
+     * @throws IOException if an I/O error occurs.
+     */
+    void writeLine(int index, @NotNull Writer writer) throws IOException;
+}
@@ -1,21 +1,26 @@
 package ru.spbau.kozlov.task01.messages;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 /**
  * The {@link ru.spbau.kozlov.task01.messages.Message} class contains a list of lines.
+ * <p>
+ * Lines are stored as a list of immutable {@link ru.spbau.kozlov.task01.messages.LineSlice} objects, so copying and appending of messages copies the list of slices only.
  *
  * @author adkozlov
  */
 public class Message {
 
     @NotNull
-    private final List<String> lines;
+    private final List<LineSlice> slices;
+    @Nullable
+    private List<LineSlice> unmodifiableSlices = null;
+    @Nullable
+    private List<String> lines = null;
+    private int size;
 
     /**
      * Constructs a new message with the given list of lines.
@@ -23,7 +28,7 @@ public class Message {
      * @param lines a list of lines
      */
     public Message(@NotNull List<String> lines) {
-        this.lines = new ArrayList<>(lines);
+        this(new StringLineSlice(lines.toArray(new String[lines.size()])));
     }
 
     /**
@@ -32,26 +37,53 @@ public class Message {
      * @param lines an array of lines
      */
     public Message(@NotNull String... lines) {
-        this(Arrays.asList(lines));
+        this(new StringLineSlice(lines.clone()));
     }
 
     /**
-     * Constructs a new message with the same list of lines as in the passed message.
+     * Constructs a new message with the given slice of lines.
+     *
+     * @param slice a slice of lines
+     */
+    public Message(@NotNull LineSlice slice) {
+        slices = new ArrayList<>(2);
+        append(slice);
+    }
+
+    /**
+     * Constructs a new message with the same list of lines as in the passed message. The lines themselves are shared.
      *
      * @param message message to be copied
      */
     public Message(@NotNull Message message) {
-        this(message.lines);
+        slices = new ArrayList<>(message.slices);
+        size = message.size;
     }
 
     /**
      * Returns the list of lines contained by the message.
      *
-     * @return an unmodifiable copy of the list of lines
+     * @return an unmodifiable view of the list of lines
      */
     @NotNull
     public List<String> getLines() {
-        return Collections.unmodifiableList(lines);
+        if (lines == null) {
+            lines = new LinesList();
+        }
+        return lines;
+    }
+
+    /**
+     * Returns the slices of lines contained by the message.
+     *
+     * @return an unmodifiable view of the list of slices
+     */
+    @NotNull
+    public List<LineSlice> getSlices() {
+        if (unmodifiableSlices == null) {
+            unmodifiableSlices = Collections.unmodifiableList(slices);
+        }
+        return unmodifiableSlices;
     }
 
     /**
@@ -60,7 +92,21 @@ public class Message {
      * @return the number of lines
      */
     public int getSize() {
-        return lines.size();
+        return size;
+    }
+
+    /**
+     * Returns the length of the lines contained by the message without terminators in characters.
+     *
+     * @return the length of the lines
+     * @see ru.spbau.kozlov.task01.messages.LineSlice#getLength()
+     */
+    public long getLength() {
+        long length = 0;
+        for (LineSlice slice : slices) {
+            length += slice.getLength();
+        }
+        return length;
     }
 
     /**
@@ -69,7 +115,20 @@ public class Message {
      * @param message message to be copied
      */
     public void append(@NotNull Message message) {
-        lines.addAll(message.lines);
+        slices.addAll(message.slices);
+        size += message.size;
+    }
+
+    /**
+     * Appends the lines of the slice to the current message.
+     *
+     * @param slice a slice of lines
+     */
+    public void append(@NotNull LineSlice slice) {
+        if (slice.size() > 0) {
+            slices.add(slice);
+            size += slice.size();
+        }
     }
 
     /**
@@ -80,7 +139,86 @@ public class Message {
     @Override
     public String toString() {
         return "Message{" +
-                "lines=" + lines +
+                "lines=" + getLines() +
                 '}';
     }
+
+    /**
+     * The view of the lines of the slices, the lines are returned by the slices on demand.
+     * The slice containing the line is found by the binary search over the indices of the first lines of the slices,
+     * which are computed for the appended slices when a line is requested.
+     */
+    private class LinesList extends AbstractList<String> implements RandomAccess {
+
+        @NotNull
+        private int[] sliceStarts = new int[0];
+        private int slicesCount = 0;
+
+        @Override
+        public String get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+            }
+            updateSliceStarts();
+
+            int sliceIndex = Arrays.binarySearch(sliceStarts, 0, slicesCount, index);
+            if (sliceIndex < 0) {
+                sliceIndex = -sliceIndex - 2;
+            }
+            return slices.get(sliceIndex).getLine(index - sliceStarts[sliceIndex]);
+        }
+
+        /**
+         * Computes the indices of the first lines of the slices appended since the previous call. Slices are never removed and are never empty.
+         */
+        private void updateSliceStarts() {
+            if (slicesCount == slices.size()) {
+                return;
+            }
+            if (sliceStarts.length < slices.size()) {
+                sliceStarts = Arrays.copyOf(sliceStarts, Math.max(slices.size(), 2 * sliceStarts.length));
+            }
+            for (; slicesCount < slices.size(); slicesCount++) {
+                sliceStarts[slicesCount] = slicesCount == 0 ? 0 : sliceStarts[slicesCount - 1] + slices.get(slicesCount - 1).size();
+            }
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @NotNull
+        @Override
+        public Iterator<String> iterator() {
+            return new Iterator<String>() {
+                private int sliceIndex = 0;
+                private int lineIndex = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return sliceIndex < slices.size();
+                }
+
+                @Override
+                public String next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    LineSlice slice = slices.get(sliceIndex);
+                    String line = slice.getLine(lineIndex++);
+                    if (lineIndex == slice.size()) {
+                        sliceIndex++;
+                        lineIndex = 0;
+                    }
+                    return line;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
 }
@@ -0,0 +1,51 @@
+package ru.spbau.kozlov.task01.messages;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * The {@link ru.spbau.kozlov.task01.messages.StringLineSlice} class is a slice of lines stored as strings.
+ *
+ * @author adkozlov
+ */
+public final class StringLineSlice implements LineSlice {
+
+    @NotNull
+    private final String[] lines;
+
+    /**
+     * Constructs a new slice of the given lines. The array is not copied, so it should not be modified.
+     *
+     * @param lines an array of lines
+     */
+    public StringLineSlice(@NotNull String... lines) {
+        this.lines = lines;
+    }
+
+    @Override
+    public int size() {
+        return lines.length;
+    }
+
+    @Override
+    public long getLength() {
+        long length = 0;
+        for (String line : lines) {
+            length += line.length();
+        }
+        return length;
+    }
+
+    @NotNull
+    @Override
+    public String getLine(int index) {
+        return lines[index];
+    }
+
+    @Override
+    public void writeLine(int index, @NotNull Writer writer) throws IOException {
+        writer.write(lines[index]);
+    }
+}
@@ -0,0 +1,83 @@
+package ru.spbau.kozlov.task01.messages.readers;
+
+import org.jetbrains.annotations.NotNull;
+import ru.spbau.kozlov.task01.messages.IllegalMessageFormatException;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * The {@link ru.spbau.kozlov.task01.messages.readers.ByteLines} class contains methods parsing lines of encoded bytes the same way as {@link ru.spbau.kozlov.task01.messages.readers.FileMessageReader} parses strings.
+ *
+ * @author adkozlov
+ */
+final class ByteLines {
+
+    private static final int MAX_FAST_PARSED_DIGITS = 9;
+
+    private ByteLines() {
+    }
+
+    /**
+     * Parses the lines count of a message. A line of an optional sign and up to {@link #MAX_FAST_PARSED_DIGITS} ASCII digits is parsed from the bytes,
+     * other lines are decoded and parsed with {@link Integer#parseInt(String)}.
+     *
+     * @param buffer     a buffer containing the line
+     * @param start      the start position of the line
+     * @param end        the end position of the line
+     * @param charset    the charset of the line
+     * @param lineNumber the number of the line
+     * @return the parsed number
+     * @throws IllegalMessageFormatException if the line is not an integer number.
+     */
+    public static int parseSize(@NotNull ByteBuffer buffer, int start, int end, @NotNull Charset charset, int lineNumber) throws IllegalMessageFormatException {
+        int i = start;
+        boolean negative = false;
+        if (i < end) {
+            byte sign = buffer.get(i);
+            if (sign == '-' || sign == '+') {
+                negative = sign == '-';
+                i++;
+            }
+        }
+        if (i < end && end - i <= MAX_FAST_PARSED_DIGITS) {
+            int result = 0;
+            for (; i < end; i++) {
+                int digit = buffer.get(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                result = result * 10 + digit;
+            }
+            if (i == end) {
+                return negative ? -result : result;
+            }
+        }
+
+        String line = decode(buffer, start, end, charset);
+        try {
+            return Integer.parseInt(line);
+        } catch (NumberFormatException e) {
+            throw new IllegalMessageFormatException(
+                    "Message lines count should be an integer number (actual line: \"" + line + "\")", e, lineNumber);
+        }
+    }
+
+    /**
+     * Decodes the line.
+     *
+     * @param buffer  a buffer containing the line
+     * @param start   the start position of the line
+     * @param end     the end position of the line
+     * @param charset the charset of the line
+     * @return the decoded line
+     */
+    @NotNull
+    public static String decode(@NotNull ByteBuffer buffer, int start, int end, @NotNull Charset charset) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        return new String(bytes, charset);
+    }
+}
@@ -15,7 +15,7 @@ import java.util.List;
  * @author adkozlov
  * @see ru.spbau.kozlov.task01.messages.Message
  */
-public class FileMessageReader implements Closeable {
+public class FileMessageReader implements MessageReader {
 
     @NotNull
     private final BufferedReader bufferedReader;
@@ -31,14 +31,8 @@ public class FileMessageReader implements Closeable {
         bufferedReader = new BufferedReader(new FileReader(fileName));
     }
 
-    /**
-     * Reads next message from the file.
-     *
-     * @return a {@link ru.spbau.kozlov.task01.messages.Message} class object containing message that was read, or null if the end of file has been reached
-     * @throws IOException                   if an I/O error occurs.
-     * @throws IllegalMessageFormatException if no valid message can be created with the given input.
-     */
     @Nullable
+    @Override
     public Message readMessage() throws IOException, IllegalMessageFormatException {
         int size = readSize();
         if (size == -1) {
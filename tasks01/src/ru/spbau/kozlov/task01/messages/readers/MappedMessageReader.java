@@ -0,0 +1,233 @@
+package ru.spbau.kozlov.task01.messages.readers;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.spbau.kozlov.task01.messages.ByteLineSlice;
+import ru.spbau.kozlov.task01.messages.IllegalMessageFormatException;
+import ru.spbau.kozlov.task01.messages.Message;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * The {@link ru.spbau.kozlov.task01.messages.readers.MappedMessageReader} class is used to read number of messages from the specified file one by one,
+ * the file is mapped to memory by regions of the specified size.
+ * <p>
+ * Lines are found by scanning the mapped bytes, lines counts are parsed from the bytes directly.
+ * Messages reference their lines in the mapped regions with {@link ru.spbau.kozlov.task01.messages.ByteLineSlice} objects, so no strings are created for lines unless requested.
+ * The regions are unmapped when no message references them.
+ * Lines are decoded with the default charset as {@link ru.spbau.kozlov.task01.messages.readers.FileMessageReader} does, the charset should be ASCII compatible.
+ * Lines are terminated the same way as by {@link java.io.BufferedReader#readLine()}, with a line feed, a carriage return or both.
+ *
+ * @author adkozlov
+ * @see ru.spbau.kozlov.task01.messages.Message
+ */
+public class MappedMessageReader implements MessageReader {
+
+    /**
+     * The default size of the mapped region.
+     */
+    public static final int DEFAULT_REGION_SIZE = 64 * 1024 * 1024;
+    private static final int INITIAL_BOUNDS_LINES = 16;
+
+    @NotNull
+    private final RandomAccessFile file;
+    @NotNull
+    private final FileChannel channel;
+    private final long fileSize;
+    @NotNull
+    private final Charset charset = Charset.defaultCharset();
+    private int regionSize;
+    @Nullable
+    private MappedByteBuffer region = null;
+    private long regionStart = 0;
+    private long position = 0;
+    private int lineStart = 0;
+    private int lineEnd = 0;
+    private int linesRead = 0;
+
+    /**
+     * Constructs a new reader mapping regions of the default size, given the name of a file to read from.
+     *
+     * @param fileName a name of the file to read from
+     * @throws FileNotFoundException if the named file does not exists.
+     * @throws IOException           if an I/O error occurs.
+     */
+    public MappedMessageReader(@NotNull String fileName) throws IOException {
+        this(fileName, DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Constructs a new reader, given the name of a file to read from and the size of the mapped region. Regions are enlarged for lines longer than the size.
+     *
+     * @param fileName   a name of the file to read from
+     * @param regionSize the size of the mapped region in bytes
+     * @throws FileNotFoundException if the named file does not exists.
+     * @throws IOException           if an I/O error occurs.
+     */
+    public MappedMessageReader(@NotNull String fileName, int regionSize) throws IOException {
+        if (regionSize < 2) {
+            throw new IllegalArgumentException("Region size should be at least 2 bytes");
+        }
+        this.regionSize = regionSize;
+        file = new RandomAccessFile(fileName, "r");
+        try {
+            channel = file.getChannel();
+            fileSize = channel.size();
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    @Nullable
+    @Override
+    public Message readMessage() throws IOException, IllegalMessageFormatException {
+        int size = readSize();
+        if (size == -1) {
+            return null;
+        }
+
+        return readBody(size);
+    }
+
+    private int readSize() throws IOException, IllegalMessageFormatException {
+        if (!nextLine()) {
+            return -1;
+        }
+
+        return ByteLines.parseSize(region, lineStart, lineEnd, charset, linesRead);
+    }
+
+    /**
+     * Reads the lines of the message, the lines are referenced by their bounds in the mapped regions.
+     * Lines of different regions are stored in different slices.
+     *
+     * @param size the number of lines
+     * @return the message
+     * @throws IOException                   if an I/O error occurs.
+     * @throws IllegalMessageFormatException if the file contains not enough lines.
+     */
+    @NotNull
+    private Message readBody(int size) throws IOException, IllegalMessageFormatException {
+        if (size <= 0) {
+            return new Message();
+        }
+
+        Message message = null;
+        int[] bounds = new int[2 * Math.min(size, INITIAL_BOUNDS_LINES)];
+        int boundsLines = 0;
+        int sliceStart = 0;
+        MappedByteBuffer sliceRegion = null;
+        for (int i = 0; i < size; i++) {
+            if (!nextLine()) {
+                throw new IllegalMessageFormatException(
+                        "Not enough message lines (" + i + " of " + size + ")", linesRead);
+            }
+
+            if (region != sliceRegion || 2 * boundsLines == bounds.length) {
+                if (sliceRegion != null) {
+                    message = append(message, new ByteLineSlice(sliceRegion, bounds, sliceStart, boundsLines - sliceStart, charset));
+                }
+                if (2 * boundsLines == bounds.length) {
+                    bounds = new int[2 * Math.min(2 * boundsLines, size - i)];
+                    boundsLines = 0;
+                }
+                sliceRegion = region;
+                sliceStart = boundsLines;
+            }
+            bounds[2 * boundsLines] = lineStart;
+            bounds[2 * boundsLines + 1] = lineEnd;
+            boundsLines++;
+        }
+
+        return append(message, new ByteLineSlice(sliceRegion, bounds, sliceStart, boundsLines - sliceStart, charset));
+    }
+
+    @NotNull
+    private static Message append(@Nullable Message message, @NotNull ByteLineSlice slice) {
+        if (message == null) {
+            return new Message(slice);
+        }
+        message.append(slice);
+        return message;
+    }
+
+    /**
+     * Finds the next line in the mapped region, the region is mapped again if the line does not fit into it.
+     *
+     * @return true if the line is found, false if the end of file has been reached
+     * @throws IOException if an I/O error occurs.
+     */
+    private boolean nextLine() throws IOException {
+        linesRead++;
+        if (position >= fileSize) {
+            return false;
+        }
+
+        while (true) {
+            int start = (int) (position - regionStart);
+            if (region == null || start >= region.limit()) {
+                mapRegion();
+                continue;
+            }
+
+            int limit = region.limit();
+            for (int i = start; i < limit; i++) {
+                byte b = region.get(i);
+                if (b == '\n' || b == '\r') {
+                    int next = i + 1;
+                    if (b == '\r') {
+                        if (next < limit) {
+                            if (region.get(next) == '\n') {
+                                next++;
+                            }
+                        } else if (regionStart + next < fileSize) {
+                            break;
+                        }
+                    }
+                    setLine(start, i, next);
+                    return true;
+                }
+            }
+
+            if (regionStart + limit == fileSize) {
+                setLine(start, limit, limit);
+                return true;
+            }
+            if (start == 0) {
+                if (regionSize == Integer.MAX_VALUE) {
+                    throw new IOException("Line " + linesRead + " is too long");
+                }
+                regionSize = (int) Math.min(2L * regionSize, Integer.MAX_VALUE);
+            }
+            mapRegion();
+        }
+    }
+
+    private void setLine(int start, int end, int next) {
+        lineStart = start;
+        lineEnd = end;
+        position = regionStart + next;
+    }
+
+    private void mapRegion() throws IOException {
+        region = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(regionSize, fileSize - position));
+        regionStart = position;
+    }
+
+    /**
+     * Closes this stream and releases any system resources associated with it.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        region = null;
+        file.close();
+    }
+}
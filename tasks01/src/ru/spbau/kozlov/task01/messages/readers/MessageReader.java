@@ -0,0 +1,27 @@
+package ru.spbau.kozlov.task01.messages.readers;
+
+import org.jetbrains.annotations.Nullable;
+import ru.spbau.kozlov.task01.messages.IllegalMessageFormatException;
+import ru.spbau.kozlov.task01.messages.Message;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Interface for reading messages one by one.
+ *
+ * @author adkozlov
+ * @see ru.spbau.kozlov.task01.messages.Message
+ */
+public interface MessageReader extends Closeable {
+
+    /**
+     * Reads next message.
+     *
+     * @return a {@link ru.spbau.kozlov.task01.messages.Message} class object containing message that was read, or null if the end of input has been reached
+     * @throws IOException                   if an I/O error occurs.
+     * @throws IllegalMessageFormatException if no valid message can be created with the given input.
+     */
+    @Nullable
+    Message readMessage() throws IOException, IllegalMessageFormatException;
+}
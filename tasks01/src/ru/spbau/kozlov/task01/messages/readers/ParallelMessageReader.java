@@ -0,0 +1,369 @@
+package ru.spbau.kozlov.task01.messages.readers;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.spbau.kozlov.task01.messages.ByteLineSlice;
+import ru.spbau.kozlov.task01.messages.IllegalMessageFormatException;
+import ru.spbau.kozlov.task01.messages.Message;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The {@link ru.spbau.kozlov.task01.messages.readers.ParallelMessageReader} class is used to read number of messages from the specified file one by one,
+ * the lines of the file are found by several threads.
+ * <p>
+ * The file is mapped to memory by regions ending at line boundaries. Line terminators of a region are found by the tasks of a fork-join pool,
+ * each task scans a chunk of the region, so the bounds of lines are known before the messages are parsed.
+ * The messages are parsed by walking through the lines counts only, the lines of a message are referenced by {@link ru.spbau.kozlov.task01.messages.ByteLineSlice} objects,
+ * so the messages are returned in order and parsing is cheap. The next region is scanned while the messages of the current one are read.
+ * <p>
+ * Lines are decoded and terminated the same way as by {@link ru.spbau.kozlov.task01.messages.readers.MappedMessageReader}, line numbers of errors are the same as of {@link ru.spbau.kozlov.task01.messages.readers.FileMessageReader}.
+ *
+ * @author adkozlov
+ * @see ru.spbau.kozlov.task01.messages.Message
+ */
+public class ParallelMessageReader implements MessageReader {
+
+    /**
+     * The default size of the mapped region.
+     */
+    public static final int DEFAULT_REGION_SIZE = 16 * 1024 * 1024;
+    private static final int CHUNK_SIZE = 1024 * 1024;
+
+    @NotNull
+    private final RandomAccessFile file;
+    @NotNull
+    private final FileChannel channel;
+    private final long fileSize;
+    @NotNull
+    private final Charset charset = Charset.defaultCharset();
+    @NotNull
+    private final ForkJoinPool forkJoinPool;
+    @Nullable
+    private Region region = null;
+    @Nullable
+    private ForkJoinTask<Region> nextRegionTask = null;
+    private int lineIndex = 0;
+    private int linesRead = 0;
+
+    /**
+     * Constructs a new reader using the threads of all the available processors, given the name of a file to read from.
+     *
+     * @param fileName a name of the file to read from
+     * @throws FileNotFoundException if the named file does not exists.
+     * @throws IOException           if an I/O error occurs.
+     */
+    public ParallelMessageReader(@NotNull String fileName) throws IOException {
+        this(fileName, Runtime.getRuntime().availableProcessors(), DEFAULT_REGION_SIZE);
+    }
+
+    /**
+     * Constructs a new reader, given the name of a file to read from, the number of threads and the size of the mapped region.
+     * Regions are enlarged for lines longer than the size.
+     *
+     * @param fileName     a name of the file to read from
+     * @param threadsCount the number of threads finding lines
+     * @param regionSize   the size of the mapped region in bytes
+     * @throws FileNotFoundException if the named file does not exists.
+     * @throws IOException           if an I/O error occurs.
+     */
+    public ParallelMessageReader(@NotNull String fileName, int threadsCount, int regionSize) throws IOException {
+        if (threadsCount < 1) {
+            throw new IllegalArgumentException("Threads count should be positive");
+        }
+        if (regionSize < 2) {
+            throw new IllegalArgumentException("Region size should be at least 2 bytes");
+        }
+        file = new RandomAccessFile(fileName, "r");
+        try {
+            channel = file.getChannel();
+            fileSize = channel.size();
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+
+        forkJoinPool = new ForkJoinPool(threadsCount);
+        if (fileSize > 0) {
+            nextRegionTask = forkJoinPool.submit(new RegionTask(0, regionSize));
+        }
+    }
+
+    @Nullable
+    @Override
+    public Message readMessage() throws IOException, IllegalMessageFormatException {
+        if (!nextLine()) {
+            return null;
+        }
+
+        int size = ByteLines.parseSize(region.buffer, region.getStart(lineIndex), region.getEnd(lineIndex), charset, linesRead);
+        lineIndex++;
+        if (size == -1) {
+            return null;
+        }
+        if (size <= 0) {
+            return new Message();
+        }
+
+        Message message = null;
+        int remaining = size;
+        while (remaining > 0) {
+            if (!nextLine()) {
+                throw new IllegalMessageFormatException(
+                        "Not enough message lines (" + (size - remaining) + " of " + size + ")", linesRead);
+            }
+
+            int count = Math.min(remaining, region.linesCount - lineIndex);
+            ByteLineSlice slice = new ByteLineSlice(region.buffer, region.bounds, lineIndex, count, charset);
+            if (message == null) {
+                message = new Message(slice);
+            } else {
+                message.append(slice);
+            }
+            lineIndex += count;
+            linesRead += count - 1;
+            remaining -= count;
+        }
+
+        return message;
+    }
+
+    /**
+     * Moves to the next line, the next region is taken if the lines of the current one are read.
+     *
+     * @return true if the line is found, false if the end of file has been reached
+     * @throws IOException if an I/O error occurs.
+     */
+    private boolean nextLine() throws IOException {
+        linesRead++;
+        while (region == null || lineIndex == region.linesCount) {
+            if (nextRegionTask == null) {
+                return false;
+            }
+
+            region = takeNextRegion();
+            lineIndex = 0;
+        }
+        return true;
+    }
+
+    @NotNull
+    private Region takeNextRegion() throws IOException {
+        Region nextRegion;
+        try {
+            nextRegion = nextRegionTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Reading of messages is interrupted");
+        } catch (ExecutionException e) {
+            nextRegionTask = null;
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+
+        nextRegionTask = nextRegion.getNextStart() < fileSize ? forkJoinPool.submit(new RegionTask(nextRegion.getNextStart(), nextRegion.size)) : null;
+        return nextRegion;
+    }
+
+    /**
+     * Stops finding lines and closes the file.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        forkJoinPool.shutdownNow();
+        region = null;
+        nextRegionTask = null;
+        file.close();
+    }
+
+    /**
+     * The mapped region of the file and bounds of its lines. The last line of the region is terminated, unless the region ends at the end of file.
+     */
+    private static class Region {
+
+        @NotNull
+        private final MappedByteBuffer buffer;
+        private final long start;
+        private final int size;
+        @NotNull
+        private final int[] bounds;
+        private final int linesCount;
+
+        public Region(@NotNull MappedByteBuffer buffer, long start, int size, @NotNull int[] bounds, int linesCount) {
+            this.buffer = buffer;
+            this.start = start;
+            this.size = size;
+            this.bounds = bounds;
+            this.linesCount = linesCount;
+        }
+
+        public int getStart(int index) {
+            return bounds[2 * index];
+        }
+
+        public int getEnd(int index) {
+            return bounds[2 * index + 1];
+        }
+
+        /**
+         * Returns the position in the file where the next region starts.
+         *
+         * @return the position after the terminator of the last line
+         */
+        public long getNextStart() {
+            return start + (linesCount > 0 ? bounds[2 * linesCount] : 0);
+        }
+    }
+
+    /**
+     * Maps the region starting at the specified position and finds its lines. The region is enlarged until it contains a line terminator or the end of file.
+     */
+    private class RegionTask extends RecursiveTask<Region> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final long start;
+        private final int regionSize;
+
+        public RegionTask(long start, int regionSize) {
+            this.start = start;
+            this.regionSize = regionSize;
+        }
+
+        @Override
+        protected Region compute() {
+            int size = (int) Math.min(regionSize, fileSize - start);
+            while (true) {
+                MappedByteBuffer buffer;
+                try {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+
+                boolean last = start + size == fileSize;
+                int scanEnd = last ? size : size - 1;
+                List<ScanTask> scanTasks = new ArrayList<>();
+                for (int from = 0; from < scanEnd; from += CHUNK_SIZE) {
+                    scanTasks.add(new ScanTask(buffer, from, Math.min(from + CHUNK_SIZE, scanEnd), size));
+                }
+                invokeAll(scanTasks);
+
+                int terminatorsCount = 0;
+                for (ScanTask scanTask : scanTasks) {
+                    terminatorsCount += scanTask.count;
+                }
+                if (terminatorsCount == 0 && !last) {
+                    if (size == Integer.MAX_VALUE) {
+                        throw new UncheckedIOException(new IOException("Line at position " + start + " is too long"));
+                    }
+                    size = (int) Math.min(Math.min(2L * size, Integer.MAX_VALUE), fileSize - start);
+                    continue;
+                }
+
+                return createRegion(buffer, size, scanTasks, terminatorsCount, last);
+            }
+        }
+
+        /**
+         * Joins the terminators found by the scan tasks to the bounds of lines. The bounds array contains the start of the next line after the last pair.
+         */
+        @NotNull
+        private Region createRegion(@NotNull MappedByteBuffer buffer, int size, @NotNull List<ScanTask> scanTasks, int terminatorsCount, boolean last) {
+            int[] bounds = new int[2 * terminatorsCount + 3];
+            int linesCount = 0;
+            int lineStart = 0;
+            for (ScanTask scanTask : scanTasks) {
+                for (int i = 0; i < scanTask.count; i++) {
+                    bounds[2 * linesCount] = lineStart;
+                    bounds[2 * linesCount + 1] = scanTask.terminators[2 * i];
+                    lineStart = scanTask.terminators[2 * i + 1];
+                    linesCount++;
+                }
+            }
+            if (last && lineStart < size) {
+                bounds[2 * linesCount] = lineStart;
+                bounds[2 * linesCount + 1] = size;
+                lineStart = size;
+                linesCount++;
+            }
+            bounds[2 * linesCount] = lineStart;
+
+            return new Region(buffer, start, size, bounds, linesCount);
+        }
+    }
+
+    /**
+     * Finds line terminators in the chunk of the region. A terminator is stored as the end of the line and the start of the next line.
+     * A carriage return followed by a line feed is found at the line feed, so the chunks could be scanned independently.
+     */
+    private static class ScanTask extends RecursiveTask<Void> {
+
+        private static final long serialVersionUID = 1L;
+
+        @NotNull
+        private final ByteBuffer buffer;
+        private final int from;
+        private final int to;
+        private final int limit;
+        @NotNull
+        private int[] terminators = new int[0];
+        private int count = 0;
+
+        public ScanTask(@NotNull ByteBuffer buffer, int from, int to, int limit) {
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.limit = limit;
+        }
+
+        @Override
+        protected Void compute() {
+            int offset = Math.max(from - 1, 0);
+            byte[] bytes = new byte[Math.min(to + 1, limit) - offset];
+            ByteBuffer view = buffer.duplicate();
+            view.position(offset);
+            view.get(bytes);
+
+            terminators = new int[Math.max(2 * ((to - from) / 32), 16)];
+            for (int i = from - offset; i < to - offset; i++) {
+                byte b = bytes[i];
+                if (b == '\n') {
+                    addTerminator(i > 0 && bytes[i - 1] == '\r' ? i - 1 + offset : i + offset, i + 1 + offset);
+                } else if (b == '\r' && (i + 1 == bytes.length || bytes[i + 1] != '\n')) {
+                    addTerminator(i + offset, i + 1 + offset);
+                }
+            }
+            return null;
+        }
+
+        private void addTerminator(int lineEnd, int nextLineStart) {
+            if (2 * count == terminators.length) {
+                int[] newTerminators = new int[2 * terminators.length];
+                System.arraycopy(terminators, 0, newTerminators, 0, terminators.length);
+                terminators = newTerminators;
+            }
+            terminators[2 * count] = lineEnd;
+            terminators[2 * count + 1] = nextLineStart;
+            count++;
+        }
+    }
+}
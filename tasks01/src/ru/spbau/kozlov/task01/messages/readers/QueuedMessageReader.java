@@ -0,0 +1,180 @@
+package ru.spbau.kozlov.task01.messages.readers;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.spbau.kozlov.task01.messages.IllegalMessageFormatException;
+import ru.spbau.kozlov.task01.messages.Message;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The {@link ru.spbau.kozlov.task01.messages.readers.QueuedMessageReader} class reads messages with the specified {@link ru.spbau.kozlov.task01.messages.readers.MessageReader} ahead on a separate thread,
+ * so parsing of the next messages overlaps with processing of the current one.
+ * <p>
+ * Messages are passed in batches through a bounded queue, the reading thread waits while the queue is full.
+ * An exception thrown by the reader is rethrown by {@link #readMessage()} after all the messages read before it, so the messages are returned in the same order.
+ *
+ * @author adkozlov
+ */
+public class QueuedMessageReader implements MessageReader {
+
+    /**
+     * The default number of batches read ahead.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+    private static final int BATCH_LINES_COUNT = 8192;
+
+    @NotNull
+    private final MessageReader messageReader;
+    @NotNull
+    private final BlockingQueue<Batch> queue;
+    @NotNull
+    private final Thread thread;
+    @NotNull
+    private Batch batch = new Batch(Collections.<Message>emptyList(), false, null);
+    private int position = 0;
+
+    /**
+     * Constructs a new reader reading ahead the default number of batches.
+     *
+     * @param messageReader a reader to be used to read messages
+     */
+    public QueuedMessageReader(@NotNull MessageReader messageReader) {
+        this(messageReader, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new reader and starts the reading thread.
+     *
+     * @param messageReader a reader to be used to read messages
+     * @param capacity      the number of batches read ahead
+     */
+    public QueuedMessageReader(@NotNull MessageReader messageReader, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity should be positive");
+        }
+        this.messageReader = messageReader;
+        queue = new ArrayBlockingQueue<>(capacity);
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                readMessages();
+            }
+        }, "message-reader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Nullable
+    @Override
+    public Message readMessage() throws IOException, IllegalMessageFormatException {
+        while (position == batch.messages.size()) {
+            if (batch.last) {
+                if (batch.throwable != null) {
+                    rethrow(batch.throwable);
+                }
+                return null;
+            }
+
+            try {
+                batch = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Reading of messages is interrupted");
+            }
+            position = 0;
+        }
+
+        return batch.messages.get(position++);
+    }
+
+    /**
+     * Stops the reading thread and closes the reader.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            thread.interrupt();
+            boolean interrupted = false;
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            messageReader.close();
+        }
+    }
+
+    private void readMessages() {
+        List<Message> messages = new ArrayList<>();
+        int linesCount = 0;
+        Throwable throwable = null;
+        try {
+            Message message;
+            while ((message = messageReader.readMessage()) != null) {
+                messages.add(message);
+                linesCount += message.getSize();
+                if (linesCount >= BATCH_LINES_COUNT) {
+                    queue.put(new Batch(messages, false, null));
+                    messages = new ArrayList<>();
+                    linesCount = 0;
+                }
+            }
+        } catch (InterruptedException e) {
+            return;
+        } catch (IOException | IllegalMessageFormatException | RuntimeException | Error e) {
+            throwable = e;
+        }
+
+        try {
+            queue.put(new Batch(messages, true, throwable));
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    private static void rethrow(@NotNull Throwable throwable) throws IOException, IllegalMessageFormatException {
+        if (throwable instanceof IOException) {
+            throw (IOException) throwable;
+        }
+        if (throwable instanceof IllegalMessageFormatException) {
+            throw (IllegalMessageFormatException) throwable;
+        }
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        throw (RuntimeException) throwable;
+    }
+
+    /**
+     * Messages read one after another. The last batch contains the messages read before the end of input or before the exception thrown.
+     */
+    private static class Batch {
+
+        @NotNull
+        private final List<Message> messages;
+        private final boolean last;
+        @Nullable
+        private final Throwable throwable;
+
+        public Batch(@NotNull List<Message> messages, boolean last, @Nullable Throwable throwable) {
+            this.messages = messages;
+            this.last = last;
+            this.throwable = throwable;
+        }
+    }
+}
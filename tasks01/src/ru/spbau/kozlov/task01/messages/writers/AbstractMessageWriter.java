@@ -1,11 +1,13 @@
 package ru.spbau.kozlov.task01.messages.writers;
 
 import org.jetbrains.annotations.NotNull;
+import ru.spbau.kozlov.task01.messages.LineSlice;
 import ru.spbau.kozlov.task01.messages.Message;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.util.List;
 
 /**
  * The abstract class to write messages to the specified buffered writer.
@@ -43,9 +45,13 @@ public abstract class AbstractMessageWriter extends AbstractResource implements
             writeMessageHeader(message);
 
             int i = 1;
-            for (String line : message.getLines()) {
-                writeMessageLine(line, i);
-                i++;
+            List<LineSlice> slices = message.getSlices();
+            for (int k = 0; k < slices.size(); k++) {
+                LineSlice slice = slices.get(k);
+                for (int j = 0; j < slice.size(); j++) {
+                    writeMessageLine(slice, j, i);
+                    i++;
+                }
             }
         } catch (IOException e) {
             IOErrorOccurred();
@@ -63,6 +69,18 @@ public abstract class AbstractMessageWriter extends AbstractResource implements
         bufferedWriter.write(message.getSize() + "\n");
     }
 
+    /**
+     * Writes the line of the specified slice to the buffered writer. The line is passed to {@link #writeMessageLine(String, int)} by default.
+     *
+     * @param slice     a slice containing the line to be written
+     * @param lineIndex an index of the line in the slice
+     * @param index     an index of the line in the message
+     * @throws IOException if an I/O error occurs.
+     */
+    protected void writeMessageLine(@NotNull LineSlice slice, int lineIndex, int index) throws IOException {
+        writeMessageLine(slice.getLine(lineIndex), index);
+    }
+
     /**
      * Writes the specified line to the buffered writer.
      *
@@ -0,0 +1,129 @@
+package ru.spbau.kozlov.task01.messages.writers;
+
+/**
+ * The {@link ru.spbau.kozlov.task01.messages.writers.BatchPolicy} class describes when {@link ru.spbau.kozlov.task01.messages.writers.CompressMessageWriter} writes the zipped message.
+ * <p>
+ * Messages are zipped until the number of messages is reached, the lines count or the length of lines would exceed the budget, or the time limit passes.
+ * A message exceeding the budget itself is written alone. Zero budgets and time limit mean no limit.
+ * The length of lines is measured in characters whichever reader the messages come from, so the same budget zips the same messages
+ * whether the lines are read as strings or as encoded bytes.
+ *
+ * @author adkozlov
+ */
+public final class BatchPolicy {
+
+    /**
+     * Zips every two messages into one.
+     */
+    public static final BatchPolicy PAIRS = new BatchPolicy(2);
+
+    private final int maxMessagesCount;
+    private final int maxLinesCount;
+    private final long maxLength;
+    private final long maxDelayMillis;
+
+    /**
+     * Constructs a new policy zipping the specified number of messages.
+     *
+     * @param maxMessagesCount the number of messages zipped into one
+     */
+    public BatchPolicy(int maxMessagesCount) {
+        this(maxMessagesCount, 0, 0, 0);
+    }
+
+    /**
+     * Constructs a new policy.
+     *
+     * @param maxMessagesCount the maximal number of messages zipped into one
+     * @param maxLinesCount    the maximal number of lines in the zipped message, or zero
+     * @param maxLength        the maximal length of lines in the zipped message in characters, or zero
+     * @param maxDelayMillis   the maximal time in milliseconds the first message of the zipped one waits for it to be written, or zero
+     * @see ru.spbau.kozlov.task01.messages.Message#getLength()
+     */
+    public BatchPolicy(int maxMessagesCount, int maxLinesCount, long maxLength, long maxDelayMillis) {
+        if (maxMessagesCount < 1) {
+            throw new IllegalArgumentException("Messages count should be positive");
+        }
+        if (maxLinesCount < 0 || maxLength < 0 || maxDelayMillis < 0) {
+            throw new IllegalArgumentException("Budgets and time limit should be non-negative");
+        }
+        this.maxMessagesCount = maxMessagesCount;
+        this.maxLinesCount = maxLinesCount;
+        this.maxLength = maxLength;
+        this.maxDelayMillis = maxDelayMillis;
+    }
+
+    /**
+     * Returns the maximal number of messages zipped into one.
+     *
+     * @return the number of messages
+     */
+    public int getMaxMessagesCount() {
+        return maxMessagesCount;
+    }
+
+    /**
+     * Returns the maximal number of lines in the zipped message.
+     *
+     * @return the number of lines, or zero if there is no limit
+     */
+    public int getMaxLinesCount() {
+        return maxLinesCount;
+    }
+
+    /**
+     * Returns the maximal length of lines in the zipped message.
+     *
+     * @return the length in characters, or zero if there is no limit
+     */
+    public long getMaxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Returns the maximal time the first message of the zipped one waits for it to be written.
+     *
+     * @return the time in milliseconds, or zero if there is no limit
+     */
+    public long getMaxDelayMillis() {
+        return maxDelayMillis;
+    }
+
+    /**
+     * Checks whether the zipped message of the specified size is within the budgets.
+     *
+     * @param linesCount the number of lines
+     * @param length     the length of lines in characters
+     * @return true if neither budget is exceeded
+     */
+    public boolean fits(long linesCount, long length) {
+        return (maxLinesCount == 0 || linesCount <= maxLinesCount) && (maxLength == 0 || length <= maxLength);
+    }
+
+    /**
+     * Checks whether the zipped message of the specified size should be written.
+     *
+     * @param messagesCount the number of messages
+     * @param linesCount    the number of lines
+     * @param length        the length of lines in characters
+     * @return true if the number of messages is reached or either budget is spent
+     */
+    public boolean isFull(int messagesCount, long linesCount, long length) {
+        return messagesCount >= maxMessagesCount || (maxLinesCount != 0 && linesCount >= maxLinesCount) || (maxLength != 0 && length >= maxLength);
+    }
+
+    /**
+     * Returns a {@link String} object representing the policy.
+     *
+     * @return a string representation of the policy
+     */
+    @Override
+    public String toString() {
+        return "BatchPolicy{" +
+                "maxMessagesCount=" + maxMessagesCount +
+                ", maxLinesCount=" + maxLinesCount +
+                ", maxLength=" + maxLength +
+                ", maxDelayMillis=" + maxDelayMillis +
+                '}';
+    }
+}
@@ -5,63 +5,119 @@ import org.jetbrains.annotations.Nullable;
 import ru.spbau.kozlov.task01.messages.Message;
 
 import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 /**
- * The {@link ru.spbau.kozlov.task01.messages.writers.CompressMessageWriter} class is used to zip every two messages into one an write it with the specified {@link ru.spbau.kozlov.task01.messages.writers.MessageWriter}.
+ * The {@link ru.spbau.kozlov.task01.messages.writers.CompressMessageWriter} class is used to zip several messages into one an write it with the specified {@link ru.spbau.kozlov.task01.messages.writers.MessageWriter}.
+ * <p>
+ * The number of zipped messages is described by the {@link ru.spbau.kozlov.task01.messages.writers.BatchPolicy}, every two messages are zipped by default.
+ * If the policy has a time limit, the zipped message is written and the writer is flushed by a timer thread when the limit passes, so the methods of the writer are synchronized.
  *
  * @author adkozlov
  */
 public class CompressMessageWriter extends AbstractResource implements MessageWriter {
 
     @NotNull
-    private final AbstractMessageWriter messageWriter;
+    private final MessageWriter messageWriter;
+    @NotNull
+    private final BatchPolicy batchPolicy;
+    @Nullable
+    private final ScheduledExecutorService timer;
     @Nullable
     private Message buffer = null;
+    private int messagesCount = 0;
+    private long length = 0;
+    @Nullable
+    private ScheduledFuture<?> deadline = null;
+    @Nullable
+    private IOException timerException = null;
 
     /**
-     * Constructs a new writer that uses the specified writer to write messages.
+     * Constructs a new writer that uses the specified writer to write messages, every two messages are zipped.
      *
      * @param messageWriter a writer to be used to write messages
      */
-    public CompressMessageWriter(@NotNull AbstractMessageWriter messageWriter) {
+    public CompressMessageWriter(@NotNull MessageWriter messageWriter) {
+        this(messageWriter, BatchPolicy.PAIRS);
+    }
+
+    /**
+     * Constructs a new writer that uses the specified writer to write messages zipped according to the policy.
+     *
+     * @param messageWriter a writer to be used to write messages
+     * @param batchPolicy   a policy describing when the zipped message is written
+     */
+    public CompressMessageWriter(@NotNull MessageWriter messageWriter, @NotNull BatchPolicy batchPolicy) {
         this.messageWriter = messageWriter;
+        this.batchPolicy = batchPolicy;
+
+        if (batchPolicy.getMaxDelayMillis() > 0) {
+            timer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(@NotNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, "message-batch-timer");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        } else {
+            timer = null;
+        }
     }
 
     /**
-     * Zips every two messages into one and writes a new message.
-     * If the last message has an odd number, than it is to be written as is.
+     * Zips the message with the previous ones and writes a new message when the policy says so.
+     * If the message would exceed the budget of the zipped message, the previous ones are written first.
      *
      * @param message a message to be written
      * @throws IOException if an I/O error occurs.
      */
     @Override
-    public void writeMessage(@NotNull Message message) throws IOException {
-        if (buffer != null) {
-            buffer.append(message);
+    public synchronized void writeMessage(@NotNull Message message) throws IOException {
+        checkTimerException();
 
-            try {
-                messageWriter.writeMessage(buffer);
-            } catch (IOException e) {
-                IOErrorOccurred();
-                throw e;
-            }
+        long messageLength = batchPolicy.getMaxLength() > 0 ? message.getLength() : 0;
+        if (buffer != null && !batchPolicy.fits((long) buffer.getSize() + message.getSize(), length + messageLength)) {
+            writeBuffer();
+        }
 
-            buffer = null;
+        if (buffer != null) {
+            buffer.append(message);
+            messagesCount++;
+            length += messageLength;
         } else {
             buffer = new Message(message);
+            messagesCount = 1;
+            length = messageLength;
+            scheduleDeadline(buffer);
+        }
+
+        if (batchPolicy.isFull(messagesCount, buffer.getSize(), length)) {
+            writeBuffer();
         }
     }
 
+    /**
+     * Writes the partially zipped message, if any, and flushes the writer.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
     @Override
-    public void flush() throws IOException {
+    public synchronized void flush() throws IOException {
+        checkTimerException();
+
         if (buffer != null) {
-            try {
-                messageWriter.writeMessage(buffer);
-                buffer = null;
-            } catch (IOException e) {
-                IOErrorOccurred();
-                throw e;
-            }
+            writeBuffer();
+        }
+        try {
+            messageWriter.flush();
+        } catch (IOException e) {
+            IOErrorOccurred();
+            throw e;
         }
     }
 
@@ -71,11 +127,74 @@ public class CompressMessageWriter extends AbstractResource implements MessageWr
      * @throws IOException if an I/O error occurs.
      */
     @Override
-    public void close() throws IOException {
-        try (AbstractMessageWriter closeable = messageWriter) {
+    public synchronized void close() throws IOException {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+
+        try {
+            checkTimerException();
             if (!hasIOErrorOccurred()) {
                 flush();
             }
+        } finally {
+            messageWriter.close();
+        }
+    }
+
+    private void writeBuffer() throws IOException {
+        if (deadline != null) {
+            deadline.cancel(false);
+            deadline = null;
+        }
+
+        try {
+            messageWriter.writeMessage(buffer);
+        } catch (IOException e) {
+            IOErrorOccurred();
+            throw e;
+        }
+
+        buffer = null;
+        messagesCount = 0;
+        length = 0;
+    }
+
+    private void scheduleDeadline(@NotNull final Message batch) {
+        if (timer != null) {
+            deadline = timer.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    writeExpired(batch);
+                }
+            }, batchPolicy.getMaxDelayMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the zipped message and flushes the writer, unless the message has been written already. Is called by the timer thread.
+     *
+     * @param batch the zipped message the time limit of which has passed
+     */
+    private synchronized void writeExpired(@NotNull Message batch) {
+        if (buffer != batch || hasIOErrorOccurred()) {
+            return;
+        }
+
+        try {
+            writeBuffer();
+            messageWriter.flush();
+        } catch (IOException e) {
+            IOErrorOccurred();
+            timerException = e;
+        }
+    }
+
+    private void checkTimerException() throws IOException {
+        if (timerException != null) {
+            IOException e = timerException;
+            timerException = null;
+            throw e;
         }
     }
 }
@@ -1,6 +1,7 @@
 package ru.spbau.kozlov.task01.messages.writers;
 
 import org.jetbrains.annotations.NotNull;
+import ru.spbau.kozlov.task01.messages.LineSlice;
 
 import java.io.FileWriter;
 import java.io.IOException;
@@ -21,4 +22,18 @@ public class FileMessageWriter extends AbstractMessageWriter {
     public FileMessageWriter(@NotNull String fileName) throws IOException {
         super(new FileWriter(fileName));
     }
+
+    /**
+     * Writes the line of the specified slice to the file, the line is written by the slice without creating a string if possible.
+     *
+     * @param slice     a slice containing the line to be written
+     * @param lineIndex an index of the line in the slice
+     * @param index     an index of the line in the message
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    protected void writeMessageLine(@NotNull LineSlice slice, int lineIndex, int index) throws IOException {
+        slice.writeLine(lineIndex, getBufferedWriter());
+        getBufferedWriter().newLine();
+    }
 }
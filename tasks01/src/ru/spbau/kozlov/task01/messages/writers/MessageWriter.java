@@ -3,15 +3,17 @@ package ru.spbau.kozlov.task01.messages.writers;
 import org.jetbrains.annotations.NotNull;
 import ru.spbau.kozlov.task01.messages.Message;
 
+import java.io.Closeable;
+import java.io.Flushable;
 import java.io.IOException;
 
 /**
- * Interface for writing messages.
+ * Interface for writing messages. Messages written are not required to reach the destination until the writer is flushed or closed.
  *
  * @author adkozlov
  * @see ru.spbau.kozlov.task01.messages.Message
  */
-public interface MessageWriter {
+public interface MessageWriter extends Flushable, Closeable {
 
     /**
      * Writes the specified message.
@@ -0,0 +1,225 @@
+package ru.spbau.kozlov.task01.messages.writers;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.spbau.kozlov.task01.messages.Message;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * The {@link ru.spbau.kozlov.task01.messages.writers.QueuedMessageWriter} class writes messages with the specified {@link ru.spbau.kozlov.task01.messages.writers.MessageWriter} on a separate thread,
+ * so formatting and writing of the messages overlaps with producing the next ones.
+ * <p>
+ * Messages are passed in batches through a bounded queue, {@link #writeMessage(ru.spbau.kozlov.task01.messages.Message)} waits while the queue is full.
+ * The messages are written in the same order, they should not be modified after being passed to the writer.
+ * An exception thrown by the writer is rethrown by the next call of this writer, the messages passed after it are discarded.
+ *
+ * @author adkozlov
+ */
+public class QueuedMessageWriter extends AbstractResource implements MessageWriter {
+
+    /**
+     * The default number of batches waiting to be written.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+    private static final int BATCH_LINES_COUNT = 8192;
+
+    @NotNull
+    private final MessageWriter messageWriter;
+    @NotNull
+    private final BlockingQueue<Batch> queue;
+    @NotNull
+    private final Thread thread;
+    @NotNull
+    private List<Message> messages = new ArrayList<>();
+    private int linesCount = 0;
+    @Nullable
+    private volatile Throwable throwable = null;
+
+    /**
+     * Constructs a new writer with the default capacity of the queue.
+     *
+     * @param messageWriter a writer to be used to write messages
+     */
+    public QueuedMessageWriter(@NotNull MessageWriter messageWriter) {
+        this(messageWriter, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a new writer and starts the writing thread.
+     *
+     * @param messageWriter a writer to be used to write messages
+     * @param capacity      the number of batches waiting to be written
+     */
+    public QueuedMessageWriter(@NotNull MessageWriter messageWriter, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity should be positive");
+        }
+        this.messageWriter = messageWriter;
+        queue = new ArrayBlockingQueue<>(capacity);
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeMessages();
+            }
+        }, "message-writer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Passes the specified message to the writing thread. The messages are passed when the batch is full.
+     *
+     * @param message a message to be written
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void writeMessage(@NotNull Message message) throws IOException {
+        checkException();
+        messages.add(message);
+        linesCount += message.getSize();
+        if (linesCount >= BATCH_LINES_COUNT) {
+            put(new Batch(messages, null, false));
+        }
+    }
+
+    /**
+     * Passes the buffered messages to the writing thread and waits until they are written and the writer is flushed.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void flush() throws IOException {
+        checkException();
+        CountDownLatch flushed = new CountDownLatch(1);
+        put(new Batch(messages, flushed, false));
+        try {
+            flushed.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Flushing of messages is interrupted");
+        }
+        checkException();
+    }
+
+    /**
+     * Writes the buffered messages, stops the writing thread and closes the writer.
+     *
+     * @throws IOException if an I/O error occurs.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!hasIOErrorOccurred()) {
+                flush();
+            }
+        } finally {
+            try {
+                stop();
+            } finally {
+                messageWriter.close();
+            }
+        }
+    }
+
+    private void put(@NotNull Batch batch) throws InterruptedIOException {
+        messages = new ArrayList<>();
+        linesCount = 0;
+        try {
+            queue.put(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            IOErrorOccurred();
+            throw new InterruptedIOException("Writing of messages is interrupted");
+        }
+    }
+
+    private void stop() {
+        boolean interrupted = false;
+        try {
+            queue.put(new Batch(Collections.<Message>emptyList(), null, true));
+        } catch (InterruptedException e) {
+            interrupted = true;
+            thread.interrupt();
+        }
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkException() throws IOException {
+        Throwable throwable = this.throwable;
+        if (throwable == null) {
+            return;
+        }
+
+        IOErrorOccurred();
+        if (throwable instanceof IOException) {
+            throw (IOException) throwable;
+        }
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        throw (RuntimeException) throwable;
+    }
+
+    private void writeMessages() {
+        try {
+            while (true) {
+                Batch batch = queue.take();
+                if (throwable == null) {
+                    try {
+                        for (Message message : batch.messages) {
+                            messageWriter.writeMessage(message);
+                        }
+                        if (batch.flushed != null) {
+                            messageWriter.flush();
+                        }
+                    } catch (IOException | RuntimeException | Error e) {
+                        throwable = e;
+                    }
+                }
+                if (batch.flushed != null) {
+                    batch.flushed.countDown();
+                }
+                if (batch.last) {
+                    return;
+                }
+            }
+        } catch (InterruptedException ignored) {
+        }
+    }
+
+    /**
+     * Messages to be written one after another. The writer is flushed after the batch if the latch is specified, the writing thread stops after the last batch.
+     */
+    private static class Batch {
+
+        @NotNull
+        private final List<Message> messages;
+        @Nullable
+        private final CountDownLatch flushed;
+        private final boolean last;
+
+        public Batch(@NotNull List<Message> messages, @Nullable CountDownLatch flushed, boolean last) {
+            this.messages = messages;
+            this.flushed = flushed;
+            this.last = last;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package ru.spbau.kozlov.task01.tests;
 import org.junit.After;
 import org.junit.Test;
 import ru.spbau.kozlov.task01.messages.Message;
+import ru.spbau.kozlov.task01.messages.writers.BatchPolicy;
 import ru.spbau.kozlov.task01.messages.writers.CompressMessageWriter;
 import ru.spbau.kozlov.task01.messages.writers.FileMessageWriter;
 
@@ -13,6 +14,7 @@ import java.io.IOException;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
 
 /**
  * @author adkozlov
@@ -85,8 +87,118 @@ public class CompressWritingTest {
         }
     }
 
+    @Test
+    public void testThreeMessagesPolicy() throws IOException {
+        createTestFile(new BatchPolicy(3), new Message("foo"), new Message("bar"), new Message("baz"), new Message("foobar"), new Message("foobaz"));
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(TEST_FILE_NAME))) {
+            assertEquals("wrong lines count of first message", "3", reader.readLine());
+            assertEquals("wrong first line of first message", "foo", reader.readLine());
+            assertEquals("wrong second line of first message", "bar", reader.readLine());
+            assertEquals("wrong third line of first message", "baz", reader.readLine());
+
+            assertEquals("wrong lines count of second message", "2", reader.readLine());
+            assertEquals("wrong first line of second message", "foobar", reader.readLine());
+            assertEquals("wrong second line of second message", "foobaz", reader.readLine());
+
+            assertNull("some line read", reader.readLine());
+        }
+    }
+
+    @Test
+    public void testLinesCountPolicy() throws IOException {
+        createTestFile(new BatchPolicy(Integer.MAX_VALUE, 3, 0, 0), new Message("foo", "bar"), new Message("baz", "foobar"), new Message("foobaz"), new Message("a", "b", "c", "d"));
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(TEST_FILE_NAME))) {
+            assertEquals("wrong lines count of first message", "2", reader.readLine());
+            assertEquals("wrong first line of first message", "foo", reader.readLine());
+            assertEquals("wrong second line of first message", "bar", reader.readLine());
+
+            assertEquals("wrong lines count of second message", "3", reader.readLine());
+            assertEquals("wrong first line of second message", "baz", reader.readLine());
+            assertEquals("wrong second line of second message", "foobar", reader.readLine());
+            assertEquals("wrong third line of second message", "foobaz", reader.readLine());
+
+            assertEquals("wrong lines count of third message", "4", reader.readLine());
+            for (String line : new String[]{"a", "b", "c", "d"}) {
+                assertEquals("wrong line of third message", line, reader.readLine());
+            }
+
+            assertNull("some line read", reader.readLine());
+        }
+    }
+
+    @Test
+    public void testLengthPolicy() throws IOException {
+        createTestFile(new BatchPolicy(Integer.MAX_VALUE, 0, 6, 0), new Message("foo"), new Message("bar"), new Message("baz"), new Message("foobar"));
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(TEST_FILE_NAME))) {
+            assertEquals("wrong lines count of first message", "2", reader.readLine());
+            assertEquals("wrong first line of first message", "foo", reader.readLine());
+            assertEquals("wrong second line of first message", "bar", reader.readLine());
+
+            assertEquals("wrong lines count of second message", "1", reader.readLine());
+            assertEquals("wrong first line of second message", "baz", reader.readLine());
+
+            assertEquals("wrong lines count of third message", "1", reader.readLine());
+            assertEquals("wrong first line of third message", "foobar", reader.readLine());
+
+            assertNull("some line read", reader.readLine());
+        }
+    }
+
+    @Test
+    public void testFlushWritesPartialMessage() throws IOException {
+        try (CompressMessageWriter writer = new CompressMessageWriter(new FileMessageWriter(TEST_FILE_NAME), new BatchPolicy(10))) {
+            writer.writeMessage(new Message("foo"));
+            writer.writeMessage(new Message("bar"));
+            writer.flush();
+
+            try (BufferedReader reader = new BufferedReader(new FileReader(TEST_FILE_NAME))) {
+                assertEquals("wrong lines count", "2", reader.readLine());
+                assertEquals("wrong first line", "foo", reader.readLine());
+                assertEquals("wrong second line", "bar", reader.readLine());
+
+                assertNull("some line read", reader.readLine());
+            }
+        }
+    }
+
+    @Test
+    public void testDelayPolicy() throws IOException, InterruptedException {
+        try (CompressMessageWriter writer = new CompressMessageWriter(new FileMessageWriter(TEST_FILE_NAME), new BatchPolicy(10, 0, 0, 50))) {
+            writer.writeMessage(new Message("foo"));
+            writer.writeMessage(new Message("bar"));
+
+            long deadline = System.currentTimeMillis() + 10000;
+            while (new File(TEST_FILE_NAME).length() == 0) {
+                if (System.currentTimeMillis() > deadline) {
+                    fail("message is not written");
+                }
+                Thread.sleep(10);
+            }
+
+            writer.writeMessage(new Message("baz"));
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(TEST_FILE_NAME))) {
+            assertEquals("wrong lines count of first message", "2", reader.readLine());
+            assertEquals("wrong first line of first message", "foo", reader.readLine());
+            assertEquals("wrong second line of first message", "bar", reader.readLine());
+
+            assertEquals("wrong lines count of second message", "1", reader.readLine());
+            assertEquals("wrong first line of second message", "baz", reader.readLine());
+
+            assertNull("some line read", reader.readLine());
+        }
+    }
+
     private static void createTestFile(Message... messages) throws IOException {
-        try (CompressMessageWriter writer = new CompressMessageWriter(new FileMessageWriter(TEST_FILE_NAME))) {
+        createTestFile(BatchPolicy.PAIRS, messages);
+    }
+
+    private static void createTestFile(BatchPolicy batchPolicy, Message... messages) throws IOException {
+        try (CompressMessageWriter writer = new CompressMessageWriter(new FileMessageWriter(TEST_FILE_NAME), batchPolicy)) {
             for (Message message : messages) {
                 writer.writeMessage(message);
             }
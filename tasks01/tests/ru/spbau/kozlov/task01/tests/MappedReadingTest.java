@@ -0,0 +1,142 @@
+package ru.spbau.kozlov.task01.tests;
+
+import org.junit.After;
+import org.junit.Test;
+import ru.spbau.kozlov.task01.messages.IllegalMessageFormatException;
+import ru.spbau.kozlov.task01.messages.Message;
+import ru.spbau.kozlov.task01.messages.readers.FileMessageReader;
+import ru.spbau.kozlov.task01.messages.readers.MappedMessageReader;
+import ru.spbau.kozlov.task01.messages.readers.MessageReader;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author adkozlov
+ */
+public class MappedReadingTest {
+
+    public static final String TEST_FILE_NAME = "testFiles/mapped-reading.in";
+    public static final int[] REGION_SIZES = {2, 3, 7, 64, MappedMessageReader.DEFAULT_REGION_SIZE};
+
+    @After
+    public void tearDown() {
+        File testFile = new File(TEST_FILE_NAME);
+        if (testFile.exists()) {
+            testFile.delete();
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException, IllegalMessageFormatException {
+        createTestFile("");
+
+        try (MessageReader reader = new MappedMessageReader(TEST_FILE_NAME)) {
+            assertNull("some message read", reader.readMessage());
+        }
+    }
+
+    @Test
+    public void testTwoCorrectMessages() throws IOException, IllegalMessageFormatException {
+        createTestFile("2\nfoo\nbar\n1\nbaz baz\n");
+
+        try (MessageReader reader = new MappedMessageReader(TEST_FILE_NAME)) {
+            Message message = reader.readMessage();
+
+            assertNotNull("message is not read", message);
+            assertEquals("wrong lines count", 2, message.getLines().size());
+            assertEquals("wrong first line", "foo", message.getLines().get(0));
+            assertEquals("wrong second line", "bar", message.getLines().get(1));
+
+            message = reader.readMessage();
+            assertNotNull("message is not read", message);
+            assertEquals("wrong lines count", 1, message.getLines().size());
+            assertEquals("wrong first line", "baz baz", message.getLines().get(0));
+
+            assertNull("some message read", reader.readMessage());
+        }
+    }
+
+    @Test
+    public void testSameMessagesAsFileReader() throws IOException, IllegalMessageFormatException {
+        createTestFile("3\nfoo\r\n\r\nbar\r2\n\n+1\n0\n-0\n1\nlast line without terminator");
+
+        for (int regionSize : REGION_SIZES) {
+            try (MessageReader expectedReader = new FileMessageReader(TEST_FILE_NAME);
+                 MessageReader reader = new MappedMessageReader(TEST_FILE_NAME, regionSize)) {
+                Message expected;
+                do {
+                    expected = expectedReader.readMessage();
+                    Message message = reader.readMessage();
+                    assertEquals("wrong message", String.valueOf(expected), String.valueOf(message));
+                } while (expected != null);
+            }
+        }
+    }
+
+    @Test
+    public void testLongMessage() throws IOException, IllegalMessageFormatException {
+        StringBuilder content = new StringBuilder("100\n");
+        for (int i = 0; i < 100; i++) {
+            content.append("line ").append(i).append('\n');
+        }
+        createTestFile(content.toString());
+
+        for (int regionSize : REGION_SIZES) {
+            try (MessageReader reader = new MappedMessageReader(TEST_FILE_NAME, regionSize)) {
+                Message message = reader.readMessage();
+
+                assertNotNull("message is not read", message);
+                assertEquals("wrong lines count", 100, message.getSize());
+                int i = 0;
+                for (String line : message.getLines()) {
+                    assertEquals("wrong line", "line " + i, line);
+                    assertEquals("wrong line", "line " + i, message.getLines().get(i));
+                    i++;
+                }
+
+                assertNull("some message read", reader.readMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testIncorrectSizeFormat() throws IOException {
+        createTestFile("1\nfoo\n12345678901\nbar\n");
+
+        for (int regionSize : REGION_SIZES) {
+            try (MessageReader reader = new MappedMessageReader(TEST_FILE_NAME, regionSize)) {
+                assertNotNull("message is not read", reader.readMessage());
+                reader.readMessage();
+                fail("exception is not thrown");
+            } catch (IllegalMessageFormatException e) {
+                assertEquals("wrong line number", 3, e.getLineNumber());
+                assertEquals("wrong message", "Message lines count should be an integer number (actual line: \"12345678901\")", e.getMessage());
+            }
+        }
+    }
+
+    @Test
+    public void testIncorrectLinesCount() throws IOException {
+        createTestFile("3\nfoo\nbar");
+
+        for (int regionSize : REGION_SIZES) {
+            try (MessageReader reader = new MappedMessageReader(TEST_FILE_NAME, regionSize)) {
+                reader.readMessage();
+                fail("exception is not thrown");
+            } catch (IllegalMessageFormatException e) {
+                assertEquals("wrong line number", 4, e.getLineNumber());
+            }
+        }
+    }
+
+    private static void createTestFile(String content) throws IOException {
+        try (Writer writer = new FileWriter(TEST_FILE_NAME)) {
+            writer.write(content);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package ru.spbau.kozlov.task01.tests;
+
+import org.junit.Test;
+import ru.spbau.kozlov.task01.messages.ByteLineSlice;
+import ru.spbau.kozlov.task01.messages.Message;
+import ru.spbau.kozlov.task01.messages.StringLineSlice;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author adkozlov
+ */
+public class MessageTest {
+
+    @Test
+    public void testAppend() {
+        Message message = new Message("foo");
+        message.append(new Message("bar", "baz"));
+        message.append(new StringLineSlice());
+
+        assertEquals("wrong lines count", 3, message.getSize());
+        assertEquals("wrong lines", Arrays.asList("foo", "bar", "baz"), message.getLines());
+    }
+
+    @Test
+    public void testCopyIsIndependent() {
+        Message message = new Message("foo");
+        Message copy = new Message(message);
+        copy.append(new Message("bar"));
+
+        assertEquals("wrong lines of the message", Arrays.asList("foo"), message.getLines());
+        assertEquals("wrong lines of the copy", Arrays.asList("foo", "bar"), copy.getLines());
+    }
+
+    @Test
+    public void testIndexedAccessAfterAppend() {
+        Message message = new Message("line 0");
+        for (int i = 1; i < 100; i++) {
+            message.append(i % 3 == 0 ? new Message("line " + i) : new Message(new StringLineSlice("line " + i)));
+            assertEquals("wrong last line", "line " + i, message.getLines().get(i));
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertEquals("wrong line", "line " + i, message.getLines().get(i));
+        }
+    }
+
+    @Test
+    public void testByteLineSlice() throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap("foo\nпривет\nbar".getBytes(StandardCharsets.UTF_8));
+        int[] bounds = {0, 3, 4, 16, 17, 20};
+        Message message = new Message(new ByteLineSlice(buffer, bounds, 1, 2, StandardCharsets.UTF_8));
+
+        assertEquals("wrong lines", Arrays.asList("привет", "bar"), message.getLines());
+
+        StringWriter writer = new StringWriter();
+        message.getSlices().get(0).writeLine(0, writer);
+        message.getSlices().get(0).writeLine(1, writer);
+        assertEquals("wrong written lines", "приветbar", writer.toString());
+    }
+
+    @Test
+    public void testLengthInCharacters() {
+        String[] lines = {"foo", "\u043f\u0440\u0438\u0432\u0435\u0442", "a\uD83D\uDE00b", ""};
+        long expected = new StringLineSlice(lines).getLength();
+        assertEquals("wrong length of strings", 13, expected);
+
+        for (Charset charset : new Charset[]{StandardCharsets.UTF_8, StandardCharsets.UTF_16LE}) {
+            assertEquals("wrong length of " + charset + " lines", expected, createSlice(charset, lines).getLength());
+        }
+        assertEquals("wrong length of ISO-8859-1 lines", 9, createSlice(StandardCharsets.ISO_8859_1, "fa\u00e7ade", "bar").getLength());
+    }
+
+    private static ByteLineSlice createSlice(Charset charset, String... lines) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        int[] bounds = new int[2 * lines.length];
+        for (int i = 0; i < lines.length; i++) {
+            byte[] bytes = lines[i].getBytes(charset);
+            bounds[2 * i] = outputStream.size();
+            outputStream.write(bytes, 0, bytes.length);
+            bounds[2 * i + 1] = outputStream.size();
+        }
+        return new ByteLineSlice(ByteBuffer.wrap(outputStream.toByteArray()), bounds, 0, lines.length, charset);
+    }
+}
@@ -0,0 +1,119 @@
+package ru.spbau.kozlov.task01.tests;
+
+import org.junit.After;
+import org.junit.Test;
+import ru.spbau.kozlov.task01.messages.IllegalMessageFormatException;
+import ru.spbau.kozlov.task01.messages.Message;
+import ru.spbau.kozlov.task01.messages.readers.FileMessageReader;
+import ru.spbau.kozlov.task01.messages.readers.MessageReader;
+import ru.spbau.kozlov.task01.messages.readers.ParallelMessageReader;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author adkozlov
+ */
+public class ParallelReadingTest {
+
+    public static final String TEST_FILE_NAME = "testFiles/parallel-reading.in";
+    public static final int[] REGION_SIZES = {2, 5, 64, 4096, ParallelMessageReader.DEFAULT_REGION_SIZE};
+    public static final String[] TERMINATORS = {"\n", "\r\n", "\r"};
+
+    @After
+    public void tearDown() {
+        File testFile = new File(TEST_FILE_NAME);
+        if (testFile.exists()) {
+            testFile.delete();
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException, IllegalMessageFormatException {
+        createTestFile("");
+
+        try (MessageReader reader = new ParallelMessageReader(TEST_FILE_NAME)) {
+            assertNull("some message read", reader.readMessage());
+        }
+    }
+
+    @Test
+    public void testSameMessagesAsFileReader() throws IOException {
+        Random random = new Random(42);
+        for (int test = 0; test < 20; test++) {
+            StringBuilder content = new StringBuilder();
+            int messagesCount = random.nextInt(200);
+            for (int i = 0; i < messagesCount; i++) {
+                int size = random.nextInt(10) == 0 ? random.nextInt(500) : random.nextInt(5);
+                content.append(size).append(TERMINATORS[random.nextInt(TERMINATORS.length)]);
+                for (int j = 0; j < size; j++) {
+                    content.append("line ").append(i).append(' ').append(j);
+                    content.append(TERMINATORS[random.nextInt(TERMINATORS.length)]);
+                }
+            }
+            if (test % 2 == 1) {
+                content.setLength(random.nextInt(content.length() + 1));
+            }
+            createTestFile(content.toString());
+
+            for (int regionSize : REGION_SIZES) {
+                assertSameMessages(new ParallelMessageReader(TEST_FILE_NAME, 1 + test % 4, regionSize));
+            }
+        }
+    }
+
+    @Test
+    public void testIncorrectSizeFormat() throws IOException {
+        createTestFile("1\nfoo\n12345678901\nbar\n");
+
+        for (int regionSize : REGION_SIZES) {
+            try (MessageReader reader = new ParallelMessageReader(TEST_FILE_NAME, 2, regionSize)) {
+                assertNotNull("message is not read", reader.readMessage());
+                reader.readMessage();
+                fail("exception is not thrown");
+            } catch (IllegalMessageFormatException e) {
+                assertEquals("wrong line number", 3, e.getLineNumber());
+            }
+        }
+    }
+
+    private static void assertSameMessages(MessageReader messageReader) throws IOException {
+        try (MessageReader expectedReader = new FileMessageReader(TEST_FILE_NAME); MessageReader reader = messageReader) {
+            while (true) {
+                Message expected;
+                try {
+                    expected = expectedReader.readMessage();
+                } catch (IllegalMessageFormatException expectedException) {
+                    try {
+                        reader.readMessage();
+                        fail("exception is not thrown");
+                    } catch (IllegalMessageFormatException e) {
+                        assertEquals("wrong exception message", expectedException.getMessage(), e.getMessage());
+                        assertEquals("wrong line number", expectedException.getLineNumber(), e.getLineNumber());
+                    }
+                    return;
+                }
+
+                try {
+                    assertEquals("wrong message", String.valueOf(expected), String.valueOf(reader.readMessage()));
+                } catch (IllegalMessageFormatException e) {
+                    fail("unexpected exception: " + e.getMessage());
+                }
+                if (expected == null) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private static void createTestFile(String content) throws IOException {
+        try (Writer writer = new FileWriter(TEST_FILE_NAME)) {
+            writer.write(content);
+        }
+    }
+}
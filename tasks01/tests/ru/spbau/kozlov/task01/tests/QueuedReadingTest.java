@@ -0,0 +1,100 @@
+package ru.spbau.kozlov.task01.tests;
+
+import org.junit.After;
+import org.junit.Test;
+import ru.spbau.kozlov.task01.messages.IllegalMessageFormatException;
+import ru.spbau.kozlov.task01.messages.Message;
+import ru.spbau.kozlov.task01.messages.readers.FileMessageReader;
+import ru.spbau.kozlov.task01.messages.readers.MessageReader;
+import ru.spbau.kozlov.task01.messages.readers.QueuedMessageReader;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author adkozlov
+ */
+public class QueuedReadingTest {
+
+    public static final String TEST_FILE_NAME = "testFiles/queued-reading.in";
+    public static final int MESSAGES_COUNT = 10000;
+
+    @After
+    public void tearDown() {
+        File testFile = new File(TEST_FILE_NAME);
+        if (testFile.exists()) {
+            testFile.delete();
+        }
+    }
+
+    @Test
+    public void testEmptyFile() throws IOException, IllegalMessageFormatException {
+        createTestFile(0, false);
+
+        try (MessageReader reader = new QueuedMessageReader(new FileMessageReader(TEST_FILE_NAME))) {
+            assertNull("some message read", reader.readMessage());
+            assertNull("some message read", reader.readMessage());
+        }
+    }
+
+    @Test
+    public void testMessagesOrder() throws IOException, IllegalMessageFormatException {
+        createTestFile(MESSAGES_COUNT, false);
+
+        try (MessageReader reader = new QueuedMessageReader(new FileMessageReader(TEST_FILE_NAME), 1)) {
+            for (int i = 0; i < MESSAGES_COUNT; i++) {
+                Message message = reader.readMessage();
+
+                assertNotNull("message is not read", message);
+                assertEquals("wrong lines count", i % 3 + 1, message.getSize());
+                assertEquals("wrong first line", "message " + i, message.getLines().get(0));
+            }
+
+            assertNull("some message read", reader.readMessage());
+        }
+    }
+
+    @Test
+    public void testIncorrectMessageAfterCorrectOnes() throws IOException {
+        createTestFile(MESSAGES_COUNT, true);
+
+        int messagesRead = 0;
+        try (MessageReader reader = new QueuedMessageReader(new FileMessageReader(TEST_FILE_NAME), 1)) {
+            while (reader.readMessage() != null) {
+                messagesRead++;
+            }
+            fail("exception is not thrown");
+        } catch (IllegalMessageFormatException e) {
+            assertEquals("wrong messages count", MESSAGES_COUNT, messagesRead);
+            assertEquals("wrong line number", 2 * MESSAGES_COUNT + 3 * (MESSAGES_COUNT / 3) + 1, e.getLineNumber());
+        }
+    }
+
+    @Test
+    public void testCloseBeforeEnd() throws IOException, IllegalMessageFormatException {
+        createTestFile(MESSAGES_COUNT, false);
+
+        try (MessageReader reader = new QueuedMessageReader(new FileMessageReader(TEST_FILE_NAME), 1)) {
+            assertNotNull("message is not read", reader.readMessage());
+        }
+    }
+
+    private static void createTestFile(int messagesCount, boolean appendIncorrectMessage) throws FileNotFoundException {
+        try (PrintWriter printWriter = new PrintWriter(TEST_FILE_NAME)) {
+            for (int i = 0; i < messagesCount; i++) {
+                printWriter.println(i % 3 + 1);
+                printWriter.println("message " + i);
+                for (int j = 0; j < i % 3; j++) {
+                    printWriter.println("line " + j);
+                }
+            }
+            if (appendIncorrectMessage) {
+                printWriter.println("foo");
+            }
+        }
+    }
+}
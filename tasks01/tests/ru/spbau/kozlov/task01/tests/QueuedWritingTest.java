@@ -0,0 +1,109 @@
+package ru.spbau.kozlov.task01.tests;
+
+import org.junit.After;
+import org.junit.Test;
+import ru.spbau.kozlov.task01.messages.Message;
+import ru.spbau.kozlov.task01.messages.writers.CompressMessageWriter;
+import ru.spbau.kozlov.task01.messages.writers.FileMessageWriter;
+import ru.spbau.kozlov.task01.messages.writers.MessageWriter;
+import ru.spbau.kozlov.task01.messages.writers.QueuedMessageWriter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author adkozlov
+ */
+public class QueuedWritingTest {
+
+    public static final String TEST_FILE_NAME = "testFiles/queued-writing.out";
+    public static final int MESSAGES_COUNT = 10001;
+
+    @After
+    public void tearDown() {
+        File testFile = new File(TEST_FILE_NAME);
+        if (testFile.exists()) {
+            testFile.delete();
+        }
+    }
+
+    @Test
+    public void testEmptyStream() throws IOException {
+        try (MessageWriter writer = new QueuedMessageWriter(new FileMessageWriter(TEST_FILE_NAME))) {
+            writer.flush();
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(TEST_FILE_NAME))) {
+            assertNull("some line read", reader.readLine());
+        }
+    }
+
+    @Test
+    public void testFlush() throws IOException {
+        try (MessageWriter writer = new QueuedMessageWriter(new FileMessageWriter(TEST_FILE_NAME))) {
+            writer.writeMessage(new Message("foo", "bar"));
+            writer.flush();
+
+            try (BufferedReader reader = new BufferedReader(new FileReader(TEST_FILE_NAME))) {
+                assertEquals("wrong lines count", "2", reader.readLine());
+                assertEquals("wrong first line", "foo", reader.readLine());
+                assertEquals("wrong second line", "bar", reader.readLine());
+
+                assertNull("some line read", reader.readLine());
+            }
+        }
+    }
+
+    @Test
+    public void testMessagesOrder() throws IOException {
+        try (CompressMessageWriter writer = new CompressMessageWriter(new QueuedMessageWriter(new FileMessageWriter(TEST_FILE_NAME), 1))) {
+            for (int i = 0; i < MESSAGES_COUNT; i++) {
+                writer.writeMessage(new Message("message " + i));
+            }
+        }
+
+        try (BufferedReader reader = new BufferedReader(new FileReader(TEST_FILE_NAME))) {
+            for (int i = 0; i < MESSAGES_COUNT; i += 2) {
+                boolean last = i + 1 == MESSAGES_COUNT;
+                assertEquals("wrong lines count", last ? "1" : "2", reader.readLine());
+                assertEquals("wrong first line", "message " + i, reader.readLine());
+                if (!last) {
+                    assertEquals("wrong second line", "message " + (i + 1), reader.readLine());
+                }
+            }
+
+            assertNull("some line read", reader.readLine());
+        }
+    }
+
+    @Test
+    public void testWriterException() throws IOException {
+        final IOException exception = new IOException("foo");
+        MessageWriter failingWriter = new MessageWriter() {
+            @Override
+            public void writeMessage(Message message) throws IOException {
+                throw exception;
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        try (MessageWriter writer = new QueuedMessageWriter(failingWriter)) {
+            writer.writeMessage(new Message("foo"));
+            writer.flush();
+            fail("exception is not thrown");
+        } catch (IOException e) {
+            assertSame("wrong exception", exception, e);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ru.spbau.kozlov.task02.benchmarks;
+
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+import ru.spbau.kozlov.task02.zip.utils.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.benchmarks.CopyBenchmark} class measures {@link ru.spbau.kozlov.task02.zip.utils.IOUtils#copy}
+ * from the generated file to the stream that discards the output through buffers of the specified sizes.
+ * The file is read through the page cache after the first invocation, so the system call overhead per buffer is what differs.
+ *
+ * @author adkozlov
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class CopyBenchmark {
+
+    private static final long FILE_SIZE = 64 * 1024 * 1024;
+
+    @Param({"4096", "16384", "65536", "262144", "1048576"})
+    public int bufferSize;
+
+    private Path filePath;
+    private byte[] buffer;
+
+    @Setup
+    public void createFile() throws IOException {
+        filePath = Fixtures.createFile(FILE_SIZE);
+        buffer = new byte[bufferSize];
+    }
+
+    @TearDown
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(filePath);
+    }
+
+    @Benchmark
+    public void copy() throws IOException {
+        try (InputStream inputStream = Files.newInputStream(filePath)) {
+            IOUtils.copy(inputStream, new NullOutputStream(), FILE_SIZE, buffer);
+        }
+    }
+
+    /**
+     * An output stream that discards all the bytes.
+     */
+    private static class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(@NotNull byte[] bytes, int offset, int length) {
+        }
+    }
+}
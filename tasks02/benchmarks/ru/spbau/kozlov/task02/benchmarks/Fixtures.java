@@ -0,0 +1,132 @@
+package ru.spbau.kozlov.task02.benchmarks;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Random;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.benchmarks.Fixtures} class generates the files the benchmarks work with.
+ * Contents are pseudo-random text compressible about three times, the same seed gives the same files, so the runs could be compared.
+ * Trees are created in the working directory, so the archive paths of their entries are relative and the archives could be extracted anywhere.
+ *
+ * @author adkozlov
+ */
+public final class Fixtures {
+
+    private static final long SEED = 42;
+    private static final String[] WORDS = {
+            "archive", "entry", "chunk", "codec", "index", "volume", "record", "stream", "buffer", "channel",
+            "deflate", "inflate", "checksum", "digest", "directory", "file", "path", "length", "offset", "version"
+    };
+
+    /**
+     * The {@link ru.spbau.kozlov.task02.benchmarks.Fixtures.Tree} enum lists the shapes of the generated directory trees.
+     */
+    public enum Tree {
+        /**
+         * Many small files, the per-entry costs dominate.
+         */
+        SMALL_FILES(10000, 2 * 1024, 100),
+        /**
+         * Few large files, the throughput of the codecs and the disk dominates.
+         */
+        LARGE_FILES(4, 32 * 1024 * 1024, 1);
+
+        private final int filesCount;
+        private final long fileSize;
+        private final int filesPerDirectory;
+
+        Tree(int filesCount, long fileSize, int filesPerDirectory) {
+            this.filesCount = filesCount;
+            this.fileSize = fileSize;
+            this.filesPerDirectory = filesPerDirectory;
+        }
+    }
+
+    private Fixtures() {
+    }
+
+    /**
+     * Creates a new directory tree of the specified shape in the working directory.
+     *
+     * @param tree the shape of the tree
+     * @return the relative path to the root of the tree
+     * @throws IOException if an I/O error occurs
+     */
+    @NotNull
+    public static Path createTree(@NotNull Tree tree) throws IOException {
+        Path root = Files.createTempDirectory(Paths.get(""), "zip-fixture-");
+        Random random = new Random(SEED);
+        for (int i = 0; i < tree.filesCount; i++) {
+            Path directory = root.resolve("dir" + i / tree.filesPerDirectory);
+            Files.createDirectories(directory);
+            createFile(directory.resolve("file" + i + ".txt"), tree.fileSize, random);
+        }
+        return root;
+    }
+
+    /**
+     * Creates a new file of the specified size in the temporary directory.
+     *
+     * @param size the size of the file in bytes
+     * @return the path to the file
+     * @throws IOException if an I/O error occurs
+     */
+    @NotNull
+    public static Path createFile(long size) throws IOException {
+        Path file = Files.createTempFile("zip-fixture-", ".txt");
+        createFile(file, size, new Random(SEED));
+        return file;
+    }
+
+    private static void createFile(@NotNull Path file, long size, @NotNull Random random) throws IOException {
+        try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024)) {
+            long written = 0;
+            while (written < size) {
+                byte[] word = (random.nextInt(8) == 0 ? Integer.toString(random.nextInt(100000)) : WORDS[random.nextInt(WORDS.length)])
+                        .getBytes(StandardCharsets.US_ASCII);
+                int count = (int) Math.min(word.length, size - written);
+                outputStream.write(word, 0, count);
+                written += count;
+                if (written < size) {
+                    outputStream.write(random.nextInt(12) == 0 ? '\n' : ' ');
+                    written++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Deletes the file or the directory with all its contents.
+     *
+     * @param path the path to be deleted
+     * @throws IOException if an I/O error occurs
+     */
+    public static void delete(@NotNull Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(@NotNull Path file, @NotNull BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(@NotNull Path dir, IOException e) throws IOException {
+                if (e != null) {
+                    throw e;
+                }
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
@@ -0,0 +1,94 @@
+package ru.spbau.kozlov.task02.benchmarks;
+
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+import ru.spbau.kozlov.task02.zip.utils.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.benchmarks.ReadContentBenchmark} class compares {@link ru.spbau.kozlov.task02.zip.utils.IOUtils#readContent} with the former byte-at-a-time implementation.
+ *
+ * @author adkozlov
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReadContentBenchmark {
+
+    @Param({"1024", "1048576", "1073741824"})
+    public long size;
+
+    @Benchmark
+    public byte[] bulkRead() throws IOException {
+        return IOUtils.readContent(new PatternInputStream(size));
+    }
+
+    @Benchmark
+    public byte[] byteAtATimeRead() throws IOException {
+        return readContentByteAtATime(new PatternInputStream(size));
+    }
+
+    @NotNull
+    private static byte[] readContentByteAtATime(@NotNull InputStream inputStream) throws IOException {
+        try (BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream)) {
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+            while (inputStream.available() > 0) {
+                byteArrayOutputStream.write(bufferedInputStream.read());
+            }
+            return byteArrayOutputStream.toByteArray();
+        }
+    }
+
+    /**
+     * An input stream of the specified length that repeats a fixed byte pattern and honestly reports the number of available bytes.
+     */
+    private static class PatternInputStream extends InputStream {
+
+        private static final byte[] PATTERN = new byte[8192];
+
+        static {
+            for (int i = 0; i < PATTERN.length; i++) {
+                PATTERN[i] = (byte) (i * 31);
+            }
+        }
+
+        private long remaining;
+
+        public PatternInputStream(long length) {
+            remaining = length;
+        }
+
+        @Override
+        public int read() {
+            if (remaining == 0) {
+                return -1;
+            }
+            remaining--;
+            return PATTERN[(int) (remaining % PATTERN.length)] & 0xFF;
+        }
+
+        @Override
+        public int read(@NotNull byte[] b, int off, int len) {
+            if (remaining == 0) {
+                return -1;
+            }
+            int bytesRead = (int) Math.min(Math.min(len, remaining), PATTERN.length);
+            System.arraycopy(PATTERN, 0, b, off, bytesRead);
+            remaining -= bytesRead;
+            return bytesRead;
+        }
+
+        @Override
+        public int available() {
+            return (int) Math.min(remaining, Integer.MAX_VALUE);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package ru.spbau.kozlov.task02.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.benchmarks.ZipCompressorBenchmark} class measures {@link ru.spbau.kozlov.task02.zip.ZipCompressor}
+ * compressing the generated tree of many small files or of few large ones with the specified number of threads.
+ * The archive is overwritten by every invocation.
+ *
+ * @author adkozlov
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ZipCompressorBenchmark {
+
+    @Param
+    public Fixtures.Tree tree;
+
+    @Param({"1", "4"})
+    public int threadsCount;
+
+    private Path treePath;
+    private Path archivePath;
+
+    @Setup
+    public void createFixture() throws IOException {
+        treePath = Fixtures.createTree(tree);
+        archivePath = Files.createTempFile("compressor", ".zip");
+    }
+
+    @TearDown
+    public void deleteFixture() throws IOException {
+        Fixtures.delete(treePath);
+        Files.deleteIfExists(archivePath);
+    }
+
+    @Benchmark
+    public void compress() throws IOException {
+        try (ZipCompressor zipCompressor = new ZipCompressor(archivePath, threadsCount)) {
+            zipCompressor.putNextEntry(treePath.toString());
+        }
+    }
+}
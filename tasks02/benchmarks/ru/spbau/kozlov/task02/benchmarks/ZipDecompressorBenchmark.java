@@ -0,0 +1,68 @@
+package ru.spbau.kozlov.task02.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+import ru.spbau.kozlov.task02.zip.ZipDecompressor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.benchmarks.ZipDecompressorBenchmark} class measures {@link ru.spbau.kozlov.task02.zip.ZipDecompressor}
+ * extracting the archive of the generated tree with the specified number of threads writing the entries.
+ * Every invocation extracts the archive to an empty directory, so the files are created rather than overwritten.
+ *
+ * @author adkozlov
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ZipDecompressorBenchmark {
+
+    @Param
+    public Fixtures.Tree tree;
+
+    @Param({"1", "4"})
+    public int threadsCount;
+
+    private Path archivePath;
+    private Path targetDirectory;
+
+    @Setup
+    public void createArchive() throws IOException {
+        Path treePath = Fixtures.createTree(tree);
+        archivePath = Files.createTempFile("decompressor", ".zip");
+        try (ZipCompressor zipCompressor = new ZipCompressor(archivePath)) {
+            zipCompressor.putNextEntry(treePath.toString());
+        } finally {
+            Fixtures.delete(treePath);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void createTargetDirectory() throws IOException {
+        targetDirectory = Files.createTempDirectory("decompressor");
+    }
+
+    @TearDown(Level.Iteration)
+    public void deleteTargetDirectory() throws IOException {
+        Fixtures.delete(targetDirectory);
+    }
+
+    @TearDown
+    public void deleteArchive() throws IOException {
+        Files.deleteIfExists(archivePath);
+    }
+
+    @Benchmark
+    public void extractAllEntries() throws IOException {
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(archivePath, threadsCount, targetDirectory)) {
+            zipDecompressor.extractAllEntries();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package ru.spbau.kozlov.task02.benchmarks;
+
+import org.jetbrains.annotations.NotNull;
+import org.openjdk.jmh.annotations.*;
+import ru.spbau.kozlov.task02.zip.ArchiveFormat;
+import ru.spbau.kozlov.task02.zip.ArchiveIndex;
+import ru.spbau.kozlov.task02.zip.ZipLister;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.benchmarks.ZipListerBenchmark} class measures {@link ru.spbau.kozlov.task02.zip.ZipLister#listAllEntries(java.io.Writer)}
+ * on archives which indices contain the specified number of entries, the tree is written to a buffered writer that discards the output.
+ *
+ * @author adkozlov
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ZipListerBenchmark {
+
+    private static final int FILES_PER_DIRECTORY = 100;
+    private static final int DIRECTORIES_PER_DIRECTORY = 10;
+
+    @Param({"10000", "100000", "1000000"})
+    public int entriesCount;
+
+    private Path archivePath;
+
+    @Setup
+    public void createArchive() throws IOException {
+        List<ArchiveIndex.Entry> entries = new ArrayList<>(entriesCount);
+        for (int i = 0; i < entriesCount; i++) {
+            int directory = i / FILES_PER_DIRECTORY;
+            String path = String.format("root/dir%d/subdir%d/file%d.txt", directory / DIRECTORIES_PER_DIRECTORY, directory, i);
+            entries.add(new ArchiveIndex.Entry(ArchiveFormat.FILE_RECORD, path, -1, 0, 0, -1, null));
+        }
+
+        archivePath = Files.createTempFile("lister", ".zip");
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(Files.newOutputStream(archivePath))) {
+            DataOutputStream dataOutputStream = new DataOutputStream(new BufferedOutputStream(zipOutputStream));
+            zipOutputStream.putNextEntry(new ZipEntry(ArchiveFormat.DATA_ENTRY_NAME));
+            dataOutputStream.writeInt(ArchiveFormat.VERSION);
+            dataOutputStream.writeByte(ArchiveFormat.END_RECORD);
+            dataOutputStream.flush();
+            zipOutputStream.closeEntry();
+
+            zipOutputStream.putNextEntry(new ZipEntry(ArchiveFormat.INDEX_ENTRY_NAME));
+            new ArchiveIndex(entries, null).write(dataOutputStream);
+            dataOutputStream.flush();
+            zipOutputStream.closeEntry();
+        }
+    }
+
+    @TearDown
+    public void deleteArchive() throws IOException {
+        Files.deleteIfExists(archivePath);
+    }
+
+    @Benchmark
+    public void listAllEntries() throws IOException {
+        try (ZipLister zipLister = new ZipLister(archivePath)) {
+            Writer writer = new BufferedWriter(new NullWriter());
+            zipLister.listAllEntries(writer);
+            writer.flush();
+        }
+    }
+
+    /**
+     * A writer that discards all the characters.
+     */
+    private static class NullWriter extends Writer {
+
+        @Override
+        public void write(@NotNull char[] buffer, int offset, int length) {
+        }
+
+        @Override
+        public void write(@NotNull String string, int offset, int length) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
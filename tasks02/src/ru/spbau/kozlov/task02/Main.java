@@ -1,71 +1,340 @@
 package ru.spbau.kozlov.task02;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.spbau.kozlov.task02.zip.AdaptiveCodecSelector;
+import ru.spbau.kozlov.task02.zip.ArchiveLayout;
+import ru.spbau.kozlov.task02.zip.ArchiveMetrics;
+import ru.spbau.kozlov.task02.zip.ArchiveRepacker;
+import ru.spbau.kozlov.task02.zip.ArchiveVolumes;
+import ru.spbau.kozlov.task02.zip.CompressionMethod;
+import ru.spbau.kozlov.task02.zip.MultiVolumeDecompressor;
 import ru.spbau.kozlov.task02.zip.ZipCompressor;
 import ru.spbau.kozlov.task02.zip.ZipDecompressor;
+import ru.spbau.kozlov.task02.zip.VerificationReport;
 import ru.spbau.kozlov.task02.zip.ZipLister;
+import ru.spbau.kozlov.task02.zip.ZipVerifier;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.FileSystems;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * The {@link ru.spbau.kozlov.task02.Main} class implements zip-archiver command-line tool.
  * Files, directories and web pages are allowed. Empty directories are ignored.
  * If file or directory cannot be read or written to, it is skipped. Invalid URLs are also skipped.
+ * The compression exits with a non-zero status if some entry cannot be read or written, every path is stored once even if the specified entries overlap.
+ * The decompression exits with a non-zero status if some entry cannot be extracted, the files which contents do not match their checksums are deleted.
+ * An archive split into volumes is decompressed, verified and listed by its name, if the extraction fails it is resumed by the next run from the volumes that were not extracted.
+ * A single volume could be decompressed as well, but the files continued in the other volumes are skipped with an error.
+ * Archives are merged or repacked with another codec without being extracted, the encoded contents are copied unless they should be encoded with another codec.
+ * With the "--stats" option the compression, the decompression, the merging and the repacking print the counts of entries and bytes, the throughput and the time spent in every phase.
  *
  * @author adkozlov
  */
 public class Main {
 
+    private static final String OPTION_PREFIX = "--";
+    private static final String THREADS_OPTION = OPTION_PREFIX + "threads";
+    private static final String ENTRIES_OPTION = OPTION_PREFIX + "entries";
+    private static final String BASE_OPTION = OPTION_PREFIX + "base";
+    private static final String CODEC_OPTION = OPTION_PREFIX + "codec";
+    private static final String VOLUME_SIZE_OPTION = OPTION_PREFIX + "volume-size";
+    private static final String STATS_OPTION = OPTION_PREFIX + "stats";
+    private static final String SIZE_SUFFIXES = "kmg";
+    private static final String GLOB_SYNTAX = "glob:";
+    private static final String REGEX_SYNTAX = "regex:";
+
     /**
      * Command-line interface.
      *
-     * @param args first argument: run option, second argument: input/output file path, third argument: list of files (optional)
+     * @param args first argument: run option, then options of the run (optional), then input/output file path, then list of files (optional)
      */
     public static void main(@NotNull String[] args) {
         if (args.length < 2) {
             printUsageAndExit();
         }
 
-        Path path = Paths.get(args[1]);
         switch (args[0]) {
             case "compress":
-                compress(path, Arrays.copyOfRange(args, 2, args.length));
+                compress(args);
                 break;
             case "decompress":
-                decompress(path);
+                decompress(args);
+                break;
+            case "verify":
+                verify(args);
+                break;
+            case "merge":
+                repack(args, false);
+                break;
+            case "repack":
+                repack(args, true);
                 break;
             case "list":
-                list(path);
+                list(Paths.get(args[1]));
                 break;
             default:
                 printUsageAndExit();
         }
     }
 
-    private static void compress(@NotNull Path outputFilePath, @NotNull String[] entries) {
-        try (ZipCompressor zipCompressor = new ZipCompressor(outputFilePath)) {
+    private static void compress(@NotNull String[] args) {
+        int threadsCount = 1;
+        ArchiveLayout layout = ArchiveLayout.CHUNKED;
+        Path baseArchivePath = null;
+        CompressionMethod method = CompressionMethod.DEFAULT;
+        long volumeSize = 0;
+        boolean printStats = false;
+        int index = 1;
+        while (index < args.length && args[index].startsWith(OPTION_PREFIX)) {
+            if (args[index].equals(THREADS_OPTION) && index + 1 < args.length) {
+                threadsCount = parsePositiveNumber(args[index + 1]);
+                index += 2;
+            } else if (args[index].equals(ENTRIES_OPTION)) {
+                layout = ArchiveLayout.ENTRIES;
+                index++;
+            } else if (args[index].equals(BASE_OPTION) && index + 1 < args.length) {
+                baseArchivePath = Paths.get(args[index + 1]);
+                index += 2;
+            } else if (args[index].equals(CODEC_OPTION) && index + 1 < args.length) {
+                method = parseCompressionMethod(args[index + 1]);
+                index += 2;
+            } else if (args[index].equals(VOLUME_SIZE_OPTION) && index + 1 < args.length) {
+                volumeSize = parseSize(args[index + 1]);
+                index += 2;
+            } else if (args[index].equals(STATS_OPTION)) {
+                printStats = true;
+                index++;
+            } else {
+                printUsageAndExit();
+            }
+        }
+        if (index >= args.length || layout == ArchiveLayout.ENTRIES && (threadsCount != 1 || baseArchivePath != null || volumeSize != 0)) {
+            printUsageAndExit();
+        }
+
+        compress(Paths.get(args[index]), Arrays.copyOfRange(args, index + 1, args.length), threadsCount, layout, baseArchivePath, method, volumeSize, printStats);
+    }
+
+    private static void compress(@NotNull Path outputFilePath, @NotNull String[] entries, int threadsCount, @NotNull ArchiveLayout layout, @Nullable Path baseArchivePath,
+                                 @NotNull CompressionMethod method, long volumeSize, boolean printStats) {
+        boolean isCompressed = true;
+        ArchiveMetrics metrics = null;
+        try (ZipCompressor zipCompressor = new ZipCompressor(outputFilePath, threadsCount, layout, baseArchivePath, new AdaptiveCodecSelector(method), volumeSize)) {
+            metrics = zipCompressor.getMetrics();
             for (String entry : entries) {
                 zipCompressor.putNextEntry(entry);
             }
-        } catch (IOException | SecurityException e) {
+        } catch (IOException | SecurityException | IllegalArgumentException e) {
             printExceptionsRecursively(e);
+            isCompressed = false;
+        }
+        printStats(printStats, metrics);
+        if (!isCompressed) {
+            System.exit(1);
         }
     }
 
-    private static void decompress(@NotNull Path inputFilePath) {
-        try (ZipDecompressor zipDecompressor = new ZipDecompressor(inputFilePath)) {
-            zipDecompressor.extractAllEntries();
-        } catch (IOException | SecurityException e) {
+    private static void decompress(@NotNull String[] args) {
+        int threadsCount = 1;
+        boolean printStats = false;
+        int index = 1;
+        while (index < args.length && args[index].startsWith(OPTION_PREFIX)) {
+            if (args[index].equals(THREADS_OPTION) && index + 1 < args.length) {
+                threadsCount = parsePositiveNumber(args[index + 1]);
+                index += 2;
+            } else if (args[index].equals(STATS_OPTION)) {
+                printStats = true;
+                index++;
+            } else {
+                printUsageAndExit();
+            }
+        }
+        if (index >= args.length) {
+            printUsageAndExit();
+        }
+
+        decompress(Paths.get(args[index]), Arrays.copyOfRange(args, index + 1, args.length), threadsCount, printStats);
+    }
+
+    private static void decompress(@NotNull Path inputFilePath, @NotNull String[] patterns, int threadsCount, boolean printStats) {
+        if (ArchiveVolumes.isSplit(inputFilePath)) {
+            decompressVolumes(inputFilePath, patterns, threadsCount, printStats);
+            return;
+        }
+
+        boolean isExtracted = true;
+        ArchiveMetrics metrics = null;
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(inputFilePath, threadsCount)) {
+            metrics = zipDecompressor.getMetrics();
+            if (patterns.length == 0) {
+                zipDecompressor.extractAllEntries();
+            } else {
+                zipDecompressor.extract(createPathMatcher(patterns));
+            }
+        } catch (IOException | SecurityException | IllegalArgumentException e) {
+            printExceptionsRecursively(e);
+            isExtracted = false;
+        }
+        printStats(printStats, metrics);
+        if (!isExtracted) {
+            System.exit(1);
+        }
+    }
+
+    private static void decompressVolumes(@NotNull Path inputFilePath, @NotNull String[] patterns, int threadsCount, boolean printStats) {
+        boolean isExtracted = true;
+        ArchiveMetrics metrics = null;
+        try (MultiVolumeDecompressor multiVolumeDecompressor = new MultiVolumeDecompressor(inputFilePath, threadsCount)) {
+            metrics = multiVolumeDecompressor.getMetrics();
+            if (patterns.length == 0) {
+                multiVolumeDecompressor.extractAllEntries();
+            } else {
+                multiVolumeDecompressor.extract(createPathMatcher(patterns));
+            }
+        } catch (IOException | SecurityException | IllegalArgumentException e) {
+            printExceptionsRecursively(e);
+            isExtracted = false;
+        }
+        printStats(printStats, metrics);
+        if (!isExtracted) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Prints the metrics of the finished operation if they were requested by {@link #STATS_OPTION}.
+     *
+     * @param printStats if the metrics should be printed
+     * @param metrics    the metrics, or {@code null} if the operation failed to start
+     */
+    private static void printStats(boolean printStats, @Nullable ArchiveMetrics metrics) {
+        if (printStats && metrics != null) {
+            System.out.println(metrics);
+        }
+    }
+
+    /**
+     * Creates the matcher of the paths matching any of the specified patterns.
+     * A pattern is a glob, unless it is prefixed with the syntax name as accepted by {@link java.nio.file.FileSystem#getPathMatcher}.
+     *
+     * @param patterns the patterns
+     * @return the path matcher
+     * @throws IllegalArgumentException if some pattern is not valid
+     */
+    @NotNull
+    private static PathMatcher createPathMatcher(@NotNull String[] patterns) {
+        final List<PathMatcher> pathMatchers = new ArrayList<>(patterns.length);
+        for (String pattern : patterns) {
+            boolean hasSyntax = pattern.startsWith(GLOB_SYNTAX) || pattern.startsWith(REGEX_SYNTAX);
+            pathMatchers.add(FileSystems.getDefault().getPathMatcher(hasSyntax ? pattern : GLOB_SYNTAX + pattern));
+        }
+
+        return new PathMatcher() {
+            @Override
+            public boolean matches(@NotNull Path path) {
+                for (PathMatcher pathMatcher : pathMatchers) {
+                    if (pathMatcher.matches(path)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Merges several archives or repacks a single one without extracting them, see {@link ru.spbau.kozlov.task02.zip.ArchiveRepacker}.
+     *
+     * @param args   the arguments of the run
+     * @param repack {@code true} if exactly one archive should be repacked
+     */
+    private static void repack(@NotNull String[] args, boolean repack) {
+        int threadsCount = 1;
+        CompressionMethod method = null;
+        boolean printStats = false;
+        int index = 1;
+        while (index < args.length && args[index].startsWith(OPTION_PREFIX)) {
+            if (args[index].equals(THREADS_OPTION) && index + 1 < args.length) {
+                threadsCount = parsePositiveNumber(args[index + 1]);
+                index += 2;
+            } else if (args[index].equals(CODEC_OPTION) && index + 1 < args.length) {
+                method = parseCompressionMethod(args[index + 1]);
+                index += 2;
+            } else if (args[index].equals(STATS_OPTION)) {
+                printStats = true;
+                index++;
+            } else {
+                printUsageAndExit();
+            }
+        }
+        if (repack ? index != args.length - 2 : index > args.length - 2) {
+            printUsageAndExit();
+        }
+
+        ArchiveMetrics metrics = null;
+        try (ArchiveRepacker archiveRepacker = new ArchiveRepacker(Paths.get(args[index]), threadsCount, method)) {
+            metrics = archiveRepacker.getMetrics();
+            for (int i = index + 1; i < args.length; i++) {
+                archiveRepacker.addArchive(Paths.get(args[i]));
+            }
+        } catch (IOException | SecurityException | IllegalArgumentException e) {
             printExceptionsRecursively(e);
         }
+        printStats(printStats, metrics);
+    }
+
+    private static void verify(@NotNull String[] args) {
+        int threadsCount = 1;
+        int index = 1;
+        while (index < args.length && args[index].startsWith(OPTION_PREFIX)) {
+            if (args[index].equals(THREADS_OPTION) && index + 1 < args.length) {
+                threadsCount = parsePositiveNumber(args[index + 1]);
+                index += 2;
+            } else {
+                printUsageAndExit();
+            }
+        }
+        if (index != args.length - 1) {
+            printUsageAndExit();
+        }
+
+        Path inputFilePath = Paths.get(args[index]);
+        boolean isSplit = ArchiveVolumes.isSplit(inputFilePath);
+        boolean isIntact = true;
+        for (Path volume : ArchiveVolumes.findVolumes(inputFilePath)) {
+            try (ZipVerifier zipVerifier = new ZipVerifier(volume, threadsCount)) {
+                VerificationReport report = zipVerifier.verify();
+                if (isSplit) {
+                    System.out.println(volume + ":");
+                }
+                System.out.println(report);
+                isIntact &= report.isIntact();
+            } catch (IOException | SecurityException e) {
+                printExceptionsRecursively(e);
+                isIntact = false;
+            }
+        }
+        if (!isIntact) {
+            System.exit(1);
+        }
     }
 
     private static void list(@NotNull Path inputFilePath) {
-        try (ZipLister zipLister = new ZipLister(inputFilePath)) {
-            System.out.println(zipLister.listAllEntries());
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(System.out));
+            ZipLister.listAllVolumes(inputFilePath, writer);
+            writer.write(System.lineSeparator());
+            writer.flush();
         } catch (IOException | SecurityException e) {
             printExceptionsRecursively(e);
         }
@@ -78,10 +347,56 @@ public class Main {
         }
     }
 
+    private static int parsePositiveNumber(@NotNull String string) {
+        try {
+            int result = Integer.parseInt(string);
+            if (result > 0) {
+                return result;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        printUsageAndExit();
+        return 0;
+    }
+
+    /**
+     * Parses the number of bytes optionally followed by one of the {@link #SIZE_SUFFIXES} denoting kibibytes, mebibytes or gibibytes.
+     *
+     * @param string the size
+     * @return the positive number of bytes
+     */
+    private static long parseSize(@NotNull String string) {
+        String lowerCase = string.toLowerCase();
+        int suffixIndex = lowerCase.isEmpty() ? -1 : SIZE_SUFFIXES.indexOf(lowerCase.charAt(lowerCase.length() - 1));
+        try {
+            long result = Long.parseLong(suffixIndex != -1 ? lowerCase.substring(0, lowerCase.length() - 1) : lowerCase);
+            if (result > 0 && result <= Long.MAX_VALUE >> (10 * (suffixIndex + 1))) {
+                return result << (10 * (suffixIndex + 1));
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        printUsageAndExit();
+        return 0;
+    }
+
+    @NotNull
+    private static CompressionMethod parseCompressionMethod(@NotNull String string) {
+        try {
+            return CompressionMethod.parse(string);
+        } catch (IllegalArgumentException ignored) {
+        }
+        printUsageAndExit();
+        return CompressionMethod.DEFAULT;
+    }
+
     private static void printUsageAndExit() {
         System.out.println("Usage: Main " +
-                "(compress <output_filename> [<filename>]) | " +
-                "(decompress | list <input_filename>)");
+                "(compress [--threads <threads_count> | --entries] [--base <base_filename>] [--codec store | fast | deflate[:<level>]] [--volume-size <bytes>[k | m | g]] [--stats] <output_filename> [<filename>]) | " +
+                "(decompress [--threads <threads_count>] [--stats] <input_filename> [<glob> | regex:<regex>]) | " +
+                "(verify [--threads <threads_count>] <input_filename>) | " +
+                "(merge [--threads <threads_count>] [--codec store | fast | deflate[:<level>]] [--stats] <output_filename> <input_filename>...) | " +
+                "(repack [--threads <threads_count>] [--codec store | fast | deflate[:<level>]] [--stats] <output_filename> <input_filename>) | " +
+                "(list <input_filename>)");
         System.exit(1);
     }
 }
@@ -2,30 +2,61 @@ package ru.spbau.kozlov.task02.zip;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import ru.spbau.kozlov.task02.zip.utils.CountingInputStream;
 import ru.spbau.kozlov.task02.zip.utils.IOUtils;
 import ru.spbau.kozlov.task02.zip.utils.PathUtils;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.IOException;
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Enumeration;
 import java.util.LinkedList;
-import java.util.zip.ZipInputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * The {@link ru.spbau.kozlov.task02.zip.AbstractZipEntryVisitor} class implements a visitor that reads an zip-archieve and performs {@link ru.spbau.kozlov.task02.zip.AbstractZipEntryVisitor#onEntryVisit} action on every entry.
+ * Both {@link ru.spbau.kozlov.task02.zip.ArchiveLayout}s of the current {@link ru.spbau.kozlov.task02.zip.ArchiveFormat} and the legacy format are supported.
+ * Zip-archives written by other tools are read as ones in the {@link ru.spbau.kozlov.task02.zip.ArchiveLayout#ENTRIES} layout.
+ * If the archive contains an {@link ru.spbau.kozlov.task02.zip.ArchiveIndex}, single entries could be visited without reading the preceding contents.
+ * Entries referencing the base archive are read from the base archive, which is opened when the first reference is visited.
+ * The entry of the base archive should have the length, the checksum and the digest recorded by the reference, otherwise it is skipped with an error, and its content is verified against the recorded checksum as it is read.
+ * Parts of the files split between the volumes of the archive are passed to {@link ru.spbau.kozlov.task02.zip.AbstractZipEntryVisitor#onFilePartEntryVisit}.
+ * Visited entries, the consumed contents and the time spent in reading and decoding them are accounted in the {@link #getMetrics} of the visitor.
  *
  * @author adkozlov
  */
 public abstract class AbstractZipEntryVisitor extends ExceptionsContainer {
 
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    private static final String SPILL_FILE_PREFIX = "zip-entry-";
+
+    @NotNull
+    private final ZipFile zipFile;
+    @NotNull
+    private final Map<Codec, ChunkDecoder> decoders = new EnumMap<>(Codec.class);
     @NotNull
-    private final ZipInputStream zipInputStream;
+    private final byte[] rawChunk = new byte[ArchiveFormat.CHUNK_SIZE];
     @NotNull
-    private final DataInputStream dataInputStream;
+    private final byte[] storedChunk = new byte[ArchiveFormat.CHUNK_SIZE];
+    @Nullable
+    private ArchiveIndex index = null;
+    @Nullable
+    private AbstractZipEntryVisitor baseVisitor = null;
+    @Nullable
+    private ArchiveIndex baseIndex = null;
 
     /**
      * Constructs a new visitor with the specified input archive file path.
@@ -35,8 +66,7 @@ public abstract class AbstractZipEntryVisitor extends ExceptionsContainer {
      * @throws SecurityException if the archive file cannot be read because of the security violation
      */
     public AbstractZipEntryVisitor(@NotNull Path inputFilePath) throws IOException, SecurityException {
-        zipInputStream = new ZipInputStream(Files.newInputStream(inputFilePath));
-        dataInputStream = new DataInputStream(new BufferedInputStream(zipInputStream));
+        zipFile = new ZipFile(inputFilePath.toFile());
     }
 
     /**
@@ -47,7 +77,16 @@ public abstract class AbstractZipEntryVisitor extends ExceptionsContainer {
     @Override
     public void close() throws IOException {
         try {
-            dataInputStream.close();
+            try {
+                for (ChunkDecoder decoder : decoders.values()) {
+                    decoder.end();
+                }
+                if (baseVisitor != null) {
+                    baseVisitor.close();
+                }
+            } finally {
+                zipFile.close();
+            }
         } catch (IOException e) {
             addException(e);
         } finally {
@@ -63,8 +102,304 @@ public abstract class AbstractZipEntryVisitor extends ExceptionsContainer {
      */
     @NotNull
     protected LinkedList<String> visitAllEntries() throws IOException {
-        zipInputStream.getNextEntry();
+        if (isEntriesLayout()) {
+            return visitAllZipEntries();
+        }
+
+        ZipEntry dataEntry = zipFile.getEntry(ArchiveFormat.DATA_ENTRY_NAME);
+        if (dataEntry != null) {
+            try (CountingInputStream countingInputStream = new CountingInputStream(new BufferedInputStream(zipFile.getInputStream(dataEntry), ArchiveFormat.CHUNK_SIZE))) {
+                return visitAllRecords(countingInputStream);
+            }
+        }
+
+        ZipEntry legacyEntry = zipFile.getEntry(ArchiveFormat.LEGACY_ENTRY_NAME);
+        if (legacyEntry != null) {
+            try (DataInputStream dataInputStream = openEntry(legacyEntry)) {
+                return visitAllLegacyEntries(dataInputStream);
+            }
+        }
+        throw new IOException(String.format("\'%s\' is not an archive of the supported format", zipFile.getName()));
+    }
+
+    /**
+     * Reads the index of the archive.
+     *
+     * @return the archive index, or {@code null} if the archive was written without the index
+     * @throws IOException if an I/O error occurs during reading the archive file
+     */
+    @Nullable
+    protected ArchiveIndex readIndex() throws IOException {
+        if (isEntriesLayout()) {
+            return readCentralDirectory();
+        }
+
+        ZipEntry indexEntry = zipFile.getEntry(ArchiveFormat.INDEX_ENTRY_NAME);
+        if (indexEntry == null) {
+            return null;
+        }
+
+        try (DataInputStream dataInputStream = openEntry(indexEntry)) {
+            return ArchiveIndex.read(dataInputStream);
+        }
+    }
+
+    /**
+     * Reads the single entry described by the index and performs an {@link AbstractZipEntryVisitor#onEntryVisit} action on it.
+     * The preceding records are skipped without being decoded. If the entry content does not match the checksum, the error is saved and the action is not performed.
+     * <p>
+     * The skip is not a seek: the data entry is deflated with no compression, so the preceding bytes are still read through the inflater,
+     * which only copies them. The cost of the call is linear in the offset of the record, visit many entries with {@link #visitEntries} instead.
+     *
+     * @param indexEntry the index entry
+     * @throws IOException if an I/O error occurs during reading the archive file
+     */
+    protected void visitEntry(@NotNull ArchiveIndex.Entry indexEntry) throws IOException {
+        visitEntry(indexEntry, Paths.get(PathUtils.convertArchivePathToOSPath(indexEntry.getPath())));
+        getMetrics().addEntry(indexEntry.getPath());
+    }
+
+    /**
+     * Reads the single entry described by the index and performs an {@link AbstractZipEntryVisitor#onEntryVisit} action on it as if the entry had the specified path.
+     *
+     * @param indexEntry the index entry
+     * @param path       the path to be passed to the action
+     * @throws IOException if an I/O error occurs during reading the archive file
+     */
+    protected void visitEntry(@NotNull ArchiveIndex.Entry indexEntry, @NotNull Path path) throws IOException {
+        if (indexEntry.isReference()) {
+            visitReference(indexEntry.getPath(), path);
+            return;
+        }
+        if (isEntriesLayout()) {
+            visitZipEntry(indexEntry, path);
+            return;
+        }
+
+        try (DataInputStream dataInputStream = openEntry(getDataEntry())) {
+            IOUtils.skip(dataInputStream, indexEntry.getOffset());
+            visitRecord(indexEntry, path, dataInputStream);
+        }
+    }
+
+    /**
+     * Reads the entries described by the index and performs an {@link AbstractZipEntryVisitor#onEntryVisit} action on every of them.
+     * Records are visited in the order they are stored in the archive during a single pass over the data entry,
+     * the records between them are read through the inflater and skipped without being decoded by their codecs. Entries of the {@link ru.spbau.kozlov.task02.zip.ArchiveLayout#ENTRIES} layout
+     * and entries referencing the base archive are read directly.
+     *
+     * @param indexEntries the index entries
+     * @throws IOException if an I/O error occurs during reading the archive file
+     */
+    protected void visitEntries(@NotNull List<ArchiveIndex.Entry> indexEntries) throws IOException {
+        boolean isEntriesLayout = isEntriesLayout();
+        List<ArchiveIndex.Entry> records = new ArrayList<>(indexEntries.size());
+        for (ArchiveIndex.Entry indexEntry : indexEntries) {
+            if (isEntriesLayout || indexEntry.isReference()) {
+                visitEntry(indexEntry);
+            } else {
+                records.add(indexEntry);
+            }
+        }
+        if (records.isEmpty()) {
+            return;
+        }
+
+        Collections.sort(records, new Comparator<ArchiveIndex.Entry>() {
+            @Override
+            public int compare(@NotNull ArchiveIndex.Entry first, @NotNull ArchiveIndex.Entry second) {
+                return Long.compare(first.getOffset(), second.getOffset());
+            }
+        });
+        try (CountingInputStream countingInputStream = new CountingInputStream(new BufferedInputStream(zipFile.getInputStream(getDataEntry()), ArchiveFormat.CHUNK_SIZE))) {
+            DataInputStream dataInputStream = new DataInputStream(countingInputStream);
+            for (ArchiveIndex.Entry indexEntry : records) {
+                IOUtils.skip(dataInputStream, indexEntry.getOffset() - countingInputStream.getPosition());
+                visitRecord(indexEntry, Paths.get(PathUtils.convertArchivePathToOSPath(indexEntry.getPath())), dataInputStream);
+                getMetrics().addEntry(indexEntry.getPath());
+            }
+        }
+    }
+
+    private void visitRecord(@NotNull ArchiveIndex.Entry indexEntry, @NotNull Path path, @NotNull DataInputStream dataInputStream) throws IOException {
+        byte kind = dataInputStream.readByte();
+        String archivePath = dataInputStream.readUTF();
+        if (kind != indexEntry.getKind() || !archivePath.equals(indexEntry.getPath())) {
+            throw new IOException(String.format("Archive index does not match the record of the entry \'%s\'", indexEntry.getPath()));
+        }
+
+        switch (kind) {
+            case ArchiveFormat.PART_RECORD:
+            case ArchiveFormat.FILE_RECORD:
+                if (kind == ArchiveFormat.PART_RECORD) {
+                    dataInputStream.readLong();
+                }
+                visitFileEntry(indexEntry, path, new ChunkedContent(archivePath, indexEntry.getLength(), indexEntry.getCrc() & 0xFFFFFFFFL, dataInputStream));
+                break;
+            case ArchiveFormat.DUPLICATE_RECORD:
+                visitDuplicate(path, dataInputStream.readUTF());
+                break;
+            default:
+                onEntryVisit(path, null);
+        }
+    }
+
+    @NotNull
+    private ZipEntry getDataEntry() throws IOException {
+        ZipEntry dataEntry = zipFile.getEntry(ArchiveFormat.DATA_ENTRY_NAME);
+        if (dataEntry == null) {
+            throw new IOException(String.format("\'%s\' contains no data entry", zipFile.getName()));
+        }
+        return dataEntry;
+    }
+
+    /**
+     * Performs some action on the specified file entry which content is being read from the archive.
+     * The content could be consumed only during this call and by the calling thread. If the content is not consumed, it is skipped.
+     * By default the whole content is read and passed to {@link AbstractZipEntryVisitor#onEntryVisit}, unless it does not match the checksum
+     * or is too long to fit into an array, in which case the error is saved and the entry is skipped.
+     *
+     * @param path    a path of the specified entry
+     * @param content the entry content
+     * @throws IOException if an I/O error occurs during reading the archive file
+     */
+    protected void onFileEntryVisit(@NotNull Path path, @NotNull EntryContent content) throws IOException {
+        if (content.getLength() > MAX_ARRAY_LENGTH) {
+            addException(String.format("Entry \'%s\' of %d bytes is too long to be read into memory", path.toString(), content.getLength()));
+            return;
+        }
+        byte[] bytes = content.readAll();
+        if (bytes != null) {
+            onEntryVisit(path, bytes);
+        }
+    }
+
+    /**
+     * Performs some action on the specified file entry which content is identical to the content of the previous entry of the archive.
+     * By default the content of the original entry is read again and passed to {@link AbstractZipEntryVisitor#onFileEntryVisit}.
+     *
+     * @param path          a path of the specified entry
+     * @param originalEntry the index entry of the original
+     * @throws IOException if an I/O error occurs during reading the archive file
+     */
+    protected void onDuplicateEntryVisit(@NotNull Path path, @NotNull ArchiveIndex.Entry originalEntry) throws IOException {
+        visitEntry(originalEntry, path);
+    }
+
+    /**
+     * Performs some action on the specified part of the file split between the volumes of the archive.
+     * The parts could be visited in any order, possibly by the visitors of different volumes at the same time.
+     * The content could be consumed only during this call and by the calling thread. If the content is not consumed, it is skipped.
+     * By default the error is saved, as the part cannot be treated as the whole file.
+     *
+     * @param path       a path of the file
+     * @param partOffset the position of the part in the file
+     * @param lastPart   {@code true} if the part is the last one, so it ends the file
+     * @param content    the part content
+     * @throws IOException if an I/O error occurs during reading the archive file
+     */
+    protected void onFilePartEntryVisit(@NotNull Path path, long partOffset, boolean lastPart, @NotNull EntryContent content) throws IOException {
+        addException(String.format("Entry '%s' is a part of the file split between the volumes, it cannot be visited separately", path.toString()));
+    }
+
+    private void visitFileEntry(@NotNull Path path, @NotNull EntryContent content) throws IOException {
+        onFileEntryVisit(path, content);
+        content.skipRemaining();
+    }
+
+    private void visitFileEntry(@Nullable ArchiveIndex.Entry indexEntry, @NotNull Path path, @NotNull EntryContent content) throws IOException {
+        if (indexEntry == null || !indexEntry.isPart()) {
+            visitFileEntry(path, content);
+            return;
+        }
+
+        onFilePartEntryVisit(path, indexEntry.getPartOffset(), indexEntry.isLastPart(), content);
+        content.skipRemaining();
+    }
+
+    private void visitDuplicate(@NotNull Path path, @NotNull String originalPath) throws IOException {
+        ArchiveIndex.Entry originalEntry = getIndex().findEntry(originalPath);
+        if (originalEntry == null || originalEntry.isDirectory()) {
+            throw new IOException(String.format("\'%s\' contains no entry \'%s\'", zipFile.getName(), originalPath));
+        }
+        onDuplicateEntryVisit(path, originalEntry);
+    }
+
+    @NotNull
+    private ArchiveIndex getIndex() throws IOException {
+        if (index == null) {
+            index = readIndex();
+            if (index == null) {
+                throw new IOException(String.format("\'%s\' has no index", zipFile.getName()));
+            }
+        }
+        return index;
+    }
+
+    private boolean isEntriesLayout() {
+        return ArchiveFormat.isEntriesLayout(zipFile);
+    }
+
+    @NotNull
+    private LinkedList<String> visitAllZipEntries() throws IOException {
+        LinkedList<String> result = new LinkedList<>();
+        Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+        while (zipEntries.hasMoreElements()) {
+            ZipEntry zipEntry = zipEntries.nextElement();
+            String archivePath = getArchivePath(zipEntry);
+            result.add(archivePath);
+            visitZipEntry(zipEntry, archivePath, Paths.get(PathUtils.convertArchivePathToOSPath(archivePath)));
+            getMetrics().addEntry(archivePath);
+        }
+        return result;
+    }
+
+    @NotNull
+    private ArchiveIndex readCentralDirectory() {
+        List<ArchiveIndex.Entry> entries = new ArrayList<>();
+        Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+        while (zipEntries.hasMoreElements()) {
+            ZipEntry zipEntry = zipEntries.nextElement();
+            entries.add(zipEntry.isDirectory()
+                    ? new ArchiveIndex.Entry(ArchiveFormat.DIRECTORY_RECORD, getArchivePath(zipEntry), -1, -1, 0, -1, null)
+                    : new ArchiveIndex.Entry(ArchiveFormat.FILE_RECORD, zipEntry.getName(), -1, zipEntry.getSize(), (int) zipEntry.getCrc(), -1, null));
+        }
+        return new ArchiveIndex(entries, null);
+    }
+
+    private void visitZipEntry(@NotNull ArchiveIndex.Entry indexEntry, @NotNull Path path) throws IOException {
+        String name = indexEntry.isDirectory() ? indexEntry.getPath() + PathUtils.ARCHIVE_FILE_SEPARATOR : indexEntry.getPath();
+        ZipEntry zipEntry = zipFile.getEntry(name);
+        if (zipEntry == null) {
+            throw new IOException(String.format("\'%s\' contains no entry \'%s\'", zipFile.getName(), indexEntry.getPath()));
+        }
+        visitZipEntry(zipEntry, indexEntry.getPath(), path);
+    }
+
+    private void visitZipEntry(@NotNull ZipEntry zipEntry, @NotNull String archivePath, @NotNull Path path) throws IOException {
+        if (zipEntry.isDirectory()) {
+            onEntryVisit(path, null);
+            return;
+        }
+
+        try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+            visitFileEntry(path, new StreamContent(archivePath, zipEntry.getSize(), zipEntry.getCrc(), zipEntry.getCompressedSize(), inputStream));
+        }
+    }
 
+    @NotNull
+    private static String getArchivePath(@NotNull ZipEntry zipEntry) {
+        String name = zipEntry.getName();
+        return zipEntry.isDirectory() ? name.substring(0, name.length() - 1) : name;
+    }
+
+    @NotNull
+    private DataInputStream openEntry(@NotNull ZipEntry zipEntry) throws IOException {
+        return new DataInputStream(new BufferedInputStream(zipFile.getInputStream(zipEntry), ArchiveFormat.CHUNK_SIZE));
+    }
+
+    @NotNull
+    private LinkedList<String> visitAllLegacyEntries(@NotNull DataInputStream dataInputStream) throws IOException {
         LinkedList<String> result = new LinkedList<>();
         while (dataInputStream.available() > 0) {
             dataInputStream.mark(1);
@@ -74,29 +409,157 @@ public abstract class AbstractZipEntryVisitor extends ExceptionsContainer {
                 dataInputStream.reset();
             }
 
-            String path = dataInputStream.readUTF();
+            String archivePath = dataInputStream.readUTF();
             long length = dataInputStream.readLong();
-            byte[] content = length != -1 ? readEntryContent(length) : null;
-            result.add(path);
+            result.add(archivePath);
 
-            onEntryVisit(Paths.get(PathUtils.convertArchivePathToOSPath(path)), content);
+            Path path = Paths.get(PathUtils.convertArchivePathToOSPath(archivePath));
+            if (length != -1) {
+                visitFileEntry(path, new StreamContent(archivePath, length, -1, length, dataInputStream));
+            } else {
+                onEntryVisit(path, null);
+            }
+            getMetrics().addEntry(archivePath);
         }
 
         return result;
     }
 
     /**
-     * Reads the entry content from the archive file.
+     * Reads all the records of the data entry. The index, if any, is read first, so the contents of the files are verified against their lengths and checksums.
+     */
+    @NotNull
+    private LinkedList<String> visitAllRecords(@NotNull CountingInputStream countingInputStream) throws IOException {
+        DataInputStream dataInputStream = new DataInputStream(countingInputStream);
+        int version = dataInputStream.readInt();
+        if (version > ArchiveFormat.VERSION) {
+            throw new IOException(String.format("Archive format version %d is not supported", version));
+        }
+
+        if (index == null) {
+            index = readIndex();
+        }
+
+        LinkedList<String> result = new LinkedList<>();
+        byte kind;
+        while ((kind = dataInputStream.readByte()) != ArchiveFormat.END_RECORD) {
+            long offset = countingInputStream.getPosition() - 1;
+            String archivePath = dataInputStream.readUTF();
+            result.add(archivePath);
+
+            Path path = Paths.get(PathUtils.convertArchivePathToOSPath(archivePath));
+            switch (kind) {
+                case ArchiveFormat.DIRECTORY_RECORD:
+                    onEntryVisit(path, null);
+                    break;
+                case ArchiveFormat.FILE_RECORD:
+                    visitFileRecord(archivePath, offset, path, dataInputStream);
+                    break;
+                case ArchiveFormat.PART_RECORD:
+                    dataInputStream.readLong();
+                    if (index == null) {
+                        throw new IOException(String.format("'%s' has no index, so the part of the entry '%s' cannot be visited", zipFile.getName(), archivePath));
+                    }
+                    if (findRecordEntry(archivePath, offset) == null) {
+                        throw new IOException(String.format("Archive index does not match the record of the entry \'%s\'", archivePath));
+                    }
+                    visitFileRecord(archivePath, offset, path, dataInputStream);
+                    break;
+                case ArchiveFormat.REFERENCE_RECORD:
+                    visitReference(archivePath, path);
+                    break;
+                case ArchiveFormat.DUPLICATE_RECORD:
+                    visitDuplicate(path, dataInputStream.readUTF());
+                    break;
+                default:
+                    throw new IOException(String.format("Unknown record kind %d of the entry \'%s\'", kind, archivePath));
+            }
+            getMetrics().addEntry(archivePath);
+        }
+
+        return result;
+    }
+
+    private void visitFileRecord(@NotNull String archivePath, long offset, @NotNull Path path, @NotNull DataInputStream dataInputStream) throws IOException {
+        ArchiveIndex.Entry indexEntry = findRecordEntry(archivePath, offset);
+        if (indexEntry != null) {
+            visitFileEntry(indexEntry, path, new ChunkedContent(archivePath, indexEntry.getLength(), indexEntry.getCrc() & 0xFFFFFFFFL, dataInputStream));
+        } else {
+            visitFileEntry(path, new ChunkedContent(archivePath, -1, -1, dataInputStream));
+        }
+    }
+
+    /**
+     * Finds the index entry of the record at the specified offset of the data entry.
+     * The offset is compared as well as the path, as the archive could contain several records of the same path.
      *
-     * @param length the number of bytes to be read
-     * @return an array of bytes read from the archive file
-     * @throws IOException if an I/O error occurred during the reading the archive file
+     * @return the index entry, or {@code null} if the archive has no index or the index does not describe the record
      */
+    @Nullable
+    private ArchiveIndex.Entry findRecordEntry(@NotNull String archivePath, long offset) {
+        ArchiveIndex.Entry indexEntry = index != null ? index.findEntry(archivePath) : null;
+        return indexEntry != null && indexEntry.getOffset() == offset ? indexEntry : null;
+    }
+
+    private void visitReference(@NotNull String archivePath, @NotNull Path path) throws IOException {
+        if (baseVisitor == null || baseIndex == null) {
+            openBaseArchive();
+        }
+
+        ArchiveIndex.Entry baseEntry = baseIndex.findEntry(archivePath);
+        if (baseEntry == null || baseEntry.isDirectory()) {
+            throw new IOException(String.format("Base archive contains no entry \'%s\'", archivePath));
+        }
+        ArchiveIndex.Entry referenceEntry = getIndex().findEntry(archivePath);
+        if (referenceEntry == null || !referenceEntry.isReference()) {
+            throw new IOException(String.format("Archive index does not match the record of the entry \'%s\'", archivePath));
+        }
+        if (!referenceEntry.hasSameContent(baseEntry)) {
+            addException(String.format("Entry \'%s\' of the base archive has changed since the archive was written, it is skipped", archivePath));
+            return;
+        }
+        baseVisitor.visitEntry(baseEntry, path);
+    }
+
+    private void openBaseArchive() throws IOException {
+        ArchiveIndex archiveIndex = getIndex();
+        if (archiveIndex.getBaseArchive() == null) {
+            throw new IOException(String.format("\'%s\' references entries of the unknown base archive", zipFile.getName()));
+        }
+
+        Path archiveDirectory = Paths.get(zipFile.getName()).toAbsolutePath().getParent();
+        Path basePath = archiveDirectory.resolve(PathUtils.convertArchivePathToOSPath(archiveIndex.getBaseArchive()));
+        baseVisitor = new AbstractZipEntryVisitor(basePath) {
+            @NotNull
+            @Override
+            public ArchiveMetrics getMetrics() {
+                return AbstractZipEntryVisitor.this.getMetrics();
+            }
+
+            @Override
+            protected void onEntryVisit(@NotNull Path path, @Nullable byte[] content) {
+                AbstractZipEntryVisitor.this.onEntryVisit(path, content);
+            }
+
+            @Override
+            protected void onFileEntryVisit(@NotNull Path path, @NotNull EntryContent content) throws IOException {
+                AbstractZipEntryVisitor.this.onFileEntryVisit(path, content);
+            }
+        };
+        baseIndex = baseVisitor.readIndex();
+        if (baseIndex == null) {
+            throw new IOException(String.format("Base archive \'%s\' has no index", basePath.toString()));
+        }
+    }
+
     @NotNull
-    protected byte[] readEntryContent(long length) throws IOException {
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        IOUtils.copy(dataInputStream, byteArrayOutputStream, length);
-        return byteArrayOutputStream.toByteArray();
+    private ChunkDecoder getDecoder(@NotNull Codec codec) {
+        ChunkDecoder decoder = decoders.get(codec);
+        if (decoder == null) {
+            decoder = codec.createDecoder();
+            decoders.put(codec, decoder);
+        }
+        return decoder;
     }
 
     /**
@@ -106,4 +569,455 @@ public abstract class AbstractZipEntryVisitor extends ExceptionsContainer {
      * @param content an array of bytes containing the entry content
      */
     protected abstract void onEntryVisit(@NotNull Path path, @Nullable byte[] content);
+
+    /**
+     * The {@link ru.spbau.kozlov.task02.zip.AbstractZipEntryVisitor.EntryContent} class provides the content of the file entry that is being read.
+     * The content is decoded chunk by chunk into the buffer of the visitor, so it is never held in memory entirely unless {@link #readAll} is called.
+     * It could be consumed only once: written to a stream, read by a bounded {@link #openStream stream} or {@link #openChannel channel} view,
+     * or spilled to a temporary file for the random access.
+     */
+    protected abstract class EntryContent {
+
+        @NotNull
+        private final String path;
+        private final long length;
+        private final long crc;
+        private boolean consumed = false;
+        @NotNull
+        private final CRC32 crc32 = new CRC32();
+        private long readLength = 0;
+        private boolean finished = false;
+        private boolean corrupted = false;
+
+        private EntryContent(@NotNull String path, long length, long crc) {
+            this.path = path;
+            this.length = length;
+            this.crc = crc;
+        }
+
+        /**
+         * Returns the length of the entry content.
+         *
+         * @return the number of bytes in the entry content, or -1 if it is not known in advance
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * Writes the whole entry content to the specified stream. If the content does not match the checksum, the error is saved.
+         *
+         * @param outputStream the stream to be written to
+         * @return {@code false} if the content turned out to be corrupted
+         * @throws IOException if an I/O error occurs during reading the archive or writing to the stream
+         */
+        public boolean writeTo(@NotNull OutputStream outputStream) throws IOException {
+            consume();
+            int count;
+            while ((count = nextVerifiedChunk()) != -1) {
+                outputStream.write(rawChunk, 0, count);
+            }
+            return !corrupted;
+        }
+
+        /**
+         * Reads the whole entry content. If the content does not match the checksum, the error is saved.
+         * The content longer than the maximal array length cannot be read, {@link #openStream} or {@link #spillToTempFile} should be used instead.
+         *
+         * @return an array of bytes containing the entry content, or {@code null} if the content turned out to be corrupted
+         * @throws IOException if an I/O error occurs during reading the archive or the content is too long to fit into an array
+         */
+        @Nullable
+        public byte[] readAll() throws IOException {
+            if (length > MAX_ARRAY_LENGTH) {
+                throw new IOException(String.format("Entry \'%s\' of %d bytes is too long to be read into memory", path, length));
+            }
+
+            consume();
+            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream(length >= 0 ? (int) length : 32);
+            int count;
+            while ((count = nextVerifiedChunk()) != -1) {
+                if (byteArrayOutputStream.size() > MAX_ARRAY_LENGTH - count) {
+                    throw new IOException(String.format("Entry \'%s\' is too long to be read into memory", path));
+                }
+                byteArrayOutputStream.write(rawChunk, 0, count);
+            }
+            return corrupted ? null : byteArrayOutputStream.toByteArray();
+        }
+
+        /**
+         * Opens the stream reading the entry content as it is being decoded, so at most one chunk is held in memory.
+         * The stream ends with the content, the rest of the archive is never read through it.
+         * If the content does not match the checksum, the error is saved and the stream fails at its end.
+         * Closing the stream does not close the archive, the content that is not read is skipped after the visit.
+         *
+         * @return the stream of the content
+         */
+        @NotNull
+        public InputStream openStream() {
+            consume();
+            return new ContentInputStream();
+        }
+
+        /**
+         * Opens the channel reading the entry content as {@link #openStream} does.
+         *
+         * @return the channel of the content
+         */
+        @NotNull
+        public ReadableByteChannel openChannel() {
+            return Channels.newChannel(openStream());
+        }
+
+        /**
+         * Writes the whole entry content to a new temporary file, so it could be read in any order without being held in memory.
+         * The file is deleted when the returned channel is closed. If the content does not match the checksum, the error is saved.
+         *
+         * @return the channel of the temporary file positioned at its start, or {@code null} if the content turned out to be corrupted
+         * @throws IOException if an I/O error occurs during reading the archive or writing the temporary file
+         */
+        @Nullable
+        public FileChannel spillToTempFile() throws IOException {
+            Path tempFilePath = Files.createTempFile(SPILL_FILE_PREFIX, null);
+            FileChannel fileChannel = null;
+            try {
+                fileChannel = FileChannel.open(tempFilePath, StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.DELETE_ON_CLOSE);
+                consume();
+                int count;
+                while ((count = nextVerifiedChunk()) != -1) {
+                    IOUtils.write(fileChannel, rawChunk, 0, count);
+                }
+                if (corrupted) {
+                    fileChannel.close();
+                    return null;
+                }
+                fileChannel.position(0);
+                return fileChannel;
+            } catch (IOException | RuntimeException e) {
+                if (fileChannel != null) {
+                    fileChannel.close();
+                }
+                throw e;
+            } finally {
+                if (fileChannel == null) {
+                    Files.deleteIfExists(tempFilePath);
+                }
+            }
+        }
+
+        /**
+         * Checks if the content is stored as a sequence of encoded chunks, so it could be copied by {@link #transferEncodedTo} without being decoded.
+         * Otherwise the content should be decoded.
+         *
+         * @return {@code true} if the encoded chunks could be transferred
+         */
+        abstract boolean canTransferEncoded();
+
+        /**
+         * Returns the codec the content is stored with in the archive.
+         *
+         * @return the codec, or {@code null} if the content is not stored as a sequence of encoded chunks
+         */
+        @Nullable
+        abstract Codec getCodec();
+
+        /**
+         * Copies the encoded chunks of the content to the specified stream as they are stored in the archive, without the terminating empty chunk.
+         * Chunks are not decoded, so the checksum is not verified, only the total raw length is checked if it is known.
+         *
+         * @param outputStream the stream to be written to
+         * @return the number of bytes written
+         * @throws IOException if an I/O error occurs during reading the archive or writing to the stream
+         * @throws IllegalStateException if the content cannot be transferred encoded, see {@link #canTransferEncoded}
+         */
+        abstract long transferEncodedTo(@NotNull OutputStream outputStream) throws IOException;
+
+        /**
+         * Decodes the next part of the content to the visitor buffer.
+         *
+         * @return the number of decoded bytes, or -1 if the end of the content is reached
+         * @throws IOException if an I/O error occurs during reading the archive
+         */
+        protected abstract int nextChunk() throws IOException;
+
+        /**
+         * Skips the rest of the content, so the archive could be read further.
+         *
+         * @throws IOException if an I/O error occurs during reading the archive
+         */
+        protected void skipRemaining() throws IOException {
+            consumed = true;
+            while (nextChunk() != -1) {
+            }
+        }
+
+        void consume() {
+            if (consumed) {
+                throw new IllegalStateException("Entry content is already consumed");
+            }
+            consumed = true;
+        }
+
+        /**
+         * Decodes the next part of the content and updates the checksum. When the end of the content is reached, the checksum is verified.
+         *
+         * @return the number of decoded bytes, or -1 if the end of the content is reached
+         * @throws IOException if an I/O error occurs during reading the archive
+         */
+        private int nextVerifiedChunk() throws IOException {
+            if (finished) {
+                return -1;
+            }
+
+            int count = nextChunk();
+            if (count != -1) {
+                crc32.update(rawChunk, 0, count);
+                readLength += count;
+                return count;
+            }
+
+            finished = true;
+            getMetrics().addRawBytes(readLength);
+            if (crc != -1 && crc32.getValue() != crc || length != -1 && readLength != length) {
+                corrupted = true;
+                addException(String.format("Entry \'%s\' is corrupted", path));
+            }
+            return -1;
+        }
+
+        /**
+         * Reads the content from the visitor buffer, which is refilled when it is exhausted.
+         */
+        private class ContentInputStream extends InputStream {
+
+            private int position = 0;
+            private int limit = 0;
+
+            @Override
+            public int read() throws IOException {
+                return fill() ? rawChunk[position++] & 0xff : -1;
+            }
+
+            @Override
+            public int read(@NotNull byte[] bytes, int offset, int count) throws IOException {
+                if (offset < 0 || count < 0 || count > bytes.length - offset) {
+                    throw new IndexOutOfBoundsException();
+                }
+                if (count == 0) {
+                    return 0;
+                }
+                if (!fill()) {
+                    return -1;
+                }
+
+                int result = Math.min(count, limit - position);
+                System.arraycopy(rawChunk, position, bytes, offset, result);
+                position += result;
+                return result;
+            }
+
+            @Override
+            public long skip(long count) throws IOException {
+                long skipped = 0;
+                while (skipped < count && fill()) {
+                    int step = (int) Math.min(count - skipped, limit - position);
+                    position += step;
+                    skipped += step;
+                }
+                return skipped;
+            }
+
+            @Override
+            public int available() {
+                return limit - position;
+            }
+
+            private boolean fill() throws IOException {
+                while (position == limit) {
+                    int count = nextVerifiedChunk();
+                    if (count == -1) {
+                        if (corrupted) {
+                            throw new IOException(String.format("Entry \'%s\' is corrupted", path));
+                        }
+                        return false;
+                    }
+                    position = 0;
+                    limit = count;
+                }
+                return true;
+            }
+        }
+    }
+
+    private class ChunkedContent extends EntryContent {
+
+        @NotNull
+        private final DataInputStream dataInputStream;
+        @NotNull
+        private final Codec codec;
+        @NotNull
+        private final ChunkDecoder decoder;
+        private int rawLength = 0;
+        private boolean finished = false;
+
+        public ChunkedContent(@NotNull String path, long length, long crc, @NotNull DataInputStream dataInputStream) throws IOException {
+            super(path, length, crc);
+            this.dataInputStream = dataInputStream;
+
+            codec = Codec.fromId(dataInputStream.readByte());
+            decoder = getDecoder(codec);
+        }
+
+        @Override
+        boolean canTransferEncoded() {
+            return true;
+        }
+
+        @NotNull
+        @Override
+        Codec getCodec() {
+            return codec;
+        }
+
+        @Override
+        long transferEncodedTo(@NotNull OutputStream outputStream) throws IOException {
+            consume();
+            DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
+            ArchiveMetrics metrics = getMetrics();
+            long totalRawLength = 0;
+            long written = 0;
+            int storedLength;
+            while ((storedLength = readChunkHeader()) != -1) {
+                long startNanos = System.nanoTime();
+                dataInputStream.readFully(storedChunk, 0, storedLength);
+                metrics.addTime(ArchiveMetrics.Phase.READ, System.nanoTime() - startNanos);
+                metrics.addStoredBytes(2 * Integer.BYTES + storedLength);
+
+                dataOutputStream.writeInt(rawLength);
+                dataOutputStream.writeInt(storedLength);
+                dataOutputStream.write(storedChunk, 0, storedLength);
+                totalRawLength += rawLength;
+                written += 2 * Integer.BYTES + storedLength;
+            }
+            if (getLength() != -1 && totalRawLength != getLength()) {
+                throw new IOException(String.format("Entry \'%s\' is corrupted: %d bytes are stored instead of %d", super.path, totalRawLength, getLength()));
+            }
+            return written;
+        }
+
+        @Override
+        protected int nextChunk() throws IOException {
+            int storedLength = readChunkHeader();
+            if (storedLength == -1) {
+                return -1;
+            }
+
+            ArchiveMetrics metrics = getMetrics();
+            long startNanos = System.nanoTime();
+            if (storedLength == rawLength) {
+                dataInputStream.readFully(rawChunk, 0, rawLength);
+                metrics.addTime(ArchiveMetrics.Phase.READ, System.nanoTime() - startNanos);
+            } else {
+                dataInputStream.readFully(storedChunk, 0, storedLength);
+                long decodeStartNanos = System.nanoTime();
+                decoder.decode(storedChunk, storedLength, rawChunk, rawLength);
+                metrics.addTime(ArchiveMetrics.Phase.READ, decodeStartNanos - startNanos);
+                metrics.addTime(ArchiveMetrics.Phase.DECOMPRESS, System.nanoTime() - decodeStartNanos);
+            }
+            metrics.addStoredBytes(2 * Integer.BYTES + storedLength);
+            return rawLength;
+        }
+
+        @Override
+        protected void skipRemaining() throws IOException {
+            int storedLength;
+            while ((storedLength = readChunkHeader()) != -1) {
+                IOUtils.skip(dataInputStream, storedLength);
+            }
+        }
+
+        private int readChunkHeader() throws IOException {
+            if (finished) {
+                return -1;
+            }
+
+            rawLength = dataInputStream.readInt();
+            int storedLength = dataInputStream.readInt();
+            if (rawLength == 0) {
+                finished = true;
+                return -1;
+            }
+            if (rawLength < 0 || rawLength > rawChunk.length || storedLength < 0 || storedLength > rawLength) {
+                throw new IOException(String.format("Corrupted chunk header: raw length %d, stored length %d", rawLength, storedLength));
+            }
+            return storedLength;
+        }
+    }
+
+    private class StreamContent extends EntryContent {
+
+        @NotNull
+        private final InputStream inputStream;
+        private long remaining;
+        private long storedLength;
+
+        public StreamContent(@NotNull String path, long length, long crc, long storedLength, @NotNull InputStream inputStream) {
+            super(path, length, crc);
+            this.inputStream = inputStream;
+            this.storedLength = storedLength;
+            remaining = length;
+        }
+
+        @Override
+        boolean canTransferEncoded() {
+            return false;
+        }
+
+        @Nullable
+        @Override
+        Codec getCodec() {
+            return null;
+        }
+
+        @Override
+        long transferEncodedTo(@NotNull OutputStream outputStream) {
+            throw new IllegalStateException(String.format("Entry \'%s\' is not stored in chunks", super.path));
+        }
+
+        /**
+         * Reads the next part of the content, the inflating is timed as reading. The stored length is accounted when the end of the content is reached.
+         *
+         * @return the number of bytes read, or -1 if the end of the content is reached
+         * @throws IOException if an I/O error occurs during reading the archive
+         */
+        @Override
+        protected int nextChunk() throws IOException {
+            int limit = remaining < 0 ? rawChunk.length : (int) Math.min(rawChunk.length, remaining);
+            if (limit == 0) {
+                return finish();
+            }
+
+            long startNanos = System.nanoTime();
+            int count = inputStream.read(rawChunk, 0, limit);
+            getMetrics().addTime(ArchiveMetrics.Phase.READ, System.nanoTime() - startNanos);
+            if (count == -1) {
+                if (remaining > 0) {
+                    throw new IOException("Not enough bytes");
+                }
+                return finish();
+            }
+            if (remaining > 0) {
+                remaining -= count;
+            }
+            return count;
+        }
+
+        private int finish() {
+            if (storedLength > 0) {
+                getMetrics().addStoredBytes(storedLength);
+                storedLength = 0;
+            }
+            return -1;
+        }
+    }
 }
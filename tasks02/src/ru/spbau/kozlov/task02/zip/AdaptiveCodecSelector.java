@@ -0,0 +1,71 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+import ru.spbau.kozlov.task02.zip.utils.PathUtils;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.AdaptiveCodecSelector} class implements the default {@link ru.spbau.kozlov.task02.zip.CodecSelector}.
+ * Files with extensions of the formats that are compressed already (images, media, archives) are stored without compression.
+ * Other files are compressed with the preferred method, unless the sample taken from the beginning of the content turns out to be incompressible.
+ * The sample is compressed with the fast {@link ru.spbau.kozlov.task02.zip.Codec#LZ} codec, so sampling costs much less than compressing the content.
+ *
+ * @author adkozlov
+ */
+public class AdaptiveCodecSelector implements CodecSelector {
+
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+            "jpg", "jpeg", "png", "gif", "webp", "mp3", "ogg", "flac", "mp4", "mkv", "avi", "mov", "webm",
+            "gz", "tgz", "bz2", "xz", "lz4", "zst", "zip", "jar", "war", "apk", "7z", "rar", "docx", "xlsx", "pptx", "odt"));
+    private static final int SAMPLE_SIZE = 64 * 1024;
+    private static final int MIN_SAMPLE_SIZE = 4 * 1024;
+    private static final double MAX_SAMPLE_RATIO = 0.95;
+
+    @NotNull
+    private final CompressionMethod preferredMethod;
+    @NotNull
+    private final ChunkEncoder sampleEncoder = Codec.LZ.createEncoder();
+    @NotNull
+    private final byte[] sample = new byte[SAMPLE_SIZE];
+
+    /**
+     * Constructs a new selector that compresses files with the deflate of the default level.
+     */
+    public AdaptiveCodecSelector() {
+        this(CompressionMethod.DEFAULT);
+    }
+
+    /**
+     * Constructs a new selector with the specified preferred method.
+     *
+     * @param preferredMethod the method used for the files that seem to be compressible
+     */
+    public AdaptiveCodecSelector(@NotNull CompressionMethod preferredMethod) {
+        this.preferredMethod = preferredMethod;
+    }
+
+    @NotNull
+    @Override
+    public CompressionMethod select(@NotNull String archivePath, @NotNull byte[] head, int headLength) {
+        if (preferredMethod.getCodec() == Codec.STORED || COMPRESSED_EXTENSIONS.contains(getExtension(archivePath))) {
+            return CompressionMethod.STORED;
+        }
+        if (headLength < MIN_SAMPLE_SIZE) {
+            return preferredMethod;
+        }
+
+        int sampleLength = Math.min(headLength, SAMPLE_SIZE);
+        int encodedLength = sampleEncoder.encode(head, sampleLength, sample, 0);
+        return encodedLength == -1 || encodedLength > MAX_SAMPLE_RATIO * sampleLength ? CompressionMethod.STORED : preferredMethod;
+    }
+
+    @NotNull
+    private static String getExtension(@NotNull String archivePath) {
+        int dotIndex = archivePath.lastIndexOf('.');
+        return dotIndex == -1 || archivePath.indexOf(PathUtils.ARCHIVE_FILE_SEPARATOR, dotIndex) != -1 ? "" : archivePath.substring(dotIndex + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,69 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.zip.ZipFile;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.ArchiveFormat} class contains constants describing the layout of the archive written by {@link ru.spbau.kozlov.task02.zip.ZipCompressor}.
+ * <p>
+ * The archive is a zip-file with a single {@link #DATA_ENTRY_NAME} entry deflated with no compression.
+ * The entry is written as a stream, so its size and checksum are not known in advance and it cannot be a stored zip entry,
+ * which means that records are found by their offsets in the entry by reading through the preceding bytes rather than by seeking.
+ * The entry starts with the format version followed by a sequence of records terminated by the {@link #END_RECORD} byte.
+ * Every record starts with its kind and the archive path of the entry. File records then contain the {@link ru.spbau.kozlov.task02.zip.Codec} identifier and a sequence of chunks terminated by an empty chunk.
+ * Reference records contain nothing else, the content of the entry is stored in the base archive named in the index.
+ * Duplicate records contain the archive path of the previous entry with the same content.
+ * Part records contain the offset of the part in the file followed by the same data as file records, they hold the parts of a file split between the volumes.
+ * Every chunk is written as its raw length, its stored length and the stored bytes. Chunks are compressed independently with the codec of the record, a chunk which stored length is equal to the raw one is not compressed at all.
+ * The {@link #DATA_ENTRY_NAME} entry is followed by the {@link #INDEX_ENTRY_NAME} entry containing the {@link ru.spbau.kozlov.task02.zip.ArchiveIndex}.
+ * <p>
+ * A large archive could be split into volumes, each of them is an archive of this format with its own data and index entries, see {@link ru.spbau.kozlov.task02.zip.ArchiveVolumes}.
+ * A file that does not fit into the rest of the volume is continued with a part record in the next one, its first part is written as an ordinary file record
+ * and is distinguished by the index only.
+ * <p>
+ * Archives written with {@link ru.spbau.kozlov.task02.zip.ArchiveLayout#ENTRIES} layout contain a separate zip entry for every file and directory instead,
+ * such archives are marked with the {@link #ENTRIES_LAYOUT_COMMENT} comment.
+ * <p>
+ * Archives in the previous format contain a single {@link #LEGACY_ENTRY_NAME} entry with a sequence of paths, lengths and raw contents, they are still readable.
+ *
+ * @author adkozlov
+ */
+public final class ArchiveFormat {
+
+    public static final String LEGACY_ENTRY_NAME = "root";
+    public static final String DATA_ENTRY_NAME = "data";
+    public static final String INDEX_ENTRY_NAME = "index";
+    public static final String ENTRIES_LAYOUT_COMMENT = "ru.spbau.kozlov.task02 entries";
+    public static final int VERSION = 4;
+    public static final int REFERENCES_VERSION = 3;
+    public static final int PARTS_VERSION = 4;
+
+    public static final byte END_RECORD = 0;
+    public static final byte DIRECTORY_RECORD = 1;
+    public static final byte FILE_RECORD = 2;
+    public static final byte REFERENCE_RECORD = 3;
+    public static final byte DUPLICATE_RECORD = 4;
+    public static final byte PART_RECORD = 5;
+
+    public static final byte STORED_CODEC = 0;
+    public static final byte DEFLATE_CODEC = 1;
+    public static final byte LZ_CODEC = 2;
+
+    public static final int CHUNK_SIZE = 128 * 1024;
+
+    public static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private ArchiveFormat() {
+    }
+
+    /**
+     * Checks if the archive is written in the {@link ru.spbau.kozlov.task02.zip.ArchiveLayout#ENTRIES} layout or by another tool.
+     *
+     * @param zipFile the archive
+     * @return {@code true} if every entry of the archive is a separate zip entry
+     */
+    static boolean isEntriesLayout(@NotNull ZipFile zipFile) {
+        return ENTRIES_LAYOUT_COMMENT.equals(zipFile.getComment()) || zipFile.getEntry(DATA_ENTRY_NAME) == null && zipFile.getEntry(LEGACY_ENTRY_NAME) == null;
+    }
+}
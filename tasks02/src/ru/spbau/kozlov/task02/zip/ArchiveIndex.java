@@ -0,0 +1,357 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.ArchiveIndex} class contains the list of the archive entries with their positions in the archive data stream.
+ * The index is stored in the {@link ru.spbau.kozlov.task02.zip.ArchiveFormat#INDEX_ENTRY_NAME} entry after all the records,
+ * so the archive could be listed or a single entry could be found without reading the contents.
+ * Modification times and digests of the files allow the next archive to reference the unchanged ones instead of storing them again.
+ *
+ * @author adkozlov
+ */
+public class ArchiveIndex {
+
+    @NotNull
+    private final List<Entry> entries;
+    @Nullable
+    private final String baseArchive;
+    @Nullable
+    private Map<String, Entry> entriesByPath = null;
+
+    /**
+     * Constructs a new index with the specified list of entries.
+     *
+     * @param entries     a list of entries in the order of their records
+     * @param baseArchive the path to the archive containing the referenced entries relative to the directory of this archive, or {@code null} if there are no references
+     */
+    public ArchiveIndex(@NotNull List<Entry> entries, @Nullable String baseArchive) {
+        this.entries = entries;
+        this.baseArchive = baseArchive;
+    }
+
+    /**
+     * Returns the path to the archive containing the entries referenced by this archive.
+     *
+     * @return the path relative to the directory of this archive with {@link ru.spbau.kozlov.task02.zip.utils.PathUtils#ARCHIVE_FILE_SEPARATOR} separators,
+     * or {@code null} if there are no references
+     */
+    @Nullable
+    public String getBaseArchive() {
+        return baseArchive;
+    }
+
+    /**
+     * Returns the list of entries in the order of their records.
+     *
+     * @return an unmodifiable list of entries
+     */
+    @NotNull
+    public List<Entry> getEntries() {
+        return Collections.unmodifiableList(entries);
+    }
+
+    /**
+     * Finds the entry with the specified archive path.
+     *
+     * @param archivePath the archive path of the entry
+     * @return the entry or {@code null} if there is no such entry
+     */
+    @Nullable
+    public Entry findEntry(@NotNull String archivePath) {
+        if (entriesByPath == null) {
+            entriesByPath = new HashMap<>(2 * entries.size());
+            for (Entry entry : entries) {
+                entriesByPath.put(entry.getPath(), entry);
+            }
+        }
+        return entriesByPath.get(archivePath);
+    }
+
+    /**
+     * Reads the index from the specified stream. Indices of the version 2 contain neither modification times nor digests,
+     * indices of the version 3 contain no information about the parts of the files split between the volumes.
+     *
+     * @param dataInputStream the stream containing the index
+     * @return the index that was read
+     * @throws IOException if an I/O error occurs or the index version is not supported
+     */
+    @NotNull
+    public static ArchiveIndex read(@NotNull DataInputStream dataInputStream) throws IOException {
+        int version = dataInputStream.readInt();
+        if (version > ArchiveFormat.VERSION) {
+            throw new IOException(String.format("Archive index version %d is not supported", version));
+        }
+
+        String baseArchive = null;
+        if (version >= ArchiveFormat.REFERENCES_VERSION && dataInputStream.readBoolean()) {
+            baseArchive = dataInputStream.readUTF();
+        }
+
+        int count = dataInputStream.readInt();
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte kind = dataInputStream.readByte();
+            String path = dataInputStream.readUTF();
+            long offset = dataInputStream.readLong();
+            long length = dataInputStream.readLong();
+            int crc = dataInputStream.readInt();
+
+            long lastModified = -1;
+            byte[] digest = null;
+            if (version >= ArchiveFormat.REFERENCES_VERSION) {
+                lastModified = dataInputStream.readLong();
+                int digestLength = dataInputStream.readUnsignedByte();
+                if (digestLength != 0) {
+                    digest = new byte[digestLength];
+                    dataInputStream.readFully(digest);
+                }
+            }
+            Entry entry = new Entry(kind, path, offset, length, crc, lastModified, digest);
+            if (version >= ArchiveFormat.PARTS_VERSION && entry.hasContent()) {
+                long partOffset = dataInputStream.readLong();
+                boolean lastPart = dataInputStream.readBoolean();
+                if (partOffset != -1) {
+                    entry.setPart(partOffset, lastPart);
+                }
+            }
+            entries.add(entry);
+        }
+        return new ArchiveIndex(entries, baseArchive);
+    }
+
+    /**
+     * Writes the index to the specified stream.
+     *
+     * @param dataOutputStream the stream to be written to
+     * @throws IOException if an I/O error occurs
+     */
+    public void write(@NotNull DataOutputStream dataOutputStream) throws IOException {
+        dataOutputStream.writeInt(ArchiveFormat.VERSION);
+        dataOutputStream.writeBoolean(baseArchive != null);
+        if (baseArchive != null) {
+            dataOutputStream.writeUTF(baseArchive);
+        }
+
+        dataOutputStream.writeInt(entries.size());
+        for (Entry entry : entries) {
+            dataOutputStream.writeByte(entry.kind);
+            dataOutputStream.writeUTF(entry.path);
+            dataOutputStream.writeLong(entry.offset);
+            dataOutputStream.writeLong(entry.length);
+            dataOutputStream.writeInt(entry.crc);
+            dataOutputStream.writeLong(entry.lastModified);
+            if (entry.digest != null) {
+                dataOutputStream.writeByte(entry.digest.length);
+                dataOutputStream.write(entry.digest);
+            } else {
+                dataOutputStream.writeByte(0);
+            }
+            if (entry.hasContent()) {
+                dataOutputStream.writeLong(entry.partOffset);
+                dataOutputStream.writeBoolean(entry.lastPart);
+            }
+        }
+    }
+
+    /**
+     * The {@link ru.spbau.kozlov.task02.zip.ArchiveIndex.Entry} class describes a single record of the archive.
+     */
+    public static class Entry {
+
+        private final byte kind;
+        @NotNull
+        private final String path;
+        private long offset;
+        private long length;
+        private int crc;
+        private final long lastModified;
+        @Nullable
+        private byte[] digest;
+        private long partOffset = -1;
+        private boolean lastPart = false;
+
+        /**
+         * Constructs a new index entry.
+         *
+         * @param kind         the record kind
+         * @param path         the archive path of the entry
+         * @param offset       the position of the record in the archive data stream
+         * @param length       the length of the entry content
+         * @param crc          the CRC-32 of the entry content
+         * @param lastModified the modification time of the file in milliseconds since the epoch, or -1 if it is not known
+         * @param digest       the {@link ru.spbau.kozlov.task02.zip.ArchiveFormat#DIGEST_ALGORITHM} digest of the entry content, or {@code null} if it is not known
+         */
+        public Entry(byte kind, @NotNull String path, long offset, long length, int crc, long lastModified, @Nullable byte[] digest) {
+            this.kind = kind;
+            this.path = path;
+            this.offset = offset;
+            this.length = length;
+            this.crc = crc;
+            this.lastModified = lastModified;
+            this.digest = digest;
+        }
+
+        /**
+         * Returns the record kind.
+         *
+         * @return one of the record kinds defined in {@link ru.spbau.kozlov.task02.zip.ArchiveFormat}
+         */
+        public byte getKind() {
+            return kind;
+        }
+
+        /**
+         * Checks if the entry content is stored in the base archive.
+         *
+         * @return {@code true} if the entry is a reference
+         */
+        public boolean isReference() {
+            return kind == ArchiveFormat.REFERENCE_RECORD;
+        }
+
+        /**
+         * Checks if the entry content is identical to the content of the previous entry of the archive.
+         *
+         * @return {@code true} if the entry is a duplicate
+         */
+        public boolean isDuplicate() {
+            return kind == ArchiveFormat.DUPLICATE_RECORD;
+        }
+
+        /**
+         * Checks if the entry is a directory.
+         *
+         * @return {@code true} if the entry is a directory
+         */
+        public boolean isDirectory() {
+            return kind == ArchiveFormat.DIRECTORY_RECORD;
+        }
+
+        /**
+         * Checks if the entry contains only a part of the file split between the volumes of the archive.
+         * The first part is stored in a file record, the following ones are stored in part records.
+         *
+         * @return {@code true} if the entry is a part of the file
+         */
+        public boolean isPart() {
+            return partOffset != -1;
+        }
+
+        /**
+         * Returns the position of the entry content in the file split between the volumes.
+         *
+         * @return the number of bytes of the file preceding the part, or -1 if the entry is not a part
+         */
+        public long getPartOffset() {
+            return partOffset;
+        }
+
+        /**
+         * Checks if the entry contains the last part of the file split between the volumes, so it determines the length of the file.
+         *
+         * @return {@code true} if the entry is the last part
+         */
+        public boolean isLastPart() {
+            return lastPart;
+        }
+
+        /**
+         * Returns the archive path of the entry.
+         *
+         * @return the archive path
+         */
+        @NotNull
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Returns the position of the record in the archive data stream.
+         *
+         * @return the number of bytes preceding the record
+         */
+        public long getOffset() {
+            return offset;
+        }
+
+        /**
+         * Returns the length of the entry content.
+         *
+         * @return the number of bytes in the entry content
+         */
+        public long getLength() {
+            return length;
+        }
+
+        /**
+         * Returns the CRC-32 of the entry content.
+         *
+         * @return the checksum
+         */
+        public int getCrc() {
+            return crc;
+        }
+
+        /**
+         * Returns the modification time of the file.
+         *
+         * @return the time in milliseconds since the epoch, or -1 if it is not known
+         */
+        public long getLastModified() {
+            return lastModified;
+        }
+
+        /**
+         * Returns the digest of the entry content.
+         *
+         * @return the {@link ru.spbau.kozlov.task02.zip.ArchiveFormat#DIGEST_ALGORITHM} digest, or {@code null} if it is not known
+         */
+        @Nullable
+        public byte[] getDigest() {
+            return digest;
+        }
+
+        /**
+         * Checks if the content of the specified entry is the same as the content of this entry, that is their lengths, checksums and digests are equal.
+         * Is used to check that the entry of the base archive is still the one referenced by the incremental archive.
+         *
+         * @param entry another index entry
+         * @return {@code true} if the contents are the same
+         */
+        public boolean hasSameContent(@NotNull Entry entry) {
+            return length == entry.length && crc == entry.crc && Arrays.equals(digest, entry.digest);
+        }
+
+        void setOffset(long offset) {
+            this.offset = offset;
+        }
+
+        void setLength(long length) {
+            this.length = length;
+        }
+
+        void setCrc(int crc) {
+            this.crc = crc;
+        }
+
+        void setDigest(@Nullable byte[] digest) {
+            this.digest = digest;
+        }
+
+        void setPart(long partOffset, boolean lastPart) {
+            this.partOffset = partOffset;
+            this.lastPart = lastPart;
+        }
+
+        private boolean hasContent() {
+            return kind == ArchiveFormat.FILE_RECORD || kind == ArchiveFormat.PART_RECORD;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package ru.spbau.kozlov.task02.zip;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.ArchiveLayout} enum lists the ways the entries could be placed in the archive.
+ *
+ * @author adkozlov
+ */
+public enum ArchiveLayout {
+    /**
+     * All the entries are written as chunked records to a single zip entry followed by the index, as described by {@link ru.spbau.kozlov.task02.zip.ArchiveFormat}.
+     * Chunks could be compressed in parallel.
+     */
+    CHUNKED,
+    /**
+     * Every file and directory is written as a separate zip entry with its own size and checksum, so the archive could be read by standard tools.
+     * The archive is marked with the {@link ru.spbau.kozlov.task02.zip.ArchiveFormat#ENTRIES_LAYOUT_COMMENT} comment.
+     */
+    ENTRIES
+}
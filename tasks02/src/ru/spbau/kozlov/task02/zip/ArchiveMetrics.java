@@ -0,0 +1,225 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.ArchiveMetrics} class collects the statistics of the work with the archive:
+ * the number of entries, the length of their raw contents, the number of bytes stored in the archive and the time spent in every {@link Phase}.
+ * Counters could be updated from several threads simultaneously, they are cheap enough to be updated for every chunk.
+ * The time of the phases performed by the worker threads is summed over the threads, so it could exceed the elapsed time.
+ * <p>
+ * The listener is notified by the thread visiting the entries every time an entry is processed, so the progress could be reported.
+ *
+ * @author adkozlov
+ */
+public class ArchiveMetrics {
+
+    /**
+     * The {@link ru.spbau.kozlov.task02.zip.ArchiveMetrics.Phase} enum lists the kinds of work timed separately,
+     * comparing I/O phases to the codec ones shows whether the work is bound by the disk or by the processor.
+     */
+    public enum Phase {
+        /**
+         * Reading the input files or the archive.
+         */
+        READ,
+        /**
+         * Compressing chunks.
+         */
+        COMPRESS,
+        /**
+         * Decompressing chunks.
+         */
+        DECOMPRESS,
+        /**
+         * Writing the archive or the extracted files.
+         */
+        WRITE,
+        /**
+         * Waiting for the worker threads.
+         */
+        WAIT
+    }
+
+    /**
+     * The {@link ru.spbau.kozlov.task02.zip.ArchiveMetrics.Listener} interface receives the notifications of the processed entries.
+     */
+    public interface Listener {
+
+        /**
+         * Is called when the entry is processed. Should return quickly, as the work is not continued until it returns.
+         *
+         * @param archivePath the archive path of the entry
+         * @param metrics     the metrics including the entry
+         */
+        void onEntry(@NotNull String archivePath, @NotNull ArchiveMetrics metrics);
+    }
+
+    @NotNull
+    private final LongAdder entriesCount = new LongAdder();
+    @NotNull
+    private final LongAdder rawBytes = new LongAdder();
+    @NotNull
+    private final LongAdder storedBytes = new LongAdder();
+    @NotNull
+    private final Map<Phase, LongAdder> phaseNanos = new EnumMap<>(Phase.class);
+    private final long startNanos = System.nanoTime();
+    private volatile long stopNanos = -1;
+    @Nullable
+    private volatile Listener listener = null;
+
+    /**
+     * Constructs new metrics, the elapsed time is measured from this moment.
+     */
+    public ArchiveMetrics() {
+        for (Phase phase : Phase.values()) {
+            phaseNanos.put(phase, new LongAdder());
+        }
+    }
+
+    /**
+     * Sets the listener notified of every processed entry.
+     *
+     * @param listener the listener, or {@code null} if no one should be notified
+     */
+    public void setListener(@Nullable Listener listener) {
+        this.listener = listener;
+    }
+
+    void addEntry(@NotNull String archivePath) {
+        entriesCount.increment();
+        Listener currentListener = listener;
+        if (currentListener != null) {
+            currentListener.onEntry(archivePath, this);
+        }
+    }
+
+    void addRawBytes(long count) {
+        rawBytes.add(count);
+    }
+
+    void addStoredBytes(long count) {
+        storedBytes.add(count);
+    }
+
+    void addTime(@NotNull Phase phase, long nanos) {
+        phaseNanos.get(phase).add(nanos);
+    }
+
+    /**
+     * Adds the counters and the phase times of the specified metrics to these ones, the elapsed time is not changed.
+     *
+     * @param metrics the metrics to be added
+     */
+    void add(@NotNull ArchiveMetrics metrics) {
+        entriesCount.add(metrics.getEntriesCount());
+        rawBytes.add(metrics.getRawBytes());
+        storedBytes.add(metrics.getStoredBytes());
+        for (Phase phase : Phase.values()) {
+            addTime(phase, metrics.getPhaseNanos(phase));
+        }
+    }
+
+    void stop() {
+        if (stopNanos == -1) {
+            stopNanos = System.nanoTime();
+        }
+    }
+
+    /**
+     * Returns the number of entries processed: files and directories written to the archive or extracted from it.
+     *
+     * @return the number of entries
+     */
+    public long getEntriesCount() {
+        return entriesCount.sum();
+    }
+
+    /**
+     * Returns the length of the raw contents processed: read from the files during the compression or written to them during the extraction.
+     *
+     * @return the number of raw bytes
+     */
+    public long getRawBytes() {
+        return rawBytes.sum();
+    }
+
+    /**
+     * Returns the number of bytes of the archive processed: written during the compression or read during the extraction.
+     *
+     * @return the number of stored bytes
+     */
+    public long getStoredBytes() {
+        return storedBytes.sum();
+    }
+
+    /**
+     * Returns the time spent in the specified phase summed over all the threads.
+     *
+     * @param phase the phase
+     * @return the time in nanoseconds
+     */
+    public long getPhaseNanos(@NotNull Phase phase) {
+        return phaseNanos.get(phase).sum();
+    }
+
+    /**
+     * Returns the time elapsed since the metrics were constructed until the work was finished.
+     *
+     * @return the time in nanoseconds, the time elapsed so far if the work is not finished
+     */
+    public long getElapsedNanos() {
+        long stop = stopNanos;
+        return (stop != -1 ? stop : System.nanoTime()) - startNanos;
+    }
+
+    /**
+     * Returns the ratio of the stored bytes to the raw ones.
+     *
+     * @return the ratio, or zero if nothing has been processed
+     */
+    public double getCompressionRatio() {
+        long raw = getRawBytes();
+        return raw == 0 ? 0 : (double) getStoredBytes() / raw;
+    }
+
+    /**
+     * Returns the number of entries processed per second.
+     *
+     * @return the rate in entries per second, or zero if no time has elapsed
+     */
+    public double getEntriesPerSecond() {
+        long elapsedNanos = getElapsedNanos();
+        return elapsedNanos == 0 ? 0 : getEntriesCount() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns the number of raw bytes processed per second.
+     *
+     * @return the throughput in bytes per second
+     */
+    public double getThroughput() {
+        long elapsedNanos = getElapsedNanos();
+        return elapsedNanos == 0 ? 0 : getRawBytes() * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder(String.format("%d entries, %d raw bytes, %d stored bytes (ratio %.3f) in %.3f s: %.1f entries/s, %.1f MB/s",
+                getEntriesCount(), getRawBytes(), getStoredBytes(), getCompressionRatio(), getElapsedNanos() / 1e9, getEntriesPerSecond(), getThroughput() / (1024 * 1024)));
+        String separator = System.lineSeparator() + "time by phase (summed over threads): ";
+        for (Phase phase : Phase.values()) {
+            long nanos = getPhaseNanos(phase);
+            if (nanos != 0) {
+                stringBuilder.append(separator).append(String.format("%s %.3f s", phase.name().toLowerCase(), nanos / 1e9));
+                separator = ", ";
+            }
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,242 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.spbau.kozlov.task02.zip.utils.PathUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.ArchiveRepacker} class writes the entries of existing archives to a new archive in the {@link ru.spbau.kozlov.task02.zip.ArchiveLayout#CHUNKED} layout
+ * without extracting them to the file system. Several archives are merged by adding them one after another, a single archive is repacked with another codec.
+ * <p>
+ * The encoded chunks of a file are copied as they are, unless the file is stored with another codec than the specified one, so the work is mostly sequential I/O.
+ * Files of the legacy format, of the {@link ru.spbau.kozlov.task02.zip.ArchiveLayout#ENTRIES} layout and files encoded with another codec are decoded and encoded again.
+ * Entries referencing the base archive are read from it, duplicates are written as duplicates again, so the new archive is self-contained.
+ * If several archives contain an entry with the same path, the entry of the first archive is kept and the error is saved for other files, directories are merged.
+ * The archive is written to a temporary file next to the output one, which is replaced when the repacker is closed, so the output could be one of the inputs.
+ *
+ * @author adkozlov
+ */
+public class ArchiveRepacker extends ExceptionsContainer {
+
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    @NotNull
+    private final Path outputFilePath;
+    @NotNull
+    private final Path tempFilePath;
+    @Nullable
+    private final Codec codec;
+    @NotNull
+    private final ZipOutputStream zipOutputStream;
+    @NotNull
+    private final RecordWriter recordWriter;
+    @NotNull
+    private final Set<String> writtenPaths = new HashSet<>();
+
+    /**
+     * Constructs a new repacker writing the specified archive.
+     *
+     * @param outputFilePath the path to the output archive
+     * @param threadsCount   the number of threads encoding file contents
+     * @param method         the compression method of the output archive, or {@code null} if the codecs of the files should be kept
+     * @throws IOException if an I/O error occurs during creating the archive file
+     * @throws SecurityException if the archive file cannot be created because of the security violation
+     */
+    public ArchiveRepacker(@NotNull Path outputFilePath, int threadsCount, @Nullable CompressionMethod method) throws IOException, SecurityException {
+        if (threadsCount < 1) {
+            throw new IllegalArgumentException("Threads count should be positive");
+        }
+        this.outputFilePath = outputFilePath;
+        codec = method != null ? method.getCodec() : null;
+
+        tempFilePath = outputFilePath.resolveSibling("." + outputFilePath.getFileName().toString() + TEMP_FILE_SUFFIX);
+        zipOutputStream = new ZipOutputStream(Files.newOutputStream(tempFilePath));
+        try {
+            recordWriter = new RecordWriter(zipOutputStream, threadsCount, null, new AdaptiveCodecSelector(method != null ? method : CompressionMethod.DEFAULT), getMetrics());
+        } catch (IOException e) {
+            zipOutputStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Writes all the entries of the specified archive to the output archive. Errors of reading the archive are saved, so the next archive could be added anyway.
+     *
+     * @param inputFilePath the path to the archive
+     * @throws IOException if an I/O error occurs during writing the output archive
+     */
+    public void addArchive(@NotNull Path inputFilePath) throws IOException {
+        try (SourceVisitor sourceVisitor = new SourceVisitor(inputFilePath)) {
+            try {
+                sourceVisitor.visitAllEntries();
+            } finally {
+                getMetrics().addTime(ArchiveMetrics.Phase.DECOMPRESS, sourceVisitor.getMetrics().getPhaseNanos(ArchiveMetrics.Phase.DECOMPRESS));
+            }
+        } catch (IOException e) {
+            if (recordWriter.hasIOErrorOccurred()) {
+                throw e;
+            }
+            addException(e);
+        }
+    }
+
+    /**
+     * Finishes the output archive, replaces the output file with it and closes this repacker.
+     * If the archive cannot be written, the output file is left intact.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            try {
+                recordWriter.finish();
+            } finally {
+                recordWriter.close();
+                zipOutputStream.close();
+            }
+            if (recordWriter.hasIOErrorOccurred()) {
+                deleteTempFile();
+            } else {
+                Files.move(tempFilePath, outputFilePath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            addException(e);
+            deleteTempFile();
+        } finally {
+            super.close();
+        }
+    }
+
+    private void deleteTempFile() {
+        try {
+            Files.deleteIfExists(tempFilePath);
+        } catch (IOException e) {
+            addException(e);
+        }
+    }
+
+    /**
+     * Reads the entries of the source archive and passes them to the writer. The entries are counted by the writer, so the visitor keeps its own metrics.
+     */
+    private class SourceVisitor extends AbstractZipEntryVisitor {
+
+        @NotNull
+        private final Path inputFilePath;
+        @Nullable
+        private final ArchiveIndex index;
+
+        public SourceVisitor(@NotNull Path inputFilePath) throws IOException {
+            super(inputFilePath);
+            this.inputFilePath = inputFilePath;
+            try {
+                index = readIndex();
+            } catch (IOException e) {
+                super.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Writes the directory entry, or the legacy file entry which content is read entirely.
+         *
+         * @param path    a path of the specified entry
+         * @param content an array of bytes containing the entry content, or {@code null} for directories
+         */
+        @Override
+        protected void onEntryVisit(@NotNull Path path, @Nullable byte[] content) {
+            String archivePath = PathUtils.convertOSPathToArchivePath(path.toString());
+            try {
+                if (content == null) {
+                    if (writtenPaths.add(archivePath)) {
+                        recordWriter.writeDirectory(archivePath);
+                    }
+                } else if (addFilePath(archivePath)) {
+                    recordWriter.writeFile(archivePath, -1, new ByteArrayInputStream(content));
+                }
+            } catch (IOException e) {
+                addException(e);
+            }
+        }
+
+        /**
+         * Writes the file entry. The encoded chunks are copied if the codec matches and the index describes the entry,
+         * otherwise the content is decoded and encoded again. Files known to be identical to the written ones are written as duplicates.
+         *
+         * @param path    a path of the specified entry
+         * @param content the entry content
+         * @throws IOException if an I/O error occurs during reading the archive file or writing the output archive
+         */
+        @Override
+        protected void onFileEntryVisit(@NotNull Path path, @NotNull final EntryContent content) throws IOException {
+            String archivePath = PathUtils.convertOSPathToArchivePath(path.toString());
+            if (!addFilePath(archivePath)) {
+                return;
+            }
+
+            ArchiveIndex.Entry indexEntry = index != null ? index.findEntry(archivePath) : null;
+            if (indexEntry == null) {
+                recordWriter.writeFile(archivePath, -1, content.openStream());
+                return;
+            }
+            if (writeDuplicate(archivePath, indexEntry)) {
+                return;
+            }
+
+            Codec contentCodec = content.getCodec();
+            if (content.canTransferEncoded() && contentCodec != null && (codec == null || codec == contentCodec)) {
+                recordWriter.copyFile(archivePath, indexEntry.getLastModified(), indexEntry.getLength(), indexEntry.getCrc(), indexEntry.getDigest(), contentCodec,
+                        new RecordWriter.EncodedContent() {
+                            @Override
+                            public long transferTo(@NotNull OutputStream outputStream) throws IOException {
+                                return content.transferEncodedTo(outputStream);
+                            }
+                        });
+            } else {
+                recordWriter.writeFile(archivePath, indexEntry.getLastModified(), content.openStream());
+            }
+        }
+
+        /**
+         * Writes the duplicate entry if the original has been written, otherwise the content of the original is read again.
+         *
+         * @param path          a path of the specified entry
+         * @param originalEntry the index entry of the original
+         * @throws IOException if an I/O error occurs during reading the archive file or writing the output archive
+         */
+        @Override
+        protected void onDuplicateEntryVisit(@NotNull Path path, @NotNull ArchiveIndex.Entry originalEntry) throws IOException {
+            String archivePath = PathUtils.convertOSPathToArchivePath(path.toString());
+            ArchiveIndex.Entry indexEntry = index != null ? index.findEntry(archivePath) : null;
+            if (indexEntry != null && !writtenPaths.contains(archivePath) && writeDuplicate(archivePath, indexEntry)) {
+                writtenPaths.add(archivePath);
+                return;
+            }
+            super.onDuplicateEntryVisit(path, originalEntry);
+        }
+
+        private boolean writeDuplicate(@NotNull String archivePath, @NotNull ArchiveIndex.Entry indexEntry) throws IOException {
+            byte[] digest = indexEntry.getDigest();
+            return digest != null && recordWriter.containsFileOfLength(indexEntry.getLength())
+                    && recordWriter.writeDuplicate(archivePath, indexEntry.getLastModified(), indexEntry.getLength(), digest);
+        }
+
+        private boolean addFilePath(@NotNull String archivePath) {
+            if (!writtenPaths.add(archivePath)) {
+                addException(String.format("Entry \'%s\' is already written, the entry of \'%s\' is skipped", archivePath, inputFilePath.toString()));
+                return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.ArchiveVolumes} class names the volumes of the archive split by {@link ru.spbau.kozlov.task02.zip.ZipCompressor}.
+ * Volumes are stored next to each other and are named after the archive with the volume number inserted before the extension,
+ * so the volumes of the archive "data.zip" are "data.001.zip", "data.002.zip" and so on.
+ *
+ * @author adkozlov
+ */
+public final class ArchiveVolumes {
+
+    private ArchiveVolumes() {
+    }
+
+    /**
+     * Returns the path to the volume of the archive with the specified number.
+     *
+     * @param archivePath the path to the archive
+     * @param number      the number of the volume starting from one
+     * @return the path to the volume
+     */
+    @NotNull
+    public static Path getVolumePath(@NotNull Path archivePath, int number) {
+        String fileName = archivePath.getFileName().toString();
+        int dotIndex = fileName.lastIndexOf('.');
+        String volumeName = dotIndex > 0
+                ? String.format("%s.%03d%s", fileName.substring(0, dotIndex), number, fileName.substring(dotIndex))
+                : String.format("%s.%03d", fileName, number);
+        return archivePath.resolveSibling(volumeName);
+    }
+
+    /**
+     * Checks if the archive is split into volumes, that is there is no archive file itself but its first volume exists.
+     *
+     * @param archivePath the path to the archive
+     * @return {@code true} if the archive is split into volumes
+     */
+    public static boolean isSplit(@NotNull Path archivePath) {
+        return !Files.exists(archivePath) && Files.exists(getVolumePath(archivePath, 1));
+    }
+
+    /**
+     * Finds all the volumes of the archive. The volumes are numbered consecutively, so the search stops at the first missing one.
+     *
+     * @param archivePath the path to the archive
+     * @return a list of volumes paths in the order of their numbers, or the archive path itself if the archive is not split
+     */
+    @NotNull
+    public static List<Path> findVolumes(@NotNull Path archivePath) {
+        if (!isSplit(archivePath)) {
+            return Collections.singletonList(archivePath);
+        }
+
+        List<Path> volumes = new ArrayList<>();
+        for (Path volumePath = getVolumePath(archivePath, 1); Files.exists(volumePath); volumePath = getVolumePath(archivePath, volumes.size() + 1)) {
+            volumes.add(volumePath);
+        }
+        return volumes;
+    }
+}
@@ -0,0 +1,30 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.ChunkDecoder} interface describes the decompressing side of a {@link ru.spbau.kozlov.task02.zip.Codec}.
+ * A decoder is used by one thread at a time and could be reused for any number of chunks.
+ *
+ * @author adkozlov
+ */
+interface ChunkDecoder {
+
+    /**
+     * Decompresses the chunk.
+     *
+     * @param encoded       the array containing the compressed chunk
+     * @param encodedLength the length of the compressed chunk
+     * @param raw           the array to write the raw chunk to
+     * @param rawLength     the expected length of the raw chunk
+     * @throws IOException if the chunk is corrupted
+     */
+    void decode(@NotNull byte[] encoded, int encodedLength, @NotNull byte[] raw, int rawLength) throws IOException;
+
+    /**
+     * Releases the resources held by the decoder.
+     */
+    void end();
+}
@@ -0,0 +1,28 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.ChunkEncoder} interface describes the compressing side of a {@link ru.spbau.kozlov.task02.zip.Codec}.
+ * An encoder is used by one thread at a time and could be reused for any number of chunks.
+ *
+ * @author adkozlov
+ */
+interface ChunkEncoder {
+
+    /**
+     * Compresses the raw chunk.
+     *
+     * @param raw       the array containing the raw chunk
+     * @param rawLength the length of the raw chunk
+     * @param encoded   the array to write the compressed chunk to, its length is not less than the raw length
+     * @param level     the compression level of the {@link ru.spbau.kozlov.task02.zip.CompressionMethod}
+     * @return the length of the compressed chunk, or -1 if the compressed chunk would not be shorter than the raw one
+     */
+    int encode(@NotNull byte[] raw, int rawLength, @NotNull byte[] encoded, int level);
+
+    /**
+     * Releases the resources held by the encoder.
+     */
+    void end();
+}
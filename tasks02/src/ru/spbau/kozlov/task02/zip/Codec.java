@@ -0,0 +1,179 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.Codec} enum lists the ways the chunks of a file record could be compressed.
+ * The codec is chosen for every file separately and its identifier is written to the record header, see {@link ru.spbau.kozlov.task02.zip.ArchiveFormat}.
+ * Whatever the codec is, a chunk that cannot be compressed is stored as is.
+ *
+ * @author adkozlov
+ */
+public enum Codec {
+    /**
+     * Chunks are stored without compression.
+     */
+    STORED(ArchiveFormat.STORED_CODEC) {
+        @NotNull
+        @Override
+        ChunkEncoder createEncoder() {
+            return new ChunkEncoder() {
+                @Override
+                public int encode(@NotNull byte[] raw, int rawLength, @NotNull byte[] encoded, int level) {
+                    return -1;
+                }
+
+                @Override
+                public void end() {
+                }
+            };
+        }
+
+        @NotNull
+        @Override
+        ChunkDecoder createDecoder() {
+            return new ChunkDecoder() {
+                @Override
+                public void decode(@NotNull byte[] encoded, int encodedLength, @NotNull byte[] raw, int rawLength) throws IOException {
+                    throw new IOException("Corrupted chunk: stored chunk is shorter than the raw one");
+                }
+
+                @Override
+                public void end() {
+                }
+            };
+        }
+    },
+    /**
+     * Chunks are compressed independently with the raw deflate of the specified level.
+     */
+    DEFLATE(ArchiveFormat.DEFLATE_CODEC) {
+        @NotNull
+        @Override
+        ChunkEncoder createEncoder() {
+            return new DeflateEncoder();
+        }
+
+        @NotNull
+        @Override
+        ChunkDecoder createDecoder() {
+            return new InflateDecoder();
+        }
+    },
+    /**
+     * Chunks are compressed with the fast LZ77-family codec that trades the compression ratio for speed, see {@link ru.spbau.kozlov.task02.zip.LzChunkCodec}.
+     */
+    LZ(ArchiveFormat.LZ_CODEC) {
+        @NotNull
+        @Override
+        ChunkEncoder createEncoder() {
+            return new LzChunkCodec.Encoder();
+        }
+
+        @NotNull
+        @Override
+        ChunkDecoder createDecoder() {
+            return new LzChunkCodec.Decoder();
+        }
+    };
+
+    private final byte id;
+
+    Codec(byte id) {
+        this.id = id;
+    }
+
+    /**
+     * Returns the identifier of the codec written to the record header.
+     *
+     * @return the codec identifier
+     */
+    public byte getId() {
+        return id;
+    }
+
+    /**
+     * Returns the codec with the specified identifier.
+     *
+     * @param id the codec identifier
+     * @return the codec
+     * @throws IOException if the codec is unknown
+     */
+    @NotNull
+    public static Codec fromId(byte id) throws IOException {
+        for (Codec codec : values()) {
+            if (codec.id == id) {
+                return codec;
+            }
+        }
+        throw new IOException(String.format("Unknown codec %d", id));
+    }
+
+    @NotNull
+    abstract ChunkEncoder createEncoder();
+
+    @NotNull
+    abstract ChunkDecoder createDecoder();
+
+    private static class DeflateEncoder implements ChunkEncoder {
+
+        @NotNull
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+
+        @Override
+        public int encode(@NotNull byte[] raw, int rawLength, @NotNull byte[] encoded, int level) {
+            deflater.reset();
+            deflater.setLevel(level);
+            deflater.setInput(raw, 0, rawLength);
+            deflater.finish();
+
+            int encodedLength = 0;
+            while (!deflater.finished() && encodedLength < rawLength) {
+                encodedLength += deflater.deflate(encoded, encodedLength, rawLength - encodedLength);
+            }
+            return deflater.finished() && encodedLength < rawLength ? encodedLength : -1;
+        }
+
+        @Override
+        public void end() {
+            deflater.end();
+        }
+    }
+
+    private static class InflateDecoder implements ChunkDecoder {
+
+        @NotNull
+        private final Inflater inflater = new Inflater(true);
+
+        @Override
+        public void decode(@NotNull byte[] encoded, int encodedLength, @NotNull byte[] raw, int rawLength) throws IOException {
+            inflater.reset();
+            inflater.setInput(encoded, 0, encodedLength);
+            try {
+                int inflatedLength = 0;
+                while (inflatedLength < rawLength && !inflater.finished()) {
+                    int count = inflater.inflate(raw, inflatedLength, rawLength - inflatedLength);
+                    if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    inflatedLength += count;
+                }
+                if (inflatedLength != rawLength) {
+                    throw new IOException(String.format("Corrupted chunk: %d of %d bytes inflated", inflatedLength, rawLength));
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupted chunk", e);
+            }
+        }
+
+        @Override
+        public void end() {
+            inflater.end();
+        }
+    }
+}
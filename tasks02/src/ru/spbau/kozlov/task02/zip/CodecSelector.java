@@ -0,0 +1,24 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.CodecSelector} interface describes a strategy choosing the {@link ru.spbau.kozlov.task02.zip.CompressionMethod} for every file entry.
+ * The method is chosen when the first chunk of the file is read, so the selector could look at the file name as well as at the beginning of the content.
+ * Selectors are called by the thread putting entries to the archive only.
+ *
+ * @author adkozlov
+ */
+public interface CodecSelector {
+
+    /**
+     * Chooses the compression method of the file entry.
+     *
+     * @param archivePath the archive path of the file
+     * @param head        the array containing the beginning of the file content
+     * @param headLength  the number of bytes of the content in the array
+     * @return the compression method
+     */
+    @NotNull
+    CompressionMethod select(@NotNull String archivePath, @NotNull byte[] head, int headLength);
+}
@@ -0,0 +1,103 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.zip.Deflater;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.CompressionMethod} class describes how the content of a file entry is compressed: the {@link ru.spbau.kozlov.task02.zip.Codec} and its level.
+ * Only the codec is written to the archive, the level is needed for compression only.
+ *
+ * @author adkozlov
+ */
+public final class CompressionMethod {
+
+    /**
+     * Content is stored without compression.
+     */
+    public static final CompressionMethod STORED = new CompressionMethod(Codec.STORED, 0);
+    /**
+     * Content is compressed with the fast {@link ru.spbau.kozlov.task02.zip.Codec#LZ} codec.
+     */
+    public static final CompressionMethod FAST = new CompressionMethod(Codec.LZ, 0);
+    /**
+     * Content is compressed with the deflate of the default level.
+     */
+    public static final CompressionMethod DEFAULT = new CompressionMethod(Codec.DEFLATE, Deflater.DEFAULT_COMPRESSION);
+
+    private static final String STORED_NAME = "store";
+    private static final String FAST_NAME = "fast";
+    private static final String DEFLATE_NAME = "deflate";
+
+    @NotNull
+    private final Codec codec;
+    private final int level;
+
+    private CompressionMethod(@NotNull Codec codec, int level) {
+        this.codec = codec;
+        this.level = level;
+    }
+
+    /**
+     * Returns the method compressing content with the deflate of the specified level.
+     *
+     * @param level the compression level from 1 to 9
+     * @return the compression method
+     * @throws IllegalArgumentException if the level is out of range
+     */
+    @NotNull
+    public static CompressionMethod deflate(int level) {
+        if (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException(String.format("Deflate level should be from %d to %d", Deflater.BEST_SPEED, Deflater.BEST_COMPRESSION));
+        }
+        return new CompressionMethod(Codec.DEFLATE, level);
+    }
+
+    /**
+     * Parses the method name: "store", "fast", "deflate" or "deflate:level".
+     *
+     * @param name the method name
+     * @return the compression method
+     * @throws IllegalArgumentException if the name is not valid
+     */
+    @NotNull
+    public static CompressionMethod parse(@NotNull String name) {
+        switch (name) {
+            case STORED_NAME:
+                return STORED;
+            case FAST_NAME:
+                return FAST;
+            case DEFLATE_NAME:
+                return DEFAULT;
+            default:
+                if (name.startsWith(DEFLATE_NAME + ":")) {
+                    try {
+                        return deflate(Integer.parseInt(name.substring(DEFLATE_NAME.length() + 1)));
+                    } catch (NumberFormatException ignored) {
+                    }
+                }
+                throw new IllegalArgumentException(String.format("\'%s\' is not a valid compression method", name));
+        }
+    }
+
+    @NotNull
+    public Codec getCodec() {
+        return codec;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+
+    @Override
+    public String toString() {
+        switch (codec) {
+            case STORED:
+                return STORED_NAME;
+            case LZ:
+                return FAST_NAME;
+            default:
+                return level == Deflater.DEFAULT_COMPRESSION ? DEFLATE_NAME : DEFLATE_NAME + ":" + level;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Interface for writing entries to the archive in one of the {@link ru.spbau.kozlov.task02.zip.ArchiveLayout}s.
+ * If an I/O error occurs during writing, the archive is considered broken and nothing else is written.
+ *
+ * @author adkozlov
+ */
+interface EntryWriter extends Closeable {
+
+    /**
+     * Writes the directory entry.
+     *
+     * @param archivePath the archive path of the directory
+     * @throws IOException if an I/O error occurs
+     */
+    void writeDirectory(@NotNull String archivePath) throws IOException;
+
+    /**
+     * Writes the file entry with the content read from the specified stream until the end of the stream is reached.
+     *
+     * @param archivePath  the archive path of the file
+     * @param lastModified the modification time of the file in milliseconds since the epoch, or -1 if it is not known
+     * @param inputStream  the stream containing the file content
+     * @throws IOException if an I/O error occurs during writing to the archive
+     */
+    void writeFile(@NotNull String archivePath, long lastModified, @NotNull InputStream inputStream) throws IOException;
+
+    /**
+     * Writes the file entry which content is stored in the base archive.
+     *
+     * @param archivePath  the archive path of the file
+     * @param lastModified the modification time of the file in milliseconds since the epoch
+     * @param baseEntry    the entry of the base archive index with the same content
+     * @throws IOException if an I/O error occurs during writing to the archive
+     * @throws UnsupportedOperationException if the layout does not support references
+     */
+    void writeReference(@NotNull String archivePath, long lastModified, @NotNull ArchiveIndex.Entry baseEntry) throws IOException;
+
+    /**
+     * Checks if a file of the specified length has been written, so the next file of the same length could turn out to be its duplicate.
+     *
+     * @param length the length of the file content
+     * @return {@code true} if there is a file of the same length and the layout supports duplicates
+     */
+    boolean containsFileOfLength(long length);
+
+    /**
+     * Writes the file entry as a duplicate of the previously written file with the same content, if there is such file.
+     *
+     * @param archivePath  the archive path of the file
+     * @param lastModified the modification time of the file in milliseconds since the epoch, or -1 if it is not known
+     * @param length       the length of the file content
+     * @param digest       the {@link ru.spbau.kozlov.task02.zip.ArchiveFormat#DIGEST_ALGORITHM} digest of the file content
+     * @return {@code true} if the duplicate was written, {@code false} if the file should be written as usual
+     * @throws IOException if an I/O error occurs during writing to the archive
+     */
+    boolean writeDuplicate(@NotNull String archivePath, long lastModified, long length, @NotNull byte[] digest) throws IOException;
+
+    /**
+     * Writes everything that is still pending and finishes the archive layout.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    void finish() throws IOException;
+
+    /**
+     * Checks if an I/O error occurred during writing to the archive.
+     *
+     * @return {@code true} if an I/O error has occurred
+     */
+    boolean hasIOErrorOccurred();
+
+    /**
+     * Releases the resources used by the writer. The archive stream itself is not closed.
+     */
+    @Override
+    void close();
+}
@@ -10,6 +10,8 @@ import java.io.IOException;
  * The {@link ru.spbau.kozlov.task02.zip.ExceptionsContainer} class implements an abstract resource with an error storage.
  * If some I/O error occurs during working with this resource, the work could be continued without a break.
  * {@link java.io.IOException} that had occurred would be saved in the storage and thrown after the work with the resource is done.
+ * Errors could be saved from several threads simultaneously.
+ * The {@link ru.spbau.kozlov.task02.zip.ArchiveMetrics} of the work are collected from the construction of the resource until it is closed.
  *
  * @author adkozlov
  */
@@ -17,6 +19,18 @@ public abstract class ExceptionsContainer implements Closeable {
 
     @Nullable
     private IOException containedException;
+    @NotNull
+    private final ArchiveMetrics metrics = new ArchiveMetrics();
+
+    /**
+     * Returns the metrics of the work with this resource, they could be queried while the work is in progress.
+     *
+     * @return the metrics
+     */
+    @NotNull
+    public ArchiveMetrics getMetrics() {
+        return metrics;
+    }
 
     /**
      * Closes the resource and throws the first exception contained in the storage.
@@ -26,8 +40,13 @@ public abstract class ExceptionsContainer implements Closeable {
      */
     @Override
     public void close() throws IOException {
-        if (containedException != null) {
-            throw containedException;
+        metrics.stop();
+        IOException exception;
+        synchronized (this) {
+            exception = containedException;
+        }
+        if (exception != null) {
+            throw exception;
         }
     }
 
@@ -36,7 +55,7 @@ public abstract class ExceptionsContainer implements Closeable {
      *
      * @param exception an exception to be saved
      */
-    protected void addException(@NotNull IOException exception) {
+    protected synchronized void addException(@NotNull IOException exception) {
         if (containedException != null) {
             containedException.addSuppressed(exception);
         } else {
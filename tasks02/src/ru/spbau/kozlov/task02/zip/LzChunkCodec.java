@@ -0,0 +1,190 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.LzChunkCodec} class implements the {@link ru.spbau.kozlov.task02.zip.Codec#LZ} codec.
+ * The chunk is encoded as a sequence of literal runs followed by back references, laid out as LZ4 blocks:
+ * a token with the literals length in the high nibble and the match length minus four in the low nibble,
+ * extra length bytes for the nibbles equal to 15, the literals, then the two bytes little-endian match offset.
+ * The last sequence contains literals only. Matches are found greedily through a hash table of four byte sequences,
+ * so the encoder is several times faster than deflate at the cost of the compression ratio.
+ *
+ * @author adkozlov
+ */
+final class LzChunkCodec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_SEARCH_LIMIT = 12;
+    private static final int MAX_OFFSET = 0xFFFF;
+    private static final int RUN_MASK = 0x0F;
+    private static final int HASH_LOG = 14;
+    private static final int SKIP_STRENGTH = 6;
+
+    private LzChunkCodec() {
+    }
+
+    private static int readInt(@NotNull byte[] bytes, int offset) {
+        return (bytes[offset] & 0xFF) | (bytes[offset + 1] & 0xFF) << 8 | (bytes[offset + 2] & 0xFF) << 16 | (bytes[offset + 3] & 0xFF) << 24;
+    }
+
+    private static int hash(int value) {
+        return (value * -1640531535) >>> (Integer.SIZE - HASH_LOG);
+    }
+
+    static class Encoder implements ChunkEncoder {
+
+        @NotNull
+        private final int[] hashTable = new int[1 << HASH_LOG];
+
+        /**
+         * Compresses the raw chunk. The compression level is ignored.
+         */
+        @Override
+        public int encode(@NotNull byte[] raw, int rawLength, @NotNull byte[] encoded, int level) {
+            Arrays.fill(hashTable, -1);
+            int limit = rawLength - 1;
+            int outputPosition = 0;
+            int anchor = 0;
+            int position = 0;
+
+            while (position < rawLength - MATCH_SEARCH_LIMIT) {
+                int value = readInt(raw, position);
+                int hash = hash(value);
+                int reference = hashTable[hash];
+                hashTable[hash] = position;
+
+                if (reference < 0 || position - reference > MAX_OFFSET || readInt(raw, reference) != value) {
+                    position += 1 + ((position - anchor) >>> SKIP_STRENGTH);
+                    continue;
+                }
+
+                int matchLength = MIN_MATCH;
+                while (position + matchLength < rawLength - LAST_LITERALS && raw[reference + matchLength] == raw[position + matchLength]) {
+                    matchLength++;
+                }
+
+                outputPosition = writeSequence(raw, anchor, position - anchor, position - reference, matchLength, encoded, outputPosition, limit);
+                if (outputPosition < 0) {
+                    return -1;
+                }
+                position += matchLength;
+                anchor = position;
+            }
+
+            outputPosition = writeSequence(raw, anchor, rawLength - anchor, 0, 0, encoded, outputPosition, limit);
+            return outputPosition;
+        }
+
+        private static int writeSequence(@NotNull byte[] raw, int literalsOffset, int literalsLength, int offset, int matchLength,
+                                         @NotNull byte[] encoded, int outputPosition, int limit) {
+            int matchRun = matchLength == 0 ? 0 : matchLength - MIN_MATCH;
+            int required = 1 + literalsLength / 255 + 1 + literalsLength + (matchLength == 0 ? 0 : 2 + matchRun / 255 + 1);
+            if (outputPosition + required > limit) {
+                return -1;
+            }
+
+            int tokenPosition = outputPosition++;
+            int token = Math.min(literalsLength, RUN_MASK) << 4;
+            outputPosition = writeLength(literalsLength, encoded, outputPosition);
+            System.arraycopy(raw, literalsOffset, encoded, outputPosition, literalsLength);
+            outputPosition += literalsLength;
+
+            if (matchLength != 0) {
+                encoded[outputPosition++] = (byte) offset;
+                encoded[outputPosition++] = (byte) (offset >>> 8);
+                token |= Math.min(matchRun, RUN_MASK);
+                outputPosition = writeLength(matchRun, encoded, outputPosition);
+            }
+            encoded[tokenPosition] = (byte) token;
+            return outputPosition;
+        }
+
+        private static int writeLength(int length, @NotNull byte[] encoded, int outputPosition) {
+            if (length >= RUN_MASK) {
+                length -= RUN_MASK;
+                while (length >= 255) {
+                    encoded[outputPosition++] = (byte) 255;
+                    length -= 255;
+                }
+                encoded[outputPosition++] = (byte) length;
+            }
+            return outputPosition;
+        }
+
+        @Override
+        public void end() {
+        }
+    }
+
+    static class Decoder implements ChunkDecoder {
+
+        @Override
+        public void decode(@NotNull byte[] encoded, int encodedLength, @NotNull byte[] raw, int rawLength) throws IOException {
+            int inputPosition = 0;
+            int outputPosition = 0;
+            try {
+                while (true) {
+                    int token = encoded[inputPosition++] & 0xFF;
+
+                    int literalsLength = token >>> 4;
+                    if (literalsLength == RUN_MASK) {
+                        int lengthByte;
+                        do {
+                            lengthByte = encoded[inputPosition++] & 0xFF;
+                            literalsLength += lengthByte;
+                        } while (lengthByte == 255);
+                    }
+                    if (inputPosition + literalsLength > encodedLength || outputPosition + literalsLength > rawLength) {
+                        throw new IOException("Corrupted chunk: literals are out of bounds");
+                    }
+                    System.arraycopy(encoded, inputPosition, raw, outputPosition, literalsLength);
+                    inputPosition += literalsLength;
+                    outputPosition += literalsLength;
+                    if (inputPosition == encodedLength) {
+                        break;
+                    }
+
+                    int offset = (encoded[inputPosition] & 0xFF) | (encoded[inputPosition + 1] & 0xFF) << 8;
+                    inputPosition += 2;
+                    int matchLength = token & RUN_MASK;
+                    if (matchLength == RUN_MASK) {
+                        int lengthByte;
+                        do {
+                            lengthByte = encoded[inputPosition++] & 0xFF;
+                            matchLength += lengthByte;
+                        } while (lengthByte == 255);
+                    }
+                    matchLength += MIN_MATCH;
+                    if (offset == 0 || offset > outputPosition || outputPosition + matchLength > rawLength) {
+                        throw new IOException("Corrupted chunk: match is out of bounds");
+                    }
+
+                    int matchPosition = outputPosition - offset;
+                    if (offset >= matchLength) {
+                        System.arraycopy(raw, matchPosition, raw, outputPosition, matchLength);
+                        outputPosition += matchLength;
+                    } else {
+                        for (int i = 0; i < matchLength; i++) {
+                            raw[outputPosition++] = raw[matchPosition++];
+                        }
+                    }
+                }
+            } catch (ArrayIndexOutOfBoundsException e) {
+                throw new IOException("Corrupted chunk", e);
+            }
+
+            if (outputPosition != rawLength) {
+                throw new IOException(String.format("Corrupted chunk: %d of %d bytes decoded", outputPosition, rawLength));
+            }
+        }
+
+        @Override
+        public void end() {
+        }
+    }
+}
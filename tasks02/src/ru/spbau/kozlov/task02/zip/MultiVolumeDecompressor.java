@@ -0,0 +1,198 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.MultiVolumeDecompressor} class extracts the archive split into volumes by {@link ru.spbau.kozlov.task02.zip.ZipCompressor}.
+ * Every volume is decoded independently by its own {@link ru.spbau.kozlov.task02.zip.ZipDecompressor}, the specified number of volumes is extracted at the same time.
+ * If some volume cannot be extracted, the error is saved and the other volumes are extracted anyway.
+ * <p>
+ * The names of the completely extracted volumes are appended to the hidden progress file in the current folder, which is deleted when the whole archive is extracted.
+ * If the extraction is interrupted or fails, the next extraction of the same archive to the same folder resumes it: the volumes listed in the progress file are skipped.
+ * The volumes share the {@link #getMetrics} of the decompressor, so its listener is notified by the threads extracting the volumes concurrently.
+ *
+ * @author adkozlov
+ */
+public class MultiVolumeDecompressor extends ExceptionsContainer {
+
+    private static final String PROGRESS_FILE_SUFFIX = ".progress";
+
+    @NotNull
+    private final List<Path> volumes;
+    @NotNull
+    private final Path progressFilePath;
+    private final int threadsCount;
+    @Nullable
+    private BufferedWriter progressWriter = null;
+
+    /**
+     * Constructs a new decompressor of the split archive.
+     *
+     * @param archivePath  the path to the archive, the volumes are found by {@link ru.spbau.kozlov.task02.zip.ArchiveVolumes#findVolumes}
+     * @param threadsCount the number of volumes extracted simultaneously
+     */
+    public MultiVolumeDecompressor(@NotNull Path archivePath, int threadsCount) {
+        if (threadsCount < 1) {
+            throw new IllegalArgumentException("Threads count should be positive");
+        }
+        this.threadsCount = threadsCount;
+        volumes = ArchiveVolumes.findVolumes(archivePath);
+        progressFilePath = Paths.get("." + archivePath.getFileName().toString() + PROGRESS_FILE_SUFFIX);
+    }
+
+    /**
+     * Returns the number of volumes of the archive.
+     *
+     * @return the number of volumes found
+     */
+    public int getVolumesCount() {
+        return volumes.size();
+    }
+
+    /**
+     * Extracts the contents of all the volumes to the current folder, skipping the volumes extracted by the previous interrupted extraction.
+     * Returns after all the volumes are processed.
+     *
+     * @throws IOException if an I/O error occurs during reading or writing the progress file
+     */
+    public void extractAllEntries() throws IOException {
+        Set<String> extractedVolumes = readProgress();
+        List<Path> pendingVolumes = new ArrayList<>();
+        for (Path volume : volumes) {
+            if (!extractedVolumes.contains(volume.getFileName().toString())) {
+                pendingVolumes.add(volume);
+            }
+        }
+
+        int failuresCount;
+        try (BufferedWriter writer = Files.newBufferedWriter(progressFilePath, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            progressWriter = writer;
+            failuresCount = extractVolumes(pendingVolumes, null);
+        } finally {
+            progressWriter = null;
+        }
+
+        if (failuresCount == 0) {
+            Files.deleteIfExists(progressFilePath);
+        }
+    }
+
+    /**
+     * Extracts the entries which paths match the specified matcher from all the volumes, as {@link ru.spbau.kozlov.task02.zip.ZipDecompressor#extract} does.
+     * The progress of the selective extraction is not saved.
+     *
+     * @param pathMatcher the matcher of the entry paths
+     */
+    public void extract(@NotNull PathMatcher pathMatcher) {
+        MatchCounter matchCounter = new MatchCounter(pathMatcher);
+        extractVolumes(volumes, matchCounter);
+        if (matchCounter.getMatchedCount() == 0) {
+            addException("No entries of the archive match the pattern");
+        }
+    }
+
+    private int extractVolumes(@NotNull List<Path> volumesToExtract, @Nullable final MatchCounter matchCounter) {
+        if (volumesToExtract.isEmpty()) {
+            return 0;
+        }
+
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(threadsCount, volumesToExtract.size()));
+        List<Future<Void>> futures = new ArrayList<>(volumesToExtract.size());
+        for (final Path volume : volumesToExtract) {
+            futures.add(executorService.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    extractVolume(volume, matchCounter);
+                    return null;
+                }
+            }));
+        }
+        executorService.shutdown();
+
+        int failuresCount = 0;
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                executorService.shutdownNow();
+                Thread.currentThread().interrupt();
+                addException("Interrupted while waiting for the volumes to be extracted", e);
+                return futures.size() - i;
+            } catch (ExecutionException e) {
+                failuresCount++;
+                addException(String.format("Volume \'%s\' cannot be extracted", volumesToExtract.get(i).toString()), e.getCause());
+            }
+        }
+        return failuresCount;
+    }
+
+    private void extractVolume(@NotNull Path volume, @Nullable MatchCounter matchCounter) throws IOException {
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(volume) {
+            @NotNull
+            @Override
+            public ArchiveMetrics getMetrics() {
+                return MultiVolumeDecompressor.this.getMetrics();
+            }
+
+            @Override
+            boolean isVolumeExtraction() {
+                return true;
+            }
+        }) {
+            if (matchCounter == null) {
+                zipDecompressor.extractAllEntries();
+            } else if (zipDecompressor.extractMatching(matchCounter.pathMatcher)) {
+                matchCounter.addMatch();
+            }
+        }
+        if (matchCounter == null) {
+            saveProgress(volume);
+        }
+    }
+
+    @NotNull
+    private Set<String> readProgress() throws IOException {
+        if (!Files.exists(progressFilePath)) {
+            return new HashSet<>();
+        }
+        return new HashSet<>(Files.readAllLines(progressFilePath, StandardCharsets.UTF_8));
+    }
+
+    private synchronized void saveProgress(@NotNull Path volume) throws IOException {
+        if (progressWriter != null) {
+            progressWriter.write(volume.getFileName().toString());
+            progressWriter.newLine();
+            progressWriter.flush();
+        }
+    }
+
+    private static class MatchCounter {
+
+        @NotNull
+        private final PathMatcher pathMatcher;
+        private int matchedCount = 0;
+
+        public MatchCounter(@NotNull PathMatcher pathMatcher) {
+            this.pathMatcher = pathMatcher;
+        }
+
+        public synchronized void addMatch() {
+            matchedCount++;
+        }
+
+        public synchronized int getMatchedCount() {
+            return matchedCount;
+        }
+    }
+}
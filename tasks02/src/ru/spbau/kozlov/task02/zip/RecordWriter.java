@@ -0,0 +1,706 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import ru.spbau.kozlov.task02.zip.utils.IOUtils;
+
+import java.io.*;
+import java.util.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.RecordWriter} class writes records of the {@link ru.spbau.kozlov.task02.zip.ArchiveFormat} to the archive data stream.
+ * File contents are split into chunks that are compressed either by the calling thread or by a pool of worker threads.
+ * The {@link ru.spbau.kozlov.task02.zip.Codec} of every file is chosen by the {@link ru.spbau.kozlov.task02.zip.CodecSelector} when the first chunk is read.
+ * Compressed chunks are written by the calling thread strictly in the order they were submitted, so the output does not depend on the number of threads.
+ * The number of chunks being compressed simultaneously is bounded, so the memory usage does not depend on the size of the input.
+ * Positions, lengths, checksums and digests of the written records are collected to the {@link ru.spbau.kozlov.task02.zip.ArchiveIndex}.
+ * Checksums and digests are computed while the file is being read, so a file identical to the previously written one could be stored as a duplicate record.
+ * <p>
+ * If the volume supplier is specified, the archive is split into volumes of the bounded size. The size of the volume is estimated before every record and chunk is written,
+ * when it would exceed the limit the volume is finished with its own index and the next one is started. A file being written is continued with a part record,
+ * so every volume could be decoded independently. Duplicates are not looked for in this case, as the original could be stored in another volume.
+ *
+ * @author adkozlov
+ */
+class RecordWriter implements EntryWriter {
+
+    private static final byte[] END_CHUNK = new byte[2 * Integer.BYTES];
+    private static final int VERSION_HEADER_SIZE = Integer.BYTES;
+    private static final int VOLUME_RESERVE = 4096;
+    private static final int INDEX_ENTRY_SIZE = 96;
+    private static final int STORED_BLOCK_SIZE = 16 * 1024;
+    private static final int STORED_BLOCK_OVERHEAD = 5;
+
+    @NotNull
+    private ZipOutputStream zipOutputStream;
+    @NotNull
+    private DataOutputStream dataOutputStream;
+    @Nullable
+    private final ExecutorService executorService;
+    @NotNull
+    private final List<Chunk> chunks = new ArrayList<>();
+    @NotNull
+    private final Queue<Chunk> freeChunks = new ArrayDeque<>();
+    @NotNull
+    private final Queue<Object> pendingWrites = new ArrayDeque<>();
+    @NotNull
+    private final List<ArchiveIndex.Entry> indexEntries = new ArrayList<>();
+    @NotNull
+    private final Map<Long, List<ArchiveIndex.Entry>> filesByLength = new HashMap<>();
+    @NotNull
+    private final CRC32 crc32 = new CRC32();
+    @NotNull
+    private final MessageDigest messageDigest;
+    @Nullable
+    private final String baseArchive;
+    @NotNull
+    private final CodecSelector codecSelector;
+    @Nullable
+    private final VolumeSupplier volumeSupplier;
+    private final long volumeSize;
+    @NotNull
+    private final ArchiveMetrics metrics;
+
+    private long position = 0;
+    private boolean ioErrorOccurred = false;
+    private int volumeNumber = 1;
+    private long indexSizeEstimate = 0;
+    @Nullable
+    private PendingRecord currentFile = null;
+    private long currentFileOffset = 0;
+    private long currentPartLength = 0;
+    @NotNull
+    private final CRC32 partCrc32 = new CRC32();
+
+    /**
+     * Constructs a new writer and starts the data entry of the archive.
+     *
+     * @param zipOutputStream the archive stream
+     * @param threadsCount    the number of threads compressing chunks, if it is equal to one then chunks are compressed by the calling thread
+     * @param baseArchive     the path to the archive containing the referenced entries relative to the directory of this archive, or {@code null} if there are no references
+     * @param codecSelector   the selector choosing the compression method of every file
+     * @param metrics         the metrics to be updated
+     * @throws IOException if an I/O error occurs
+     */
+    public RecordWriter(@NotNull ZipOutputStream zipOutputStream, int threadsCount, @Nullable String baseArchive, @NotNull CodecSelector codecSelector,
+                        @NotNull ArchiveMetrics metrics) throws IOException {
+        this(zipOutputStream, threadsCount, baseArchive, codecSelector, null, 0, metrics);
+    }
+
+    /**
+     * Constructs a new writer that splits the archive into volumes and starts the data entry of the first volume.
+     * Volumes following the first one are opened by the supplier and are closed by this writer.
+     *
+     * @param zipOutputStream the stream of the first volume
+     * @param threadsCount    the number of threads compressing chunks, if it is equal to one then chunks are compressed by the calling thread
+     * @param baseArchive     the path to the archive containing the referenced entries relative to the directory of this archive, or {@code null} if there are no references
+     * @param codecSelector   the selector choosing the compression method of every file
+     * @param volumeSupplier  the supplier of the following volumes, or {@code null} if the archive should not be split
+     * @param volumeSize      the maximum size of the volume in bytes, it should be much greater than {@link ru.spbau.kozlov.task02.zip.ArchiveFormat#CHUNK_SIZE}
+     * @param metrics         the metrics to be updated
+     * @throws IOException if an I/O error occurs
+     */
+    public RecordWriter(@NotNull ZipOutputStream zipOutputStream, int threadsCount, @Nullable String baseArchive, @NotNull CodecSelector codecSelector,
+                        @Nullable VolumeSupplier volumeSupplier, long volumeSize, @NotNull ArchiveMetrics metrics) throws IOException {
+        this.zipOutputStream = zipOutputStream;
+        this.metrics = metrics;
+        this.baseArchive = baseArchive;
+        this.codecSelector = codecSelector;
+        this.volumeSupplier = volumeSupplier;
+        this.volumeSize = volumeSize;
+        messageDigest = createMessageDigest();
+        dataOutputStream = startDataEntry(zipOutputStream);
+
+        executorService = threadsCount > 1 ? Executors.newFixedThreadPool(threadsCount) : null;
+        for (int i = 0; i < (threadsCount > 1 ? 2 * threadsCount : 1); i++) {
+            Chunk chunk = new Chunk(metrics);
+            chunks.add(chunk);
+            freeChunks.add(chunk);
+        }
+        writeHeader();
+    }
+
+    @Override
+    public boolean hasIOErrorOccurred() {
+        return ioErrorOccurred;
+    }
+
+    @NotNull
+    private static DataOutputStream startDataEntry(@NotNull ZipOutputStream zipOutputStream) throws IOException {
+        zipOutputStream.setLevel(Deflater.NO_COMPRESSION);
+        zipOutputStream.putNextEntry(new ZipEntry(ArchiveFormat.DATA_ENTRY_NAME));
+        return new DataOutputStream(new BufferedOutputStream(zipOutputStream, ArchiveFormat.CHUNK_SIZE));
+    }
+
+    private void writeHeader() throws IOException {
+        addPendingWrite(createVersionHeader());
+    }
+
+    @NotNull
+    private static byte[] createVersionHeader() throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        new DataOutputStream(byteArrayOutputStream).writeInt(ArchiveFormat.VERSION);
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    @Override
+    public void writeDirectory(@NotNull String archivePath) throws IOException {
+        addPendingRecord(new ArchiveIndex.Entry(ArchiveFormat.DIRECTORY_RECORD, archivePath, -1, -1, 0, -1, null), null, null);
+    }
+
+    @Override
+    public void writeReference(@NotNull String archivePath, long lastModified, @NotNull ArchiveIndex.Entry baseEntry) throws IOException {
+        if (baseArchive == null) {
+            throw new IllegalStateException("Archive has no base archive to reference");
+        }
+        ArchiveIndex.Entry indexEntry = new ArchiveIndex.Entry(ArchiveFormat.REFERENCE_RECORD, archivePath, -1, baseEntry.getLength(), baseEntry.getCrc(), lastModified, baseEntry.getDigest());
+        addPendingRecord(indexEntry, null, null);
+        addFile(indexEntry);
+    }
+
+    @Override
+    public boolean containsFileOfLength(long length) {
+        return volumeSupplier == null && filesByLength.containsKey(length);
+    }
+
+    @Override
+    public boolean writeDuplicate(@NotNull String archivePath, long lastModified, long length, @NotNull byte[] digest) throws IOException {
+        List<ArchiveIndex.Entry> candidates = filesByLength.get(length);
+        if (candidates == null) {
+            return false;
+        }
+
+        for (ArchiveIndex.Entry original : candidates) {
+            if (Arrays.equals(original.getDigest(), digest)) {
+                addPendingRecord(new ArchiveIndex.Entry(ArchiveFormat.DUPLICATE_RECORD, archivePath, -1, length, original.getCrc(), lastModified, digest), null, original.getPath());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Splits the file content into chunks and submits them for compression. Waits for the oldest chunks to be written if all the chunks are busy.
+     * The compression method is chosen by the selector when the first chunk is read.
+     *
+     * @param archivePath  the archive path of the file
+     * @param lastModified the modification time of the file in milliseconds since the epoch, or -1 if it is not known
+     * @param inputStream  the stream containing the file content
+     * @throws IOException if an I/O error occurs during reading the file or writing to the archive
+     */
+    @Override
+    public void writeFile(@NotNull String archivePath, long lastModified, @NotNull InputStream inputStream) throws IOException {
+        if (ioErrorOccurred) {
+            return;
+        }
+
+        ArchiveIndex.Entry indexEntry = new ArchiveIndex.Entry(ArchiveFormat.FILE_RECORD, archivePath, -1, 0, 0, lastModified, null);
+        CompressionMethod method = null;
+        crc32.reset();
+        messageDigest.reset();
+        long length = 0;
+        while (true) {
+            Chunk chunk = nextChunk();
+            int bytesRead;
+            long readStartNanos = System.nanoTime();
+            try {
+                bytesRead = IOUtils.readFully(inputStream, chunk.raw);
+            } catch (IOException e) {
+                freeChunks.add(chunk);
+                ioErrorOccurred = true;
+                throw e;
+            }
+            metrics.addTime(ArchiveMetrics.Phase.READ, System.nanoTime() - readStartNanos);
+            metrics.addRawBytes(bytesRead);
+
+            if (method == null) {
+                method = codecSelector.select(archivePath, chunk.raw, bytesRead);
+                addPendingRecord(indexEntry, method.getCodec(), null);
+            }
+            if (bytesRead > 0) {
+                length += bytesRead;
+                crc32.update(chunk.raw, 0, bytesRead);
+                messageDigest.update(chunk.raw, 0, bytesRead);
+                submitChunk(chunk, bytesRead, method);
+            } else {
+                freeChunks.add(chunk);
+            }
+
+            if (bytesRead < chunk.raw.length) {
+                break;
+            }
+        }
+        addPendingWrite(END_CHUNK);
+
+        if (!indexEntry.isPart()) {
+            indexEntry.setLength(length);
+            indexEntry.setCrc((int) crc32.getValue());
+            indexEntry.setDigest(messageDigest.digest());
+            addFile(indexEntry);
+        }
+    }
+
+    /**
+     * Writes the file entry which content is already encoded with the specified codec, the encoded chunks are copied as they are without being decoded.
+     * The pending chunks are written first, so the copying is done by the calling thread. The copying is timed as writing.
+     * If the digest is known, the file could be referenced by the following duplicates.
+     *
+     * @param archivePath  the archive path of the file
+     * @param lastModified the modification time of the file in milliseconds since the epoch, or -1 if it is not known
+     * @param length       the length of the raw file content
+     * @param crc          the checksum of the raw file content
+     * @param digest       the {@link ru.spbau.kozlov.task02.zip.ArchiveFormat#DIGEST_ALGORITHM} digest of the raw file content, or {@code null} if it is not known
+     * @param codec        the codec the chunks are encoded with
+     * @param content      the source of the encoded chunks
+     * @throws IOException if an I/O error occurs during reading the chunks or writing to the archive
+     * @throws IllegalStateException if the archive is split into volumes, as parts of the file could not be checksummed without decoding
+     */
+    public void copyFile(@NotNull String archivePath, long lastModified, long length, int crc, @Nullable byte[] digest, @NotNull Codec codec,
+                         @NotNull EncodedContent content) throws IOException {
+        if (volumeSupplier != null) {
+            throw new IllegalStateException("Encoded contents cannot be copied to the archive split into volumes");
+        }
+        if (ioErrorOccurred) {
+            return;
+        }
+
+        ArchiveIndex.Entry indexEntry = new ArchiveIndex.Entry(ArchiveFormat.FILE_RECORD, archivePath, -1, length, crc, lastModified, digest);
+        addPendingRecord(indexEntry, codec, null);
+        while (!pendingWrites.isEmpty()) {
+            writeNextPending();
+        }
+        if (ioErrorOccurred) {
+            return;
+        }
+
+        long writeStartNanos = System.nanoTime();
+        try {
+            long written = content.transferTo(dataOutputStream);
+            position += written;
+            metrics.addStoredBytes(written);
+        } catch (IOException e) {
+            ioErrorOccurred = true;
+            throw e;
+        }
+        metrics.addTime(ArchiveMetrics.Phase.WRITE, System.nanoTime() - writeStartNanos);
+        metrics.addRawBytes(length);
+        write(END_CHUNK, 0, END_CHUNK.length);
+
+        if (digest != null) {
+            addFile(indexEntry);
+        }
+    }
+
+    private void addFile(@NotNull ArchiveIndex.Entry indexEntry) {
+        List<ArchiveIndex.Entry> entries = filesByLength.get(indexEntry.getLength());
+        if (entries == null) {
+            entries = new ArrayList<>(1);
+            filesByLength.put(indexEntry.getLength(), entries);
+        }
+        entries.add(indexEntry);
+    }
+
+    @NotNull
+    private Chunk nextChunk() throws IOException {
+        while (freeChunks.isEmpty()) {
+            writeNextPending();
+        }
+        return freeChunks.remove();
+    }
+
+    private void submitChunk(@NotNull Chunk chunk, int rawLength, @NotNull CompressionMethod method) throws IOException {
+        chunk.rawLength = rawLength;
+        chunk.method = method;
+        if (executorService != null) {
+            chunk.future = executorService.submit(chunk);
+        } else {
+            chunk.future = CompletableFuture.completedFuture(chunk.call());
+        }
+        pendingWrites.add(chunk);
+        writeCompletedPending();
+    }
+
+    /**
+     * Waits until all the pending data is written, then writes the end of the records and the index entry.
+     * If the archive is split, the last volume is closed.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void finish() throws IOException {
+        while (!pendingWrites.isEmpty()) {
+            writeNextPending();
+        }
+
+        if (!ioErrorOccurred) {
+            try {
+                finishVolume();
+            } catch (IOException e) {
+                ioErrorOccurred = true;
+                throw e;
+            }
+        }
+    }
+
+    private void finishVolume() throws IOException {
+        write(new byte[]{ArchiveFormat.END_RECORD}, 0, 1);
+        dataOutputStream.flush();
+        zipOutputStream.closeEntry();
+        writeIndex();
+        if (volumeNumber > 1) {
+            zipOutputStream.close();
+        } else {
+            zipOutputStream.finish();
+        }
+    }
+
+    private boolean needsNextVolume(long length) {
+        if (volumeSupplier == null || ioErrorOccurred || position <= VERSION_HEADER_SIZE) {
+            return false;
+        }
+        long dataLength = position + length;
+        return dataLength + (dataLength / STORED_BLOCK_SIZE + 1) * STORED_BLOCK_OVERHEAD + indexSizeEstimate + VOLUME_RESERVE > volumeSize;
+    }
+
+    private void startNextVolume() throws IOException {
+        if (volumeSupplier == null) {
+            throw new IllegalStateException("Archive cannot be split");
+        }
+
+        try {
+            finishVolume();
+            zipOutputStream = volumeSupplier.openVolume(++volumeNumber);
+            dataOutputStream = startDataEntry(zipOutputStream);
+        } catch (IOException e) {
+            ioErrorOccurred = true;
+            throw e;
+        }
+        position = 0;
+        indexEntries.clear();
+        indexSizeEstimate = 0;
+
+        byte[] header = createVersionHeader();
+        write(header, 0, header.length);
+    }
+
+    private void writeIndex() throws IOException {
+        zipOutputStream.setLevel(Deflater.DEFAULT_COMPRESSION);
+        zipOutputStream.putNextEntry(new ZipEntry(ArchiveFormat.INDEX_ENTRY_NAME));
+        new ArchiveIndex(indexEntries, baseArchive).write(dataOutputStream);
+        dataOutputStream.flush();
+        zipOutputStream.closeEntry();
+    }
+
+    /**
+     * Stops the worker threads and releases the compressors. The archive stream is not closed, unless it is a volume opened by this writer.
+     */
+    @Override
+    public void close() {
+        if (volumeNumber > 1) {
+            try {
+                zipOutputStream.close();
+            } catch (IOException ignored) {
+                // the volume is incomplete anyway, as the archive has not been finished
+            }
+        }
+        if (executorService != null) {
+            executorService.shutdownNow();
+        }
+        for (Chunk chunk : chunks) {
+            for (ChunkEncoder encoder : chunk.encoders.values()) {
+                encoder.end();
+            }
+        }
+    }
+
+    @NotNull
+    private static byte[] createRecordHeader(byte kind, @NotNull String archivePath, @Nullable Codec codec, @Nullable String originalPath) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        DataOutputStream headerOutputStream = new DataOutputStream(byteArrayOutputStream);
+        headerOutputStream.writeByte(kind);
+        headerOutputStream.writeUTF(archivePath);
+        if (codec != null) {
+            headerOutputStream.writeByte(codec.getId());
+        } else if (originalPath != null) {
+            headerOutputStream.writeUTF(originalPath);
+        }
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private void addPendingRecord(@NotNull ArchiveIndex.Entry indexEntry, @Nullable Codec codec, @Nullable String originalPath) throws IOException {
+        metrics.addEntry(indexEntry.getPath());
+        pendingWrites.add(new PendingRecord(indexEntry, createRecordHeader(indexEntry.getKind(), indexEntry.getPath(), codec, originalPath), codec));
+        writeCompletedPending();
+    }
+
+    @NotNull
+    static MessageDigest createMessageDigest() {
+        try {
+            return MessageDigest.getInstance(ArchiveFormat.DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void addPendingWrite(@NotNull byte[] bytes) throws IOException {
+        pendingWrites.add(bytes);
+        writeCompletedPending();
+    }
+
+    private void writeCompletedPending() throws IOException {
+        while (!pendingWrites.isEmpty() && (!(pendingWrites.peek() instanceof Chunk) || ((Chunk) pendingWrites.peek()).isCompressed())) {
+            writeNextPending();
+        }
+    }
+
+    private void writeNextPending() throws IOException {
+        Object pendingWrite = pendingWrites.remove();
+        if (pendingWrite == END_CHUNK) {
+            endFile();
+        } else if (pendingWrite instanceof byte[]) {
+            write((byte[]) pendingWrite, 0, ((byte[]) pendingWrite).length);
+        } else if (pendingWrite instanceof PendingRecord) {
+            startRecord((PendingRecord) pendingWrite);
+        } else {
+            Chunk chunk = (Chunk) pendingWrite;
+            try {
+                waitForCompression(chunk);
+                writeChunk(chunk);
+            } finally {
+                chunk.future = null;
+                freeChunks.add(chunk);
+            }
+        }
+    }
+
+    private void waitForCompression(@NotNull Chunk chunk) throws IOException {
+        try {
+            if (chunk.future != null) {
+                long waitStartNanos = System.nanoTime();
+                chunk.future.get();
+                metrics.addTime(ArchiveMetrics.Phase.WAIT, System.nanoTime() - waitStartNanos);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            ioErrorOccurred = true;
+            throw new IOException("Interrupted while waiting for the chunk to be compressed", e);
+        } catch (ExecutionException e) {
+            ioErrorOccurred = true;
+            throw new IOException("Chunk cannot be compressed", e.getCause());
+        }
+    }
+
+    private void startRecord(@NotNull PendingRecord pendingRecord) throws IOException {
+        ArchiveIndex.Entry indexEntry = pendingRecord.indexEntry;
+        if (needsNextVolume(pendingRecord.header.length + (pendingRecord.codec != null ? 2 * Integer.BYTES + ArchiveFormat.CHUNK_SIZE : 0))) {
+            startNextVolume();
+        }
+
+        indexEntry.setOffset(position);
+        indexEntries.add(indexEntry);
+        indexSizeEstimate += INDEX_ENTRY_SIZE + 3 * indexEntry.getPath().length();
+        write(pendingRecord.header, 0, pendingRecord.header.length);
+        if (volumeSupplier != null && pendingRecord.codec != null) {
+            currentFile = pendingRecord;
+            currentFileOffset = indexEntry.isPart() ? indexEntry.getPartOffset() : 0;
+            currentPartLength = 0;
+            partCrc32.reset();
+        }
+    }
+
+    private void endFile() throws IOException {
+        write(END_CHUNK, 0, END_CHUNK.length);
+        if (currentFile != null && currentFile.indexEntry.isPart()) {
+            finishPart(true);
+        }
+        currentFile = null;
+    }
+
+    private void finishPart(boolean lastPart) {
+        if (currentFile == null) {
+            throw new IllegalStateException("No file is being written");
+        }
+
+        ArchiveIndex.Entry indexEntry = currentFile.indexEntry;
+        indexEntry.setLength(currentPartLength);
+        indexEntry.setCrc((int) partCrc32.getValue());
+        indexEntry.setDigest(null);
+        indexEntry.setPart(currentFileOffset, lastPart);
+    }
+
+    /**
+     * Finishes the part of the file being written, starts the next volume and continues the file with the part record.
+     */
+    private void continueFileInNextVolume() throws IOException {
+        if (currentFile == null || currentFile.codec == null) {
+            throw new IllegalStateException("No file is being written");
+        }
+
+        write(END_CHUNK, 0, END_CHUNK.length);
+        finishPart(false);
+        ArchiveIndex.Entry fileEntry = currentFile.indexEntry;
+        Codec codec = currentFile.codec;
+        long partOffset = currentFileOffset + currentPartLength;
+        startNextVolume();
+
+        ArchiveIndex.Entry partEntry = new ArchiveIndex.Entry(ArchiveFormat.PART_RECORD, fileEntry.getPath(), -1, 0, 0, fileEntry.getLastModified(), null);
+        partEntry.setPart(partOffset, false);
+        startRecord(new PendingRecord(partEntry, createPartHeader(fileEntry.getPath(), partOffset, codec), codec));
+    }
+
+    @NotNull
+    private static byte[] createPartHeader(@NotNull String archivePath, long partOffset, @NotNull Codec codec) throws IOException {
+        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+        DataOutputStream headerOutputStream = new DataOutputStream(byteArrayOutputStream);
+        headerOutputStream.writeByte(ArchiveFormat.PART_RECORD);
+        headerOutputStream.writeUTF(archivePath);
+        headerOutputStream.writeLong(partOffset);
+        headerOutputStream.writeByte(codec.getId());
+        return byteArrayOutputStream.toByteArray();
+    }
+
+    private void writeChunk(@NotNull Chunk chunk) throws IOException {
+        int storedLength = chunk.stored ? chunk.rawLength : chunk.compressedLength;
+        if (currentFile != null && needsNextVolume(2 * Integer.BYTES + storedLength)) {
+            continueFileInNextVolume();
+        }
+        if (currentFile != null) {
+            partCrc32.update(chunk.raw, 0, chunk.rawLength);
+            currentPartLength += chunk.rawLength;
+        }
+        if (!ioErrorOccurred) {
+            long writeStartNanos = System.nanoTime();
+            try {
+                dataOutputStream.writeInt(chunk.rawLength);
+                dataOutputStream.writeInt(storedLength);
+                dataOutputStream.write(chunk.stored ? chunk.raw : chunk.compressed, 0, storedLength);
+                position += 2 * Integer.BYTES + storedLength;
+                metrics.addStoredBytes(2 * Integer.BYTES + storedLength);
+                metrics.addTime(ArchiveMetrics.Phase.WRITE, System.nanoTime() - writeStartNanos);
+            } catch (IOException e) {
+                ioErrorOccurred = true;
+                throw e;
+            }
+        }
+    }
+
+    private void write(@NotNull byte[] bytes, int offset, int length) throws IOException {
+        if (!ioErrorOccurred) {
+            try {
+                dataOutputStream.write(bytes, offset, length);
+                position += length;
+                metrics.addStoredBytes(length);
+            } catch (IOException e) {
+                ioErrorOccurred = true;
+                throw e;
+            }
+        }
+    }
+
+    private static class PendingRecord {
+
+        @NotNull
+        private final ArchiveIndex.Entry indexEntry;
+        @NotNull
+        private final byte[] header;
+        @Nullable
+        private final Codec codec;
+
+        public PendingRecord(@NotNull ArchiveIndex.Entry indexEntry, @NotNull byte[] header, @Nullable Codec codec) {
+            this.indexEntry = indexEntry;
+            this.header = header;
+            this.codec = codec;
+        }
+    }
+
+    /**
+     * The {@link ru.spbau.kozlov.task02.zip.RecordWriter.EncodedContent} interface provides the file content already split into encoded chunks.
+     */
+    interface EncodedContent {
+
+        /**
+         * Writes the chunks in the {@link ru.spbau.kozlov.task02.zip.ArchiveFormat}, each of them as its raw length, its stored length and the stored bytes.
+         * The terminating empty chunk is not written.
+         *
+         * @param outputStream the stream to be written to
+         * @return the number of bytes written
+         * @throws IOException if an I/O error occurs during reading the chunks or writing to the stream
+         */
+        long transferTo(@NotNull OutputStream outputStream) throws IOException;
+    }
+
+    /**
+     * The {@link ru.spbau.kozlov.task02.zip.RecordWriter.VolumeSupplier} interface opens the volumes of the split archive.
+     */
+    interface VolumeSupplier {
+
+        /**
+         * Opens the stream of the volume with the specified number.
+         *
+         * @param number the number of the volume starting from one
+         * @return the stream of the volume
+         * @throws IOException if an I/O error occurs during creating the volume file
+         */
+        @NotNull
+        ZipOutputStream openVolume(int number) throws IOException;
+    }
+
+    /**
+     * The {@link ru.spbau.kozlov.task02.zip.RecordWriter.Chunk} class contains a part of the file content and its compressed representation.
+     */
+    private static class Chunk implements Callable<Chunk> {
+
+        @NotNull
+        private final byte[] raw = new byte[ArchiveFormat.CHUNK_SIZE];
+        @NotNull
+        private final byte[] compressed = new byte[ArchiveFormat.CHUNK_SIZE];
+        @NotNull
+        private final Map<Codec, ChunkEncoder> encoders = new EnumMap<>(Codec.class);
+        @NotNull
+        private final ArchiveMetrics metrics;
+        @Nullable
+        private Future<Chunk> future;
+        @NotNull
+        private CompressionMethod method = CompressionMethod.DEFAULT;
+        private int rawLength;
+        private int compressedLength;
+        private boolean stored;
+
+        public Chunk(@NotNull ArchiveMetrics metrics) {
+            this.metrics = metrics;
+        }
+
+        /**
+         * Compresses the raw content with the method of the file. If the compressed content turns out to be not shorter than the raw one, the chunk is stored as is.
+         * Encoders are created when the method is used by the chunk for the first time.
+         *
+         * @return this chunk
+         */
+        @Override
+        public Chunk call() {
+            ChunkEncoder encoder = encoders.get(method.getCodec());
+            if (encoder == null) {
+                encoder = method.getCodec().createEncoder();
+                encoders.put(method.getCodec(), encoder);
+            }
+
+            long startNanos = System.nanoTime();
+            compressedLength = encoder.encode(raw, rawLength, compressed, method.getLevel());
+            stored = compressedLength == -1;
+            metrics.addTime(ArchiveMetrics.Phase.COMPRESS, System.nanoTime() - startNanos);
+            return this;
+        }
+
+        private boolean isCompressed() {
+            return future == null || future.isDone();
+        }
+    }
+}
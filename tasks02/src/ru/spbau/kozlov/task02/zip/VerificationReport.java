@@ -0,0 +1,148 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.VerificationReport} class contains the results of the archive verification made by {@link ru.spbau.kozlov.task02.zip.ZipVerifier}.
+ * Entries could be reported from several threads simultaneously.
+ *
+ * @author adkozlov
+ */
+public class VerificationReport {
+
+    private final boolean checksumsVerified;
+    private long entriesCount = 0;
+    private long bytesCount = 0;
+    private long corruptedCount = 0;
+    private long elapsedNanos = 0;
+    @Nullable
+    private String firstCorruptedPath = null;
+    @Nullable
+    private String firstCorruptionReason = null;
+    private long firstCorruptedOffset = -1;
+    private long firstCorruptedOrder = Long.MAX_VALUE;
+
+    VerificationReport(boolean checksumsVerified) {
+        this.checksumsVerified = checksumsVerified;
+    }
+
+    synchronized void addEntry(long length) {
+        entriesCount++;
+        bytesCount += length;
+    }
+
+    /**
+     * Saves the corrupted entry. The entry stored in the archive before the other corrupted ones is reported as the first.
+     *
+     * @param path   the archive path of the entry, or {@code null} if the structure of the archive is broken
+     * @param offset the offset of the corrupted data in the data entry, or -1 if it is not known
+     * @param order  the position of the entry in the archive used to determine the first corrupted entry
+     * @param reason the description of the corruption
+     */
+    synchronized void addCorruptedEntry(@Nullable String path, long offset, long order, @NotNull String reason) {
+        entriesCount++;
+        corruptedCount++;
+        if (order < firstCorruptedOrder) {
+            firstCorruptedOrder = order;
+            firstCorruptedPath = path;
+            firstCorruptedOffset = offset;
+            firstCorruptionReason = reason;
+        }
+    }
+
+    synchronized void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Checks if the entries contents were checked against their checksums. Archives in the legacy format contain no checksums, so only their structure is verified.
+     *
+     * @return {@code true} if the checksums were verified
+     */
+    public boolean isChecksumsVerified() {
+        return checksumsVerified;
+    }
+
+    /**
+     * Checks if no corrupted entries were found.
+     *
+     * @return {@code true} if the archive is intact
+     */
+    public synchronized boolean isIntact() {
+        return corruptedCount == 0;
+    }
+
+    public synchronized long getEntriesCount() {
+        return entriesCount;
+    }
+
+    public synchronized long getCorruptedCount() {
+        return corruptedCount;
+    }
+
+    /**
+     * Returns the total length of the verified entries contents.
+     *
+     * @return the number of decoded bytes
+     */
+    public synchronized long getBytesCount() {
+        return bytesCount;
+    }
+
+    public synchronized long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the number of decoded bytes verified per second.
+     *
+     * @return the throughput in bytes per second
+     */
+    public synchronized double getThroughput() {
+        return elapsedNanos == 0 ? 0 : bytesCount * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns the archive path of the first corrupted entry.
+     *
+     * @return the archive path, or {@code null} if the archive is intact or its structure is broken
+     */
+    @Nullable
+    public synchronized String getFirstCorruptedPath() {
+        return firstCorruptedPath;
+    }
+
+    /**
+     * Returns the offset of the first corrupted data in the data entry of the archive.
+     *
+     * @return the offset, or -1 if the archive is intact or the offset is not known
+     */
+    public synchronized long getFirstCorruptedOffset() {
+        return firstCorruptedOffset;
+    }
+
+    @Nullable
+    public synchronized String getFirstCorruptionReason() {
+        return firstCorruptionReason;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder stringBuilder = new StringBuilder(String.format("%d entries, %d bytes verified in %.3f s (%.1f MB/s)",
+                entriesCount, bytesCount, elapsedNanos / 1e9, getThroughput() / (1024 * 1024)));
+        if (!checksumsVerified) {
+            stringBuilder.append(", the archive contains no checksums");
+        }
+        if (corruptedCount == 0) {
+            return stringBuilder.append(System.lineSeparator()).append("Archive is intact").toString();
+        }
+
+        stringBuilder.append(System.lineSeparator()).append(String.format("%d corrupted entries, the first one is ", corruptedCount));
+        stringBuilder.append(firstCorruptedPath != null ? String.format("\'%s\'", firstCorruptedPath) : "the archive structure");
+        if (firstCorruptedOffset != -1) {
+            stringBuilder.append(String.format(" at the offset %d", firstCorruptedOffset));
+        }
+        return stringBuilder.append(": ").append(firstCorruptionReason).toString();
+    }
+}
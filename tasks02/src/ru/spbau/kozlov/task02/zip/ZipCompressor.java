@@ -2,38 +2,73 @@ package ru.spbau.kozlov.task02.zip;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import ru.spbau.kozlov.task02.zip.utils.DirectoryScanner;
 import ru.spbau.kozlov.task02.zip.utils.IOUtils;
 import ru.spbau.kozlov.task02.zip.utils.PathUtils;
 import ru.spbau.kozlov.task02.zip.utils.ZipURLUtils;
 
-import java.io.DataOutputStream;
-import java.io.IOException;
+import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.zip.ZipEntry;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
 import java.util.zip.ZipOutputStream;
 
 /**
  * The {@link ru.spbau.kozlov.task02.zip.ZipCompressor} class implements zip-compressor.
  * Files, directories and web pages (specified with URL) are allowed.
  * If file or directory cannot be read, it is skipped. Invalid URLs are also skipped.
+ * Entries are written in one of the {@link ru.spbau.kozlov.task02.zip.ArchiveLayout}s described by the {@link ru.spbau.kozlov.task02.zip.ArchiveFormat} class.
+ * In the chunked layout file contents are compressed in chunks, either by the calling thread or by the specified number of worker threads.
+ * The compression method of every file is chosen by the {@link ru.spbau.kozlov.task02.zip.CodecSelector}, by default the {@link ru.spbau.kozlov.task02.zip.AdaptiveCodecSelector} is used.
+ * If the base archive is specified, files that have not changed since it was written are referenced instead of being read and stored again.
+ * A file is considered unchanged if it has the same size and either the same modification time or the same content digest.
+ * Files identical to the previously written ones are stored as duplicates. Digests are computed beforehand only for the files of the same size as a previously written one,
+ * the content of such a file is kept while its digest is computed unless the file is large, so a small file is read once even if it is not a duplicate.
+ * Entries already put to the archive, e.g. by overlapping directories, are skipped, so every archive path is written once.
+ * Web pages are fetched concurrently by a bounded number of connections while the files are being compressed,
+ * and are written to the archive in the order they were put.
+ * Directory trees are listed in parallel by the {@link ru.spbau.kozlov.task02.zip.utils.DirectoryScanner} ahead of the compression, the entries are written in the order of the walk.
+ * In the chunked layout the archive could be split into volumes of the bounded size named by {@link ru.spbau.kozlov.task02.zip.ArchiveVolumes},
+ * every volume could be decoded independently of the others.
  *
  * @author adkozlov
  */
 public class ZipCompressor extends ExceptionsContainer {
 
+    private static final int MAX_URL_CONNECTIONS = 8;
+    private static final int URL_CONNECT_TIMEOUT_MILLIS = 10000;
+    private static final int URL_READ_TIMEOUT_MILLIS = 30000;
+    private static final int MAX_SCANNER_THREADS = 8;
+    private static final int MAX_KEPT_CONTENT_LENGTH = 8 * ArchiveFormat.CHUNK_SIZE;
+    public static final long MIN_VOLUME_SIZE = 1024 * 1024;
+
     @NotNull
     private final ZipOutputStream zipOutputStream;
     @NotNull
-    private final DataOutputStream dataOutputStream;
+    private final EntryWriter entryWriter;
     @NotNull
-    private final List<URL> urls = new LinkedList<>();
-
-    private boolean ioErrorOccurred = false;
+    private final Map<String, Future<byte[]>> urls = new LinkedHashMap<>();
+    @NotNull
+    private final Set<String> writtenPaths = new HashSet<>();
+    @Nullable
+    private ExecutorService urlExecutorService = null;
+    @Nullable
+    private DirectoryScanner directoryScanner = null;
+    @Nullable
+    private final ArchiveIndex baseIndex;
+    @NotNull
+    private final Path outputFilePath;
+    private final boolean isSplit;
+    private int volumesCount = 1;
 
     /**
      * Constructs a new compressor with the specified output archive file path.
@@ -43,9 +78,138 @@ public class ZipCompressor extends ExceptionsContainer {
      * @throws SecurityException if the archive file cannot be created because of the security violation
      */
     public ZipCompressor(@NotNull Path outputFilePath) throws IOException, SecurityException {
-        zipOutputStream = new ZipOutputStream(Files.newOutputStream(outputFilePath));
-        dataOutputStream = new DataOutputStream(zipOutputStream);
-        zipOutputStream.putNextEntry(new ZipEntry("root"));
+        this(outputFilePath, 1);
+    }
+
+    /**
+     * Constructs a new compressor with the specified output archive file path that compresses file contents in parallel.
+     *
+     * @param outputFilePath the path to the output archive
+     * @param threadsCount   the number of threads compressing file contents, if it is equal to one then everything is done by the calling thread
+     * @throws IOException if an I/O error occurs during creating the archive file
+     * @throws SecurityException if the archive file cannot be created because of the security violation
+     */
+    public ZipCompressor(@NotNull Path outputFilePath, int threadsCount) throws IOException, SecurityException {
+        this(outputFilePath, threadsCount, ArchiveLayout.CHUNKED);
+    }
+
+    /**
+     * Constructs a new compressor with the specified output archive file path and the archive layout.
+     *
+     * @param outputFilePath the path to the output archive
+     * @param threadsCount   the number of threads compressing file contents, should be equal to one for the {@link ru.spbau.kozlov.task02.zip.ArchiveLayout#ENTRIES} layout
+     * @param layout         the layout of the archive
+     * @throws IOException if an I/O error occurs during creating the archive file
+     * @throws SecurityException if the archive file cannot be created because of the security violation
+     */
+    public ZipCompressor(@NotNull Path outputFilePath, int threadsCount, @NotNull ArchiveLayout layout) throws IOException, SecurityException {
+        this(outputFilePath, threadsCount, layout, null);
+    }
+
+    /**
+     * Constructs a new compressor with the specified output archive file path that references the unchanged files of the base archive.
+     * The base archive should be kept next to the output archive, as its path is stored relative to the output archive directory.
+     *
+     * @param outputFilePath  the path to the output archive
+     * @param threadsCount    the number of threads compressing file contents, should be equal to one for the {@link ru.spbau.kozlov.task02.zip.ArchiveLayout#ENTRIES} layout
+     * @param layout          the layout of the archive, only {@link ru.spbau.kozlov.task02.zip.ArchiveLayout#CHUNKED} one supports the base archive
+     * @param baseArchivePath the path to the base archive, or {@code null} if every file should be stored
+     * @throws IOException if an I/O error occurs during reading the base archive index or creating the archive file
+     * @throws SecurityException if the archive file cannot be created because of the security violation
+     */
+    public ZipCompressor(@NotNull Path outputFilePath, int threadsCount, @NotNull ArchiveLayout layout, @Nullable Path baseArchivePath) throws IOException, SecurityException {
+        this(outputFilePath, threadsCount, layout, baseArchivePath, new AdaptiveCodecSelector());
+    }
+
+    /**
+     * Constructs a new compressor with the specified output archive file path that chooses the compression method of every file with the specified selector.
+     *
+     * @param outputFilePath  the path to the output archive
+     * @param threadsCount    the number of threads compressing file contents, should be equal to one for the {@link ru.spbau.kozlov.task02.zip.ArchiveLayout#ENTRIES} layout
+     * @param layout          the layout of the archive, only {@link ru.spbau.kozlov.task02.zip.ArchiveLayout#CHUNKED} one supports the base archive
+     * @param baseArchivePath the path to the base archive, or {@code null} if every file should be stored
+     * @param codecSelector   the selector choosing the compression method of every file
+     * @throws IOException if an I/O error occurs during reading the base archive index or creating the archive file
+     * @throws SecurityException if the archive file cannot be created because of the security violation
+     */
+    public ZipCompressor(@NotNull Path outputFilePath, int threadsCount, @NotNull ArchiveLayout layout, @Nullable Path baseArchivePath,
+                         @NotNull CodecSelector codecSelector) throws IOException, SecurityException {
+        this(outputFilePath, threadsCount, layout, baseArchivePath, codecSelector, 0);
+    }
+
+    /**
+     * Constructs a new compressor that splits the archive into volumes of the specified size.
+     * Files identical to the previously written ones are stored again in this case, so every volume could be decoded independently.
+     * The archive file itself and the volumes left from the previous archive with the same name are deleted.
+     *
+     * @param outputFilePath  the path to the output archive, the volumes are named after it
+     * @param threadsCount    the number of threads compressing file contents, should be equal to one for the {@link ru.spbau.kozlov.task02.zip.ArchiveLayout#ENTRIES} layout
+     * @param layout          the layout of the archive, only {@link ru.spbau.kozlov.task02.zip.ArchiveLayout#CHUNKED} one supports the base archive and volumes
+     * @param baseArchivePath the path to the base archive, or {@code null} if every file should be stored
+     * @param codecSelector   the selector choosing the compression method of every file
+     * @param volumeSize      the maximum size of the volume in bytes, at least {@link #MIN_VOLUME_SIZE}, or zero if the archive should not be split
+     * @throws IOException if an I/O error occurs during reading the base archive index or creating the archive file
+     * @throws SecurityException if the archive file cannot be created because of the security violation
+     */
+    public ZipCompressor(@NotNull Path outputFilePath, int threadsCount, @NotNull ArchiveLayout layout, @Nullable Path baseArchivePath,
+                         @NotNull CodecSelector codecSelector, long volumeSize) throws IOException, SecurityException {
+        if (threadsCount < 1) {
+            throw new IllegalArgumentException("Threads count should be positive");
+        }
+        if (layout == ArchiveLayout.ENTRIES && threadsCount != 1) {
+            throw new IllegalArgumentException("Entries layout cannot be compressed in parallel");
+        }
+        if (layout == ArchiveLayout.ENTRIES && baseArchivePath != null) {
+            throw new IllegalArgumentException("Entries layout cannot reference the base archive");
+        }
+        if (volumeSize != 0 && volumeSize < MIN_VOLUME_SIZE) {
+            throw new IllegalArgumentException(String.format("Volume size should be at least %d bytes", MIN_VOLUME_SIZE));
+        }
+        if (layout == ArchiveLayout.ENTRIES && volumeSize != 0) {
+            throw new IllegalArgumentException("Entries layout cannot be split into volumes");
+        }
+        this.outputFilePath = outputFilePath;
+        isSplit = volumeSize != 0;
+
+        String baseArchive = null;
+        if (baseArchivePath != null) {
+            Path outputDirectory = outputFilePath.toAbsolutePath().normalize().getParent();
+            Path basePath = baseArchivePath.toAbsolutePath().normalize();
+            if (basePath.equals(outputFilePath.toAbsolutePath().normalize())) {
+                throw new IllegalArgumentException("Base archive cannot be overwritten");
+            }
+
+            try (ZipLister zipLister = new ZipLister(baseArchivePath)) {
+                baseIndex = zipLister.readArchiveIndex();
+            }
+            baseArchive = PathUtils.convertOSPathToArchivePath(outputDirectory.relativize(basePath).toString());
+        } else {
+            baseIndex = null;
+        }
+
+        if (isSplit) {
+            Files.deleteIfExists(outputFilePath);
+        }
+        zipOutputStream = new ZipOutputStream(Files.newOutputStream(isSplit ? ArchiveVolumes.getVolumePath(outputFilePath, 1) : outputFilePath));
+        try {
+            if (layout == ArchiveLayout.ENTRIES) {
+                entryWriter = new ZipEntryWriter(zipOutputStream, codecSelector, getMetrics());
+            } else if (isSplit) {
+                entryWriter = new RecordWriter(zipOutputStream, threadsCount, baseArchive, codecSelector, new RecordWriter.VolumeSupplier() {
+                    @NotNull
+                    @Override
+                    public ZipOutputStream openVolume(int number) throws IOException {
+                        volumesCount = number;
+                        return new ZipOutputStream(Files.newOutputStream(ArchiveVolumes.getVolumePath(ZipCompressor.this.outputFilePath, number)));
+                    }
+                }, volumeSize, getMetrics());
+            } else {
+                entryWriter = new RecordWriter(zipOutputStream, threadsCount, baseArchive, codecSelector, getMetrics());
+            }
+        } catch (IOException e) {
+            zipOutputStream.close();
+            throw e;
+        }
     }
 
     /**
@@ -60,7 +224,7 @@ public class ZipCompressor extends ExceptionsContainer {
             putNextEntry(Paths.get(entry));
         } else {
             try {
-                urls.add(new URL(entry));
+                fetchURL(new URL(entry));
             } catch (MalformedURLException e) {
                 addException(String.format("\'%s\' is not a valid URL", entry), e);
             }
@@ -74,24 +238,80 @@ public class ZipCompressor extends ExceptionsContainer {
      */
     @Override
     public void close() throws IOException {
-        try (DataOutputStream ignored = dataOutputStream) {
-            if (!urls.isEmpty()) {
-                writeDirEntry(ZipURLUtils.getUrlDirectoryName());
-                for (URL url : urls) {
-                    putNextEntry(url);
+        try {
+            try {
+                if (!urls.isEmpty()) {
+                    writeDirEntry(ZipURLUtils.getUrlDirectoryName());
+                    for (Map.Entry<String, Future<byte[]>> entry : urls.entrySet()) {
+                        putNextEntry(entry.getKey(), entry.getValue());
+                    }
                 }
-            }
 
-            if (!ioErrorOccurred) {
-                zipOutputStream.closeEntry();
+                entryWriter.finish();
+                if (isSplit) {
+                    deleteStaleVolumes();
+                }
+            } finally {
+                entryWriter.close();
+                zipOutputStream.close();
             }
         } catch (IOException e) {
             addException(e);
         } finally {
+            if (urlExecutorService != null) {
+                urlExecutorService.shutdownNow();
+            }
+            if (directoryScanner != null) {
+                directoryScanner.close();
+            }
             super.close();
         }
     }
 
+    /**
+     * Returns the number of volumes written so far.
+     *
+     * @return the number of volumes, one if the archive is not split
+     */
+    public int getVolumesCount() {
+        return volumesCount;
+    }
+
+    private void deleteStaleVolumes() throws IOException {
+        for (int number = volumesCount + 1; Files.deleteIfExists(ArchiveVolumes.getVolumePath(outputFilePath, number)); number++) {
+        }
+    }
+
+    /**
+     * Submits the web page to be fetched, unless the same URL has already been submitted.
+     * URLs are compared as strings, as {@link java.net.URL#equals} resolves the host names and treats different hosts with the same address as equal.
+     *
+     * @param url the URL of the web page
+     */
+    private void fetchURL(@NotNull final URL url) {
+        String externalForm = url.toExternalForm();
+        if (urls.containsKey(externalForm)) {
+            return;
+        }
+
+        if (urlExecutorService == null) {
+            urlExecutorService = Executors.newFixedThreadPool(MAX_URL_CONNECTIONS, new ThreadFactory() {
+                @Override
+                public Thread newThread(@NotNull Runnable runnable) {
+                    Thread thread = new Thread(runnable, "url-fetcher");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        urls.put(externalForm, urlExecutorService.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws IOException {
+                return readURLContent(url);
+            }
+        }));
+    }
+
     private void putNextEntry(@NotNull Path path) throws IOException {
         final String pathString = path.toString();
         try {
@@ -106,10 +326,7 @@ public class ZipCompressor extends ExceptionsContainer {
 
         try {
             if (Files.isRegularFile(path)) {
-                byte[] data = readFileContent(path);
-                if (data != null) {
-                    writeEntry(pathString, data);
-                }
+                putNextFileEntry(path, null);
             } else if (Files.isDirectory(path)) {
                 putNextDirEntry(path);
             }
@@ -118,53 +335,145 @@ public class ZipCompressor extends ExceptionsContainer {
         }
     }
 
-    private void putNextEntry(@NotNull URL url) throws IOException {
-        byte[] data = readURLContent(url);
-        if (data != null) {
-            writeEntry(url.toString(), data);
+    private void putNextFileEntry(@NotNull Path path, @Nullable BasicFileAttributes attrs) throws IOException {
+        String archivePath = convertToArchivePath(path.toString());
+        if (!writtenPaths.add(archivePath)) {
+            return;
+        }
+        if (attrs == null) {
+            attrs = readAttributes(path);
+        }
+        long lastModified = attrs != null ? attrs.lastModifiedTime().toMillis() : -1;
+
+        ArchiveIndex.Entry baseEntry = baseIndex != null && attrs != null ? baseIndex.findEntry(archivePath) : null;
+        if (baseEntry != null && !isSameLength(baseEntry, attrs)) {
+            baseEntry = null;
+        }
+        if (baseEntry != null && baseEntry.getLastModified() != -1 && baseEntry.getLastModified() == lastModified) {
+            entryWriter.writeReference(archivePath, lastModified, baseEntry);
+            return;
+        }
+
+        boolean comparesWithBase = baseEntry != null && baseEntry.getDigest() != null;
+        boolean comparesWithWritten = attrs != null && attrs.size() > 0 && entryWriter.containsFileOfLength(attrs.size());
+        if (comparesWithBase || comparesWithWritten) {
+            DigestedContent digestedContent = readDigest(path);
+            if (digestedContent == null) {
+                return;
+            }
+            if (comparesWithBase && Arrays.equals(digestedContent.digest, baseEntry.getDigest())) {
+                entryWriter.writeReference(archivePath, lastModified, baseEntry);
+                return;
+            }
+            if (comparesWithWritten && entryWriter.writeDuplicate(archivePath, lastModified, attrs.size(), digestedContent.digest)) {
+                return;
+            }
+            if (digestedContent.content != null) {
+                writeFileEntry(path.toString(), lastModified, new ByteArrayInputStream(digestedContent.content));
+                return;
+            }
+        }
+
+        InputStream inputStream = openFile(path);
+        if (inputStream != null) {
+            try (InputStream fileInputStream = inputStream) {
+                writeFileEntry(path.toString(), lastModified, fileInputStream);
+            }
         }
     }
 
-    private void putNextDirEntry(@NotNull Path path) throws IOException {
-        try {
-            Files.walkFileTree(path, new FileVisitor<Path>() {
-                @Override
-                public FileVisitResult preVisitDirectory(@NotNull Path dir, @Nullable BasicFileAttributes attrs) throws IOException {
-                    if (directoryIsEmpty(dir)) {
-                        return FileVisitResult.TERMINATE;
-                    } else {
-                        writeDirEntry(dir.toString());
-                        return FileVisitResult.CONTINUE;
-                    }
-                }
+    private static boolean isSameLength(@NotNull ArchiveIndex.Entry baseEntry, @NotNull BasicFileAttributes attrs) {
+        return !baseEntry.isDirectory() && !baseEntry.isPart() && baseEntry.getLength() == attrs.size();
+    }
 
-                private boolean directoryIsEmpty(@NotNull Path dir) {
-                    try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(dir)) {
-                        return !directoryStream.iterator().hasNext();
-                    } catch (IOException e) {
-                        addException(e);
-                    }
-                    return true;
+    /**
+     * Reads the file to compute its digest. The content of a file that is not longer than {@link #MAX_KEPT_CONTENT_LENGTH} is kept,
+     * so the file is not read again if it turns out to be neither unchanged nor a duplicate. If the file cannot be read, the error is saved.
+     *
+     * @param path a path of the file
+     * @return the digest and the kept content of the file, or {@code null} if the file cannot be read
+     */
+    @Nullable
+    private DigestedContent readDigest(@NotNull Path path) {
+        InputStream inputStream = openFile(path);
+        if (inputStream == null) {
+            return null;
+        }
+
+        MessageDigest messageDigest = RecordWriter.createMessageDigest();
+        ByteArrayOutputStream contentStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[ArchiveFormat.CHUNK_SIZE];
+        try (InputStream fileInputStream = inputStream) {
+            int bytesRead;
+            while ((bytesRead = fileInputStream.read(buffer)) != -1) {
+                messageDigest.update(buffer, 0, bytesRead);
+                if (contentStream != null && contentStream.size() + bytesRead <= MAX_KEPT_CONTENT_LENGTH) {
+                    contentStream.write(buffer, 0, bytesRead);
+                } else {
+                    contentStream = null;
                 }
+            }
+        } catch (IOException e) {
+            addException(String.format("File \'%s\' cannot be read", path.toString()), e);
+            return null;
+        }
+        return new DigestedContent(messageDigest.digest(), contentStream != null ? contentStream.toByteArray() : null);
+    }
+
+    @Nullable
+    private BasicFileAttributes readAttributes(@NotNull Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            addException(e);
+        } catch (SecurityException e) {
+            addException(String.format("Attributes of the file \'%s\' cannot be read because of the security violation", path.toString()), e);
+        }
+        return null;
+    }
+
+    private void putNextEntry(@NotNull String url, @NotNull Future<byte[]> content) throws IOException {
+        byte[] data;
+        try {
+            data = content.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(String.format("Interrupted while fetching the web page \'%s\'", url));
+        } catch (ExecutionException e) {
+            addException(String.format("Web page \'%s\' cannot be fetched", url), e.getCause());
+            return;
+        }
+        if (!writtenPaths.add(convertToArchivePath(url))) {
+            addException(String.format("Web page \'%s\' has the same archive path as an already written entry, it is skipped", url));
+            return;
+        }
+        writeFileEntry(url, -1, new ByteArrayInputStream(data));
+    }
+
+    private void putNextDirEntry(@NotNull Path path) throws IOException {
+        if (directoryScanner == null) {
+            directoryScanner = new DirectoryScanner(MAX_SCANNER_THREADS);
+        }
 
+        try {
+            directoryScanner.scan(path, new DirectoryScanner.Visitor() {
                 @Override
-                public FileVisitResult visitFile(@NotNull Path file, @Nullable BasicFileAttributes attrs) throws IOException {
-                    putNextEntry(file);
-                    return FileVisitResult.CONTINUE;
+                public void visitDirectory(@NotNull Path directory, @NotNull BasicFileAttributes attrs) throws IOException {
+                    writeDirEntry(directory.toString());
                 }
 
                 @Override
-                public FileVisitResult visitFileFailed(@NotNull Path file, @NotNull IOException e) {
-                    addException(e);
-                    return FileVisitResult.CONTINUE;
+                public void visitFile(@NotNull Path file, @NotNull BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile() && Files.isReadable(file)) {
+                        putNextFileEntry(file, attrs);
+                    } else {
+                        putNextEntry(file);
+                    }
                 }
 
                 @Override
-                public FileVisitResult postVisitDirectory(@NotNull Path dir, @Nullable IOException e) {
-                    if (e != null) {
-                        addException(e);
-                    }
-                    return FileVisitResult.CONTINUE;
+                public void visitFailed(@NotNull Path path, @NotNull IOException e) {
+                    addException(e);
                 }
             });
         } catch (SecurityException e) {
@@ -173,9 +482,9 @@ public class ZipCompressor extends ExceptionsContainer {
     }
 
     @Nullable
-    private byte[] readFileContent(@NotNull Path path) {
+    private InputStream openFile(@NotNull Path path) {
         try {
-            return IOUtils.readContent(Files.newInputStream(path));
+            return Files.newInputStream(path);
         } catch (IOException e) {
             addException(e);
         } catch (SecurityException e) {
@@ -184,36 +493,79 @@ public class ZipCompressor extends ExceptionsContainer {
         return null;
     }
 
-    @Nullable
-    private byte[] readURLContent(@NotNull URL url) {
-        try {
-            return IOUtils.readContent(url.openConnection().getInputStream());
-        } catch (IOException e) {
-            addException(e);
+    @NotNull
+    private static byte[] readURLContent(@NotNull URL url) throws IOException {
+        URLConnection connection = url.openConnection();
+        connection.setConnectTimeout(URL_CONNECT_TIMEOUT_MILLIS);
+        connection.setReadTimeout(URL_READ_TIMEOUT_MILLIS);
+        return IOUtils.readContent(connection.getInputStream());
+    }
+
+    private void writeFileEntry(@NotNull String path, long lastModified, @NotNull InputStream inputStream) throws IOException {
+        entryWriter.writeFile(convertToArchivePath(path), lastModified, new TruncatingInputStream(path, inputStream));
+    }
+
+    private void writeDirEntry(@NotNull String path) throws IOException {
+        String archivePath = convertToArchivePath(path);
+        if (writtenPaths.add(archivePath)) {
+            entryWriter.writeDirectory(archivePath);
         }
-        return null;
     }
 
-    private void writeEntry(@NotNull String path, long length, @Nullable byte[] content) throws IOException {
-        if (!ioErrorOccurred) {
+    @NotNull
+    private static String convertToArchivePath(@NotNull String path) {
+        return ZipURLUtils.isURL(path) ? PathUtils.convertUrlToArchivePath(path) : PathUtils.convertOSPathToArchivePath(path);
+    }
+
+    /**
+     * Saves the read error and reports the end of the stream instead, so the entry is written with the content read so far.
+     */
+    private class TruncatingInputStream extends FilterInputStream {
+
+        @NotNull
+        private final String path;
+        private boolean readErrorOccurred = false;
+
+        public TruncatingInputStream(@NotNull String path, @NotNull InputStream inputStream) {
+            super(inputStream);
+            this.path = path;
+        }
+
+        @Override
+        public int read() {
+            byte[] buffer = new byte[1];
+            return read(buffer, 0, 1) == -1 ? -1 : buffer[0] & 0xFF;
+        }
+
+        @Override
+        public int read(@NotNull byte[] buffer, int offset, int length) {
+            if (readErrorOccurred) {
+                return -1;
+            }
+
             try {
-                dataOutputStream.writeUTF(ZipURLUtils.isURL(path) ? PathUtils.convertUrlToArchivePath(path) : PathUtils.convertOSPathToArchivePath(path));
-                dataOutputStream.writeLong(length);
-                if (content != null) {
-                    dataOutputStream.write(content);
-                }
+                return super.read(buffer, offset, length);
             } catch (IOException e) {
-                ioErrorOccurred = true;
-                throw e;
+                readErrorOccurred = true;
+                addException(String.format("File \'%s\' cannot be read to the end", path), e);
+                return -1;
             }
         }
     }
 
-    private void writeEntry(@NotNull String path, @NotNull byte[] content) throws IOException {
-        writeEntry(path, content.length, content);
-    }
+    /**
+     * The digest of the file content and the content itself if the file is short enough to be kept.
+     */
+    private static class DigestedContent {
 
-    private void writeDirEntry(@NotNull String path) throws IOException {
-        writeEntry(path, -1, null);
+        @NotNull
+        private final byte[] digest;
+        @Nullable
+        private final byte[] content;
+
+        public DigestedContent(@NotNull byte[] digest, @Nullable byte[] content) {
+            this.digest = digest;
+            this.content = content;
+        }
     }
 }
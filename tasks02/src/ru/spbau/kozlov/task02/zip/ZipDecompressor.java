@@ -3,19 +3,51 @@ package ru.spbau.kozlov.task02.zip;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import ru.spbau.kozlov.task02.zip.utils.IOUtils;
+import ru.spbau.kozlov.task02.zip.utils.PathUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
 
 /**
  * The {@link ru.spbau.kozlov.task02.zip.ZipDecompressor} class implements zip-decompressor.
+ * Entries are extracted to the current folder, unless another target directory is specified.
+ * Entries which paths are absolute or lead outside of the target directory, such as "../file", are skipped with an error whatever the layout of the archive is.
  * If extracted file cannot be placed to the file system, it is skipped. Web pages contained by the archive are extracted to the "http" directory.
+ * Entries could be written to the file system by a pool of worker threads while the archive is being read by the calling thread.
+ * Entries could be extracted selectively, then the contents of other entries are skipped without being decoded.
+ * Parts of the files split between the volumes are written at their positions without truncating the file, so the volumes could be extracted in any order,
+ * see {@link ru.spbau.kozlov.task02.zip.MultiVolumeDecompressor}. If a single volume is extracted by itself, the parts are skipped with an error instead,
+ * as the file cannot be restored without the other volumes.
  *
  * @author adkozlov
  */
 public class ZipDecompressor extends AbstractZipEntryVisitor {
+
+    private static final int PENDING_ENTRIES_PER_THREAD = 4;
+    private static final int MAX_BUFFERED_ENTRY_LENGTH = 4 * 1024 * 1024;
+
+    private final int threadsCount;
+    @NotNull
+    private final Path targetDirectory;
+    @Nullable
+    private ExecutorService executorService = null;
+    @NotNull
+    private final Set<Path> extractedFiles = new HashSet<>();
+    @Nullable
+    private PathMatcher pathMatcher = null;
+
     /**
      * Constructs a new decompressor with the specified input archive file path.
      *
@@ -23,53 +55,363 @@ public class ZipDecompressor extends AbstractZipEntryVisitor {
      * @throws java.io.IOException if an I/O error occurs during opening the archive file
      */
     public ZipDecompressor(@NotNull Path inputFilePath) throws IOException {
+        this(inputFilePath, 1);
+    }
+
+    /**
+     * Constructs a new decompressor with the specified input archive file path that writes entries in parallel.
+     *
+     * @param inputFilePath the path to the input archive
+     * @param threadsCount  the number of threads writing entries to the file system, if it is equal to one then everything is done by the calling thread
+     * @throws java.io.IOException if an I/O error occurs during opening the archive file
+     */
+    public ZipDecompressor(@NotNull Path inputFilePath, int threadsCount) throws IOException {
+        this(inputFilePath, threadsCount, Paths.get(""));
+    }
+
+    /**
+     * Constructs a new decompressor that writes entries in parallel to the specified directory instead of the current folder.
+     *
+     * @param inputFilePath   the path to the input archive
+     * @param threadsCount    the number of threads writing entries to the file system, if it is equal to one then everything is done by the calling thread
+     * @param targetDirectory the directory the entries are extracted to, it is created if it does not exist
+     * @throws java.io.IOException if an I/O error occurs during opening the archive file
+     */
+    public ZipDecompressor(@NotNull Path inputFilePath, int threadsCount, @NotNull Path targetDirectory) throws IOException {
         super(inputFilePath);
+        if (threadsCount < 1) {
+            close();
+            throw new IllegalArgumentException("Threads count should be positive");
+        }
+        this.threadsCount = threadsCount;
+        this.targetDirectory = targetDirectory;
     }
 
     /**
-     * Extracts the archive content to the current folder.
+     * Extracts the archive content to the target directory. Returns after all the entries are written.
+     * The number of entries read but not yet written is bounded, if all the workers are busy the calling thread waits for them.
      *
      * @throws IOException if an I/O error occurs during reading the archive file
      */
     public void extractAllEntries() throws IOException {
-        visitAllEntries();
+        startWorkers();
+        try {
+            visitAllEntries();
+        } finally {
+            awaitWorkers();
+        }
+    }
+
+    /**
+     * Extracts the entries which paths match the specified matcher to the target directory, as well as the contents of the matching directories.
+     * Entries are selected by the index and read in the order they are stored in the archive, the contents of other entries are skipped without being decoded.
+     * If the archive has no index, the whole archive is read and the contents of other entries are skipped.
+     *
+     * @param pathMatcher the matcher of the entry paths
+     * @throws IOException if an I/O error occurs during reading the archive file
+     */
+    public void extract(@NotNull PathMatcher pathMatcher) throws IOException {
+        if (!extractMatching(pathMatcher)) {
+            addException("No entries of the archive match the pattern");
+        }
     }
 
     /**
-     * Writes the entry content to the specified file.
+     * Extracts the entries which paths match the specified matcher as {@link #extract} does, but does not treat the absence of such entries as an error.
+     *
+     * @param pathMatcher the matcher of the entry paths
+     * @return {@code false} if the index contains no matching entries
+     * @throws IOException if an I/O error occurs during reading the archive file
+     */
+    boolean extractMatching(@NotNull PathMatcher pathMatcher) throws IOException {
+        ArchiveIndex archiveIndex = readIndex();
+        startWorkers();
+        try {
+            if (archiveIndex == null) {
+                this.pathMatcher = pathMatcher;
+                visitAllEntries();
+                return true;
+            }
+
+            List<ArchiveIndex.Entry> selectedEntries = new ArrayList<>();
+            for (ArchiveIndex.Entry entry : archiveIndex.getEntries()) {
+                if (matches(pathMatcher, entry.getPath())) {
+                    selectedEntries.add(entry);
+                }
+            }
+            if (selectedEntries.isEmpty()) {
+                return false;
+            }
+            visitEntries(selectedEntries);
+            return true;
+        } finally {
+            this.pathMatcher = null;
+            awaitWorkers();
+        }
+    }
+
+    private static boolean matches(@NotNull PathMatcher pathMatcher, @NotNull String archivePath) {
+        for (int index = archivePath.indexOf(PathUtils.ARCHIVE_FILE_SEPARATOR); index != -1; index = archivePath.indexOf(PathUtils.ARCHIVE_FILE_SEPARATOR, index + 1)) {
+            if (pathMatcher.matches(Paths.get(PathUtils.convertArchivePathToOSPath(archivePath.substring(0, index))))) {
+                return true;
+            }
+        }
+        return pathMatcher.matches(Paths.get(PathUtils.convertArchivePathToOSPath(archivePath)));
+    }
+
+    private void startWorkers() {
+        if (threadsCount > 1) {
+            executorService = new ThreadPoolExecutor(threadsCount, threadsCount, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(PENDING_ENTRIES_PER_THREAD * threadsCount), new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+    }
+
+    private void awaitWorkers() {
+        if (executorService == null) {
+            return;
+        }
+
+        executorService.shutdown();
+        try {
+            executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+            addException("Interrupted while waiting for the entries to be written", e);
+        }
+        executorService = null;
+    }
+
+    /**
+     * Extracts the single entry with the specified archive path to the target directory. Missing parent directories are created.
+     * Contents of other entries are skipped without being decompressed, so the archive should contain an index.
+     *
+     * @param archivePath the archive path of the entry
+     * @throws IOException if an I/O error occurs during reading the archive file
+     */
+    public void extractEntry(@NotNull String archivePath) throws IOException {
+        ArchiveIndex archiveIndex = readIndex();
+        if (archiveIndex == null) {
+            addException(String.format("Archive has no index, so the entry \'%s\' cannot be extracted separately", archivePath));
+            return;
+        }
+
+        ArchiveIndex.Entry entry = archiveIndex.findEntry(archivePath);
+        if (entry == null) {
+            addException(String.format("Entry \'%s\' is not found in the archive", archivePath));
+            return;
+        }
+
+        Path path = resolveTargetPath(Paths.get(PathUtils.convertArchivePathToOSPath(archivePath)));
+        if (path == null) {
+            return;
+        }
+        Path parentPath = path.getParent();
+        try {
+            if (parentPath != null) {
+                Files.createDirectories(parentPath);
+            }
+        } catch (IOException e) {
+            addException(e);
+            return;
+        } catch (SecurityException e) {
+            addException(String.format("Directory \'%s\' cannot be created because of the security violation", parentPath.toString()), e);
+            return;
+        }
+        visitEntry(entry);
+    }
+
+    /**
+     * Writes the entry content to the specified file, either immediately or by one of the worker threads.
      *
      * @param path a path of the specified entry
      * @param content an array of bytes containing the entry content
      */
     @Override
-    protected void onEntryVisit(@NotNull Path path, @Nullable byte[] content) {
-        writeEntryContent(path, content);
+    protected void onEntryVisit(@NotNull final Path path, @Nullable final byte[] content) {
+        if (!isSelected(path)) {
+            return;
+        }
+        if (executorService != null) {
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    writeEntryContent(path, content);
+                }
+            });
+        } else {
+            writeEntryContent(path, content);
+        }
     }
 
-    private void writeEntryContent(@NotNull Path path, @Nullable byte[] content) {
-        if (content != null) {
-            Path parentPath = path.getParent();
-            try {
-                if (parentPath != null && !Files.isWritable(parentPath)) {
-                    addException(String.format("Directory \'%s\' cannot be written to\n", parentPath.toString()));
-                    return;
-                }
-            } catch (SecurityException e) {
-                addException(String.format("Directory \'%s\' writing permissions cannot be determined because of the security violation", path.toString()), e);
-                return;
+    /**
+     * Streams the entry content to the specified file while it is being decoded, so the content is never held in memory entirely.
+     * If entries are written by the worker threads, the content of known length up to {@link #MAX_BUFFERED_ENTRY_LENGTH} is read entirely and passed to {@link #onEntryVisit},
+     * longer contents are streamed by the calling thread, so the memory held by the pending entries stays bounded.
+     * If the content turns out to be corrupted, the file is deleted.
+     *
+     * @param path    a path of the specified entry
+     * @param content the entry content
+     * @throws IOException if an I/O error occurs during reading the archive file
+     */
+    @Override
+    protected void onFileEntryVisit(@NotNull Path path, @NotNull EntryContent content) throws IOException {
+        if (!isSelected(path)) {
+            return;
+        }
+        if (executorService != null && content.getLength() >= 0 && content.getLength() <= MAX_BUFFERED_ENTRY_LENGTH) {
+            byte[] bytes = content.readAll();
+            if (bytes != null) {
+                onEntryVisit(path, bytes);
+            } else {
+                deleteFile(path);
             }
+            return;
+        }
+
+        FileChannel fileChannel = openFile(path);
+        if (fileChannel == null) {
+            return;
+        }
+
+        boolean isCorrupted;
+        boolean isWritten;
+        try (FileChannelOutputStream outputStream = new FileChannelOutputStream(fileChannel)) {
+            isCorrupted = !content.writeTo(outputStream);
+            isWritten = !outputStream.ioErrorOccurred;
+        }
+        if (isCorrupted) {
+            deleteFile(path);
+        } else if (isWritten) {
+            extractedFiles.add(path);
+        }
+    }
+
+    /**
+     * Writes the part content to the file at the position of the part. The file is created if it does not exist, but is not truncated,
+     * as the other parts could be written to it at the same time. The last part truncates the file to its length.
+     * Parts are always written by the calling thread. If the part content turns out to be corrupted, the whole file is deleted.
+     * Unless the volume is extracted by {@link ru.spbau.kozlov.task02.zip.MultiVolumeDecompressor}, the part is skipped with an error.
+     *
+     * @param path       a path of the file
+     * @param partOffset the position of the part in the file
+     * @param lastPart   {@code true} if the part is the last one, so it ends the file
+     * @param content    the part content
+     * @throws IOException if an I/O error occurs during reading the archive file
+     */
+    @Override
+    protected void onFilePartEntryVisit(@NotNull Path path, long partOffset, boolean lastPart, @NotNull EntryContent content) throws IOException {
+        if (!isSelected(path)) {
+            return;
+        }
+        if (!isVolumeExtraction()) {
+            addException(String.format("Entry \'%s\' is a part of the file split between the volumes, it is skipped, the whole archive should be extracted by its name", path.toString()));
+            return;
+        }
 
+        FileChannel fileChannel = openFile(path, false);
+        if (fileChannel == null) {
+            return;
+        }
+
+        boolean isCorrupted;
+        try (FileChannelOutputStream outputStream = new FileChannelOutputStream(fileChannel)) {
             try {
-                IOUtils.writeContent(Files.newOutputStream(path), content);
+                fileChannel.position(partOffset);
             } catch (IOException e) {
                 addException(e);
-            } catch (SecurityException e) {
-                addException(String.format("File \'%s\' cannot be created because of the security violation", path.toString()), e);
+                return;
+            }
+
+            isCorrupted = !content.writeTo(outputStream);
+            if (!isCorrupted && lastPart && !outputStream.ioErrorOccurred) {
+                try {
+                    fileChannel.truncate(fileChannel.position());
+                } catch (IOException e) {
+                    addException(e);
+                }
+            }
+        }
+        if (isCorrupted) {
+            deleteFile(path);
+        }
+    }
+
+    /**
+     * Checks if this decompressor extracts a volume as a part of the whole split archive, so the parts of the split files should be written.
+     *
+     * @return {@code true} if the other volumes are extracted as well
+     */
+    boolean isVolumeExtraction() {
+        return false;
+    }
+
+    /**
+     * Copies the already extracted original file, so the content is not decompressed again.
+     * If the original has not been extracted by this decompressor or entries are written by the worker threads, the original content is read again.
+     *
+     * @param path          a path of the specified entry
+     * @param originalEntry the index entry of the original
+     * @throws IOException if an I/O error occurs during reading the archive file
+     */
+    @Override
+    protected void onDuplicateEntryVisit(@NotNull Path path, @NotNull ArchiveIndex.Entry originalEntry) throws IOException {
+        if (!isSelected(path)) {
+            return;
+        }
+        Path originalPath = Paths.get(PathUtils.convertArchivePathToOSPath(originalEntry.getPath()));
+        if (executorService != null || !extractedFiles.contains(originalPath)) {
+            super.onDuplicateEntryVisit(path, originalEntry);
+            return;
+        }
+
+        Path originalTargetPath = resolveTargetPath(originalPath);
+        if (originalTargetPath == null) {
+            return;
+        }
+        FileChannel fileChannel = openFile(path);
+        if (fileChannel == null) {
+            return;
+        }
+
+        try (FileChannel outputChannel = fileChannel; FileChannel inputChannel = FileChannel.open(originalTargetPath, StandardOpenOption.READ)) {
+            long position = 0;
+            long size = inputChannel.size();
+            while (position < size) {
+                position += inputChannel.transferTo(position, size - position, outputChannel);
+            }
+            getMetrics().addRawBytes(size);
+            extractedFiles.add(path);
+        } catch (IOException e) {
+            addException(e);
+        } catch (SecurityException e) {
+            addException(String.format("File \'%s\' cannot be read because of the security violation", originalPath.toString()), e);
+        }
+    }
+
+    private boolean isSelected(@NotNull Path path) {
+        return pathMatcher == null || matches(pathMatcher, PathUtils.convertOSPathToArchivePath(path.toString()));
+    }
+
+    private void writeEntryContent(@NotNull Path path, @Nullable byte[] content) {
+        if (content != null) {
+            FileChannel fileChannel = openFile(path);
+            if (fileChannel == null) {
+                return;
+            }
+
+            try (FileChannelOutputStream outputStream = new FileChannelOutputStream(fileChannel)) {
+                outputStream.write(content, 0, content.length);
             }
         } else {
-            File dir = path.toFile();
+            Path dirPath = resolveTargetPath(path);
+            if (dirPath == null) {
+                return;
+            }
+
+            File dir = dirPath.toFile();
             try {
-                if (!dir.exists() && !dir.mkdirs()) {
+                if (!dir.mkdirs() && !dir.isDirectory()) {
                     addException(String.format("Directory \'%s\' cannot be created\n", path.toString()));
                 }
             } catch (SecurityException e) {
@@ -77,4 +419,118 @@ public class ZipDecompressor extends AbstractZipEntryVisitor {
             }
         }
     }
+
+    @Nullable
+    private FileChannel openFile(@NotNull Path path) {
+        return openFile(path, true);
+    }
+
+    @Nullable
+    private FileChannel openFile(@NotNull Path entryPath, boolean truncate) {
+        Path path = resolveTargetPath(entryPath);
+        if (path == null) {
+            return null;
+        }
+        Path parentPath = path.getParent();
+        try {
+            if (parentPath != null && !Files.isDirectory(parentPath)) {
+                Files.createDirectories(parentPath);
+            }
+            if (parentPath != null && !Files.isWritable(parentPath)) {
+                addException(String.format("Directory \'%s\' cannot be written to\n", parentPath.toString()));
+                return null;
+            }
+        } catch (IOException e) {
+            addException(e);
+            return null;
+        } catch (SecurityException e) {
+            addException(String.format("Directory \'%s\' writing permissions cannot be determined because of the security violation", path.toString()), e);
+            return null;
+        }
+
+        try {
+            return truncate ? FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)
+                    : FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        } catch (IOException e) {
+            addException(e);
+        } catch (SecurityException e) {
+            addException(String.format("File \'%s\' cannot be created because of the security violation", path.toString()), e);
+        }
+        return null;
+    }
+
+    private void deleteFile(@NotNull Path entryPath) {
+        Path path = resolveTargetPath(entryPath);
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            addException(e);
+        } catch (SecurityException e) {
+            addException(String.format("File \'%s\' cannot be deleted because of the security violation", path.toString()), e);
+        }
+    }
+
+    /**
+     * Resolves the entry path against the target directory. If the entry path is absolute or leads outside of the target directory, the error is saved.
+     * The check is made on the absolute normalized paths, as a relative target directory, e.g. the empty path of the working directory,
+     * is not a prefix of the normalized path leading to its parent.
+     *
+     * @param entryPath a path of the entry
+     * @return the normalized path of the extracted entry, or {@code null} if the entry should be skipped
+     */
+    @Nullable
+    private Path resolveTargetPath(@NotNull Path entryPath) {
+        Path base = targetDirectory.toAbsolutePath().normalize();
+        if (entryPath.isAbsolute() || !base.resolve(entryPath).normalize().startsWith(base)) {
+            addException(String.format("Entry \'%s\' is outside of the target directory, it is skipped", entryPath.toString()));
+            return null;
+        }
+        return targetDirectory.resolve(entryPath).normalize();
+    }
+
+    /**
+     * Writes bytes to the file channel. If an I/O error occurs, the error is saved and the rest of the bytes is ignored,
+     * so the archive could be read further.
+     */
+    private class FileChannelOutputStream extends OutputStream {
+
+        @NotNull
+        private final FileChannel fileChannel;
+        private boolean ioErrorOccurred = false;
+
+        public FileChannelOutputStream(@NotNull FileChannel fileChannel) {
+            this.fileChannel = fileChannel;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(@NotNull byte[] bytes, int offset, int length) {
+            if (!ioErrorOccurred) {
+                long startNanos = System.nanoTime();
+                try {
+                    IOUtils.write(fileChannel, bytes, offset, length);
+                } catch (IOException e) {
+                    ioErrorOccurred = true;
+                    addException(e);
+                }
+                getMetrics().addTime(ArchiveMetrics.Phase.WRITE, System.nanoTime() - startNanos);
+            }
+        }
+
+        @Override
+        public void close() {
+            try {
+                fileChannel.close();
+            } catch (IOException e) {
+                addException(e);
+            }
+        }
+    }
 }
@@ -0,0 +1,134 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+import ru.spbau.kozlov.task02.zip.utils.IOUtils;
+import ru.spbau.kozlov.task02.zip.utils.PathUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.ZipEntryWriter} class writes every file and directory as a separate zip entry, as described by {@link ru.spbau.kozlov.task02.zip.ArchiveLayout#ENTRIES}.
+ * Sizes and checksums of the entries are stored by the {@link java.util.zip.ZipOutputStream} itself.
+ * Entries are deflated, as standard tools do not know the other codecs: the level of the entry is chosen by the {@link ru.spbau.kozlov.task02.zip.CodecSelector},
+ * stored content is deflated with no compression and the {@link ru.spbau.kozlov.task02.zip.Codec#LZ} codec is replaced with the fastest deflate.
+ * The stream deflates the content while writing it, so the time of both is accounted as the {@link ru.spbau.kozlov.task02.zip.ArchiveMetrics.Phase#COMPRESS} phase.
+ *
+ * @author adkozlov
+ */
+class ZipEntryWriter implements EntryWriter {
+
+    @NotNull
+    private final ZipOutputStream zipOutputStream;
+    @NotNull
+    private final CodecSelector codecSelector;
+    @NotNull
+    private final byte[] buffer = new byte[ArchiveFormat.CHUNK_SIZE];
+    @NotNull
+    private final ArchiveMetrics metrics;
+
+    private boolean ioErrorOccurred = false;
+
+    /**
+     * Constructs a new writer.
+     *
+     * @param zipOutputStream the archive stream
+     * @param codecSelector   the selector choosing the compression level of every file
+     * @param metrics         the metrics to be updated, the stored bytes are counted by the compressed sizes of the entries
+     */
+    public ZipEntryWriter(@NotNull ZipOutputStream zipOutputStream, @NotNull CodecSelector codecSelector, @NotNull ArchiveMetrics metrics) {
+        this.zipOutputStream = zipOutputStream;
+        this.codecSelector = codecSelector;
+        this.metrics = metrics;
+        zipOutputStream.setComment(ArchiveFormat.ENTRIES_LAYOUT_COMMENT);
+    }
+
+    @Override
+    public void writeDirectory(@NotNull String archivePath) throws IOException {
+        if (!ioErrorOccurred) {
+            try {
+                zipOutputStream.putNextEntry(new ZipEntry(archivePath + PathUtils.ARCHIVE_FILE_SEPARATOR));
+                zipOutputStream.closeEntry();
+                metrics.addEntry(archivePath);
+            } catch (IOException e) {
+                ioErrorOccurred = true;
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void writeFile(@NotNull String archivePath, long lastModified, @NotNull InputStream inputStream) throws IOException {
+        if (!ioErrorOccurred) {
+            try {
+                ZipEntry zipEntry = new ZipEntry(archivePath);
+                if (lastModified != -1) {
+                    zipEntry.setTime(lastModified);
+                }
+                long startNanos = System.nanoTime();
+                int bytesRead = IOUtils.readFully(inputStream, buffer);
+                long readNanos = System.nanoTime() - startNanos;
+                zipOutputStream.setLevel(getDeflateLevel(codecSelector.select(archivePath, buffer, bytesRead)));
+                zipOutputStream.putNextEntry(zipEntry);
+                while (bytesRead > 0) {
+                    metrics.addRawBytes(bytesRead);
+                    long writeStartNanos = System.nanoTime();
+                    zipOutputStream.write(buffer, 0, bytesRead);
+                    long readStartNanos = System.nanoTime();
+                    metrics.addTime(ArchiveMetrics.Phase.COMPRESS, readStartNanos - writeStartNanos);
+                    bytesRead = inputStream.read(buffer);
+                    readNanos += System.nanoTime() - readStartNanos;
+                }
+                zipOutputStream.closeEntry();
+                metrics.addTime(ArchiveMetrics.Phase.READ, readNanos);
+                metrics.addStoredBytes(zipEntry.getCompressedSize());
+                metrics.addEntry(archivePath);
+            } catch (IOException e) {
+                ioErrorOccurred = true;
+                throw e;
+            }
+        }
+    }
+
+    private static int getDeflateLevel(@NotNull CompressionMethod method) {
+        switch (method.getCodec()) {
+            case STORED:
+                return Deflater.NO_COMPRESSION;
+            case LZ:
+                return Deflater.BEST_SPEED;
+            default:
+                return method.getLevel();
+        }
+    }
+
+    @Override
+    public void writeReference(@NotNull String archivePath, long lastModified, @NotNull ArchiveIndex.Entry baseEntry) {
+        throw new UnsupportedOperationException("Entries layout does not support references");
+    }
+
+    @Override
+    public boolean containsFileOfLength(long length) {
+        return false;
+    }
+
+    @Override
+    public boolean writeDuplicate(@NotNull String archivePath, long lastModified, long length, @NotNull byte[] digest) {
+        return false;
+    }
+
+    @Override
+    public void finish() {
+    }
+
+    @Override
+    public boolean hasIOErrorOccurred() {
+        return ioErrorOccurred;
+    }
+
+    @Override
+    public void close() {
+    }
+}
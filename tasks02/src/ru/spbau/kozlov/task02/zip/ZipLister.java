@@ -2,16 +2,20 @@ package ru.spbau.kozlov.task02.zip;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
-import ru.spbau.kozlov.task02.zip.utils.FilterReversedIterator;
-import ru.spbau.kozlov.task02.zip.utils.PathUtils;
-import ru.spbau.kozlov.task02.zip.utils.ZipURLUtils;
+import ru.spbau.kozlov.task02.zip.utils.PathTreeWriter;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * The {@link ru.spbau.kozlov.task02.zip.ZipLister} class implements a tool that can list entries contained in the archive.
  * Files and directories would not be created during reading the archive file.
+ * If the archive has an index, only the index is read, so the time does not depend on the size of the archive contents.
+ * The archive split into volumes is listed by its name as a whole, a file continued in the next volumes is listed once.
  *
  * @author adkozlov
  */
@@ -34,35 +38,69 @@ public class ZipLister extends AbstractZipEntryVisitor {
      */
     @NotNull
     public String listAllEntries() throws IOException {
-        String[] next = new String[0];
-        String[] nextPrefixes = new String[0];
-
-        StringBuilder stringBuilder = new StringBuilder();
-        for (FilterReversedIterator iterator = new FilterReversedIterator(visitAllEntries()); iterator.hasNext(); ) {
-            String[] current = iterator.next().split(PathUtils.ARCHIVE_FILE_SEPARATOR_STRING);
-            String[] prefixes = new String[current.length];
-            boolean isUrl = current[0].equals(ZipURLUtils.getUrlDirectoryName()) && current.length != 1;
+        StringWriter stringWriter = new StringWriter();
+        listAllEntries(stringWriter);
+        return stringWriter.toString();
+    }
 
-            stringBuilder.insert(0, System.lineSeparator());
-            stringBuilder.insert(0, current[current.length - 1]);
-            stringBuilder.insert(0, "|_");
-            prefixes[current.length - 1] = "| ";
+    /**
+     * Writes a string representation of the file tree contained in the archive to the specified writer, line by line.
+     * The writer is neither flushed nor closed.
+     *
+     * @param writer the writer to be written to, it should be buffered
+     * @throws IOException if an I/O error occurs during reading the archive file or writing
+     */
+    public void listAllEntries(@NotNull Writer writer) throws IOException {
+        PathTreeWriter.write(readAllPaths(true), writer);
+    }
 
-            for (int j = current.length - 2; j >= 0; j--) {
-                stringBuilder.insert(0, String.format("%" + current[j].length() + "s", " "));
-                String prefix = !isUrl && j < next.length ? "| " : "  ";
-                if (j < nextPrefixes.length && nextPrefixes[j] != null && nextPrefixes[j].equals("  ")) {
-                    prefix = "  ";
-                }
-                stringBuilder.insert(0, prefix);
-                prefixes[j] = prefix;
+    /**
+     * Writes a string representation of the file tree contained in the archive to the specified writer, as {@link #listAllEntries(java.io.Writer)} does.
+     * If the archive is split into volumes, the entries of all the volumes found by {@link ru.spbau.kozlov.task02.zip.ArchiveVolumes#findVolumes} are listed.
+     *
+     * @param archivePath the path to the archive
+     * @param writer      the writer to be written to, it should be buffered
+     * @throws IOException if an I/O error occurs during reading the archive files or writing
+     */
+    public static void listAllVolumes(@NotNull Path archivePath, @NotNull Writer writer) throws IOException {
+        List<String> paths = new ArrayList<>();
+        for (Path volume : ArchiveVolumes.findVolumes(archivePath)) {
+            try (ZipLister zipLister = new ZipLister(volume)) {
+                paths.addAll(zipLister.readAllPaths(false));
             }
+        }
+        PathTreeWriter.write(paths, writer);
+    }
+
+    /**
+     * Returns the index of the archive. For the archives in the {@link ru.spbau.kozlov.task02.zip.ArchiveLayout#ENTRIES} layout the index is built from the zip central directory.
+     *
+     * @return the archive index
+     * @throws IOException if an I/O error occurs during reading the archive file or the archive has no index
+     */
+    @NotNull
+    public ArchiveIndex readArchiveIndex() throws IOException {
+        ArchiveIndex archiveIndex = readIndex();
+        if (archiveIndex == null) {
+            throw new IOException("Archive has no index");
+        }
+        return archiveIndex;
+    }
 
-            next = current;
-            nextPrefixes = prefixes;
+    @NotNull
+    private List<String> readAllPaths(boolean listContinuedParts) throws IOException {
+        ArchiveIndex archiveIndex = readIndex();
+        if (archiveIndex == null) {
+            return visitAllEntries();
         }
 
-        return stringBuilder.toString();
+        List<String> result = new ArrayList<>(archiveIndex.getEntries().size());
+        for (ArchiveIndex.Entry entry : archiveIndex.getEntries()) {
+            if (listContinuedParts || !entry.isPart() || entry.getPartOffset() == 0) {
+                result.add(entry.getPath());
+            }
+        }
+        return result;
     }
 
     /**
@@ -74,4 +112,36 @@ public class ZipLister extends AbstractZipEntryVisitor {
     @Override
     protected void onEntryVisit(@NotNull Path path, @Nullable byte[] content) {
     }
+
+    /**
+     * Does nothing, so the content is skipped without being decompressed.
+     *
+     * @param path    a path of the specified entry
+     * @param content the entry content
+     */
+    @Override
+    protected void onFileEntryVisit(@NotNull Path path, @NotNull EntryContent content) {
+    }
+
+    /**
+     * Does nothing, so the part content is skipped without being decompressed.
+     *
+     * @param path       a path of the file
+     * @param partOffset the position of the part in the file
+     * @param lastPart   {@code true} if the part is the last one
+     * @param content    the part content
+     */
+    @Override
+    protected void onFilePartEntryVisit(@NotNull Path path, long partOffset, boolean lastPart, @NotNull EntryContent content) {
+    }
+
+    /**
+     * Does nothing, so the original content is not read again.
+     *
+     * @param path          a path of the specified entry
+     * @param originalEntry the index entry of the original
+     */
+    @Override
+    protected void onDuplicateEntryVisit(@NotNull Path path, @NotNull ArchiveIndex.Entry originalEntry) {
+    }
 }
@@ -0,0 +1,518 @@
+package ru.spbau.kozlov.task02.zip;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import ru.spbau.kozlov.task02.zip.utils.CountingInputStream;
+import ru.spbau.kozlov.task02.zip.utils.IOUtils;
+import ru.spbau.kozlov.task02.zip.utils.PathUtils;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.ZipVerifier} class implements a tool that checks the integrity of the archive without extracting it.
+ * Every file entry is decoded and compared with the length and the checksum stored in the archive, the results are collected to the {@link ru.spbau.kozlov.task02.zip.VerificationReport}.
+ * In the chunked layout the archive is read by the calling thread, while the chunks are decoded by the pool of worker threads and checksums are computed in the order of the chunks.
+ * In the {@link ru.spbau.kozlov.task02.zip.ArchiveLayout#ENTRIES} layout every zip entry is verified by one of the worker threads independently.
+ * Archives in the legacy format contain no checksums, so only their structure is verified.
+ * Entries referencing the base archive are compared with the entries of the base archive by the lengths, the checksums and the digests recorded in the indices,
+ * but the contents of the base archive are not decoded, so the base archive should be verified separately.
+ *
+ * @author adkozlov
+ */
+public class ZipVerifier extends ExceptionsContainer {
+
+    private static final int PENDING_CHUNKS_PER_THREAD = 2;
+    private static final int PENDING_ENTRIES_PER_THREAD = 4;
+
+    @NotNull
+    private final ZipFile zipFile;
+    private final int threadsCount;
+    @Nullable
+    private ExecutorService executorService = null;
+    @NotNull
+    private final Queue<ChunkCheck> freeChunkChecks = new ArrayDeque<>();
+    @NotNull
+    private final Queue<Object> pendingChecks = new ArrayDeque<>();
+    @Nullable
+    private ArchiveIndex baseIndex = null;
+    @Nullable
+    private String baseIndexError = null;
+
+    /**
+     * Constructs a new verifier with the specified input archive file path.
+     *
+     * @param inputFilePath the path to the input archive
+     * @param threadsCount  the number of threads decoding entries, if it is equal to one then everything is done by the calling thread
+     * @throws IOException if an I/O error occurs during opening the archive file
+     * @throws SecurityException if the archive file cannot be read because of the security violation
+     */
+    public ZipVerifier(@NotNull Path inputFilePath, int threadsCount) throws IOException, SecurityException {
+        if (threadsCount < 1) {
+            throw new IllegalArgumentException("Threads count should be positive");
+        }
+        this.threadsCount = threadsCount;
+        zipFile = new ZipFile(inputFilePath.toFile());
+    }
+
+    /**
+     * Verifies all the entries of the archive. If the structure of the archive turns out to be broken, the verification stops at the first error.
+     *
+     * @return the verification report
+     * @throws IOException if an I/O error occurs during reading the archive file
+     */
+    @NotNull
+    public VerificationReport verify() throws IOException {
+        long startTime = System.nanoTime();
+        if (threadsCount > 1) {
+            executorService = new ThreadPoolExecutor(threadsCount, threadsCount, 0, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<Runnable>(PENDING_ENTRIES_PER_THREAD * threadsCount), new ThreadPoolExecutor.CallerRunsPolicy());
+        }
+
+        VerificationReport report;
+        try {
+            if (ArchiveFormat.isEntriesLayout(zipFile)) {
+                report = new VerificationReport(true);
+                verifyZipEntries(report);
+            } else if (zipFile.getEntry(ArchiveFormat.DATA_ENTRY_NAME) != null) {
+                report = new VerificationReport(true);
+                verifyRecords(report);
+            } else {
+                report = new VerificationReport(false);
+                verifyLegacyEntries(report);
+            }
+        } finally {
+            if (executorService != null) {
+                executorService.shutdownNow();
+                executorService = null;
+            }
+        }
+
+        report.setElapsedNanos(System.nanoTime() - startTime);
+        return report;
+    }
+
+    /**
+     * Closes this verifier and releases any system resources associated with it.
+     *
+     * @throws IOException if an I/O error occurs
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            for (ChunkCheck chunkCheck : freeChunkChecks) {
+                chunkCheck.end();
+            }
+            zipFile.close();
+        } catch (IOException e) {
+            addException(e);
+        } finally {
+            super.close();
+        }
+    }
+
+    private void verifyZipEntries(@NotNull final VerificationReport report) {
+        Enumeration<? extends ZipEntry> zipEntries = zipFile.entries();
+        for (long order = 0; zipEntries.hasMoreElements(); order++) {
+            final ZipEntry zipEntry = zipEntries.nextElement();
+            final long entryOrder = order;
+            Runnable check = new Runnable() {
+                @Override
+                public void run() {
+                    verifyZipEntry(zipEntry, entryOrder, report);
+                }
+            };
+
+            if (executorService != null) {
+                executorService.execute(check);
+            } else {
+                check.run();
+            }
+        }
+
+        if (executorService != null) {
+            executorService.shutdown();
+            try {
+                executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                addException("Interrupted while waiting for the entries to be verified", e);
+            }
+        }
+    }
+
+    private void verifyZipEntry(@NotNull ZipEntry zipEntry, long order, @NotNull VerificationReport report) {
+        if (zipEntry.isDirectory()) {
+            report.addEntry(0);
+            return;
+        }
+
+        CRC32 crc32 = new CRC32();
+        byte[] buffer = new byte[ArchiveFormat.CHUNK_SIZE];
+        long length = 0;
+        try (InputStream inputStream = zipFile.getInputStream(zipEntry)) {
+            int bytesRead;
+            while ((bytesRead = inputStream.read(buffer)) != -1) {
+                crc32.update(buffer, 0, bytesRead);
+                length += bytesRead;
+            }
+        } catch (IOException e) {
+            report.addCorruptedEntry(zipEntry.getName(), -1, order, String.valueOf(e.getMessage()));
+            return;
+        }
+
+        if (zipEntry.getSize() != -1 && zipEntry.getSize() != length) {
+            report.addCorruptedEntry(zipEntry.getName(), -1, order, String.format("%d of %d bytes decoded", length, zipEntry.getSize()));
+        } else if (zipEntry.getCrc() != -1 && zipEntry.getCrc() != crc32.getValue()) {
+            report.addCorruptedEntry(zipEntry.getName(), -1, order, "checksum mismatch");
+        } else {
+            report.addEntry(length);
+        }
+    }
+
+    private void verifyRecords(@NotNull VerificationReport report) throws IOException {
+        ArchiveIndex archiveIndex = readIndex(report);
+        for (int i = 0; i < (threadsCount > 1 ? PENDING_CHUNKS_PER_THREAD * threadsCount : 1); i++) {
+            freeChunkChecks.add(new ChunkCheck());
+        }
+
+        ZipEntry dataEntry = zipFile.getEntry(ArchiveFormat.DATA_ENTRY_NAME);
+        try (CountingInputStream countingInputStream = new CountingInputStream(new BufferedInputStream(zipFile.getInputStream(dataEntry), ArchiveFormat.CHUNK_SIZE))) {
+            DataInputStream dataInputStream = new DataInputStream(countingInputStream);
+            try {
+                int version = dataInputStream.readInt();
+                if (version > ArchiveFormat.VERSION) {
+                    throw new IOException(String.format("Archive format version %d is not supported", version));
+                }
+
+                while (true) {
+                    long recordOffset = countingInputStream.getPosition();
+                    byte kind = dataInputStream.readByte();
+                    if (kind == ArchiveFormat.END_RECORD) {
+                        break;
+                    }
+
+                    String archivePath = dataInputStream.readUTF();
+                    ArchiveIndex.Entry indexEntry = archiveIndex != null ? archiveIndex.findEntry(archivePath) : null;
+                    String corruptionReason = null;
+                    if (archiveIndex != null && (indexEntry == null || indexEntry.getOffset() != recordOffset || indexEntry.getKind() != kind)) {
+                        corruptionReason = "archive index does not match the record";
+                    }
+
+                    switch (kind) {
+                        case ArchiveFormat.PART_RECORD:
+                        case ArchiveFormat.FILE_RECORD:
+                            if (kind == ArchiveFormat.PART_RECORD) {
+                                dataInputStream.readLong();
+                            }
+                            verifyChunks(new FileCheck(archivePath, recordOffset, indexEntry, corruptionReason), dataInputStream, countingInputStream, report);
+                            continue;
+                        case ArchiveFormat.DUPLICATE_RECORD:
+                            String originalPath = dataInputStream.readUTF();
+                            if (corruptionReason == null && archiveIndex != null && archiveIndex.findEntry(originalPath) == null) {
+                                corruptionReason = String.format("original entry \'%s\' is not found", originalPath);
+                            }
+                            break;
+                        case ArchiveFormat.REFERENCE_RECORD:
+                            if (corruptionReason == null) {
+                                corruptionReason = archiveIndex != null ? checkReference(archiveIndex, archivePath) : "archive has no index, so the base archive is unknown";
+                            }
+                            break;
+                        case ArchiveFormat.DIRECTORY_RECORD:
+                            break;
+                        default:
+                            throw new IOException(String.format("Unknown record kind %d of the entry \'%s\'", kind, archivePath));
+                    }
+
+                    if (corruptionReason != null) {
+                        report.addCorruptedEntry(archivePath, recordOffset, recordOffset, corruptionReason);
+                    } else {
+                        report.addEntry(0);
+                    }
+                }
+            } catch (EOFException e) {
+                report.addCorruptedEntry(null, countingInputStream.getPosition(), countingInputStream.getPosition(), "unexpected end of the data entry");
+            } catch (IOException e) {
+                report.addCorruptedEntry(null, countingInputStream.getPosition(), countingInputStream.getPosition(), String.valueOf(e.getMessage()));
+            } finally {
+                while (!pendingChecks.isEmpty()) {
+                    completeNextCheck(report);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that the base archive contains the referenced entry with the length, the checksum and the digest recorded by the reference.
+     *
+     * @return the corruption reason, or {@code null} if the entry of the base archive is the referenced one
+     */
+    @Nullable
+    private String checkReference(@NotNull ArchiveIndex archiveIndex, @NotNull String archivePath) {
+        if (archiveIndex.getBaseArchive() == null) {
+            return "base archive is unknown";
+        }
+        if (baseIndex == null && baseIndexError == null) {
+            Path archiveDirectory = Paths.get(zipFile.getName()).toAbsolutePath().getParent();
+            Path basePath = archiveDirectory.resolve(PathUtils.convertArchivePathToOSPath(archiveIndex.getBaseArchive()));
+            try (ZipLister zipLister = new ZipLister(basePath)) {
+                baseIndex = zipLister.readArchiveIndex();
+            } catch (IOException | SecurityException e) {
+                baseIndexError = String.format("base archive cannot be read: %s", e.getMessage());
+            }
+        }
+        if (baseIndex == null) {
+            return baseIndexError;
+        }
+
+        ArchiveIndex.Entry referenceEntry = archiveIndex.findEntry(archivePath);
+        ArchiveIndex.Entry baseEntry = baseIndex.findEntry(archivePath);
+        if (baseEntry == null || baseEntry.isDirectory()) {
+            return "entry is not found in the base archive";
+        }
+        if (referenceEntry == null || !referenceEntry.hasSameContent(baseEntry)) {
+            return "entry of the base archive has changed";
+        }
+        return null;
+    }
+
+    @Nullable
+    private ArchiveIndex readIndex(@NotNull VerificationReport report) {
+        ZipEntry indexEntry = zipFile.getEntry(ArchiveFormat.INDEX_ENTRY_NAME);
+        if (indexEntry == null) {
+            return null;
+        }
+
+        try (DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(zipFile.getInputStream(indexEntry)))) {
+            return ArchiveIndex.read(dataInputStream);
+        } catch (IOException e) {
+            report.addCorruptedEntry(ArchiveFormat.INDEX_ENTRY_NAME, -1, Long.MAX_VALUE - 1, String.format("index cannot be read: %s", e.getMessage()));
+            return null;
+        }
+    }
+
+    private void verifyChunks(@NotNull FileCheck fileCheck, @NotNull DataInputStream dataInputStream, @NotNull CountingInputStream countingInputStream,
+                              @NotNull VerificationReport report) throws IOException {
+        Codec codec = Codec.fromId(dataInputStream.readByte());
+        while (true) {
+            long chunkOffset = countingInputStream.getPosition();
+            int rawLength = dataInputStream.readInt();
+            int storedLength = dataInputStream.readInt();
+            if (rawLength == 0) {
+                break;
+            }
+            if (rawLength < 0 || rawLength > ArchiveFormat.CHUNK_SIZE || storedLength < 0 || storedLength > rawLength) {
+                throw new IOException(String.format("Corrupted chunk header: raw length %d, stored length %d", rawLength, storedLength));
+            }
+
+            while (freeChunkChecks.isEmpty()) {
+                completeNextCheck(report);
+            }
+            ChunkCheck chunkCheck = freeChunkChecks.remove();
+            dataInputStream.readFully(chunkCheck.stored, 0, storedLength);
+            chunkCheck.prepare(fileCheck, codec, rawLength, storedLength, chunkOffset);
+
+            if (executorService != null) {
+                chunkCheck.future = executorService.submit(chunkCheck);
+            } else {
+                chunkCheck.call();
+            }
+            pendingChecks.add(chunkCheck);
+            completeDoneChecks(report);
+        }
+
+        pendingChecks.add(fileCheck);
+        completeDoneChecks(report);
+    }
+
+    private void completeDoneChecks(@NotNull VerificationReport report) {
+        while (!pendingChecks.isEmpty() && (!(pendingChecks.peek() instanceof ChunkCheck) || ((ChunkCheck) pendingChecks.peek()).isDone())) {
+            completeNextCheck(report);
+        }
+    }
+
+    private void completeNextCheck(@NotNull VerificationReport report) {
+        Object pendingCheck = pendingChecks.remove();
+        if (pendingCheck instanceof FileCheck) {
+            ((FileCheck) pendingCheck).complete(report);
+            return;
+        }
+
+        ChunkCheck chunkCheck = (ChunkCheck) pendingCheck;
+        try {
+            if (chunkCheck.future != null) {
+                waitFor(chunkCheck.future);
+            }
+            chunkCheck.fileCheck.update(chunkCheck);
+        } finally {
+            chunkCheck.future = null;
+            chunkCheck.fileCheck = null;
+            freeChunkChecks.add(chunkCheck);
+        }
+    }
+
+    private void verifyLegacyEntries(@NotNull VerificationReport report) throws IOException {
+        ZipEntry legacyEntry = zipFile.getEntry(ArchiveFormat.LEGACY_ENTRY_NAME);
+        try (CountingInputStream countingInputStream = new CountingInputStream(new BufferedInputStream(zipFile.getInputStream(legacyEntry), ArchiveFormat.CHUNK_SIZE))) {
+            DataInputStream dataInputStream = new DataInputStream(countingInputStream);
+            String archivePath = null;
+            long entryOffset = 0;
+            try {
+                while (dataInputStream.available() > 0) {
+                    entryOffset = countingInputStream.getPosition();
+                    archivePath = dataInputStream.readUTF();
+                    long length = dataInputStream.readLong();
+                    if (length != -1) {
+                        IOUtils.skip(dataInputStream, length);
+                    }
+                    report.addEntry(Math.max(length, 0));
+                    archivePath = null;
+                }
+            } catch (IOException e) {
+                report.addCorruptedEntry(archivePath, entryOffset, entryOffset, String.valueOf(e.getMessage()));
+            }
+        }
+    }
+
+    private void waitFor(@NotNull Future<?> future) {
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            addException("Interrupted while waiting for the chunk to be verified", e);
+        } catch (ExecutionException e) {
+            addException("Chunk cannot be verified", e.getCause());
+        }
+    }
+
+    /**
+     * The {@link ru.spbau.kozlov.task02.zip.ZipVerifier.FileCheck} class accumulates the checksum of the file record, chunk by chunk in the order of the chunks.
+     */
+    private static class FileCheck {
+
+        @NotNull
+        private final String archivePath;
+        private final long recordOffset;
+        @Nullable
+        private final ArchiveIndex.Entry indexEntry;
+        @NotNull
+        private final CRC32 crc32 = new CRC32();
+        private long length = 0;
+        private long corruptedOffset = -1;
+        @Nullable
+        private String corruptionReason = null;
+
+        public FileCheck(@NotNull String archivePath, long recordOffset, @Nullable ArchiveIndex.Entry indexEntry, @Nullable String corruptionReason) {
+            this.archivePath = archivePath;
+            this.recordOffset = recordOffset;
+            this.indexEntry = indexEntry;
+            this.corruptionReason = corruptionReason;
+            if (corruptionReason != null) {
+                corruptedOffset = recordOffset;
+            }
+        }
+
+        private void update(@NotNull ChunkCheck chunkCheck) {
+            if (corruptionReason != null) {
+                return;
+            }
+            if (chunkCheck.errorMessage != null) {
+                corruptedOffset = chunkCheck.chunkOffset;
+                corruptionReason = chunkCheck.errorMessage;
+                return;
+            }
+            crc32.update(chunkCheck.getRaw(), 0, chunkCheck.rawLength);
+            length += chunkCheck.rawLength;
+        }
+
+        private void complete(@NotNull VerificationReport report) {
+            if (corruptionReason != null) {
+                report.addCorruptedEntry(archivePath, corruptedOffset, corruptedOffset, corruptionReason);
+            } else if (indexEntry != null && indexEntry.getLength() != length) {
+                report.addCorruptedEntry(archivePath, recordOffset, recordOffset, String.format("%d of %d bytes decoded", length, indexEntry.getLength()));
+            } else if (indexEntry != null && indexEntry.getCrc() != (int) crc32.getValue()) {
+                report.addCorruptedEntry(archivePath, recordOffset, recordOffset, "checksum mismatch");
+            } else {
+                report.addEntry(length);
+            }
+        }
+    }
+
+    /**
+     * The {@link ru.spbau.kozlov.task02.zip.ZipVerifier.ChunkCheck} class contains a stored chunk and decodes it.
+     */
+    private static class ChunkCheck implements Callable<ChunkCheck> {
+
+        @NotNull
+        private final byte[] stored = new byte[ArchiveFormat.CHUNK_SIZE];
+        @NotNull
+        private final byte[] raw = new byte[ArchiveFormat.CHUNK_SIZE];
+        @NotNull
+        private final Map<Codec, ChunkDecoder> decoders = new EnumMap<>(Codec.class);
+        @Nullable
+        private Future<ChunkCheck> future;
+        @Nullable
+        private FileCheck fileCheck;
+        @NotNull
+        private Codec codec = Codec.STORED;
+        private int rawLength;
+        private int storedLength;
+        private long chunkOffset;
+        @Nullable
+        private String errorMessage;
+
+        private void prepare(@NotNull FileCheck fileCheck, @NotNull Codec codec, int rawLength, int storedLength, long chunkOffset) {
+            this.fileCheck = fileCheck;
+            this.codec = codec;
+            this.rawLength = rawLength;
+            this.storedLength = storedLength;
+            this.chunkOffset = chunkOffset;
+            errorMessage = null;
+        }
+
+        /**
+         * Decodes the stored chunk, unless it is stored as is. The decoding error is saved.
+         *
+         * @return this chunk check
+         */
+        @Override
+        public ChunkCheck call() {
+            if (storedLength == rawLength) {
+                return this;
+            }
+
+            ChunkDecoder decoder = decoders.get(codec);
+            if (decoder == null) {
+                decoder = codec.createDecoder();
+                decoders.put(codec, decoder);
+            }
+            try {
+                decoder.decode(stored, storedLength, raw, rawLength);
+            } catch (IOException e) {
+                errorMessage = e.getMessage();
+            }
+            return this;
+        }
+
+        @NotNull
+        private byte[] getRaw() {
+            return storedLength == rawLength ? stored : raw;
+        }
+
+        private boolean isDone() {
+            return future == null || future.isDone();
+        }
+
+        private void end() {
+            for (ChunkDecoder decoder : decoders.values()) {
+                decoder.end();
+            }
+        }
+    }
+}
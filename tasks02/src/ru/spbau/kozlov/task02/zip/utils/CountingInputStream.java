@@ -0,0 +1,75 @@
+package ru.spbau.kozlov.task02.zip.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.utils.CountingInputStream} class counts the bytes read from the underlying stream,
+ * so the position of the data being read is known. Marks are not supported, as they would make the position ambiguous.
+ *
+ * @author adkozlov
+ */
+public class CountingInputStream extends FilterInputStream {
+
+    private long position = 0;
+
+    /**
+     * Constructs a new stream reading from the specified one.
+     *
+     * @param inputStream the underlying stream
+     */
+    public CountingInputStream(@NotNull InputStream inputStream) {
+        super(inputStream);
+    }
+
+    /**
+     * Returns the number of bytes read or skipped so far.
+     *
+     * @return the position in the underlying stream
+     */
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int result = super.read();
+        if (result != -1) {
+            position++;
+        }
+        return result;
+    }
+
+    @Override
+    public int read(@NotNull byte[] buffer, int offset, int length) throws IOException {
+        int bytesRead = super.read(buffer, offset, length);
+        if (bytesRead != -1) {
+            position += bytesRead;
+        }
+        return bytesRead;
+    }
+
+    @Override
+    public long skip(long length) throws IOException {
+        long bytesSkipped = super.skip(length);
+        position += bytesSkipped;
+        return bytesSkipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public void mark(int readLimit) {
+    }
+
+    @Override
+    public void reset() throws IOException {
+        throw new IOException("Mark and reset are not supported");
+    }
+}
@@ -0,0 +1,249 @@
+package ru.spbau.kozlov.task02.zip.utils;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.utils.DirectoryScanner} class walks directory trees in parallel.
+ * Every directory is listed once by a task of the fork-join pool, which reads the attributes of the children and forks a task for every subdirectory.
+ * Attributes of the children of a large directory are read by several tasks, each of them handles a batch of the listing.
+ * The calling thread receives the entries in the same order as {@link java.nio.file.Files#walkFileTree} visits them:
+ * every directory precedes its children, which are visited in the order of the directory listing.
+ * The tree is scanned ahead of the visitor, so the entries are usually listed by the time they are visited.
+ * Empty directories are detected by the same listing and are not visited. Symbolic links are not followed, they are visited as files.
+ *
+ * @author adkozlov
+ */
+public class DirectoryScanner implements Closeable {
+
+    private static final int ATTRIBUTES_BATCH_SIZE = 64;
+
+    @NotNull
+    private final ForkJoinPool forkJoinPool;
+
+    /**
+     * Constructs a new scanner.
+     *
+     * @param parallelism the number of threads listing directories and reading attributes
+     */
+    public DirectoryScanner(int parallelism) {
+        forkJoinPool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * Walks the tree of the specified directory and passes its entries to the visitor by the calling thread.
+     *
+     * @param directory the root of the tree
+     * @param visitor   the visitor of the entries
+     * @throws IOException if the visitor throws it
+     */
+    public void scan(@NotNull Path directory, @NotNull Visitor visitor) throws IOException {
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(directory, BasicFileAttributes.class);
+        } catch (IOException e) {
+            visitor.visitFailed(directory, e);
+            return;
+        }
+
+        ScanTask scanTask = new ScanTask(directory, attrs);
+        forkJoinPool.execute(scanTask);
+        visit(scanTask, visitor);
+    }
+
+    /**
+     * Stops the threads, the trees being scanned are abandoned.
+     */
+    @Override
+    public void close() {
+        forkJoinPool.shutdownNow();
+    }
+
+    private static void visit(@NotNull ScanTask scanTask, @NotNull Visitor visitor) throws IOException {
+        Listing listing = scanTask.join();
+        if (!listing.children.isEmpty()) {
+            visitor.visitDirectory(scanTask.directory, scanTask.attrs);
+        }
+
+        for (Object child : listing.children) {
+            if (child instanceof ScanTask) {
+                visit((ScanTask) child, visitor);
+            } else {
+                ScannedEntry entry = (ScannedEntry) child;
+                if (entry.exception != null) {
+                    visitor.visitFailed(entry.path, entry.exception);
+                } else if (entry.attrs != null) {
+                    visitor.visitFile(entry.path, entry.attrs);
+                }
+            }
+        }
+        if (listing.exception != null) {
+            visitor.visitFailed(scanTask.directory, listing.exception);
+        }
+    }
+
+    /**
+     * The {@link ru.spbau.kozlov.task02.zip.utils.DirectoryScanner.Visitor} interface receives the entries of the scanned tree.
+     */
+    public interface Visitor {
+
+        /**
+         * Visits the non-empty directory before its children.
+         *
+         * @param directory the path to the directory
+         * @param attrs     the attributes of the directory
+         * @throws IOException if an I/O error occurs, the scanning is stopped
+         */
+        void visitDirectory(@NotNull Path directory, @NotNull BasicFileAttributes attrs) throws IOException;
+
+        /**
+         * Visits the entry that is not a directory.
+         *
+         * @param file  the path to the entry
+         * @param attrs the attributes of the entry, symbolic links are not followed
+         * @throws IOException if an I/O error occurs, the scanning is stopped
+         */
+        void visitFile(@NotNull Path file, @NotNull BasicFileAttributes attrs) throws IOException;
+
+        /**
+         * Visits the entry which attributes cannot be read or the directory that cannot be listed entirely.
+         * The children of the directory that were listed before the error are visited anyway.
+         *
+         * @param path      the path to the entry
+         * @param exception the error
+         * @throws IOException if an I/O error occurs, the scanning is stopped
+         */
+        void visitFailed(@NotNull Path path, @NotNull IOException exception) throws IOException;
+    }
+
+    private static class ScannedEntry {
+
+        @NotNull
+        private final Path path;
+        @Nullable
+        private final BasicFileAttributes attrs;
+        @Nullable
+        private final IOException exception;
+
+        public ScannedEntry(@NotNull Path path, @Nullable BasicFileAttributes attrs, @Nullable IOException exception) {
+            this.path = path;
+            this.attrs = attrs;
+            this.exception = exception;
+        }
+    }
+
+    private static class Listing {
+
+        @NotNull
+        private final List<Object> children = new ArrayList<>();
+        @Nullable
+        private IOException exception = null;
+    }
+
+    /**
+     * Lists the directory. The listing contains the {@link ru.spbau.kozlov.task02.zip.utils.DirectoryScanner.ScannedEntry} of every child
+     * and the forked {@link ru.spbau.kozlov.task02.zip.utils.DirectoryScanner.ScanTask} of every subdirectory in the order of the listing.
+     */
+    private static class ScanTask extends RecursiveTask<Listing> {
+
+        private static final long serialVersionUID = 1L;
+
+        @NotNull
+        private final Path directory;
+        @NotNull
+        private final BasicFileAttributes attrs;
+
+        public ScanTask(@NotNull Path directory, @NotNull BasicFileAttributes attrs) {
+            this.directory = directory;
+            this.attrs = attrs;
+        }
+
+        @Override
+        protected Listing compute() {
+            Listing listing = new Listing();
+            List<Path> childPaths = new ArrayList<>();
+            try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory)) {
+                for (Path child : directoryStream) {
+                    childPaths.add(child);
+                }
+            } catch (IOException e) {
+                listing.exception = e;
+            } catch (DirectoryIteratorException e) {
+                listing.exception = e.getCause();
+            } catch (SecurityException e) {
+                listing.exception = new IOException(String.format("Directory \'%s\' cannot be read because of the security violation", directory.toString()), e);
+            }
+
+            Object[] children = new Object[childPaths.size()];
+            new AttributesTask(childPaths, children, 0, children.length).invoke();
+            listing.children.addAll(Arrays.asList(children));
+            return listing;
+        }
+
+        @NotNull
+        private static Object scanChild(@NotNull Path child) {
+            BasicFileAttributes childAttrs;
+            try {
+                childAttrs = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            } catch (IOException e) {
+                return new ScannedEntry(child, null, e);
+            } catch (SecurityException e) {
+                return new ScannedEntry(child, null,
+                        new IOException(String.format("Attributes of the file \'%s\' cannot be read because of the security violation", child.toString()), e));
+            }
+
+            if (!childAttrs.isDirectory()) {
+                return new ScannedEntry(child, childAttrs, null);
+            }
+            ScanTask scanTask = new ScanTask(child, childAttrs);
+            scanTask.fork();
+            return scanTask;
+        }
+    }
+
+    /**
+     * Reads the attributes of the range of children, the range is split in halves until it fits into a batch.
+     */
+    private static class AttributesTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        @NotNull
+        private final List<Path> childPaths;
+        @NotNull
+        private final Object[] children;
+        private final int from;
+        private final int to;
+
+        public AttributesTask(@NotNull List<Path> childPaths, @NotNull Object[] children, int from, int to) {
+            this.childPaths = childPaths;
+            this.children = children;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= ATTRIBUTES_BATCH_SIZE) {
+                for (int i = from; i < to; i++) {
+                    children[i] = ScanTask.scanChild(childPaths.get(i));
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new AttributesTask(childPaths, children, from, middle), new AttributesTask(childPaths, children, middle, to));
+        }
+    }
+}
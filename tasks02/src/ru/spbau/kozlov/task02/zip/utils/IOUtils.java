@@ -3,6 +3,8 @@ package ru.spbau.kozlov.task02.zip.utils;
 import org.jetbrains.annotations.NotNull;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * The {@link ru.spbau.kozlov.task02.zip.utils.IOUtils} class contains useful methods for reading bytes from streams and writing to them.
@@ -11,10 +13,23 @@ import java.io.*;
  */
 public final class IOUtils {
 
-    private static final int BUFFER_SIZE = 4096;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<byte[]> CHUNK_BUFFER = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+    private static final ThreadLocal<ByteBuffer> DIRECT_BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    };
 
     /**
-     * Reads all available bytes from the specified stream.
+     * Reads all bytes from the specified stream until the end of the stream is reached, then closes the stream.
+     * The stream is read in bulk through a per-thread chunk buffer.
      *
      * @param inputStream the input stream to be read from
      * @return an array of bytes read from the stream
@@ -22,10 +37,12 @@ public final class IOUtils {
      */
     @NotNull
     public static byte[] readContent(@NotNull InputStream inputStream) throws IOException {
-        try (BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream)) {
+        try (InputStream closeable = inputStream) {
+            byte[] buffer = CHUNK_BUFFER.get();
             ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            while (inputStream.available() > 0) {
-                byteArrayOutputStream.write(bufferedInputStream.read());
+            int bytesRead;
+            while ((bytesRead = closeable.read(buffer)) != -1) {
+                byteArrayOutputStream.write(buffer, 0, bytesRead);
             }
             return byteArrayOutputStream.toByteArray();
         }
@@ -44,6 +61,31 @@ public final class IOUtils {
         }
     }
 
+    /**
+     * Writes the specified bytes to the channel through a per-thread direct buffer.
+     * Bytes are copied once to the direct buffer, while writing a heap buffer to the channel would copy them to a temporary direct buffer anyway.
+     *
+     * @param channel the channel to be written to
+     * @param bytes   the bytes array containing the bytes to be written
+     * @param offset  the offset of the first byte to be written
+     * @param length  the number of bytes to be written
+     * @throws IOException if an I/O error occurred during writing to the channel
+     */
+    public static void write(@NotNull WritableByteChannel channel, @NotNull byte[] bytes, int offset, int length) throws IOException {
+        ByteBuffer buffer = DIRECT_BUFFER.get();
+        while (length > 0) {
+            int count = Math.min(buffer.capacity(), length);
+            buffer.clear();
+            buffer.put(bytes, offset, count);
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            offset += count;
+            length -= count;
+        }
+    }
+
     /**
      * Copies the specified number of bytes from one stream to another.
      *
@@ -53,7 +95,19 @@ public final class IOUtils {
      * @throws IOException if an I/O error occurred during reading or writing
      */
     public static void copy(@NotNull InputStream inputStream, @NotNull OutputStream outputStream, long length) throws IOException {
-        byte[] buffer = new byte[BUFFER_SIZE];
+        copy(inputStream, outputStream, length, CHUNK_BUFFER.get());
+    }
+
+    /**
+     * Copies the specified number of bytes from one stream to another through the specified buffer.
+     *
+     * @param inputStream  the input stream to be read from
+     * @param outputStream the output stream to be written to
+     * @param length       the number of bytes to be copied
+     * @param buffer       the buffer the bytes are copied through, its length bounds the size of a single read
+     * @throws IOException if an I/O error occurred during reading or writing
+     */
+    public static void copy(@NotNull InputStream inputStream, @NotNull OutputStream outputStream, long length, @NotNull byte[] buffer) throws IOException {
         while (length > buffer.length) {
             length -= copy(inputStream, outputStream, buffer, buffer.length);
         }
@@ -62,6 +116,45 @@ public final class IOUtils {
         }
     }
 
+    /**
+     * Reads bytes from the specified stream until the buffer is full or the end of the stream is reached.
+     *
+     * @param inputStream the input stream to be read from
+     * @param buffer      the buffer to be filled
+     * @return the number of bytes read, it is less than the buffer length only if the end of the stream is reached
+     * @throws IOException if an I/O error occurred during reading
+     */
+    public static int readFully(@NotNull InputStream inputStream, @NotNull byte[] buffer) throws IOException {
+        int bytesRead = 0;
+        while (bytesRead < buffer.length) {
+            int count = inputStream.read(buffer, bytesRead, buffer.length - bytesRead);
+            if (count == -1) {
+                break;
+            }
+            bytesRead += count;
+        }
+        return bytesRead;
+    }
+
+    /**
+     * Skips exactly the specified number of bytes of the stream.
+     * Unlike {@link java.io.InputStream#skip}, bytes are read in bulk through the chunk buffer, which is much faster for decompressing streams.
+     *
+     * @param inputStream the input stream to be read from
+     * @param length      the number of bytes to be skipped
+     * @throws IOException if an I/O error occurred during reading or the stream is too short
+     */
+    public static void skip(@NotNull InputStream inputStream, long length) throws IOException {
+        byte[] buffer = CHUNK_BUFFER.get();
+        while (length > 0) {
+            int bytesRead = inputStream.read(buffer, 0, (int) Math.min(buffer.length, length));
+            if (bytesRead == -1) {
+                throw new IOException("Not enough bytes");
+            }
+            length -= bytesRead;
+        }
+    }
+
     private static int copy(@NotNull InputStream inputStream, @NotNull OutputStream outputStream, @NotNull byte[] buffer, int length) throws IOException {
         int bytesRead = inputStream.read(buffer, 0, length);
         if (bytesRead == -1) {
@@ -0,0 +1,124 @@
+package ru.spbau.kozlov.task02.zip.utils;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.ListIterator;
+
+/**
+ * The {@link ru.spbau.kozlov.task02.zip.utils.PathTreeWriter} class renders a list of archive paths as a file tree.
+ * Every path is written on a separate line as its file name preceded by the indents of its parent directories,
+ * an indent is continued with a vertical bar if the following lines contain a sibling of that directory.
+ * Paths of the hidden files are skipped.
+ * <p>
+ * Whether an indent is continued depends on the following lines only, so the bars are computed by one pass over the paths in the reversed order
+ * and kept in a bit set, one bit per indent. Lines are written by the second pass straight to the writer without building any intermediate strings,
+ * so the time is linear in the size of the output.
+ *
+ * @author adkozlov
+ */
+public final class PathTreeWriter {
+
+    private static final String BAR_INDENT = "| ";
+    private static final String EMPTY_INDENT = "  ";
+    private static final String FILE_NAME_PREFIX = "|_";
+    private static final char[] SPACES = new char[256];
+
+    static {
+        Arrays.fill(SPACES, ' ');
+    }
+
+    private PathTreeWriter() {
+    }
+
+    /**
+     * Writes the tree of the specified paths to the writer. The writer is neither flushed nor closed.
+     *
+     * @param paths  a list of archive paths in the order they are stored in the archive
+     * @param writer the writer to be written to, it should be buffered
+     * @throws IOException if an I/O error occurs during writing
+     */
+    public static void write(@NotNull List<String> paths, @NotNull Writer writer) throws IOException {
+        BitSet bars = new BitSet();
+        int barsCount = 0;
+        boolean[] nextBars = new boolean[16];
+        int nextDepth = 0;
+        for (ListIterator<String> iterator = paths.listIterator(paths.size()); iterator.hasPrevious(); ) {
+            String path = iterator.previous();
+            if (isHidden(path)) {
+                continue;
+            }
+
+            int depth = getDepth(path);
+            boolean isUrl = depth != 1 && isInUrlDirectory(path);
+            if (depth > nextBars.length) {
+                nextBars = Arrays.copyOf(nextBars, Math.max(depth, 2 * nextBars.length));
+            }
+            for (int i = depth - 2; i >= 0; i--) {
+                nextBars[i] = !isUrl && i < nextDepth && nextBars[i];
+                bars.set(barsCount++, nextBars[i]);
+            }
+            nextBars[depth - 1] = true;
+            nextDepth = depth;
+        }
+
+        String lineSeparator = System.lineSeparator();
+        for (String path : paths) {
+            if (isHidden(path)) {
+                continue;
+            }
+
+            int end = getEnd(path);
+            int start = 0;
+            for (int separatorIndex; (separatorIndex = path.indexOf(PathUtils.ARCHIVE_FILE_SEPARATOR, start)) != -1 && separatorIndex < end; ) {
+                writer.write(bars.get(--barsCount) ? BAR_INDENT : EMPTY_INDENT);
+                writeSpaces(writer, separatorIndex - start);
+                start = separatorIndex + 1;
+            }
+            writer.write(FILE_NAME_PREFIX);
+            writer.write(path, start, end - start);
+            writer.write(lineSeparator);
+        }
+    }
+
+    private static boolean isHidden(@NotNull String path) {
+        return path.contains(PathUtils.ARCHIVE_FILE_SEPARATOR + ".");
+    }
+
+    private static int getEnd(@NotNull String path) {
+        int end = path.length();
+        while (end > 0 && path.charAt(end - 1) == PathUtils.ARCHIVE_FILE_SEPARATOR) {
+            end--;
+        }
+        return end;
+    }
+
+    private static int getDepth(@NotNull String path) {
+        int end = getEnd(path);
+        int depth = 1;
+        for (int i = 0; i < end; i++) {
+            if (path.charAt(i) == PathUtils.ARCHIVE_FILE_SEPARATOR) {
+                depth++;
+            }
+        }
+        return depth;
+    }
+
+    private static boolean isInUrlDirectory(@NotNull String path) {
+        String urlDirectoryName = ZipURLUtils.getUrlDirectoryName();
+        return path.startsWith(urlDirectoryName) && path.length() > urlDirectoryName.length()
+                && path.charAt(urlDirectoryName.length()) == PathUtils.ARCHIVE_FILE_SEPARATOR;
+    }
+
+    private static void writeSpaces(@NotNull Writer writer, int count) throws IOException {
+        while (count > 0) {
+            int length = Math.min(count, SPACES.length);
+            writer.write(SPACES, 0, length);
+            count -= length;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package ru.spbau.kozlov.task02.tests;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author adkozlov
+ */
+public final class ArchiveTestUtils {
+
+    public static final String TEST_DIRECTORY_NAME = "testFiles2";
+    public static final int LARGE_FILE_LENGTH = 1024 * 1024 + 17;
+
+    private ArchiveTestUtils() {
+    }
+
+    public static void createFile(Path path, byte[] content) throws IOException {
+        Files.createDirectories(path.getParent());
+        Files.write(path, content);
+    }
+
+    public static void createFile(Path path, String content) throws IOException {
+        createFile(path, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates a tree of small text files and a large file of several chunks, half of which is random and the other half is compressible.
+     */
+    public static void createSourceTree(Path root, long seed) throws IOException {
+        createFile(root.resolve("file.txt"), "foo\nbar\n");
+        createFile(root.resolve("dir/inner.txt"), "inner file " + seed);
+        createFile(root.resolve("dir/.hidden"), "hidden file");
+        createFile(root.resolve("dir/inner_dir/empty.txt"), new byte[0]);
+
+        Random random = new Random(seed);
+        byte[] content = new byte[LARGE_FILE_LENGTH];
+        random.nextBytes(content);
+        for (int i = content.length / 2; i < content.length; i++) {
+            content[i] = (byte) ('a' + i % 7);
+        }
+        createFile(root.resolve("large.bin"), content);
+    }
+
+    public static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult postVisitDirectory(Path dir, IOException exception) throws IOException {
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    public static List<String> listFiles(final Path root) throws IOException {
+        final List<String> result = new ArrayList<>();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                result.add(root.relativize(file).toString());
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        Collections.sort(result);
+        return result;
+    }
+
+    public static void assertSameTree(Path expected, Path actual) throws IOException {
+        List<String> files = listFiles(expected);
+        assertEquals("wrong files", files, listFiles(actual));
+        for (String file : files) {
+            assertArrayEquals("wrong content of " + file, Files.readAllBytes(expected.resolve(file)), Files.readAllBytes(actual.resolve(file)));
+        }
+    }
+}
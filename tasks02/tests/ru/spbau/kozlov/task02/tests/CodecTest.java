@@ -0,0 +1,147 @@
+package ru.spbau.kozlov.task02.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.AdaptiveCodecSelector;
+import ru.spbau.kozlov.task02.zip.ArchiveLayout;
+import ru.spbau.kozlov.task02.zip.Codec;
+import ru.spbau.kozlov.task02.zip.CompressionMethod;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+import ru.spbau.kozlov.task02.zip.ZipDecompressor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static ru.spbau.kozlov.task02.tests.ArchiveTestUtils.*;
+
+/**
+ * @author adkozlov
+ */
+public class CodecTest {
+
+    public static final Path TEST_PATH = Paths.get(TEST_DIRECTORY_NAME, "codec");
+    public static final Path SOURCE_PATH = TEST_PATH.resolve("src");
+    public static final Path ARCHIVE_PATH = TEST_PATH.resolve("archive.zip");
+    public static final Path TARGET_PATH = TEST_PATH.resolve("out");
+    public static final CompressionMethod[] METHODS = {CompressionMethod.STORED, CompressionMethod.FAST, CompressionMethod.DEFAULT,
+            CompressionMethod.deflate(1), CompressionMethod.deflate(9)};
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TEST_PATH);
+        createSourceTree(SOURCE_PATH, 11);
+
+        byte[] content = new byte[3 * 128 * 1024 + 5];
+        Random random = new Random(11);
+        for (int i = 0; i < content.length; ) {
+            int runLength = Math.min(content.length - i, 1 + random.nextInt(300));
+            byte value = random.nextInt(4) == 0 ? (byte) random.nextInt() : 0;
+            for (int j = 0; j < runLength; j++) {
+                content[i++] = random.nextInt(8) == 0 ? (byte) j : value;
+            }
+        }
+        createFile(SOURCE_PATH.resolve("runs.bin"), content);
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.append("line ").append(i % 100).append(" of the text file\n");
+        }
+        createFile(SOURCE_PATH.resolve("text.txt"), text.toString());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        deleteRecursively(TEST_PATH);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (CompressionMethod method : METHODS) {
+            compress(method, 1);
+            extract();
+
+            assertSameTree(SOURCE_PATH, TARGET_PATH.resolve(SOURCE_PATH));
+            deleteRecursively(TARGET_PATH);
+        }
+    }
+
+    @Test
+    public void testParallelRoundTrip() throws IOException {
+        for (CompressionMethod method : METHODS) {
+            compress(method, 3);
+            extract();
+
+            assertSameTree(SOURCE_PATH, TARGET_PATH.resolve(SOURCE_PATH));
+            deleteRecursively(TARGET_PATH);
+        }
+    }
+
+    @Test
+    public void testCompression() throws IOException {
+        compress(CompressionMethod.STORED, 1);
+        long storedSize = Files.size(ARCHIVE_PATH);
+        compress(CompressionMethod.FAST, 1);
+        long fastSize = Files.size(ARCHIVE_PATH);
+        compress(CompressionMethod.DEFAULT, 1);
+        long deflateSize = Files.size(ARCHIVE_PATH);
+
+        assertTrue("fast codec does not compress", fastSize < storedSize);
+        assertTrue("deflate does not compress", deflateSize < storedSize);
+    }
+
+    @Test
+    public void testAdaptiveSelection() {
+        AdaptiveCodecSelector selector = new AdaptiveCodecSelector(CompressionMethod.DEFAULT);
+        byte[] text = new byte[16 * 1024];
+        for (int i = 0; i < text.length; i++) {
+            text[i] = (byte) ('a' + i % 10);
+        }
+        byte[] random = new byte[16 * 1024];
+        new Random(12).nextBytes(random);
+
+        assertSame("text is not compressed", CompressionMethod.DEFAULT, selector.select("dir/file.txt", text, text.length));
+        assertSame("incompressible content is compressed", CompressionMethod.STORED, selector.select("dir/file.txt", random, random.length));
+        assertSame("compressed format is compressed again", CompressionMethod.STORED, selector.select("dir/file.ZIP", text, text.length));
+        assertSame("short content is not compressed", CompressionMethod.DEFAULT, selector.select("dir.zip/file", random, 100));
+        assertSame("stored method is not preferred", CompressionMethod.STORED,
+                new AdaptiveCodecSelector(CompressionMethod.STORED).select("dir/file.txt", text, text.length));
+    }
+
+    @Test
+    public void testParse() {
+        assertSame("wrong method", CompressionMethod.STORED, CompressionMethod.parse("store"));
+        assertSame("wrong method", CompressionMethod.FAST, CompressionMethod.parse("fast"));
+        assertSame("wrong method", CompressionMethod.DEFAULT, CompressionMethod.parse("deflate"));
+
+        CompressionMethod method = CompressionMethod.parse("deflate:9");
+        assertEquals("wrong codec", Codec.DEFLATE, method.getCodec());
+        assertEquals("wrong level", 9, method.getLevel());
+
+        for (String name : new String[]{"deflate:0", "deflate:10", "deflate:", "lz4", ""}) {
+            try {
+                CompressionMethod.parse(name);
+                fail("invalid method is parsed: " + name);
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+    }
+
+    private static void compress(CompressionMethod method, int threadsCount) throws IOException {
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH, threadsCount, ArchiveLayout.CHUNKED, null, new AdaptiveCodecSelector(method))) {
+            zipCompressor.putNextEntry(SOURCE_PATH.toString());
+        }
+    }
+
+    private static void extract() throws IOException {
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(ARCHIVE_PATH, 1, TARGET_PATH)) {
+            zipDecompressor.extractAllEntries();
+        }
+        assertTrue("nothing is extracted", new String(Files.readAllBytes(TARGET_PATH.resolve(SOURCE_PATH).resolve("text.txt")), StandardCharsets.UTF_8).startsWith("line 0"));
+    }
+}
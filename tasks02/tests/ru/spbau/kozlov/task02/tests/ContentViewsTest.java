@@ -0,0 +1,203 @@
+package ru.spbau.kozlov.task02.tests;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.AbstractZipEntryVisitor;
+import ru.spbau.kozlov.task02.zip.AdaptiveCodecSelector;
+import ru.spbau.kozlov.task02.zip.ArchiveLayout;
+import ru.spbau.kozlov.task02.zip.CompressionMethod;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static ru.spbau.kozlov.task02.tests.ArchiveTestUtils.*;
+
+/**
+ * @author adkozlov
+ */
+public class ContentViewsTest {
+
+    public static final Path TEST_PATH = Paths.get(TEST_DIRECTORY_NAME, "views");
+    public static final Path SOURCE_PATH = TEST_PATH.resolve("src");
+    public static final Path ARCHIVE_PATH = TEST_PATH.resolve("archive.zip");
+    public static final int PREFIX_LENGTH = 10;
+
+    private enum View {
+        STREAM, CHANNEL, SPILL, PREFIX
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TEST_PATH);
+        createSourceTree(SOURCE_PATH, 18);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        deleteRecursively(TEST_PATH);
+    }
+
+    @Test
+    public void testStream() throws IOException {
+        compress(CompressionMethod.DEFAULT);
+        assertContents(View.STREAM);
+    }
+
+    @Test
+    public void testChannel() throws IOException {
+        compress(CompressionMethod.FAST);
+        assertContents(View.CHANNEL);
+    }
+
+    @Test
+    public void testSpill() throws IOException {
+        compress(CompressionMethod.DEFAULT);
+        assertContents(View.SPILL);
+    }
+
+    @Test
+    public void testPartiallyReadContent() throws IOException {
+        compress(CompressionMethod.DEFAULT);
+        assertContents(View.PREFIX);
+    }
+
+    @Test
+    public void testCorruptedContent() throws IOException {
+        byte[] content = new byte[300 * 1024];
+        new Random(18).nextBytes(content);
+        byte[] marker = "corrupted stream marker".getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(marker, 0, content, 200 * 1024, marker.length);
+        createFile(SOURCE_PATH.resolve("corrupted.bin"), content);
+        compress(CompressionMethod.STORED);
+
+        byte[] archive = Files.readAllBytes(ARCHIVE_PATH);
+        int index = new String(archive, StandardCharsets.ISO_8859_1).indexOf(new String(marker, StandardCharsets.ISO_8859_1));
+        assertTrue("chunk is not stored", index != -1);
+        archive[index] ^= 1;
+        Files.write(ARCHIVE_PATH, archive);
+
+        try (ContentReader contentReader = new ContentReader(ARCHIVE_PATH, View.STREAM)) {
+            contentReader.readAll();
+            fail("corrupted content is read silently");
+        } catch (IOException e) {
+            assertTrue("wrong error: " + e.getMessage(), e.getMessage().contains("is corrupted"));
+        }
+    }
+
+    private static void compress(CompressionMethod method) throws IOException {
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH, 1, ArchiveLayout.CHUNKED, null, new AdaptiveCodecSelector(method))) {
+            zipCompressor.putNextEntry(SOURCE_PATH.toString());
+        }
+    }
+
+    private static void assertContents(View view) throws IOException {
+        Map<Path, byte[]> contents;
+        try (ContentReader contentReader = new ContentReader(ARCHIVE_PATH, view)) {
+            contents = contentReader.readAll();
+        }
+
+        assertEquals("wrong files count", listFiles(SOURCE_PATH).size(), contents.size());
+        for (String file : listFiles(SOURCE_PATH)) {
+            byte[] expected = Files.readAllBytes(SOURCE_PATH.resolve(file));
+            if (view == View.PREFIX) {
+                byte[] prefix = new byte[Math.min(PREFIX_LENGTH, expected.length)];
+                System.arraycopy(expected, 0, prefix, 0, prefix.length);
+                expected = prefix;
+            }
+            assertArrayEquals("wrong content of " + file, expected, contents.get(SOURCE_PATH.resolve(file)));
+        }
+    }
+
+    private static class ContentReader extends AbstractZipEntryVisitor {
+
+        @NotNull
+        private final View view;
+        @NotNull
+        private final Map<Path, byte[]> contents = new HashMap<>();
+
+        public ContentReader(@NotNull Path inputFilePath, @NotNull View view) throws IOException {
+            super(inputFilePath);
+            this.view = view;
+        }
+
+        @NotNull
+        public Map<Path, byte[]> readAll() throws IOException {
+            visitAllEntries();
+            return contents;
+        }
+
+        @Override
+        protected void onEntryVisit(@NotNull Path path, @Nullable byte[] content) {
+        }
+
+        @Override
+        protected void onFileEntryVisit(@NotNull Path path, @NotNull EntryContent content) throws IOException {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            switch (view) {
+                case STREAM:
+                    try (InputStream inputStream = content.openStream()) {
+                        int first = inputStream.read();
+                        if (first != -1) {
+                            outputStream.write(first);
+                        }
+                        byte[] buffer = new byte[1000];
+                        int count;
+                        while ((count = inputStream.read(buffer, 0, buffer.length)) != -1) {
+                            outputStream.write(buffer, 0, count);
+                        }
+                    }
+                    break;
+                case CHANNEL:
+                    try (ReadableByteChannel channel = content.openChannel()) {
+                        ByteBuffer buffer = ByteBuffer.allocate(7777);
+                        while (channel.read(buffer) != -1) {
+                            outputStream.write(buffer.array(), 0, buffer.position());
+                            buffer.clear();
+                        }
+                    }
+                    break;
+                case SPILL:
+                    try (FileChannel channel = content.spillToTempFile()) {
+                        assertNotNull("content is corrupted", channel);
+                        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+                        for (long position = channel.size(); position > 0; ) {
+                            int length = (int) Math.min(position, 5000);
+                            position -= length;
+                            buffer.limit((int) position + length).position((int) position);
+                            while (buffer.hasRemaining()) {
+                                channel.read(buffer, buffer.position());
+                            }
+                        }
+                        outputStream.write(buffer.array());
+                    }
+                    break;
+                case PREFIX:
+                    try (InputStream inputStream = content.openStream()) {
+                        byte[] buffer = new byte[PREFIX_LENGTH];
+                        int count;
+                        while (outputStream.size() < PREFIX_LENGTH && (count = inputStream.read(buffer, 0, PREFIX_LENGTH - outputStream.size())) != -1) {
+                            outputStream.write(buffer, 0, count);
+                        }
+                    }
+                    break;
+            }
+            contents.put(path, outputStream.toByteArray());
+        }
+    }
+}
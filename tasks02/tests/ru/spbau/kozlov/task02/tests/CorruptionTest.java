@@ -0,0 +1,117 @@
+package ru.spbau.kozlov.task02.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.AdaptiveCodecSelector;
+import ru.spbau.kozlov.task02.zip.ArchiveLayout;
+import ru.spbau.kozlov.task02.zip.CompressionMethod;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+import ru.spbau.kozlov.task02.zip.ZipDecompressor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static ru.spbau.kozlov.task02.tests.ArchiveTestUtils.*;
+
+/**
+ * @author adkozlov
+ */
+public class CorruptionTest {
+
+    public static final Path TEST_PATH = Paths.get(TEST_DIRECTORY_NAME, "corruption");
+    public static final Path SOURCE_PATH = TEST_PATH.resolve("src");
+    public static final Path ARCHIVE_PATH = TEST_PATH.resolve("archive.zip");
+    public static final Path TARGET_PATH = TEST_PATH.resolve("out");
+    public static final String MARKER = "corrupted chunk marker";
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TEST_PATH);
+
+        byte[] content = new byte[300 * 1024];
+        new Random(8).nextBytes(content);
+        byte[] marker = MARKER.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(marker, 0, content, 200 * 1024, marker.length);
+        createFile(SOURCE_PATH.resolve("corrupted.bin"), content);
+        createFile(SOURCE_PATH.resolve("intact.txt"), "intact file");
+
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH, 1, ArchiveLayout.CHUNKED, null, new AdaptiveCodecSelector(CompressionMethod.STORED))) {
+            zipCompressor.putNextEntry(SOURCE_PATH.toString());
+        }
+        corruptArchive();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        deleteRecursively(TEST_PATH);
+    }
+
+    @Test
+    public void testExtractAllEntries() throws IOException {
+        createFile(TARGET_PATH.resolve(SOURCE_PATH).resolve("corrupted.bin"), "previous content");
+        assertCorruptionReported(1);
+        assertExtractedFiles();
+    }
+
+    @Test
+    public void testParallelExtraction() throws IOException {
+        assertCorruptionReported(4);
+        assertExtractedFiles();
+    }
+
+    @Test
+    public void testSelectiveExtraction() throws IOException {
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(ARCHIVE_PATH, 1, TARGET_PATH)) {
+            zipDecompressor.extract(FileSystems.getDefault().getPathMatcher("glob:**.bin"));
+        } catch (IOException e) {
+            assertTrue("wrong error: " + e.getMessage(), e.getMessage().contains("is corrupted"));
+            assertFalse("corrupted file is written", Files.exists(TARGET_PATH.resolve(SOURCE_PATH).resolve("corrupted.bin")));
+            return;
+        }
+        fail("corrupted entry is extracted silently");
+    }
+
+    private static void corruptArchive() throws IOException {
+        byte[] archive = Files.readAllBytes(ARCHIVE_PATH);
+        int index = indexOf(archive, MARKER.getBytes(StandardCharsets.UTF_8));
+        assertTrue("chunk is not stored", index != -1);
+        archive[index] ^= 1;
+        Files.write(ARCHIVE_PATH, archive);
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= bytes.length; i++) {
+            int j = 0;
+            while (j < pattern.length && bytes[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void assertCorruptionReported(int threadsCount) {
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(ARCHIVE_PATH, threadsCount, TARGET_PATH)) {
+            zipDecompressor.extractAllEntries();
+        } catch (IOException e) {
+            assertTrue("wrong error: " + e.getMessage(), e.getMessage().contains("is corrupted"));
+            return;
+        }
+        fail("corrupted entry is extracted silently");
+    }
+
+    private static void assertExtractedFiles() throws IOException {
+        Path extractedPath = TARGET_PATH.resolve(SOURCE_PATH);
+        assertFalse("corrupted file is written", Files.exists(extractedPath.resolve("corrupted.bin")));
+        assertArrayEquals("wrong content of intact file", Files.readAllBytes(SOURCE_PATH.resolve("intact.txt")), Files.readAllBytes(extractedPath.resolve("intact.txt")));
+    }
+}
@@ -0,0 +1,138 @@
+package ru.spbau.kozlov.task02.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.ArchiveIndex;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+import ru.spbau.kozlov.task02.zip.ZipDecompressor;
+import ru.spbau.kozlov.task02.zip.ZipLister;
+import ru.spbau.kozlov.task02.zip.utils.PathUtils;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static ru.spbau.kozlov.task02.tests.ArchiveTestUtils.*;
+
+/**
+ * @author adkozlov
+ */
+public class DeduplicationTest {
+
+    public static final Path TEST_PATH = Paths.get(TEST_DIRECTORY_NAME, "deduplication");
+    public static final Path SOURCE_PATH = TEST_PATH.resolve("src");
+    public static final Path ARCHIVE_PATH = TEST_PATH.resolve("archive.zip");
+    public static final Path TARGET_PATH = TEST_PATH.resolve("out");
+    public static final int CONTENT_LENGTH = 512 * 1024;
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TEST_PATH);
+
+        byte[] content = new byte[CONTENT_LENGTH];
+        new Random(10).nextBytes(content);
+        createFile(SOURCE_PATH.resolve("a/original.bin"), content);
+        createFile(SOURCE_PATH.resolve("b/copy.bin"), content);
+        createFile(SOURCE_PATH.resolve("c/copy.bin"), content);
+        content[content.length - 1]++;
+        createFile(SOURCE_PATH.resolve("d/different.bin"), content);
+
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH)) {
+            zipCompressor.putNextEntry(SOURCE_PATH.toString());
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        deleteRecursively(TEST_PATH);
+    }
+
+    @Test
+    public void testDuplicatesAreStoredOnce() throws IOException {
+        try (ZipLister zipLister = new ZipLister(ARCHIVE_PATH)) {
+            ArchiveIndex archiveIndex = zipLister.readArchiveIndex();
+            int originalsCount = 0;
+            for (String file : new String[]{"a/original.bin", "b/copy.bin", "c/copy.bin"}) {
+                if (!archiveIndex.findEntry(getArchivePath(file)).isDuplicate()) {
+                    originalsCount++;
+                }
+            }
+            assertEquals("wrong number of stored copies", 1, originalsCount);
+            assertFalse("different file is a duplicate", archiveIndex.findEntry(getArchivePath("d/different.bin")).isDuplicate());
+        }
+        assertTrue("content is stored more than twice", Files.size(ARCHIVE_PATH) < 3 * CONTENT_LENGTH);
+    }
+
+    @Test
+    public void testLargeFilesOfSameLength() throws IOException {
+        deleteRecursively(TEST_PATH);
+        byte[] content = new byte[4 * CONTENT_LENGTH];
+        new Random(11).nextBytes(content);
+        createFile(SOURCE_PATH.resolve("a/large.bin"), content);
+        createFile(SOURCE_PATH.resolve("b/copy.bin"), content);
+        content[0]++;
+        createFile(SOURCE_PATH.resolve("c/different.bin"), content);
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH)) {
+            zipCompressor.putNextEntry(SOURCE_PATH.toString());
+        }
+
+        try (ZipLister zipLister = new ZipLister(ARCHIVE_PATH)) {
+            ArchiveIndex archiveIndex = zipLister.readArchiveIndex();
+            assertTrue("copy is stored twice", archiveIndex.findEntry(getArchivePath("a/large.bin")).isDuplicate()
+                    || archiveIndex.findEntry(getArchivePath("b/copy.bin")).isDuplicate());
+            assertFalse("different file is a duplicate", archiveIndex.findEntry(getArchivePath("c/different.bin")).isDuplicate());
+        }
+        extractAllEntries(1);
+        assertSameTree(SOURCE_PATH, TARGET_PATH.resolve(SOURCE_PATH));
+    }
+
+    @Test
+    public void testExtractAllEntries() throws IOException {
+        extractAllEntries(1);
+        assertSameTree(SOURCE_PATH, TARGET_PATH.resolve(SOURCE_PATH));
+    }
+
+    @Test
+    public void testParallelExtraction() throws IOException {
+        extractAllEntries(4);
+        assertSameTree(SOURCE_PATH, TARGET_PATH.resolve(SOURCE_PATH));
+    }
+
+    @Test
+    public void testExtractDuplicateWithoutOriginal() throws IOException {
+        String duplicate = null;
+        try (ZipLister zipLister = new ZipLister(ARCHIVE_PATH)) {
+            ArchiveIndex archiveIndex = zipLister.readArchiveIndex();
+            for (String file : new String[]{"a/original.bin", "b/copy.bin", "c/copy.bin"}) {
+                if (archiveIndex.findEntry(getArchivePath(file)).isDuplicate()) {
+                    duplicate = file;
+                }
+            }
+        }
+        assertNotNull("no duplicates", duplicate);
+
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(ARCHIVE_PATH, 1, TARGET_PATH)) {
+            zipDecompressor.extract(FileSystems.getDefault().getPathMatcher("glob:" + SOURCE_PATH.resolve(duplicate).toString()));
+        }
+
+        Path extractedPath = TARGET_PATH.resolve(SOURCE_PATH);
+        assertEquals("wrong files", Arrays.asList(Paths.get(duplicate).toString()), listFiles(extractedPath));
+        assertArrayEquals("wrong content", Files.readAllBytes(SOURCE_PATH.resolve(duplicate)), Files.readAllBytes(extractedPath.resolve(duplicate)));
+    }
+
+    private static void extractAllEntries(int threadsCount) throws IOException {
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(ARCHIVE_PATH, threadsCount, TARGET_PATH)) {
+            zipDecompressor.extractAllEntries();
+        }
+    }
+
+    private static String getArchivePath(String file) {
+        return PathUtils.convertOSPathToArchivePath(SOURCE_PATH.resolve(file).toString());
+    }
+}
@@ -0,0 +1,134 @@
+package ru.spbau.kozlov.task02.tests;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.utils.DirectoryScanner;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static ru.spbau.kozlov.task02.tests.ArchiveTestUtils.*;
+
+/**
+ * @author adkozlov
+ */
+public class DirectoryScannerTest {
+
+    public static final Path TEST_PATH = Paths.get(TEST_DIRECTORY_NAME, "scanner");
+    public static final Path SOURCE_PATH = TEST_PATH.resolve("src");
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TEST_PATH);
+        createSourceTree(SOURCE_PATH, 16);
+        for (int i = 0; i < 300; i++) {
+            createFile(SOURCE_PATH.resolve("large_dir").resolve("file" + i), "file " + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            createFile(SOURCE_PATH.resolve("deep/" + i + "/" + i + "/" + i).resolve("file" + i), "deep file " + i);
+        }
+        Files.createDirectories(SOURCE_PATH.resolve("empty_dir/empty_child"));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        deleteRecursively(TEST_PATH);
+    }
+
+    @Test
+    public void testSameOrderAsWalkFileTree() throws IOException {
+        final List<String> expected = new ArrayList<>();
+        Files.walkFileTree(SOURCE_PATH, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attrs) throws IOException {
+                try (DirectoryStream<Path> directoryStream = Files.newDirectoryStream(directory)) {
+                    if (directoryStream.iterator().hasNext()) {
+                        expected.add("d " + directory);
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                expected.add("f " + file);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        for (int parallelism : new int[]{1, 4}) {
+            try (DirectoryScanner directoryScanner = new DirectoryScanner(parallelism)) {
+                assertEquals("wrong entries", expected, scan(directoryScanner, SOURCE_PATH));
+            }
+        }
+    }
+
+    @Test
+    public void testMissingDirectory() throws IOException {
+        try (DirectoryScanner directoryScanner = new DirectoryScanner(2)) {
+            assertEquals("wrong entries", "e " + TEST_PATH.resolve("missing"), scan(directoryScanner, TEST_PATH.resolve("missing")).get(0));
+        }
+    }
+
+    @Test
+    public void testVisitorError() throws IOException {
+        try (DirectoryScanner directoryScanner = new DirectoryScanner(4)) {
+            final List<Path> visitedFiles = new ArrayList<>();
+            directoryScanner.scan(SOURCE_PATH, new DirectoryScanner.Visitor() {
+                @Override
+                public void visitDirectory(@NotNull Path directory, @NotNull BasicFileAttributes attrs) {
+                }
+
+                @Override
+                public void visitFile(@NotNull Path file, @NotNull BasicFileAttributes attrs) throws IOException {
+                    visitedFiles.add(file);
+                    if (visitedFiles.size() == 10) {
+                        throw new IOException("visitor error");
+                    }
+                }
+
+                @Override
+                public void visitFailed(@NotNull Path path, @NotNull IOException exception) {
+                }
+            });
+        } catch (IOException e) {
+            assertEquals("wrong error", "visitor error", e.getMessage());
+            return;
+        }
+        fail("error of the visitor is lost");
+    }
+
+    private static List<String> scan(DirectoryScanner directoryScanner, Path directory) throws IOException {
+        final List<String> result = new ArrayList<>();
+        directoryScanner.scan(directory, new DirectoryScanner.Visitor() {
+            @Override
+            public void visitDirectory(@NotNull Path directory, @NotNull BasicFileAttributes attrs) {
+                assertTrue("not a directory", attrs.isDirectory());
+                result.add("d " + directory);
+            }
+
+            @Override
+            public void visitFile(@NotNull Path file, @NotNull BasicFileAttributes attrs) {
+                assertFalse("directory is visited as a file", attrs.isDirectory());
+                result.add("f " + file);
+            }
+
+            @Override
+            public void visitFailed(@NotNull Path path, @NotNull IOException exception) {
+                result.add("e " + path);
+            }
+        });
+        return result;
+    }
+}
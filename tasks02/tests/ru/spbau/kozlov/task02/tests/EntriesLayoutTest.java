@@ -0,0 +1,147 @@
+package ru.spbau.kozlov.task02.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.ArchiveLayout;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+import ru.spbau.kozlov.task02.zip.ZipDecompressor;
+import ru.spbau.kozlov.task02.zip.utils.PathUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+import static ru.spbau.kozlov.task02.tests.ArchiveTestUtils.*;
+
+/**
+ * @author adkozlov
+ */
+public class EntriesLayoutTest {
+
+    public static final Path TEST_PATH = Paths.get(TEST_DIRECTORY_NAME, "entries-layout");
+    public static final Path SOURCE_PATH = TEST_PATH.resolve("src");
+    public static final Path ARCHIVE_PATH = TEST_PATH.resolve("archive.zip");
+    public static final Path TARGET_PATH = TEST_PATH.resolve("out");
+    public static final Path PARENT_FILE_PATH = Paths.get("..", "entries-layout-evil.txt");
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TEST_PATH);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(PARENT_FILE_PATH);
+        deleteRecursively(TEST_PATH);
+    }
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        createSourceTree(SOURCE_PATH, 5);
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH, 1, ArchiveLayout.ENTRIES)) {
+            zipCompressor.putNextEntry(SOURCE_PATH.toString());
+        }
+        extract();
+
+        assertSameTree(SOURCE_PATH, TARGET_PATH.resolve(SOURCE_PATH));
+    }
+
+    @Test
+    public void testReadableByZipFile() throws IOException {
+        createSourceTree(SOURCE_PATH, 6);
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH, 1, ArchiveLayout.ENTRIES)) {
+            zipCompressor.putNextEntry(SOURCE_PATH.toString());
+        }
+
+        try (ZipFile zipFile = new ZipFile(ARCHIVE_PATH.toFile())) {
+            for (String file : listFiles(SOURCE_PATH)) {
+                ZipEntry zipEntry = zipFile.getEntry(PathUtils.convertOSPathToArchivePath(SOURCE_PATH.resolve(file).toString()));
+                assertNotNull("file is not stored as zip entry", zipEntry);
+                assertEquals("wrong size", Files.size(SOURCE_PATH.resolve(file)), zipEntry.getSize());
+            }
+        }
+    }
+
+    @Test
+    public void testOverlappingEntries() throws IOException {
+        createSourceTree(SOURCE_PATH, 7);
+        Path laterPath = TEST_PATH.resolve("later.txt");
+        createFile(laterPath, "later file");
+
+        for (ArchiveLayout layout : ArchiveLayout.values()) {
+            try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH, 1, layout)) {
+                zipCompressor.putNextEntry(SOURCE_PATH.toString());
+                zipCompressor.putNextEntry(SOURCE_PATH.resolve("dir").toString());
+                zipCompressor.putNextEntry(SOURCE_PATH.resolve("file.txt").toString());
+                zipCompressor.putNextEntry(laterPath.toString());
+            }
+            extract();
+
+            assertSameTree(SOURCE_PATH, TARGET_PATH.resolve(SOURCE_PATH));
+            assertArrayEquals("later entry is dropped", Files.readAllBytes(laterPath), Files.readAllBytes(TARGET_PATH.resolve(laterPath)));
+            deleteRecursively(TARGET_PATH);
+        }
+    }
+
+    @Test
+    public void testEntriesOutsideOfTargetDirectory() throws IOException {
+        Path absolutePath = TEST_PATH.resolve("absolute.txt").toAbsolutePath();
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(Files.newOutputStream(ARCHIVE_PATH))) {
+            writeZipEntry(zipOutputStream, "good.txt");
+            writeZipEntry(zipOutputStream, "../evil.txt");
+            writeZipEntry(zipOutputStream, "dir/../../../evil.txt");
+            writeZipEntry(zipOutputStream, PathUtils.convertOSPathToArchivePath(absolutePath.toString()));
+        }
+
+        try {
+            extract();
+            fail("entries outside of the target directory are extracted silently");
+        } catch (IOException e) {
+            assertEquals("wrong errors count", 3, e.getSuppressed().length + 1);
+        }
+
+        assertArrayEquals("wrong content", "good.txt".getBytes(StandardCharsets.UTF_8), Files.readAllBytes(TARGET_PATH.resolve("good.txt")));
+        assertFalse("file is written outside of the target directory", Files.exists(TEST_PATH.resolve("evil.txt")));
+        assertFalse("file is written outside of the target directory", Files.exists(TEST_PATH.getParent().resolve("evil.txt")));
+        assertFalse("file is written by the absolute path", Files.exists(absolutePath));
+    }
+
+    @Test
+    public void testEntriesOutsideOfWorkingDirectory() throws IOException {
+        Path goodPath = TEST_PATH.resolve("good.txt");
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(Files.newOutputStream(ARCHIVE_PATH))) {
+            writeZipEntry(zipOutputStream, PathUtils.convertOSPathToArchivePath(goodPath.toString()));
+            writeZipEntry(zipOutputStream, PathUtils.convertOSPathToArchivePath(PARENT_FILE_PATH.toString()));
+            writeZipEntry(zipOutputStream, PathUtils.convertOSPathToArchivePath(TEST_PATH.resolve("../..").resolve(PARENT_FILE_PATH).toString()));
+        }
+
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(ARCHIVE_PATH, 1)) {
+            zipDecompressor.extractAllEntries();
+        } catch (IOException e) {
+            assertEquals("wrong errors count", 2, e.getSuppressed().length + 1);
+            assertTrue("good file is not extracted", Files.exists(goodPath));
+            assertFalse("file is written outside of the working directory", Files.exists(PARENT_FILE_PATH));
+            return;
+        }
+        fail("entries outside of the working directory are extracted silently");
+    }
+
+    private static void writeZipEntry(ZipOutputStream zipOutputStream, String name) throws IOException {
+        zipOutputStream.putNextEntry(new ZipEntry(name));
+        zipOutputStream.write(name.getBytes(StandardCharsets.UTF_8));
+        zipOutputStream.closeEntry();
+    }
+
+    private static void extract() throws IOException {
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(ARCHIVE_PATH, 1, TARGET_PATH)) {
+            zipDecompressor.extractAllEntries();
+        }
+    }
+}
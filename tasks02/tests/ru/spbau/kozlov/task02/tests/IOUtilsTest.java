@@ -0,0 +1,99 @@
+package ru.spbau.kozlov.task02.tests;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.utils.IOUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author adkozlov
+ */
+public class IOUtilsTest {
+
+    public static final int CONTENT_LENGTH = 200 * 1024 + 3;
+
+    @Test
+    public void testReadContent() throws IOException {
+        byte[] content = createContent();
+        SlowInputStream inputStream = new SlowInputStream(content);
+
+        assertArrayEquals("content is truncated", content, IOUtils.readContent(inputStream));
+        assertTrue("stream is not closed", inputStream.isClosed());
+    }
+
+    @Test
+    public void testReadEmptyContent() throws IOException {
+        assertArrayEquals("wrong content", new byte[0], IOUtils.readContent(new SlowInputStream(new byte[0])));
+    }
+
+    @Test
+    public void testCopyAndSkip() throws IOException {
+        byte[] content = createContent();
+        InputStream inputStream = new SlowInputStream(content);
+        IOUtils.skip(inputStream, 1000);
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        IOUtils.copy(inputStream, outputStream, CONTENT_LENGTH - 2000);
+        byte[] buffer = new byte[1500];
+
+        assertArrayEquals("wrong copied bytes", Arrays.copyOfRange(content, 1000, CONTENT_LENGTH - 1000), outputStream.toByteArray());
+        assertEquals("wrong bytes count", 1000, IOUtils.readFully(inputStream, buffer));
+        assertArrayEquals("wrong read bytes", Arrays.copyOfRange(content, CONTENT_LENGTH - 1000, CONTENT_LENGTH), Arrays.copyOf(buffer, 1000));
+    }
+
+    @Test
+    public void testSkipTooMany() throws IOException {
+        try {
+            IOUtils.skip(new SlowInputStream(createContent()), CONTENT_LENGTH + 1);
+        } catch (IOException e) {
+            assertEquals("wrong error", "Not enough bytes", e.getMessage());
+            return;
+        }
+        fail("short stream is skipped silently");
+    }
+
+    private static byte[] createContent() {
+        byte[] content = new byte[CONTENT_LENGTH];
+        new Random(2).nextBytes(content);
+        return content;
+    }
+
+    /**
+     * Returns at most a hundred bytes per read and never reports available bytes, as network streams do.
+     */
+    private static class SlowInputStream extends ByteArrayInputStream {
+
+        private boolean isClosed = false;
+
+        public SlowInputStream(@NotNull byte[] content) {
+            super(content);
+        }
+
+        @Override
+        public synchronized int read(@NotNull byte[] buffer, int offset, int length) {
+            return super.read(buffer, offset, Math.min(length, 100));
+        }
+
+        @Override
+        public synchronized int available() {
+            return 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            isClosed = true;
+            super.close();
+        }
+
+        public boolean isClosed() {
+            return isClosed;
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ru.spbau.kozlov.task02.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.ArchiveIndex;
+import ru.spbau.kozlov.task02.zip.ArchiveLayout;
+import ru.spbau.kozlov.task02.zip.VerificationReport;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+import ru.spbau.kozlov.task02.zip.ZipDecompressor;
+import ru.spbau.kozlov.task02.zip.ZipLister;
+import ru.spbau.kozlov.task02.zip.ZipVerifier;
+import ru.spbau.kozlov.task02.zip.utils.PathUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+import static ru.spbau.kozlov.task02.tests.ArchiveTestUtils.*;
+
+/**
+ * @author adkozlov
+ */
+public class IncrementalTest {
+
+    public static final Path TEST_PATH = Paths.get(TEST_DIRECTORY_NAME, "incremental");
+    public static final Path SOURCE_PATH = TEST_PATH.resolve("src");
+    public static final Path BASE_ARCHIVE_PATH = TEST_PATH.resolve("base.zip");
+    public static final Path ARCHIVE_PATH = TEST_PATH.resolve("incremental.zip");
+    public static final Path TARGET_PATH = TEST_PATH.resolve("out");
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TEST_PATH);
+        createSourceTree(SOURCE_PATH, 9);
+        compress(BASE_ARCHIVE_PATH, null);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        deleteRecursively(TEST_PATH);
+    }
+
+    @Test
+    public void testUnchangedFilesAreReferenced() throws IOException {
+        createFile(SOURCE_PATH.resolve("file.txt"), "changed file");
+        createFile(SOURCE_PATH.resolve("dir/new.txt"), "new file");
+        compress(ARCHIVE_PATH, BASE_ARCHIVE_PATH);
+
+        try (ZipLister zipLister = new ZipLister(ARCHIVE_PATH)) {
+            ArchiveIndex archiveIndex = zipLister.readArchiveIndex();
+            assertTrue("unchanged file is stored", archiveIndex.findEntry(getArchivePath("large.bin")).isReference());
+            assertFalse("changed file is referenced", archiveIndex.findEntry(getArchivePath("file.txt")).isReference());
+            assertFalse("new file is referenced", archiveIndex.findEntry(getArchivePath("dir/new.txt")).isReference());
+        }
+
+        extract();
+        assertSameTree(SOURCE_PATH, TARGET_PATH.resolve(SOURCE_PATH));
+        assertTrue("archive is not intact", verify().isIntact());
+    }
+
+    @Test
+    public void testChangedBase() throws IOException {
+        compress(ARCHIVE_PATH, BASE_ARCHIVE_PATH);
+        createFile(SOURCE_PATH.resolve("dir/inner.txt"), "INNER FILE 9");
+        compress(BASE_ARCHIVE_PATH, null);
+
+        try {
+            extract();
+            fail("changed entry of the base archive is extracted silently");
+        } catch (IOException e) {
+            assertTrue("wrong error: " + e.getMessage(), e.getMessage().contains("has changed"));
+        }
+        Path extractedPath = TARGET_PATH.resolve(SOURCE_PATH);
+        assertFalse("changed entry of the base archive is extracted", Files.exists(extractedPath.resolve("dir/inner.txt")));
+        assertArrayEquals("wrong content", Files.readAllBytes(SOURCE_PATH.resolve("large.bin")), Files.readAllBytes(extractedPath.resolve("large.bin")));
+
+        VerificationReport report = verify();
+        assertFalse("archive is intact", report.isIntact());
+        assertEquals("wrong corrupted entries count", 1, report.getCorruptedCount());
+        assertEquals("wrong corrupted entry", getArchivePath("dir/inner.txt"), report.getFirstCorruptedPath());
+    }
+
+    @Test
+    public void testMissingBase() throws IOException {
+        compress(ARCHIVE_PATH, BASE_ARCHIVE_PATH);
+        Files.delete(BASE_ARCHIVE_PATH);
+
+        VerificationReport report = verify();
+        assertFalse("archive is intact", report.isIntact());
+        assertTrue("wrong corruption reason", report.getFirstCorruptionReason().startsWith("base archive cannot be read"));
+    }
+
+    private static void compress(Path archivePath, Path baseArchivePath) throws IOException {
+        try (ZipCompressor zipCompressor = new ZipCompressor(archivePath, 1, ArchiveLayout.CHUNKED, baseArchivePath)) {
+            zipCompressor.putNextEntry(SOURCE_PATH.toString());
+        }
+    }
+
+    private static void extract() throws IOException {
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(ARCHIVE_PATH, 1, TARGET_PATH)) {
+            zipDecompressor.extractAllEntries();
+        }
+    }
+
+    private static VerificationReport verify() throws IOException {
+        try (ZipVerifier zipVerifier = new ZipVerifier(ARCHIVE_PATH, 1)) {
+            return zipVerifier.verify();
+        }
+    }
+
+    private static String getArchivePath(String file) {
+        return PathUtils.convertOSPathToArchivePath(SOURCE_PATH.resolve(file).toString());
+    }
+}
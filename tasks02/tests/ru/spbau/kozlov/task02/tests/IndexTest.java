@@ -0,0 +1,100 @@
+package ru.spbau.kozlov.task02.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.ArchiveIndex;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+import ru.spbau.kozlov.task02.zip.ZipDecompressor;
+import ru.spbau.kozlov.task02.zip.ZipLister;
+import ru.spbau.kozlov.task02.zip.utils.PathUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.*;
+import static ru.spbau.kozlov.task02.tests.ArchiveTestUtils.*;
+
+/**
+ * @author adkozlov
+ */
+public class IndexTest {
+
+    public static final Path TEST_PATH = Paths.get(TEST_DIRECTORY_NAME, "index");
+    public static final Path SOURCE_PATH = TEST_PATH.resolve("src");
+    public static final Path ARCHIVE_PATH = TEST_PATH.resolve("archive.zip");
+    public static final Path TARGET_PATH = TEST_PATH.resolve("out");
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TEST_PATH);
+        createSourceTree(SOURCE_PATH, 4);
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH)) {
+            zipCompressor.putNextEntry(SOURCE_PATH.toString());
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        deleteRecursively(TEST_PATH);
+    }
+
+    @Test
+    public void testIndexEntries() throws IOException {
+        ArchiveIndex archiveIndex;
+        try (ZipLister zipLister = new ZipLister(ARCHIVE_PATH)) {
+            archiveIndex = zipLister.readArchiveIndex();
+        }
+
+        for (String file : listFiles(SOURCE_PATH)) {
+            byte[] content = Files.readAllBytes(SOURCE_PATH.resolve(file));
+            CRC32 crc32 = new CRC32();
+            crc32.update(content);
+
+            ArchiveIndex.Entry entry = archiveIndex.findEntry(getArchivePath(file));
+            assertNotNull("file is not indexed", entry);
+            assertFalse("file is indexed as directory", entry.isDirectory());
+            assertEquals("wrong length", content.length, entry.getLength());
+            assertEquals("wrong checksum", (int) crc32.getValue(), entry.getCrc());
+        }
+        assertNull("unknown entry found", archiveIndex.findEntry(getArchivePath("missing.txt")));
+    }
+
+    @Test
+    public void testListAllEntries() throws IOException {
+        String tree;
+        try (ZipLister zipLister = new ZipLister(ARCHIVE_PATH)) {
+            tree = zipLister.listAllEntries();
+        }
+
+        assertTrue("file is not listed", tree.contains("|_file.txt"));
+        assertTrue("file is not listed", tree.contains("|_inner.txt"));
+        assertFalse("hidden file is listed", tree.contains(".hidden"));
+    }
+
+    @Test
+    public void testExtractEntry() throws IOException {
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(ARCHIVE_PATH, 1, TARGET_PATH)) {
+            zipDecompressor.extractEntry(getArchivePath("dir/inner.txt"));
+        }
+
+        Path extractedPath = TARGET_PATH.resolve(SOURCE_PATH);
+        assertEquals("wrong files", Arrays.asList(Paths.get("dir", "inner.txt").toString()), listFiles(extractedPath));
+        assertArrayEquals("wrong content", Files.readAllBytes(SOURCE_PATH.resolve("dir/inner.txt")), Files.readAllBytes(extractedPath.resolve("dir/inner.txt")));
+    }
+
+    @Test(expected = IOException.class)
+    public void testExtractMissingEntry() throws IOException {
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(ARCHIVE_PATH, 1, TARGET_PATH)) {
+            zipDecompressor.extractEntry(getArchivePath("missing.txt"));
+        }
+    }
+
+    private static String getArchivePath(String file) {
+        return PathUtils.convertOSPathToArchivePath(SOURCE_PATH.resolve(file).toString());
+    }
+}
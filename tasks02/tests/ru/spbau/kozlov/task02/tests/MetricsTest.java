@@ -0,0 +1,125 @@
+package ru.spbau.kozlov.task02.tests;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.ArchiveIndex;
+import ru.spbau.kozlov.task02.zip.ArchiveMetrics;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+import ru.spbau.kozlov.task02.zip.ZipDecompressor;
+import ru.spbau.kozlov.task02.zip.ZipLister;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static ru.spbau.kozlov.task02.tests.ArchiveTestUtils.*;
+
+/**
+ * @author adkozlov
+ */
+public class MetricsTest {
+
+    public static final Path TEST_PATH = Paths.get(TEST_DIRECTORY_NAME, "metrics");
+    public static final Path SOURCE_PATH = TEST_PATH.resolve("src");
+    public static final Path ARCHIVE_PATH = TEST_PATH.resolve("archive.zip");
+    public static final Path TARGET_PATH = TEST_PATH.resolve("out");
+
+    private long rawBytes;
+    private List<String> indexPaths;
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TEST_PATH);
+        createSourceTree(SOURCE_PATH, 17);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            text.append("line ").append(i % 10).append(System.lineSeparator());
+        }
+        createFile(SOURCE_PATH.resolve("text.txt"), text.toString());
+        rawBytes = 0;
+        for (String file : listFiles(SOURCE_PATH)) {
+            rawBytes += Files.size(SOURCE_PATH.resolve(file));
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        deleteRecursively(TEST_PATH);
+    }
+
+    @Test
+    public void testCompressionMetrics() throws IOException {
+        List<String> visitedPaths = Collections.synchronizedList(new ArrayList<String>());
+        ArchiveMetrics metrics;
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH, 3)) {
+            metrics = zipCompressor.getMetrics();
+            metrics.setListener(createListener(visitedPaths));
+            zipCompressor.putNextEntry(SOURCE_PATH.toString());
+        }
+        readIndexPaths();
+
+        assertEquals("wrong entries count", indexPaths.size(), metrics.getEntriesCount());
+        assertEquals("wrong raw bytes count", rawBytes, metrics.getRawBytes());
+        assertTrue("wrong stored bytes count", metrics.getStoredBytes() > 0 && metrics.getStoredBytes() < Files.size(ARCHIVE_PATH));
+        assertTrue("elapsed time is not measured", metrics.getElapsedNanos() > 0);
+        assertTrue("compression time is not measured", metrics.getPhaseNanos(ArchiveMetrics.Phase.COMPRESS) > 0);
+        assertSamePaths(visitedPaths);
+    }
+
+    @Test
+    public void testDecompressionMetrics() throws IOException {
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH)) {
+            zipCompressor.putNextEntry(SOURCE_PATH.toString());
+        }
+        readIndexPaths();
+
+        for (int threadsCount : new int[]{1, 3}) {
+            List<String> visitedPaths = Collections.synchronizedList(new ArrayList<String>());
+            ArchiveMetrics metrics;
+            try (ZipDecompressor zipDecompressor = new ZipDecompressor(ARCHIVE_PATH, threadsCount, TARGET_PATH)) {
+                metrics = zipDecompressor.getMetrics();
+                metrics.setListener(createListener(visitedPaths));
+                zipDecompressor.extractAllEntries();
+            }
+
+            assertEquals("wrong entries count", indexPaths.size(), metrics.getEntriesCount());
+            assertEquals("wrong raw bytes count", rawBytes, metrics.getRawBytes());
+            assertTrue("decompression time is not measured", metrics.getPhaseNanos(ArchiveMetrics.Phase.DECOMPRESS) > 0);
+            assertSamePaths(visitedPaths);
+            deleteRecursively(TARGET_PATH);
+        }
+    }
+
+    private void readIndexPaths() throws IOException {
+        indexPaths = new ArrayList<>();
+        try (ZipLister zipLister = new ZipLister(ARCHIVE_PATH)) {
+            for (ArchiveIndex.Entry entry : zipLister.readArchiveIndex().getEntries()) {
+                indexPaths.add(entry.getPath());
+            }
+        }
+    }
+
+    private void assertSamePaths(List<String> visitedPaths) {
+        List<String> expected = new ArrayList<>(indexPaths);
+        List<String> actual = new ArrayList<>(visitedPaths);
+        Collections.sort(expected);
+        Collections.sort(actual);
+        assertEquals("wrong entries are reported", expected, actual);
+    }
+
+    private static ArchiveMetrics.Listener createListener(final List<String> visitedPaths) {
+        return new ArchiveMetrics.Listener() {
+            @Override
+            public void onEntry(@NotNull String archivePath, @NotNull ArchiveMetrics metrics) {
+                visitedPaths.add(archivePath);
+            }
+        };
+    }
+}
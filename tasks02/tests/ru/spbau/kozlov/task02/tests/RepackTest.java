@@ -0,0 +1,147 @@
+package ru.spbau.kozlov.task02.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.AdaptiveCodecSelector;
+import ru.spbau.kozlov.task02.zip.ArchiveIndex;
+import ru.spbau.kozlov.task02.zip.ArchiveLayout;
+import ru.spbau.kozlov.task02.zip.ArchiveRepacker;
+import ru.spbau.kozlov.task02.zip.CompressionMethod;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+import ru.spbau.kozlov.task02.zip.ZipDecompressor;
+import ru.spbau.kozlov.task02.zip.ZipLister;
+import ru.spbau.kozlov.task02.zip.ZipVerifier;
+import ru.spbau.kozlov.task02.zip.utils.PathUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static org.junit.Assert.*;
+import static ru.spbau.kozlov.task02.tests.ArchiveTestUtils.*;
+
+/**
+ * @author adkozlov
+ */
+public class RepackTest {
+
+    public static final Path TEST_PATH = Paths.get(TEST_DIRECTORY_NAME, "repack");
+    public static final Path FIRST_SOURCE_PATH = TEST_PATH.resolve("first");
+    public static final Path SECOND_SOURCE_PATH = TEST_PATH.resolve("second");
+    public static final Path FIRST_ARCHIVE_PATH = TEST_PATH.resolve("first.zip");
+    public static final Path SECOND_ARCHIVE_PATH = TEST_PATH.resolve("second.zip");
+    public static final Path ARCHIVE_PATH = TEST_PATH.resolve("merged.zip");
+    public static final Path TARGET_PATH = TEST_PATH.resolve("out");
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TEST_PATH);
+        createSourceTree(FIRST_SOURCE_PATH, 19);
+        createSourceTree(SECOND_SOURCE_PATH, 20);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        deleteRecursively(TEST_PATH);
+    }
+
+    @Test
+    public void testMerge() throws IOException {
+        compress(FIRST_ARCHIVE_PATH, FIRST_SOURCE_PATH, ArchiveLayout.CHUNKED, CompressionMethod.DEFAULT, null);
+        compress(SECOND_ARCHIVE_PATH, SECOND_SOURCE_PATH, ArchiveLayout.ENTRIES, CompressionMethod.DEFAULT, null);
+        try (ArchiveRepacker archiveRepacker = new ArchiveRepacker(ARCHIVE_PATH, 2, null)) {
+            archiveRepacker.addArchive(FIRST_ARCHIVE_PATH);
+            archiveRepacker.addArchive(SECOND_ARCHIVE_PATH);
+        }
+
+        extract(ARCHIVE_PATH);
+        assertSameTree(FIRST_SOURCE_PATH, TARGET_PATH.resolve(FIRST_SOURCE_PATH));
+        assertSameTree(SECOND_SOURCE_PATH, TARGET_PATH.resolve(SECOND_SOURCE_PATH));
+        assertIntact(ARCHIVE_PATH);
+    }
+
+    @Test
+    public void testRepackInPlace() throws IOException {
+        createFile(FIRST_SOURCE_PATH.resolve("dir/copy.txt"), Files.readAllBytes(FIRST_SOURCE_PATH.resolve("dir/inner.txt")));
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            text.append("line ").append(i % 10).append(System.lineSeparator());
+        }
+        createFile(FIRST_SOURCE_PATH.resolve("text.txt"), text.toString());
+        compress(ARCHIVE_PATH, FIRST_SOURCE_PATH, ArchiveLayout.CHUNKED, CompressionMethod.STORED, null);
+        long storedSize = Files.size(ARCHIVE_PATH);
+        try (ArchiveRepacker archiveRepacker = new ArchiveRepacker(ARCHIVE_PATH, 1, CompressionMethod.DEFAULT)) {
+            archiveRepacker.addArchive(ARCHIVE_PATH);
+        }
+
+        assertTrue("archive is not compressed", Files.size(ARCHIVE_PATH) < storedSize);
+        try (ZipLister zipLister = new ZipLister(ARCHIVE_PATH)) {
+            ArchiveIndex archiveIndex = zipLister.readArchiveIndex();
+            assertTrue("duplicate is stored twice", archiveIndex.findEntry(getArchivePath(FIRST_SOURCE_PATH, "dir/inner.txt")).isDuplicate()
+                    || archiveIndex.findEntry(getArchivePath(FIRST_SOURCE_PATH, "dir/copy.txt")).isDuplicate());
+        }
+        extract(ARCHIVE_PATH);
+        assertSameTree(FIRST_SOURCE_PATH, TARGET_PATH.resolve(FIRST_SOURCE_PATH));
+        assertIntact(ARCHIVE_PATH);
+    }
+
+    @Test
+    public void testIncrementalArchive() throws IOException {
+        compress(FIRST_ARCHIVE_PATH, FIRST_SOURCE_PATH, ArchiveLayout.CHUNKED, CompressionMethod.DEFAULT, null);
+        createFile(FIRST_SOURCE_PATH.resolve("file.txt"), "changed file");
+        compress(SECOND_ARCHIVE_PATH, FIRST_SOURCE_PATH, ArchiveLayout.CHUNKED, CompressionMethod.DEFAULT, FIRST_ARCHIVE_PATH);
+        try (ArchiveRepacker archiveRepacker = new ArchiveRepacker(ARCHIVE_PATH, 1, null)) {
+            archiveRepacker.addArchive(SECOND_ARCHIVE_PATH);
+        }
+        Files.delete(FIRST_ARCHIVE_PATH);
+
+        try (ZipLister zipLister = new ZipLister(ARCHIVE_PATH)) {
+            assertFalse("reference is kept", zipLister.readArchiveIndex().findEntry(getArchivePath(FIRST_SOURCE_PATH, "large.bin")).isReference());
+        }
+        extract(ARCHIVE_PATH);
+        assertSameTree(FIRST_SOURCE_PATH, TARGET_PATH.resolve(FIRST_SOURCE_PATH));
+    }
+
+    @Test
+    public void testSamePaths() throws IOException {
+        compress(FIRST_ARCHIVE_PATH, FIRST_SOURCE_PATH, ArchiveLayout.CHUNKED, CompressionMethod.DEFAULT, null);
+        byte[] firstContent = Files.readAllBytes(FIRST_SOURCE_PATH.resolve("file.txt"));
+        createFile(FIRST_SOURCE_PATH.resolve("file.txt"), "changed file");
+        compress(SECOND_ARCHIVE_PATH, FIRST_SOURCE_PATH, ArchiveLayout.CHUNKED, CompressionMethod.DEFAULT, null);
+        try (ArchiveRepacker archiveRepacker = new ArchiveRepacker(ARCHIVE_PATH, 1, null)) {
+            archiveRepacker.addArchive(FIRST_ARCHIVE_PATH);
+            archiveRepacker.addArchive(SECOND_ARCHIVE_PATH);
+        } catch (IOException e) {
+            assertTrue("wrong error: " + e.getMessage(), e.getMessage().contains("is already written"));
+            extract(ARCHIVE_PATH);
+            Path extractedPath = TARGET_PATH.resolve(FIRST_SOURCE_PATH);
+            assertArrayEquals("wrong content", firstContent, Files.readAllBytes(extractedPath.resolve("file.txt")));
+            return;
+        }
+        fail("entries of the same path are merged silently");
+    }
+
+    private static void compress(Path archivePath, Path sourcePath, ArchiveLayout archiveLayout, CompressionMethod method, Path baseArchivePath) throws IOException {
+        try (ZipCompressor zipCompressor = new ZipCompressor(archivePath, 1, archiveLayout, baseArchivePath, new AdaptiveCodecSelector(method))) {
+            zipCompressor.putNextEntry(sourcePath.toString());
+        }
+    }
+
+    private static void extract(Path archivePath) throws IOException {
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(archivePath, 1, TARGET_PATH)) {
+            zipDecompressor.extractAllEntries();
+        }
+    }
+
+    private static void assertIntact(Path archivePath) throws IOException {
+        try (ZipVerifier zipVerifier = new ZipVerifier(archivePath, 2)) {
+            assertTrue("archive is not intact", zipVerifier.verify().isIntact());
+        }
+    }
+
+    private static String getArchivePath(Path sourcePath, String file) {
+        return PathUtils.convertOSPathToArchivePath(sourcePath.resolve(file).toString());
+    }
+}
@@ -0,0 +1,120 @@
+package ru.spbau.kozlov.task02.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.ArchiveLayout;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+import ru.spbau.kozlov.task02.zip.ZipDecompressor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+
+import static ru.spbau.kozlov.task02.tests.ArchiveTestUtils.*;
+
+/**
+ * @author adkozlov
+ */
+public class RoundTripTest {
+
+    public static final Path TEST_PATH = Paths.get(TEST_DIRECTORY_NAME, "round-trip");
+    public static final Path SOURCE_PATH = TEST_PATH.resolve("src");
+    public static final Path ARCHIVE_PATH = TEST_PATH.resolve("archive.zip");
+    public static final Path TARGET_PATH = TEST_PATH.resolve("out");
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TEST_PATH);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        deleteRecursively(TEST_PATH);
+    }
+
+    @Test
+    public void testTestFiles() throws IOException {
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH)) {
+            zipCompressor.putNextEntry("testFiles");
+        }
+        extract(1);
+
+        assertSameTree(Paths.get("testFiles"), TARGET_PATH.resolve("testFiles"));
+    }
+
+    @Test
+    public void testSingleThread() throws IOException {
+        createSourceTree(SOURCE_PATH, 1);
+        compress(1);
+        extract(1);
+
+        assertSameTree(SOURCE_PATH, TARGET_PATH.resolve(SOURCE_PATH));
+    }
+
+    @Test
+    public void testParallelCompression() throws IOException {
+        createSourceTree(SOURCE_PATH, 2);
+        compress(4);
+        extract(1);
+
+        assertSameTree(SOURCE_PATH, TARGET_PATH.resolve(SOURCE_PATH));
+    }
+
+    @Test
+    public void testParallelExtraction() throws IOException {
+        createSourceTree(SOURCE_PATH, 3);
+        for (int i = 0; i < 20; i++) {
+            createFile(SOURCE_PATH.resolve("many/file" + i + ".txt"), "file " + i);
+        }
+        compress(1);
+        extract(4);
+
+        assertSameTree(SOURCE_PATH, TARGET_PATH.resolve(SOURCE_PATH));
+    }
+
+    @Test
+    public void testParallelExtractionOfLongFile() throws IOException {
+        byte[] content = new byte[5 * 1024 * 1024];
+        new Random(7).nextBytes(content);
+        createFile(SOURCE_PATH.resolve("long.bin"), content);
+        createFile(SOURCE_PATH.resolve("short.txt"), "short");
+        compress(2);
+        extract(4);
+
+        assertSameTree(SOURCE_PATH, TARGET_PATH.resolve(SOURCE_PATH));
+    }
+
+    @Test
+    public void testFilesLongerThanBuffer() throws IOException {
+        byte[] content = new byte[3 * 64 * 1024 + 5];
+        new Random(8).nextBytes(content);
+        createFile(SOURCE_PATH.resolve("long.bin"), content);
+        createFile(SOURCE_PATH.resolve("buffer.bin"), Arrays.copyOf(content, 64 * 1024));
+
+        for (ArchiveLayout layout : ArchiveLayout.values()) {
+            try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH, 1, layout)) {
+                zipCompressor.putNextEntry(SOURCE_PATH.toString());
+            }
+            extract(1);
+
+            assertSameTree(SOURCE_PATH, TARGET_PATH.resolve(SOURCE_PATH));
+            deleteRecursively(TARGET_PATH);
+        }
+    }
+
+    private static void compress(int threadsCount) throws IOException {
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH, threadsCount)) {
+            zipCompressor.putNextEntry(SOURCE_PATH.toString());
+        }
+    }
+
+    private static void extract(int threadsCount) throws IOException {
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(ARCHIVE_PATH, threadsCount, TARGET_PATH)) {
+            zipDecompressor.extractAllEntries();
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package ru.spbau.kozlov.task02.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.ArchiveLayout;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+import ru.spbau.kozlov.task02.zip.ZipDecompressor;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static ru.spbau.kozlov.task02.tests.ArchiveTestUtils.*;
+
+/**
+ * @author adkozlov
+ */
+public class SelectiveExtractionTest {
+
+    public static final Path TEST_PATH = Paths.get(TEST_DIRECTORY_NAME, "selective");
+    public static final Path SOURCE_PATH = TEST_PATH.resolve("src");
+    public static final Path ARCHIVE_PATH = TEST_PATH.resolve("archive.zip");
+    public static final Path TARGET_PATH = TEST_PATH.resolve("out");
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TEST_PATH);
+        createSourceTree(SOURCE_PATH, 13);
+        createFile(SOURCE_PATH.resolve("last.txt"), "file after the large one");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        deleteRecursively(TEST_PATH);
+    }
+
+    @Test
+    public void testGlob() throws IOException {
+        compress(ArchiveLayout.CHUNKED);
+        extract("glob:" + SOURCE_PATH.resolve("last.txt"), 1);
+        assertExtractedFiles(Arrays.asList("last.txt"));
+    }
+
+    @Test
+    public void testDirectory() throws IOException {
+        compress(ArchiveLayout.CHUNKED);
+        extract("glob:" + SOURCE_PATH.resolve("dir"), 1);
+        assertExtractedFiles(Arrays.asList(getOSPath("dir/.hidden"), getOSPath("dir/inner.txt"), getOSPath("dir/inner_dir/empty.txt")));
+    }
+
+    @Test
+    public void testRegex() throws IOException {
+        compress(ArchiveLayout.CHUNKED);
+        extract("regex:.*\\.txt", 1);
+        assertExtractedFiles(Arrays.asList(getOSPath("dir/inner.txt"), getOSPath("dir/inner_dir/empty.txt"), "file.txt", "last.txt"));
+    }
+
+    @Test
+    public void testParallelExtraction() throws IOException {
+        compress(ArchiveLayout.CHUNKED);
+        extract("regex:.*\\.(txt|bin)", 3);
+        assertExtractedFiles(Arrays.asList(getOSPath("dir/inner.txt"), getOSPath("dir/inner_dir/empty.txt"), "file.txt", "large.bin", "last.txt"));
+    }
+
+    @Test
+    public void testEntriesLayout() throws IOException {
+        compress(ArchiveLayout.ENTRIES);
+        extract("glob:**.bin", 1);
+        assertExtractedFiles(Arrays.asList("large.bin"));
+    }
+
+    @Test
+    public void testNoMatches() throws IOException {
+        compress(ArchiveLayout.CHUNKED);
+        try {
+            extract("glob:**.missing", 1);
+        } catch (IOException e) {
+            assertEquals("wrong error", "No entries of the archive match the pattern", e.getMessage());
+            assertFalse("file is extracted", Files.exists(TARGET_PATH.resolve(SOURCE_PATH).resolve("file.txt")));
+            return;
+        }
+        fail("no error if nothing matches");
+    }
+
+    private static void compress(ArchiveLayout archiveLayout) throws IOException {
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH, 1, archiveLayout, null)) {
+            zipCompressor.putNextEntry(SOURCE_PATH.toString());
+        }
+    }
+
+    private static void extract(String pattern, int threadsCount) throws IOException {
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(ARCHIVE_PATH, threadsCount, TARGET_PATH)) {
+            zipDecompressor.extract(FileSystems.getDefault().getPathMatcher(pattern));
+        }
+    }
+
+    private static void assertExtractedFiles(List<String> expectedFiles) throws IOException {
+        Path extractedPath = TARGET_PATH.resolve(SOURCE_PATH);
+        assertEquals("wrong files", expectedFiles, listFiles(extractedPath));
+        for (String file : expectedFiles) {
+            assertArrayEquals("wrong content", Files.readAllBytes(SOURCE_PATH.resolve(file)), Files.readAllBytes(extractedPath.resolve(file)));
+        }
+    }
+
+    private static String getOSPath(String path) {
+        return Paths.get(path).toString();
+    }
+}
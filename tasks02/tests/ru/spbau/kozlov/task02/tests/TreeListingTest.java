@@ -0,0 +1,144 @@
+package ru.spbau.kozlov.task02.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+import ru.spbau.kozlov.task02.zip.ZipLister;
+import ru.spbau.kozlov.task02.zip.utils.PathTreeWriter;
+import ru.spbau.kozlov.task02.zip.utils.PathUtils;
+import ru.spbau.kozlov.task02.zip.utils.ZipURLUtils;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static ru.spbau.kozlov.task02.tests.ArchiveTestUtils.*;
+
+/**
+ * @author adkozlov
+ */
+public class TreeListingTest {
+
+    public static final Path TEST_PATH = Paths.get(TEST_DIRECTORY_NAME, "listing");
+    public static final Path SOURCE_PATH = TEST_PATH.resolve("src");
+    public static final Path ARCHIVE_PATH = TEST_PATH.resolve("archive.zip");
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TEST_PATH);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        deleteRecursively(TEST_PATH);
+    }
+
+    @Test
+    public void testTree() throws IOException {
+        List<String> paths = Arrays.asList("root/", "root/a.txt", "root/dir/", "root/dir/.hidden", "root/dir/b.txt", "root/dir/inner/", "root/dir/inner/c.txt", "root/d.txt");
+        String separator = System.lineSeparator();
+        String expected = "|_root" + separator
+                + "      |_a.txt" + separator
+                + "      |_dir" + separator
+                + "      | " + "   |_b.txt" + separator
+                + "      | " + "   |_inner" + separator
+                + "      | " + "          |_c.txt" + separator
+                + "      |_d.txt" + separator;
+        assertEquals("wrong tree", expected, write(paths));
+    }
+
+    @Test
+    public void testSameAsLineByLineRendering() throws IOException {
+        Random random = new Random(12);
+        String[] names = {"a", "bb", ".hidden", "dir", ZipURLUtils.getUrlDirectoryName()};
+        for (int i = 0; i < 1000; i++) {
+            List<String> paths = new ArrayList<>();
+            int pathsCount = random.nextInt(20);
+            for (int j = 0; j < pathsCount; j++) {
+                StringBuilder path = new StringBuilder(names[random.nextInt(names.length)]);
+                for (int depth = random.nextInt(4); depth > 0; depth--) {
+                    path.append(PathUtils.ARCHIVE_FILE_SEPARATOR).append(names[random.nextInt(names.length)]);
+                }
+                if (random.nextBoolean()) {
+                    path.append(PathUtils.ARCHIVE_FILE_SEPARATOR);
+                }
+                paths.add(path.toString());
+            }
+            assertEquals("wrong tree of " + paths, render(paths), write(paths));
+        }
+    }
+
+    @Test
+    public void testListAllEntries() throws IOException {
+        createSourceTree(SOURCE_PATH, 12);
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH)) {
+            zipCompressor.putNextEntry(SOURCE_PATH.toString());
+        }
+
+        String tree;
+        StringWriter stringWriter = new StringWriter();
+        try (ZipLister zipLister = new ZipLister(ARCHIVE_PATH)) {
+            tree = zipLister.listAllEntries();
+            zipLister.listAllEntries(stringWriter);
+        }
+        assertEquals("streamed tree differs", tree, stringWriter.toString());
+        for (String name : new String[]{"|_file.txt", "|_dir", "|_inner.txt", "|_inner_dir", "|_empty.txt", "|_large.bin"}) {
+            assertTrue("entry is not listed: " + name, tree.contains(name + System.lineSeparator()));
+        }
+        assertFalse("hidden file is listed", tree.contains(".hidden"));
+    }
+
+    private static String write(List<String> paths) throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        PathTreeWriter.write(paths, stringWriter);
+        return stringWriter.toString();
+    }
+
+    private static String render(List<String> paths) {
+        List<String[]> lines = new ArrayList<>();
+        for (String path : paths) {
+            if (!path.contains(PathUtils.ARCHIVE_FILE_SEPARATOR + ".")) {
+                lines.add(path.split(PathUtils.ARCHIVE_FILE_SEPARATOR_STRING));
+            }
+        }
+
+        String[] next = new String[0];
+        String[] nextPrefixes = new String[0];
+        List<String> result = new ArrayList<>();
+        for (int i = lines.size() - 1; i >= 0; i--) {
+            String[] current = lines.get(i);
+            String[] prefixes = new String[current.length];
+            boolean isUrl = current[0].equals(ZipURLUtils.getUrlDirectoryName()) && current.length != 1;
+
+            StringBuilder line = new StringBuilder();
+            prefixes[current.length - 1] = "| ";
+            for (int j = current.length - 2; j >= 0; j--) {
+                String prefix = !isUrl && j < next.length ? "| " : "  ";
+                if (j < nextPrefixes.length && "  ".equals(nextPrefixes[j])) {
+                    prefix = "  ";
+                }
+                line.insert(0, String.format("%" + current[j].length() + "s", " "));
+                line.insert(0, prefix);
+                prefixes[j] = prefix;
+            }
+            result.add(line + "|_" + current[current.length - 1] + System.lineSeparator());
+
+            next = current;
+            nextPrefixes = prefixes;
+        }
+
+        StringBuilder stringBuilder = new StringBuilder();
+        for (int i = result.size() - 1; i >= 0; i--) {
+            stringBuilder.append(result.get(i));
+        }
+        return stringBuilder.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package ru.spbau.kozlov.task02.tests;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.ArchiveIndex;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+import ru.spbau.kozlov.task02.zip.ZipDecompressor;
+import ru.spbau.kozlov.task02.zip.ZipLister;
+import ru.spbau.kozlov.task02.zip.utils.PathUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static ru.spbau.kozlov.task02.tests.ArchiveTestUtils.*;
+
+/**
+ * @author adkozlov
+ */
+public class UrlTest {
+
+    public static final Path TEST_PATH = Paths.get(TEST_DIRECTORY_NAME, "url");
+    public static final Path ARCHIVE_PATH = TEST_PATH.resolve("archive.zip");
+    public static final Path TARGET_PATH = TEST_PATH.resolve("out");
+
+    private HttpServer httpServer;
+    private final AtomicInteger requestsCount = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TEST_PATH);
+
+        httpServer = HttpServer.create(new InetSocketAddress(0), 0);
+        httpServer.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                requestsCount.incrementAndGet();
+                byte[] page = getPage(exchange.getRequestURI().getPath()).getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(200, page.length);
+                try (OutputStream outputStream = exchange.getResponseBody()) {
+                    outputStream.write(page);
+                }
+            }
+        });
+        httpServer.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        httpServer.stop(0);
+        deleteRecursively(TEST_PATH);
+    }
+
+    @Test
+    public void testPages() throws IOException {
+        String[] urls = new String[10];
+        for (int i = 0; i < urls.length; i++) {
+            urls[i] = getUrl("127.0.0.1", "/page" + i);
+        }
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH)) {
+            for (String url : urls) {
+                zipCompressor.putNextEntry(url);
+            }
+        }
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(ARCHIVE_PATH, 1, TARGET_PATH)) {
+            zipDecompressor.extractAllEntries();
+        }
+
+        for (int i = 0; i < urls.length; i++) {
+            Path pagePath = TARGET_PATH.resolve(PathUtils.convertArchivePathToOSPath(PathUtils.convertUrlToArchivePath(urls[i])));
+            assertEquals("wrong page", getPage("/page" + i), new String(Files.readAllBytes(pagePath), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void testSameUrlFetchedOnce() throws IOException {
+        String url = getUrl("127.0.0.1", "/page");
+        String anotherHostUrl = getUrl("localhost", "/page");
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH)) {
+            zipCompressor.putNextEntry(url);
+            zipCompressor.putNextEntry(url);
+            zipCompressor.putNextEntry(anotherHostUrl);
+        }
+
+        assertEquals("wrong requests count", 2, requestsCount.get());
+        try (ZipLister zipLister = new ZipLister(ARCHIVE_PATH)) {
+            ArchiveIndex archiveIndex = zipLister.readArchiveIndex();
+            assertNotNull("page is not archived", archiveIndex.findEntry(PathUtils.convertUrlToArchivePath(url)));
+            assertNotNull("page of another host is not archived", archiveIndex.findEntry(PathUtils.convertUrlToArchivePath(anotherHostUrl)));
+        }
+    }
+
+    private String getUrl(String host, String path) {
+        return "http://" + host + ":" + httpServer.getAddress().getPort() + path;
+    }
+
+    private static String getPage(String path) {
+        return "<html><body>" + path + "</body></html>";
+    }
+}
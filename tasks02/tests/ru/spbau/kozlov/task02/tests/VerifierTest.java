@@ -0,0 +1,107 @@
+package ru.spbau.kozlov.task02.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.AdaptiveCodecSelector;
+import ru.spbau.kozlov.task02.zip.ArchiveLayout;
+import ru.spbau.kozlov.task02.zip.CompressionMethod;
+import ru.spbau.kozlov.task02.zip.VerificationReport;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+import ru.spbau.kozlov.task02.zip.ZipVerifier;
+import ru.spbau.kozlov.task02.zip.utils.PathUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+import static ru.spbau.kozlov.task02.tests.ArchiveTestUtils.*;
+
+/**
+ * @author adkozlov
+ */
+public class VerifierTest {
+
+    public static final Path TEST_PATH = Paths.get(TEST_DIRECTORY_NAME, "verifier");
+    public static final Path SOURCE_PATH = TEST_PATH.resolve("src");
+    public static final Path ARCHIVE_PATH = TEST_PATH.resolve("archive.zip");
+    public static final String MARKER = "verified chunk marker";
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TEST_PATH);
+        createSourceTree(SOURCE_PATH, 14);
+
+        byte[] content = new byte[700 * 1024];
+        new Random(14).nextBytes(content);
+        byte[] marker = MARKER.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(marker, 0, content, 600 * 1024, marker.length);
+        createFile(SOURCE_PATH.resolve("marked.bin"), content);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        deleteRecursively(TEST_PATH);
+    }
+
+    @Test
+    public void testIntactArchive() throws IOException {
+        compress(ArchiveLayout.CHUNKED);
+        assertIntact(verify(1));
+        assertIntact(verify(4));
+    }
+
+    @Test
+    public void testEntriesLayout() throws IOException {
+        compress(ArchiveLayout.ENTRIES);
+        assertIntact(verify(1));
+        assertIntact(verify(4));
+    }
+
+    @Test
+    public void testCorruptedChunk() throws IOException {
+        compress(ArchiveLayout.CHUNKED);
+        byte[] archive = Files.readAllBytes(ARCHIVE_PATH);
+        String archiveString = new String(archive, StandardCharsets.ISO_8859_1);
+        int index = archiveString.indexOf(MARKER);
+        assertTrue("chunk is not stored", index != -1);
+        archive[index] ^= 1;
+        Files.write(ARCHIVE_PATH, archive);
+
+        for (int threadsCount : new int[]{1, 4}) {
+            VerificationReport report = verify(threadsCount);
+            assertFalse("archive is intact", report.isIntact());
+            assertEquals("wrong corrupted entries count", 1, report.getCorruptedCount());
+            assertEquals("wrong corrupted entry", PathUtils.convertOSPathToArchivePath(SOURCE_PATH.resolve("marked.bin").toString()), report.getFirstCorruptedPath());
+            assertNotNull("no corruption reason", report.getFirstCorruptionReason());
+        }
+    }
+
+    private static void compress(ArchiveLayout archiveLayout) throws IOException {
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH, 1, archiveLayout, null, new AdaptiveCodecSelector(CompressionMethod.STORED))) {
+            zipCompressor.putNextEntry(SOURCE_PATH.toString());
+        }
+    }
+
+    private static VerificationReport verify(int threadsCount) throws IOException {
+        try (ZipVerifier zipVerifier = new ZipVerifier(ARCHIVE_PATH, threadsCount)) {
+            return zipVerifier.verify();
+        }
+    }
+
+    private static void assertIntact(VerificationReport report) throws IOException {
+        assertTrue("archive is not intact: " + report.getFirstCorruptionReason(), report.isIntact());
+        assertTrue("checksums are not verified", report.isChecksumsVerified());
+
+        long bytesCount = 0;
+        for (String file : listFiles(SOURCE_PATH)) {
+            bytesCount += Files.size(SOURCE_PATH.resolve(file));
+        }
+        assertEquals("wrong verified bytes count", bytesCount, report.getBytesCount());
+        assertTrue("wrong entries count", report.getEntriesCount() >= listFiles(SOURCE_PATH).size());
+    }
+}
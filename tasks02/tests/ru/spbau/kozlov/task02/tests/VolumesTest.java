@@ -0,0 +1,220 @@
+package ru.spbau.kozlov.task02.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ru.spbau.kozlov.task02.zip.AdaptiveCodecSelector;
+import ru.spbau.kozlov.task02.zip.ArchiveIndex;
+import ru.spbau.kozlov.task02.zip.ArchiveLayout;
+import ru.spbau.kozlov.task02.zip.ArchiveVolumes;
+import ru.spbau.kozlov.task02.zip.MultiVolumeDecompressor;
+import ru.spbau.kozlov.task02.zip.ZipCompressor;
+import ru.spbau.kozlov.task02.zip.ZipDecompressor;
+import ru.spbau.kozlov.task02.zip.ZipLister;
+import ru.spbau.kozlov.task02.zip.ZipVerifier;
+import ru.spbau.kozlov.task02.zip.utils.PathUtils;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+import static ru.spbau.kozlov.task02.tests.ArchiveTestUtils.*;
+
+/**
+ * @author adkozlov
+ */
+public class VolumesTest {
+
+    public static final Path TEST_PATH = Paths.get(TEST_DIRECTORY_NAME, "volumes");
+    public static final Path SOURCE_PATH = TEST_PATH.resolve("src");
+    public static final Path EXPECTED_PATH = TEST_PATH.resolve("expected");
+    public static final Path ARCHIVE_PATH = TEST_PATH.resolve("v.zip");
+    public static final Path TARGET_PATH = TEST_PATH.resolve("out");
+    public static final Path PROGRESS_PATH = Paths.get(".v.zip.progress");
+    public static final Path UNSAFE_ARCHIVE_PATH = TEST_PATH.resolve("unsafe.zip");
+    public static final Path UNSAFE_PROGRESS_PATH = Paths.get(".unsafe.zip.progress");
+    public static final Path PARENT_FILE_PATH = Paths.get("..", "volumes-evil.txt");
+    public static final int SMALL_FILE_LENGTH = 100 * 1024;
+
+    @Before
+    public void setUp() throws IOException {
+        Files.createDirectories(TEST_PATH);
+        createSourceTree(SOURCE_PATH, 15);
+        byte[] content = new byte[(int) (3 * ZipCompressor.MIN_VOLUME_SIZE)];
+        new Random(15).nextBytes(content);
+        createFile(SOURCE_PATH.resolve("split.bin"), content);
+        for (int i = 0; i < 20; i++) {
+            createFile(SOURCE_PATH.resolve("small").resolve("file" + i + ".bin"), Arrays.copyOfRange(content, i * SMALL_FILE_LENGTH, (i + 1) * SMALL_FILE_LENGTH));
+        }
+
+        try (ZipCompressor zipCompressor = new ZipCompressor(ARCHIVE_PATH, 1, ArchiveLayout.CHUNKED, null, new AdaptiveCodecSelector(), ZipCompressor.MIN_VOLUME_SIZE)) {
+            zipCompressor.putNextEntry(SOURCE_PATH.toString());
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(PROGRESS_PATH);
+        Files.deleteIfExists(UNSAFE_PROGRESS_PATH);
+        Files.deleteIfExists(PARENT_FILE_PATH);
+        deleteRecursively(TEST_PATH);
+    }
+
+    @Test
+    public void testVolumes() throws IOException {
+        assertFalse("archive is not split", Files.exists(ARCHIVE_PATH));
+        List<Path> volumes = ArchiveVolumes.findVolumes(ARCHIVE_PATH);
+        assertTrue("wrong volumes count", volumes.size() >= 3);
+        for (Path volume : volumes) {
+            assertTrue("volume is too large", Files.size(volume) <= ZipCompressor.MIN_VOLUME_SIZE);
+        }
+    }
+
+    @Test
+    public void testExtractAllVolumes() throws IOException {
+        Files.move(SOURCE_PATH, EXPECTED_PATH);
+        try (MultiVolumeDecompressor multiVolumeDecompressor = new MultiVolumeDecompressor(ARCHIVE_PATH, 2)) {
+            multiVolumeDecompressor.extractAllEntries();
+        }
+        assertSameTree(EXPECTED_PATH, SOURCE_PATH);
+        assertFalse("progress file is not deleted", Files.exists(PROGRESS_PATH));
+    }
+
+    @Test
+    public void testResumeExtraction() throws IOException {
+        List<Path> volumes = ArchiveVolumes.findVolumes(ARCHIVE_PATH);
+        Path extractedVolume = null;
+        List<String> extractedFiles = new ArrayList<>();
+        for (Path volume : volumes) {
+            if (extractedFiles.isEmpty()) {
+                extractedVolume = volume;
+                extractedFiles = getWholeFiles(volume);
+            }
+        }
+        assertFalse("volumes contain no whole files", extractedFiles.isEmpty());
+        List<String> pendingFiles = new ArrayList<>();
+        for (Path volume : volumes) {
+            if (!volume.equals(extractedVolume)) {
+                pendingFiles.addAll(getWholeFiles(volume));
+            }
+        }
+
+        Files.move(SOURCE_PATH, EXPECTED_PATH);
+        Files.write(PROGRESS_PATH, (extractedVolume.getFileName() + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+        try (MultiVolumeDecompressor multiVolumeDecompressor = new MultiVolumeDecompressor(ARCHIVE_PATH, 1)) {
+            multiVolumeDecompressor.extractAllEntries();
+        }
+
+        for (String file : extractedFiles) {
+            assertFalse("extracted volume is extracted again", Files.exists(Paths.get(PathUtils.convertArchivePathToOSPath(file))));
+        }
+        for (String file : pendingFiles) {
+            Path path = SOURCE_PATH.relativize(Paths.get(PathUtils.convertArchivePathToOSPath(file)));
+            assertArrayEquals("wrong content", Files.readAllBytes(EXPECTED_PATH.resolve(path)), Files.readAllBytes(SOURCE_PATH.resolve(path)));
+        }
+        assertFalse("progress file is not deleted", Files.exists(PROGRESS_PATH));
+    }
+
+    @Test
+    public void testExtractSingleVolume() throws IOException {
+        int partsCount = 0;
+        for (Path volume : ArchiveVolumes.findVolumes(ARCHIVE_PATH)) {
+            try (ZipLister zipLister = new ZipLister(volume)) {
+                for (ArchiveIndex.Entry entry : zipLister.readArchiveIndex().getEntries()) {
+                    if (entry.isPart()) {
+                        assertPartSkipped(volume, entry.getPath());
+                        partsCount++;
+                    }
+                }
+            }
+        }
+        assertTrue("no files are split", partsCount > 1);
+    }
+
+    @Test
+    public void testListByArchiveName() throws IOException {
+        StringWriter stringWriter = new StringWriter();
+        ZipLister.listAllVolumes(ARCHIVE_PATH, stringWriter);
+        String tree = stringWriter.toString();
+
+        for (String name : new String[]{"|_file.txt", "|_inner.txt", "|_empty.txt", "|_large.bin"}) {
+            assertTrue("entry is not listed: " + name, tree.contains(name + System.lineSeparator()));
+        }
+        String splitFile = "|_split.bin" + System.lineSeparator();
+        assertEquals("split file is not listed once", tree.indexOf(splitFile), tree.lastIndexOf(splitFile));
+        assertTrue("split file is not listed", tree.contains(splitFile));
+    }
+
+    @Test
+    public void testVerifyByArchiveName() throws IOException {
+        long bytesCount = 0;
+        for (Path volume : ArchiveVolumes.findVolumes(ARCHIVE_PATH)) {
+            try (ZipVerifier zipVerifier = new ZipVerifier(volume, 2)) {
+                assertTrue("volume is not intact", zipVerifier.verify().isIntact());
+            }
+            try (ZipVerifier zipVerifier = new ZipVerifier(volume, 1)) {
+                bytesCount += zipVerifier.verify().getBytesCount();
+            }
+        }
+
+        long expectedBytesCount = 0;
+        for (String file : listFiles(SOURCE_PATH)) {
+            expectedBytesCount += Files.size(SOURCE_PATH.resolve(file));
+        }
+        assertEquals("wrong verified bytes count", expectedBytesCount, bytesCount);
+    }
+
+    @Test
+    public void testEntriesOutsideOfWorkingDirectory() throws IOException {
+        Path goodPath = TEST_PATH.resolve("good.txt");
+        try (ZipOutputStream zipOutputStream = new ZipOutputStream(Files.newOutputStream(ArchiveVolumes.getVolumePath(UNSAFE_ARCHIVE_PATH, 1)))) {
+            for (Path path : new Path[]{goodPath, PARENT_FILE_PATH}) {
+                zipOutputStream.putNextEntry(new ZipEntry(PathUtils.convertOSPathToArchivePath(path.toString())));
+                zipOutputStream.write(path.toString().getBytes(StandardCharsets.UTF_8));
+                zipOutputStream.closeEntry();
+            }
+        }
+
+        try (MultiVolumeDecompressor multiVolumeDecompressor = new MultiVolumeDecompressor(UNSAFE_ARCHIVE_PATH, 1)) {
+            multiVolumeDecompressor.extractAllEntries();
+        } catch (IOException e) {
+            assertTrue("good file is not extracted", Files.exists(goodPath));
+            assertFalse("file is written outside of the working directory", Files.exists(PARENT_FILE_PATH));
+            return;
+        }
+        fail("entries outside of the working directory are extracted silently");
+    }
+
+    private static List<String> getWholeFiles(Path volume) throws IOException {
+        List<String> result = new ArrayList<>();
+        try (ZipLister zipLister = new ZipLister(volume)) {
+            for (ArchiveIndex.Entry entry : zipLister.readArchiveIndex().getEntries()) {
+                if (!entry.isDirectory() && !entry.isPart()) {
+                    result.add(entry.getPath());
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void assertPartSkipped(Path volume, String archivePath) throws IOException {
+        try (ZipDecompressor zipDecompressor = new ZipDecompressor(volume, 1, TARGET_PATH)) {
+            zipDecompressor.extractAllEntries();
+        } catch (IOException e) {
+            assertTrue("wrong error: " + e.getMessage(), e.getMessage().contains("is a part of the file split between the volumes"));
+            assertFalse("part of the split file is written", Files.exists(TARGET_PATH.resolve(PathUtils.convertArchivePathToOSPath(archivePath))));
+            return;
+        }
+        fail("part of the split file is extracted silently");
+    }
+}